@@ -60,7 +60,7 @@ def prepare_webserver(config):
         "/../web/target/web-1.0-SNAPSHOT.war",
         tomcatFolder + "/webapps/ROOT.war", "")
     tmp = tempfile.NamedTemporaryFile(mode="w", delete=False)
-    agg = config.get_aggregators()
+    agg = config.get_root_aggregators()
     if agg:
         for a in agg:
             tmp.write(a.host + ":" + str(config.aggregator_port) + "\n")
@@ -119,7 +119,7 @@ def prepare_aggregator(config, rh):
         rh.copy_file_to_remote("forever.sh", config.service_folder, "")
     tmp = tempfile.NamedTemporaryFile(mode="w", delete=False)
     for h in rh.children:
-        tmp.write(h + ":" + str(config.worker_port) + "\n")
+        tmp.write(h + "\n")
     tmp.close()
     rh.copy_file_to_remote(tmp.name, config.service_folder + "/workers", "")
     os.unlink(tmp.name)
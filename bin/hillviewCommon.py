@@ -110,6 +110,8 @@ class RemoteAggregator(RemoteHost):
     def __init__(self, user, host, parent, children):
         "Create a remote aggregator"""
         super().__init__(user, host, parent)
+        # Addresses of the children, of the form host:port;
+        # children can be workers or other aggregators
         self.children = children
         self.isAggregator = True
 
@@ -189,15 +191,31 @@ class ClusterConfiguration:
             return self._jsonConfig.workers_heapsize[hostname]
         return self._jsonConfig.default_heap_size
 
+    def _get_children(self, agg):
+        """The addresses of the children of an aggregator from the configuration file"""
+        if hasattr(agg, "aggregators"):
+            return [a.name + ":" + str(self.aggregator_port) for a in agg.aggregators]
+        return [h + ":" + str(self.worker_port) for h in agg.workers]
+
+    def _walk_aggregators(self, aggregators, parent, result):
+        """Appends to result a RemoteAggregator for each of the specified aggregators
+        and for all the aggregators below them, parents before children."""
+        for a in aggregators:
+            rh = RemoteAggregator(self.get_user(), a.name, parent, self._get_children(a))
+            rh.config = a
+            result.append(rh)
+            if hasattr(a, "aggregators"):
+                self._walk_aggregators(a.aggregators, rh, result)
+        return result
+
     def get_workers(self):
         """Returns an array of RemoteHost objects containing all workers"""
         webserver = self.get_webserver()
         if hasattr(self._jsonConfig, "aggregators"):
-            return [RemoteHost(self.get_user(), h,
-                               RemoteHost(self.get_user(), a.name, webserver),
-                               self._get_heap_size(h))
-                    for a in self._jsonConfig.aggregators
-                    for h in a.workers]
+            return [RemoteHost(self.get_user(), h, a, self._get_heap_size(h))
+                    for a in self.get_aggregators()
+                    if not hasattr(a.config, "aggregators")
+                    for h in a.config.workers]
         return [RemoteHost(self.get_user(), h, webserver, self._get_heap_size(h))
                 for h in self._jsonConfig.workers]
 
@@ -206,12 +224,18 @@ class ClusterConfiguration:
         return RemoteHost(self.get_user(), self._jsonConfig.webserver, None)
 
     def get_aggregators(self):
-        """Returns an array of RemoteAggregator objects"""
+        """Returns an array of RemoteAggregator objects containing all aggregators
+        at all levels of the aggregation tree"""
         if not hasattr(self._jsonConfig, "aggregators"):
             return []
-        webserver = self.get_webserver()
-        return [RemoteAggregator(self.get_user(), h.name, webserver, h.workers)
-                for h in self._jsonConfig.aggregators]
+        return self._walk_aggregators(
+            self._jsonConfig.aggregators, self.get_webserver(), [])
+
+    def get_root_aggregators(self):
+        """Returns an array of RemoteAggregator objects containing the aggregators
+        that are directly connected to the web server"""
+        # The web server is the only host without a parent
+        return [a for a in self.get_aggregators() if a.parent.parent is None]
 
     def cleanup_on_install(self):
         """Returns true if we need to cleaup when installing"""
@@ -18,6 +18,11 @@
 package org.hillview.dataset;
 
 import org.hillview.dataset.api.*;
+import org.hillview.sketches.highorder.BatchSketch;
+import org.hillview.sketches.highorder.SamplingTableSketch;
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.ITable;
+import org.hillview.table.membership.RangeRestrictedMembershipSet;
 import org.hillview.utils.*;
 import rx.Observable;
 import rx.Scheduler;
@@ -29,6 +34,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
 
 /**
  * A LocalDataSet is an implementation of IDataSet which contains exactly one
@@ -60,6 +67,72 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
         workScheduler = Schedulers.from(executor);
     }
 
+    /**
+     * If true sketches over large tables are computed in parallel, by
+     * splitting the rows of the table into ranges.
+     */
+    private static volatile boolean parallelSketching = false;
+    /**
+     * Minimum number of rows in each piece when splitting a table.
+     */
+    private static volatile int minRowsPerSplit = 1 << 18;
+
+    /**
+     * Enable or disable the parallel computation of sketches over large tables.
+     */
+    public static void setParallelSketching(boolean enabled) {
+        LocalDataSet.parallelSketching = enabled;
+    }
+
+    /**
+     * Enable or disable the parallel computation of sketches over large tables.
+     * @param minRowsPerSplit  Tables are split in pieces with at least this many rows.
+     */
+    public static void setParallelSketching(boolean enabled, int minRowsPerSplit) {
+        if (minRowsPerSplit <= 0)
+            throw new IllegalArgumentException("Split size must be positive: " + minRowsPerSplit);
+        LocalDataSet.minRowsPerSplit = minRowsPerSplit;
+        LocalDataSet.parallelSketching = enabled;
+    }
+
+    /**
+     * If positive, sketches over tables with more rows are computed incrementally:
+     * the table is processed in chunks of this many rows, and partial results
+     * are emitted as the chunks are completed.
+     */
+    private static volatile int incrementalRowsPerChunk = 0;
+    /**
+     * When sketching incrementally partial results are emitted at most this often;
+     * the results of chunks completed in between are added together.
+     */
+    private static volatile int incrementalIntervalInMilliseconds = 0;
+
+    /**
+     * Enable or disable the incremental computation of sketches over large tables.
+     * @param rowsPerChunk  Tables with more rows are processed in chunks of this many rows,
+     *                      emitting a partial result after each chunk.
+     *                      If zero incremental sketching is disabled.
+     * @param intervalInMilliseconds  Minimum time between two partial results.
+     */
+    public static void setIncrementalSketching(int rowsPerChunk, int intervalInMilliseconds) {
+        if (rowsPerChunk < 0)
+            throw new IllegalArgumentException("Chunk size must not be negative: " + rowsPerChunk);
+        if (intervalInMilliseconds < 0)
+            throw new IllegalArgumentException("Negative time interval: " + intervalInMilliseconds);
+        LocalDataSet.incrementalIntervalInMilliseconds = intervalInMilliseconds;
+        LocalDataSet.incrementalRowsPerChunk = rowsPerChunk;
+    }
+
+    /**
+     * Number of pieces to split a table with the specified number of rows into.
+     * There is no point to have more pieces than cores, since all of them
+     * run on the same executor.
+     */
+    private static int splitCount(int rowCount) {
+        int cpuCount = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(cpuCount, rowCount / LocalDataSet.minRowsPerSplit));
+    }
+
     /**
      * Create a LocalDataSet, processing the data on a separate thread by default.
      * @param data: Data to store in the LocalDataSet.
@@ -200,13 +273,32 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
 
     @Override
     public <R extends ISketchResult> Observable<PartialResult<R>> sketch(final ISketch<T, R> sketch) {
+        int rowsPerChunk = LocalDataSet.incrementalRowsPerChunk;
+        if (rowsPerChunk > 0 && this.data instanceof ITable && sketch.isSplittable()) {
+            ITable table = (ITable)this.data;
+            if (table.getMembershipSet().getSize() > rowsPerChunk)
+                return this.schedule(this.incrementalSketch(sketch, table, rowsPerChunk));
+        }
+        if (SharedScanCoordinator.isEnabled() && this.data instanceof ITable &&
+                (sketch instanceof IncrementalTableSketch || sketch instanceof SamplingTableSketch)) {
+            @SuppressWarnings("unchecked")
+            ISketch<ITable, R> tableSketch = (ISketch<ITable, R>)sketch;
+            return this.schedule(SharedScanCoordinator.instance.sketch(
+                    (ITable)this.data, tableSketch, this::sharedScan));
+        }
+
         // Immediately return a zero partial result
         // final Observable<PartialResult<R>> zero = this.zero(sketch::zero);
         final Callable<R> callable = () -> {
             try {
                 HillviewLogger.instance.info("Starting sketch", "{0}:{1}",
                         this, sketch.asString());
-                R result = sketch.create(this.data);
+                R result;
+                if (LocalDataSet.parallelSketching && this.data instanceof ITable &&
+                        sketch.isSplittable())
+                    result = this.parallelSketch(sketch, (ITable)this.data);
+                else
+                    result = sketch.create(this.data);
                 HillviewLogger.instance.info("Completed sketch", "{0}:{1}",
                         this, sketch.asString());
                 return result;
@@ -222,6 +314,132 @@ public class LocalDataSet<T> extends BaseDataSet<T> {
         return this.schedule(pro);
     }
 
+    /**
+     * Run a batch of sketches fused by the SharedScanCoordinator over the table.
+     */
+    @SuppressWarnings("unchecked")
+    private JsonList<ISketchResult> sharedScan(BatchSketch<ITable> batch) {
+        try {
+            HillviewLogger.instance.info("Starting shared scan", "{0}:{1}",
+                    this, batch.asString());
+            ISketch<T, JsonList<ISketchResult>> sketch = (ISketch<T, JsonList<ISketchResult>>)(Object)batch;
+            JsonList<ISketchResult> result;
+            if (LocalDataSet.parallelSketching)
+                result = this.parallelSketch(sketch, (ITable)Converters.checkNull(this.data));
+            else
+                result = batch.create((ITable)this.data);
+            HillviewLogger.instance.info("Completed shared scan", "{0}:{1}",
+                    this, batch.asString());
+            return Converters.checkNull(result);
+        } catch (final Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Run a sketch over a table in chunks of consecutive rows, emitting
+     * the results as the chunks are completed.  Each partial result holds the
+     * sum of the results of the chunks completed since the previous one, so
+     * adding all partial results produces the result of the sketch over the whole
+     * table.  (Sampling sketches rescale the result of each chunk, which is then
+     * an estimate of the contribution of the chunk to the whole table.)
+     * The work stops early if the observable is unsubscribed.
+     * @param sketch        Sketch to run; T must be ITable.
+     * @param table         Table to sketch.
+     * @param rowsPerChunk  Number of rows in each chunk, except the last one.
+     */
+    private <R extends ISketchResult> Observable<PartialResult<R>> incrementalSketch(
+            ISketch<T, R> sketch, ITable table, int rowsPerChunk) {
+        @SuppressWarnings("unchecked")
+        ISketch<ITable, R> tableSketch = (ISketch<ITable, R>)sketch;
+        return Observable.unsafeCreate(subscriber -> {
+            try {
+                List<IMembershipSet> parts = RangeRestrictedMembershipSet.splitBySize(
+                        table.getMembershipSet(), rowsPerChunk);
+                int chunks = parts.size();
+                double rowCount = table.getMembershipSet().getSize();
+                HillviewLogger.instance.info("Starting incremental sketch", "{0}:{1} in {2} chunks",
+                        this, sketch.asString(), chunks);
+                R delta = tableSketch.zero();
+                double deltaDone = 0;
+                long lastEmitted = System.currentTimeMillis();
+                for (int i = 0; i < chunks; i++) {
+                    if (subscriber.isUnsubscribed())
+                        return;
+                    ITable part = table.selectRowSubset(parts.get(i));
+                    R result;
+                    if (LocalDataSet.parallelSketching)
+                        result = this.parallelSketch(sketch, part);
+                    else
+                        result = tableSketch.create(part);
+                    delta = tableSketch.add(delta, result);
+                    deltaDone += parts.get(i).getSize() / rowCount;
+                    long now = System.currentTimeMillis();
+                    if (i == chunks - 1 ||
+                            now - lastEmitted >= LocalDataSet.incrementalIntervalInMilliseconds) {
+                        subscriber.onNext(new PartialResult<R>(deltaDone, delta));
+                        delta = tableSketch.zero();
+                        deltaDone = 0;
+                        lastEmitted = now;
+                    }
+                }
+                HillviewLogger.instance.info("Completed incremental sketch", "{0}:{1}",
+                        this, sketch.asString());
+                subscriber.onCompleted();
+            } catch (final Throwable t) {
+                subscriber.onError(t);
+            }
+        });
+    }
+
+    /**
+     * Run a sketch over a table by splitting the rows of the table into ranges,
+     * running the sketch over each range on the compute executor, and
+     * combining the results using the sketch monoid.
+     * @param sketch  Sketch to run; T must be ITable.
+     * @param table   Table to sketch.
+     */
+    @Nullable
+    private <R extends ISketchResult> R parallelSketch(ISketch<T, R> sketch, ITable table)
+            throws Exception {
+        IMembershipSet set = table.getMembershipSet();
+        int parts = LocalDataSet.splitCount(set.getSize());
+        @SuppressWarnings("unchecked")
+        ISketch<ITable, R> tableSketch = (ISketch<ITable, R>)sketch;
+        if (parts <= 1 || !sketch.isSplittable())
+            // Sketches with side effects must see the whole table at once.
+            return tableSketch.create(table);
+
+        HillviewLogger.instance.info("Splitting sketch", "{0}:{1} in {2} parts",
+                this, sketch.asString(), parts);
+        List<Callable<R>> pieces = new ArrayList<Callable<R>>(parts);
+        for (IMembershipSet range : RangeRestrictedMembershipSet.split(set, parts)) {
+            ITable part = table.selectRowSubset(range);
+            pieces.add(() -> tableSketch.create(part));
+        }
+
+        List<R> results = new ArrayList<R>(parts);
+        if (ForkJoinTask.inForkJoinPool()) {
+            // Idle threads of the work-stealing pool steal the pieces.
+            List<ForkJoinTask<R>> tasks = Linq.map(pieces, ForkJoinTask::adapt);
+            ForkJoinTask.invokeAll(tasks);
+            for (ForkJoinTask<R> task : tasks)
+                results.add(task.join());
+        } else {
+            ExecutorService executor = ExecutorUtils.getComputeExecutorService();
+            List<FutureTask<R>> tasks = Linq.map(pieces, FutureTask::new);
+            for (int i = 1; i < parts; i++)
+                executor.execute(tasks.get(i));
+            // This thread runs all the pieces that have not been started by the executor;
+            // otherwise it could wait for tasks queued behind itself.
+            for (FutureTask<R> task : tasks)
+                task.run();
+            for (FutureTask<R> task : tasks)
+                results.add(task.get());
+        }
+        return tableSketch.reduce(results);
+    }
+
     @Override
     public String toString() {
         return super.toString() + ":" + this.data;
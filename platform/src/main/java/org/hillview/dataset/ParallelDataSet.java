@@ -88,8 +88,40 @@ public class ParallelDataSet<T> extends BaseDataSet<T> {
         this.children = children;
     }
 
+    /**
+     * Create a tree of ParallelDataSets over the specified leaves, in which each
+     * node has at most fanOut children.  Each inner node merges and bundles the partial
+     * results of its children.  All the nodes live in the same process, so this only
+     * bounds how many partial results are merged together; the process still talks to
+     * every leaf.  Aggregation levels that spread the network fan-in over several
+     * machines are built with separate aggregator processes (see HillviewServerRunner).
+     * @param leaves  Leaves of the tree.
+     * @param fanOut  Maximum number of children of a node.  If smaller than 2 the result
+     *                is a single ParallelDataSet with all leaves as children.
+     */
+    public static <T> ParallelDataSet<T> createTree(final List<IDataSet<T>> leaves, int fanOut) {
+        List<IDataSet<T>> level = leaves;
+        while (fanOut >= 2 && level.size() > fanOut) {
+            int nodes = (level.size() + fanOut - 1) / fanOut;
+            List<IDataSet<T>> next = new ArrayList<IDataSet<T>>(nodes);
+            for (int i = 0; i < nodes; i++) {
+                // Spread the children evenly between the nodes
+                int start = i * level.size() / nodes;
+                int end = (i + 1) * level.size() / nodes;
+                next.add(new ParallelDataSet<T>(
+                        new ArrayList<IDataSet<T>>(level.subList(start, end))));
+            }
+            level = next;
+        }
+        return new ParallelDataSet<T>(level);
+    }
+
     public int size() { return this.children.size(); }
 
+    public List<IDataSet<T>> getChildren() { return this.children; }
+
+    public int getBundleInterval() { return this.bundleInterval; }
+
     /**
      * Can be used to change the time interval in which partial results are aggregated.
      * This should be done only once after construction; datasets are supposed to be immutable.
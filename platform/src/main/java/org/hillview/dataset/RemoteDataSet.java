@@ -17,18 +17,15 @@
 
 package org.hillview.dataset;
 
-import com.google.protobuf.ByteString;
-import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
-import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
-import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.stub.StreamObserver;
-import org.apache.commons.lang3.SerializationUtils;
 import org.hillview.dataset.api.*;
 import org.hillview.pb.Ack;
 import org.hillview.pb.Command;
 import org.hillview.pb.HillviewServerGrpc;
 import org.hillview.pb.PartialResponse;
 import org.hillview.dataset.remoting.*;
+import org.hillview.sketches.highorder.BatchSketch;
 import org.hillview.utils.*;
 import rx.Observable;
 import rx.subjects.PublishSubject;
@@ -39,7 +36,6 @@ import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -51,23 +47,14 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
     private final static int TIMEOUT = 60000 * 10;  // TODO: import via config file
     private final int remoteHandle;
     private final HostAndPort serverEndpoint;
-    private final HillviewServerGrpc.HillviewServerStub stub;
-    /*
-     * To avoid epoll CPU utilization problems, we could use PollSelectorProvider().
-     * See: https://github.com/netty/netty/issues/327
-     */
-    private static final EventLoopGroup workerElg = new NioEventLoopGroup(1,
-            ExecutorUtils.newFastLocalThreadFactory("rds-shared-worker"));
-    /*
-     * The high priority for the executor is needed to handle unsubscription
-     * requests with high priority.
-     */
-    private static final ExecutorService executorService =
-            ExecutorUtils.newNamedThreadPool("rds-shared-executor", 5, Thread.MAX_PRIORITY);
     /**
      * When the service is deployed with a single initial dataset this is the index used.
      */
     public static final int defaultDatasetIndex = -1;
+    /**
+     * Compression accepted for the responses of the remote servers.
+     */
+    private static volatile WireCompression responseCompression = WireCompression.Gzip;
 
     /**
      * Creates a parallel dataset with one representative for each machine in the
@@ -75,6 +62,16 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
      * @param index   Index of dataset on remote machine.  Must be a negative number.
      */
     public static IDataSet<Empty> createCluster(final HostList description, int index) {
+        return createCluster(description, index, 0);
+    }
+
+    /**
+     * Creates a tree of parallel datasets with one leaf for each machine in the
+     * specified cluster; see ParallelDataSet.createTree.
+     * @param index   Index of dataset on remote machine.  Must be a negative number.
+     * @param fanOut  Maximum number of children of each node of the tree.
+     */
+    public static IDataSet<Empty> createCluster(final HostList description, int index, int fanOut) {
         final int numServers = description.getServerList().size();
         if (numServers <= 0) {
             throw new IllegalArgumentException("ClusterDescription must contain one or more servers");
@@ -83,7 +80,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         final ArrayList<IDataSet<Empty>> emptyDatasets = new ArrayList<IDataSet<Empty>>(numServers);
         description.getServerList().forEach(server -> emptyDatasets.add(
                 new RemoteDataSet<Empty>(server, index)));
-        return new ParallelDataSet<Empty>(emptyDatasets);
+        return ParallelDataSet.createTree(emptyDatasets, fanOut);
     }
 
     public RemoteDataSet(final HostAndPort serverEndpoint) {
@@ -93,13 +90,18 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
     public RemoteDataSet(final HostAndPort serverEndpoint, final int remoteHandle) {
         this.serverEndpoint = serverEndpoint;
         this.remoteHandle = remoteHandle;
-        this.stub = HillviewServerGrpc.newStub(NettyChannelBuilder
-                .forAddress(serverEndpoint.getHost(), serverEndpoint.getPort())
-                .maxInboundMessageSize(HillviewServer.MAX_MESSAGE_SIZE)
-                .executor(executorService)
-                .eventLoopGroup(workerElg)
-                .usePlaintext()   // channel is unencrypted.
-                .build());
+    }
+
+    public static void setResponseCompression(WireCompression compression) {
+        RemoteDataSet.responseCompression = compression;
+    }
+
+    /**
+     * A stub for a call to the remote server; all stubs for a server share its channel.
+     */
+    private HillviewServerGrpc.HillviewServerStub getStub() {
+        return HillviewServerGrpc.newStub(ChannelPool.instance.get(this.serverEndpoint))
+                .withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
     private static <T> SerializedSubject<T, T> createSerializedSubject() {
@@ -123,13 +125,15 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         StreamObserver<PartialResponse> responseObserver;
 
         CommandWrapper(RemoteOperation operation) {
-            byte[] serializedOp = SerializationUtils.serialize(operation);
+            byte[] serializedOp = WireCodec.encode(operation);
             this.operationId = UUID.randomUUID();
             this.command = Command.newBuilder()
                     .setIdsIndex(RemoteDataSet.this.remoteHandle)
-                    .setSerializedOp(ByteString.copyFrom(serializedOp))
+                    .setSerializedOp(UnsafeByteOperations.unsafeWrap(serializedOp))
                     .setHighId(operationId.getMostSignificantBits())
                     .setLowId(operationId.getLeastSignificantBits())
+                    .setPriority(operation.getPriority().ordinal())
+                    .setCompression(RemoteDataSet.responseCompression.ordinal())
                     .build();
             this.subject = RemoteDataSet.createSerializedSubject();
             this.responseObserver = null;
@@ -156,8 +160,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         final MapOperation<T, S> mapOp = new MapOperation<T, S>(mapper);
         DatasetCommandWrapper<S> wrap = new DatasetCommandWrapper<S>(mapOp);
         return wrap.subject.unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                .doOnSubscribe(() -> this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                        .map(wrap.command, wrap.responseObserver))
+                .doOnSubscribe(() -> this.getStub().map(wrap.command, wrap.responseObserver))
                 .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
     }
 
@@ -170,8 +173,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         final PruneOperation<T> pruneOp = new PruneOperation<T>(isEmpty);
         DatasetCommandWrapper<T> wrap = new DatasetCommandWrapper<T>(pruneOp);
         return wrap.subject.unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                .doOnSubscribe(() -> this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                        .prune(wrap.command, wrap.responseObserver))
+                .doOnSubscribe(() -> this.getStub().prune(wrap.command, wrap.responseObserver))
                 .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
     }
 
@@ -180,8 +182,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         final FlatMapOperation<T, S> mapOp = new FlatMapOperation<T, S>(mapper);
         DatasetCommandWrapper<S> wrap = new DatasetCommandWrapper<S>(mapOp);
         return wrap.subject.unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                .doOnSubscribe(() -> this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                        .flatMap(wrap.command, wrap.responseObserver))
+                .doOnSubscribe(() -> this.getStub().flatMap(wrap.command, wrap.responseObserver))
                 .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
     }
 
@@ -189,13 +190,31 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
      * Sketch operation that streams partial results from the server to the caller.
      */
     @Override
+    @SuppressWarnings("unchecked")
     public <R extends ISketchResult> Observable<PartialResult<R>> sketch(final ISketch<T, R> sketch) {
+        if (sketch instanceof BatchSketch) {
+            Observable<?> batch = this.batch((BatchSketch<T>)sketch);
+            return (Observable<PartialResult<R>>)batch;
+        }
         final SketchOperation<T, R> sketchOp = new SketchOperation<T, R>(sketch);
         CommandWrapper<R> wrap = new CommandWrapper<R>(sketchOp);
         StreamObserver<PartialResponse> responseObserver = new SketchObserver<R>(wrap.subject);
         return wrap.subject
-                .doOnSubscribe(() -> this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                        .sketch(wrap.command, responseObserver))
+                .doOnSubscribe(() -> this.getStub().sketch(wrap.command, responseObserver))
+                .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
+                .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
+    }
+
+    /**
+     * Runs a batch of sketches with a single command; the server streams back
+     * the results of each sketch tagged with its index in the batch.
+     */
+    public Observable<PartialResult<JsonList<ISketchResult>>> batch(final BatchSketch<T> batch) {
+        final BatchOperation<T> batchOp = new BatchOperation<T>(batch);
+        CommandWrapper<JsonList<ISketchResult>> wrap = new CommandWrapper<JsonList<ISketchResult>>(batchOp);
+        StreamObserver<PartialResponse> responseObserver = new BatchObserver(wrap.subject, batch);
+        return wrap.subject
+                .doOnSubscribe(() -> this.getStub().batch(wrap.command, responseObserver))
                 .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
                 .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
     }
@@ -223,8 +242,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         final ZipOperation<T, S, R> zip = new ZipOperation<>(rds.remoteHandle, map);
         DatasetCommandWrapper<R> wrap = new DatasetCommandWrapper<>(zip);
         return wrap.subject.unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                .doOnSubscribe(() -> this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                        .zip(wrap.command, wrap.responseObserver))
+                .doOnSubscribe(() -> this.getStub().zip(wrap.command, wrap.responseObserver))
                 .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
     }
 
@@ -250,8 +268,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         final ZipNOperation<T, R> zip = new ZipNOperation<>(handles, map);
         DatasetCommandWrapper<R> wrap = new DatasetCommandWrapper<>(zip);
         return wrap.subject.unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                .doOnSubscribe(() -> this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                        .zipN(wrap.command, wrap.responseObserver))
+                .doOnSubscribe(() -> this.getStub().zipN(wrap.command, wrap.responseObserver))
                 .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
     }
 
@@ -262,8 +279,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         final StreamObserver<PartialResponse> responseObserver =
                 new ManageObserver(wrap.subject, message, this);
         return wrap.subject.unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                .doOnSubscribe(() -> this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                        .manage(wrap.command, responseObserver))
+                .doOnSubscribe(() -> this.getStub().manage(wrap.command, responseObserver))
                 .doOnUnsubscribe(() -> this.unsubscribe(wrap.operationId));
     }
 
@@ -274,15 +290,14 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
     private void unsubscribe(final UUID id) {
         HillviewLogger.instance.info("Unsubscribe called", "{0}", id);
         final UnsubscribeOperation op = new UnsubscribeOperation(id);
-        final byte[] serializedOp = SerializationUtils.serialize(op);
+        final byte[] serializedOp = WireCodec.encode(op);
         final Command command = Command.newBuilder()
                                        .setIdsIndex(this.remoteHandle)
-                                       .setSerializedOp(ByteString.copyFrom(serializedOp))
+                                       .setSerializedOp(UnsafeByteOperations.unsafeWrap(serializedOp))
                                        .setHighId(id.getMostSignificantBits())
                                        .setLowId(id.getLeastSignificantBits())
                                        .build();
-        this.stub.withDeadlineAfter(TIMEOUT, TimeUnit.MILLISECONDS)
-                 .unsubscribe(command, new StreamObserver<Ack>() {
+        this.getStub().unsubscribe(command, new StreamObserver<Ack>() {
             @Override
             public void onNext(final Ack ack) {}
 
@@ -341,7 +356,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         @Override
         @SuppressWarnings("unchecked")
         public PartialResult<IDataSet<S>> processResponse(final PartialResponse response) {
-            final OperationResponse<?> op = SerializationUtils.deserialize(response
+            final OperationResponse<?> op = WireCodec.decode(response
                     .getSerializedOp().toByteArray());
             PartialResult<Integer> pr = Converters.checkNull((PartialResult<Integer>)op.result);
             final IDataSet<S> ids = (pr.deltaValue == null) ? null :
@@ -362,7 +377,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         @Override
         @SuppressWarnings("unchecked")
         public PartialResult<S> processResponse(final PartialResponse response) {
-            final OperationResponse<?> op = SerializationUtils.deserialize(response
+            final OperationResponse<?> op = WireCodec.decode(response
                     .getSerializedOp().toByteArray());
             assert op.result != null;
             HillviewLogger.instance.debug("Receiving partial sketch result", "{0}", op.result);
@@ -370,6 +385,35 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         }
     }
 
+    /**
+     * StreamObserver used by batch(); turns each tagged response into a batch
+     * result which is zero for all other sketches.
+     */
+    private class BatchObserver extends OperationObserver<PartialResult<JsonList<ISketchResult>>> {
+        private final BatchSketch<T> batch;
+
+        BatchObserver(final SerializedSubject<PartialResult<JsonList<ISketchResult>>,
+                PartialResult<JsonList<ISketchResult>>> subject, BatchSketch<T> batch) {
+            super(subject);
+            this.batch = batch;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public PartialResult<JsonList<ISketchResult>> processResponse(final PartialResponse response) {
+            final OperationResponse<?> op = WireCodec.decode(response
+                    .getSerializedOp().toByteArray());
+            PartialResult<ISketchResult> pr = Converters.checkNull((PartialResult<ISketchResult>)op.result);
+            HillviewLogger.instance.debug("Receiving partial batch result", "{0}:{1}",
+                    response.getTag(), pr);
+            if (response.getTag() == BatchOperation.ALL_SKETCHES)
+                return new PartialResult<JsonList<ISketchResult>>(pr.deltaDone,
+                        (JsonList<ISketchResult>)pr.deltaValue);
+            return new PartialResult<JsonList<ISketchResult>>(pr.deltaDone,
+                    this.batch.placeAt(response.getTag(), pr.deltaValue));
+        }
+    }
+
     /**
      * StreamObserver used by manage() implementations above.
      */
@@ -390,7 +434,7 @@ public class RemoteDataSet<T> extends BaseDataSet<T> {
         @SuppressWarnings("unchecked")
         public PartialResult<ControlMessage.StatusList> processResponse(
                 final PartialResponse response) {
-            final OperationResponse<?> op = SerializationUtils.deserialize(response
+            final OperationResponse<?> op = WireCodec.decode(response
                     .getSerializedOp().toByteArray());
             return (PartialResult<ControlMessage.StatusList>)Converters.checkNull(op.result);
         }
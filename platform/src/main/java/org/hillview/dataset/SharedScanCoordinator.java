@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset;
+
+import org.hillview.dataset.api.ISketch;
+import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.sketches.highorder.BatchSketch;
+import org.hillview.table.api.ITable;
+import org.hillview.utils.ExecutorUtils;
+import org.hillview.utils.FairShareExecutor;
+import org.hillview.utils.HillviewLogger;
+import org.hillview.utils.JsonList;
+import org.hillview.utils.Linq;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Fuses the sketches which arrive within a short time window against the same table
+ * into a single scan of the table.  The first sketch to arrive opens a group, and
+ * schedules a timer which closes the group when the window has passed; all sketches
+ * which arrive in the meantime join the group.  No thread waits for the window.
+ * When the group closes all its sketches are run as a BatchSketch on the compute
+ * executor, and each sketch receives its own result.  Each sketch keeps its own
+ * subscription: a sketch which is unsubscribed, before or during the scan, stops
+ * being computed, and a scan stops when all its sketches have been unsubscribed.
+ */
+public class SharedScanCoordinator {
+    public static final SharedScanCoordinator instance = new SharedScanCoordinator();
+
+    /**
+     * Sketches arriving within this time are fused; if zero shared scans are disabled.
+     */
+    private static volatile int windowInMilliseconds = 0;
+
+    /**
+     * A sketch waiting for a shared scan, and the subscriber expecting its result.
+     */
+    private static class Member {
+        final ISketch<ITable, ISketchResult> sketch;
+        final Subscriber<? super PartialResult<ISketchResult>> subscriber;
+        /**
+         * Priority of the request which computes this sketch; see FairShareExecutor.
+         */
+        final int priority;
+        /**
+         * Set when the subscriber has received onCompleted or onError.
+         */
+        boolean done;
+
+        Member(ISketch<ITable, ISketchResult> sketch,
+               Subscriber<? super PartialResult<ISketchResult>> subscriber, int priority) {
+            this.sketch = sketch;
+            this.subscriber = subscriber;
+            this.priority = priority;
+            this.done = false;
+        }
+    }
+
+    /**
+     * Groups which are still accepting sketches, indexed by table.
+     */
+    private final IdentityHashMap<ITable, List<Member>> open;
+    /**
+     * Closes the groups when their time window has passed.
+     */
+    private final ScheduledExecutorService timer;
+    /**
+     * Number of scans performed.
+     */
+    private final AtomicLong scans;
+    /**
+     * Number of sketches computed by these scans.
+     */
+    private final AtomicLong sketches;
+    /**
+     * Number of table rows which did not have to be scanned again
+     * because their sketches shared a scan.
+     */
+    private final AtomicLong rowsSaved;
+
+    private SharedScanCoordinator() {
+        this.open = new IdentityHashMap<ITable, List<Member>>();
+        this.timer = ExecutorUtils.newNamedScheduledThreadPool("shared-scan-timer");
+        this.scans = new AtomicLong();
+        this.sketches = new AtomicLong();
+        this.rowsSaved = new AtomicLong();
+    }
+
+    /**
+     * Enable or disable shared scans.
+     * @param windowInMilliseconds  Sketches arriving within this time against the same
+     *                              table share a scan.  If zero shared scans are disabled.
+     */
+    public static void setWindow(int windowInMilliseconds) {
+        if (windowInMilliseconds < 0)
+            throw new IllegalArgumentException("Negative time window: " + windowInMilliseconds);
+        SharedScanCoordinator.windowInMilliseconds = windowInMilliseconds;
+    }
+
+    public static boolean isEnabled() {
+        return SharedScanCoordinator.windowInMilliseconds > 0;
+    }
+
+    public long getScanCount() {
+        return this.scans.get();
+    }
+
+    public long getSketchCount() {
+        return this.sketches.get();
+    }
+
+    public long getRowsSaved() {
+        return this.rowsSaved.get();
+    }
+
+    public String getStatistics() {
+        return "Shared scans: " + this.getScanCount() + ", sketches: " + this.getSketchCount() +
+                ", rows not rescanned: " + this.getRowsSaved();
+    }
+
+    /**
+     * Compute a sketch over a table, possibly sharing the scan of the table
+     * with other sketches.
+     * @param table   Table to sketch.
+     * @param sketch  Sketch to compute.
+     * @param runner  Function which computes a batch of sketches over the table.
+     * @return        An observable which produces the result of the sketch.
+     */
+    @SuppressWarnings("unchecked")
+    <R extends ISketchResult> Observable<PartialResult<R>> sketch(
+            ITable table, ISketch<ITable, R> sketch,
+            Function<BatchSketch<ITable>, JsonList<ISketchResult>> runner) {
+        Observable<PartialResult<ISketchResult>> result = Observable.unsafeCreate(subscriber -> {
+            FairShareExecutor.Request request = FairShareExecutor.getCurrentRequest();
+            int priority = request == null ? 0 : request.priority;
+            Member member = new Member((ISketch<ITable, ISketchResult>)sketch, subscriber, priority);
+            List<Member> group;
+            boolean first;
+            synchronized (this) {
+                group = this.open.get(table);
+                first = group == null;
+                if (first) {
+                    group = new ArrayList<Member>();
+                    this.open.put(table, group);
+                }
+                group.add(member);
+            }
+            if (first) {
+                final List<Member> members = group;
+                this.timer.schedule(() -> this.close(table, members, runner),
+                        SharedScanCoordinator.windowInMilliseconds, TimeUnit.MILLISECONDS);
+            }
+        });
+        Observable<?> cast = result;
+        return (Observable<PartialResult<R>>)cast;
+    }
+
+    /**
+     * Invoked by the timer at the end of the window of a group: stop accepting
+     * sketches in the group and start the scan.  The scan runs as a request of its own,
+     * with the most urgent priority of its sketches, which is cancelled when all the
+     * sketches have been unsubscribed.
+     */
+    private void close(ITable table, List<Member> group,
+                       Function<BatchSketch<ITable>, JsonList<ISketchResult>> runner) {
+        List<Member> members;
+        synchronized (this) {
+            this.open.remove(table);
+            members = Linq.where(group, m -> !m.subscriber.isUnsubscribed());
+        }
+        if (members.isEmpty())
+            return;
+        int priority = Integer.MAX_VALUE;
+        for (Member m : members)
+            priority = Math.min(priority, m.priority);
+        FairShareExecutor.Request request = new FairShareExecutor.Request(
+                new Object(), priority, () -> members.stream().allMatch(m -> m.subscriber.isUnsubscribed()));
+        try {
+            FairShareExecutor.callInRequest(request, () -> ExecutorUtils.getComputeExecutorService()
+                    .submit(() -> this.scan(table, members, runner)));
+        } catch (RejectedExecutionException ex) {
+            this.fail(members, ex);
+        }
+    }
+
+    /**
+     * Send an error to all members which have not completed.
+     */
+    private void fail(List<Member> members, Throwable t) {
+        for (Member m : members) {
+            if (m.done)
+                continue;
+            m.done = true;
+            m.subscriber.onError(t);
+        }
+    }
+
+    /**
+     * Run all members of a group in one scan.
+     */
+    private void scan(ITable table, List<Member> members,
+                      Function<BatchSketch<ITable>, JsonList<ISketchResult>> runner) {
+        JsonList<ISketchResult> results;
+        int count = members.size();
+        try {
+            BatchSketch<ITable> batch = new BatchSketch<ITable>(Linq.map(members, m -> m.sketch),
+                    i -> members.get(i).subscriber.isUnsubscribed());
+            results = runner.apply(batch);
+        } catch (Throwable t) {
+            this.fail(members, t);
+            return;
+        }
+        this.scans.incrementAndGet();
+        this.sketches.addAndGet(count);
+        if (count > 1) {
+            this.rowsSaved.addAndGet((long)(count - 1) * table.getNumOfRows());
+            HillviewLogger.instance.info("Shared scan", "{0} sketches over {1} rows",
+                    count, table.getNumOfRows());
+        }
+        for (int i = 0; i < count; i++) {
+            Member m = members.get(i);
+            if (m.subscriber.isUnsubscribed())
+                continue;
+            try {
+                m.subscriber.onNext(new PartialResult<ISketchResult>(results.get(i)));
+                m.done = true;
+                m.subscriber.onCompleted();
+            } catch (Throwable t) {
+                // Errors of one subscriber are not reported to the others.
+                if (!m.done) {
+                    m.done = true;
+                    m.subscriber.onError(t);
+                }
+            }
+        }
+    }
+}
@@ -28,4 +28,9 @@ public interface IDataSetComputation extends Serializable {
      * We cannot override toString, so we implement a new method.
      */
     default String asString() { return this.getClass().getName(); }
+
+    /**
+     * Scheduling class of this computation on the workers.
+     */
+    default OperationPriority getPriority() { return OperationPriority.Interactive; }
 }
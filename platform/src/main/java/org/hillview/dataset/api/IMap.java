@@ -33,4 +33,7 @@ public interface IMap<T, S> extends IDataSetComputation {
      */
     @Nullable
     S apply(@Nullable T data);
+
+    @Override
+    default OperationPriority getPriority() { return OperationPriority.Map; }
 }
@@ -46,6 +46,13 @@ public interface ISketch<T, R extends ISketchResult> extends
     @Nullable
     default R getZero() { return Converters.checkNull(this.zero()); }
 
+    /**
+     * True if the sketch of a table can be computed by running it separately
+     * over disjoint sets of rows of the table and adding the results.
+     * This is not true for sketches with side effects, such as saving the table.
+     */
+    default boolean isSplittable() { return true; }
+
     /**
      * Creates a post-processed sketch which runs the specified post-processing
      * function after the sketch completes.
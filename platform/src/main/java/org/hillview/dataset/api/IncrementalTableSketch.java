@@ -18,6 +18,7 @@
 package org.hillview.dataset.api;
 
 import org.hillview.sketches.highorder.QuantizedTableSketch;
+import org.hillview.sketches.highorder.SampleStageTableSketch;
 import org.hillview.sketches.highorder.SamplingTableSketch;
 import org.hillview.table.QuantizationSchema;
 import org.hillview.table.api.IRowIterator;
@@ -26,6 +27,8 @@ import org.hillview.table.api.ITable;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An incremental table sketch can update the result for each table row.
@@ -35,6 +38,11 @@ public abstract class IncrementalTableSketch<
         R extends ISketchResult & IScalable<R>,
         W extends ISketchWorkspace>
         implements TableSketch<R> {
+    /**
+     * Number of rows processed in one batch by incrementAll.
+     */
+    public static final int BATCH_SIZE = 1024;
+
     /**
      * Add to the result the data in the specified row number.
      * @param result     Result to add to.
@@ -42,6 +50,36 @@ public abstract class IncrementalTableSketch<
      */
     public abstract void increment(W workspace, R result, int rowNumber);
 
+    /**
+     * Add to the result the data in a batch of rows.  The default implementation
+     * calls increment for each row; sketches can override this to amortize
+     * the per-row overheads.
+     * @param result     Result to add to.
+     * @param rows       Array holding the row numbers.
+     * @param offset     Index of the first row in the rows array.
+     * @param count      Number of rows to process from the rows array.
+     */
+    public void incrementBatch(W workspace, R result, int[] rows, int offset, int count) {
+        int end = offset + count;
+        for (int i = offset; i < end; i++)
+            this.increment(workspace, result, rows[i]);
+    }
+
+    /**
+     * Add to the result all the rows produced by an iterator, processing
+     * them in batches.
+     * @param result     Result to add to.
+     * @param it         Iterator producing the rows.
+     */
+    public void incrementAll(W workspace, R result, IRowIterator it) {
+        int[] rows = new int[BATCH_SIZE];
+        int count = it.fillBatch(rows);
+        while (count > 0) {
+            this.incrementBatch(workspace, result, rows, 0, count);
+            count = it.fillBatch(rows);
+        }
+    }
+
     /**
      * Allocates a workspace for a sketch, that can later
      * be passed to add.
@@ -49,6 +87,16 @@ public abstract class IncrementalTableSketch<
      */
     public abstract W initialize(ITable data);
 
+    /**
+     * Names of the columns that initialize loads.  Sketches that run
+     * together use this to load all their columns with a single call.
+     * Sketches may still load other columns in initialize.
+     * @return A fresh list, which the caller can modify.
+     */
+    public List<String> getColumnNames() {
+        return new ArrayList<String>();
+    }
+
     /**
      * This function is invoked after computing a sketch over a sampled data
      * source to adjust the estimated counts.
@@ -63,12 +111,7 @@ public abstract class IncrementalTableSketch<
     public R create(@Nullable ITable data) {
         R result = Converters.checkNull(this.zero());
         W workspace = this.initialize(Converters.checkNull(data));
-        IRowIterator it = data.getRowIterator();
-        int row = it.getNextRow();
-        while (row >= 0) {
-            this.increment(workspace, result, row);
-            row = it.getNextRow();
-        }
+        this.incrementAll(workspace, result, data.getRowIterator());
         return result;
     }
 
@@ -82,6 +125,17 @@ public abstract class IncrementalTableSketch<
         return new SamplingTableSketch<>(Converters.checkRate(samplingRate), seed, this);
     }
 
+    /**
+     * A version of this sketch which runs over one stage of a progressive sample.
+     * The result is not rescaled.
+     * @param rates  Cumulative sampling rates of all stages.
+     * @param stage  Stage to sketch.
+     * @param seed   Seed of the progressive sample.
+     */
+    public TableSketch<R> sampledStage(double[] rates, int stage, long seed) {
+        return new SampleStageTableSketch<>(rates, stage, seed, this);
+    }
+
     public TableSketch<R> quantized(QuantizationSchema qs) {
         return new QuantizedTableSketch<>(this, qs);
     }
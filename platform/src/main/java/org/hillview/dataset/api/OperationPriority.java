@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.api;
+
+/**
+ * Scheduling class of a computation on the workers.  When the compute
+ * threads are busy tasks of a more urgent class are started first.
+ * The classes are listed in decreasing order of urgency.
+ */
+public enum OperationPriority {
+    Interactive, /* Sketches that produce results displayed to users */
+    Map,         /* Maps which produce new datasets */
+    Background;  /* Long-running operations such as saving or loading data */
+}
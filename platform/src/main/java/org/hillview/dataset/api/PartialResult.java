@@ -17,9 +17,13 @@
 
 package org.hillview.dataset.api;
 
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.utils.HillviewLogger;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -28,7 +32,7 @@ import java.io.Serializable;
  * the final result.
  * @param <T>  Type of data in partial result.
  */
-public class PartialResult<T> implements Serializable {
+public class PartialResult<T> implements Serializable, IBinarySerializable {
     static final long serialVersionUID = 1;
 
     /**
@@ -67,6 +71,17 @@ public class PartialResult<T> implements Serializable {
         this(1.0, deltaValue);
     }
 
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeDouble(this.deltaDone);
+        encoder.writeObject(this.deltaValue);
+    }
+
+    public static PartialResult<Object> readFrom(BinaryDecoder decoder) throws IOException {
+        double done = decoder.readDouble();
+        return new PartialResult<Object>(done, decoder.readObject());
+    }
+
     @Override
     public String toString() {
         return "PR[" + this.deltaDone + "," + this.deltaValue + "]";
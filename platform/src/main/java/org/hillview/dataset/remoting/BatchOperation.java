@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import org.hillview.dataset.api.OperationPriority;
+import org.hillview.sketches.highorder.BatchSketch;
+
+/**
+ * Wrap a batch of sketches to be sent to a remote node in a single command.
+ * @param <T> Input type of the sketches
+ */
+public class BatchOperation<T> extends RemoteOperation {
+    static final long serialVersionUID = 1;
+    /**
+     * Tag of a response that holds the results of all sketches in the batch,
+     * as a list indexed like the batch; used for memoized batches.
+     */
+    public static final int ALL_SKETCHES = -1;
+
+    public final BatchSketch<T> batch;
+
+    public BatchOperation(final BatchSketch<T> batch) {
+        this.batch = batch;
+    }
+
+    @Override
+    public OperationPriority getPriority() {
+        return this.batch.getPriority();
+    }
+}
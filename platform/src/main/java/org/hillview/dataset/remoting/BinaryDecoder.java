@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Schema;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.Interval;
+import org.hillview.utils.JsonList;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads objects written by a BinaryEncoder.
+ */
+public class BinaryDecoder {
+    private final DataInputStream input;
+    private final List<Schema> schemas;
+
+    public BinaryDecoder(byte[] bytes, int offset) {
+        this.input = new DataInputStream(
+                new ByteArrayInputStream(bytes, offset, bytes.length - offset));
+        this.schemas = new ArrayList<Schema>();
+    }
+
+    public int readByte() throws IOException {
+        return this.input.readByte();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return this.input.readBoolean();
+    }
+
+    public int readInt() throws IOException {
+        return this.input.readInt();
+    }
+
+    public long readLong() throws IOException {
+        return this.input.readLong();
+    }
+
+    public double readDouble() throws IOException {
+        return this.input.readDouble();
+    }
+
+    public byte[] readBytes() throws IOException {
+        int length = this.input.readInt();
+        byte[] result = new byte[length];
+        this.input.readFully(result);
+        return result;
+    }
+
+    @Nullable
+    public String readString() throws IOException {
+        int length = this.input.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        this.input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public Schema readSchema() throws IOException {
+        int index = this.input.readInt();
+        if (index >= 0)
+            return this.schemas.get(index);
+        int count = this.input.readInt();
+        List<ColumnDescription> cols = new ArrayList<ColumnDescription>(count);
+        ContentsKind[] kinds = ContentsKind.values();
+        for (int i = 0; i < count; i++) {
+            String name = this.readString();
+            ContentsKind kind = kinds[this.input.readByte()];
+            cols.add(new ColumnDescription(name, kind));
+        }
+        Schema result = new Schema(cols);
+        this.schemas.add(result);
+        return result;
+    }
+
+    /**
+     * Read a value written by BinaryEncoder.writeCell.
+     */
+    @Nullable
+    public Object readCell(ContentsKind kind) throws IOException {
+        int marker = this.input.readByte();
+        switch (marker) {
+            case BinaryWireCodec.CELL_MISSING:
+                return null;
+            case BinaryWireCodec.CELL_OBJECT:
+                return this.readObject();
+            case BinaryWireCodec.CELL_VALUE:
+                break;
+            default:
+                throw new RuntimeException("Unexpected cell marker " + marker);
+        }
+        switch (kind) {
+            case String:
+            case Json:
+                return this.readString();
+            case Integer:
+                return this.input.readInt();
+            case Date:
+            case Double:
+            case Duration:
+            case Time:
+            case LocalDate:
+                return this.input.readDouble();
+            default:
+                throw new RuntimeException("Unexpected kind " + kind);
+        }
+    }
+
+    /**
+     * Read an object written by BinaryEncoder.writeObject.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T readObject() throws IOException {
+        int tag = this.input.readUnsignedByte();
+        switch (tag) {
+            case BinaryWireCodec.TAG_NULL:
+                return null;
+            case BinaryWireCodec.TAG_INT:
+                return (T)Integer.valueOf(this.input.readInt());
+            case BinaryWireCodec.TAG_LONG:
+                return (T)Long.valueOf(this.input.readLong());
+            case BinaryWireCodec.TAG_DOUBLE:
+                return (T)Double.valueOf(this.input.readDouble());
+            case BinaryWireCodec.TAG_STRING:
+                return (T)this.readString();
+            case BinaryWireCodec.TAG_BOOLEAN:
+                return (T)Boolean.valueOf(this.input.readBoolean());
+            case BinaryWireCodec.TAG_INTERVAL: {
+                double start = this.input.readDouble();
+                double end = this.input.readDouble();
+                return (T)new Interval(start, end);
+            }
+            case BinaryWireCodec.TAG_LIST: {
+                int size = this.input.readInt();
+                JsonList<Object> list = new JsonList<Object>(size);
+                for (int i = 0; i < size; i++)
+                    list.add(this.readObject());
+                return (T)list;
+            }
+            case BinaryWireCodec.TAG_JAVA:
+                return SerializationUtils.deserialize(this.readBytes());
+            default:
+                return (T)BinaryWireCodec.getReader(tag).read(this);
+        }
+    }
+}
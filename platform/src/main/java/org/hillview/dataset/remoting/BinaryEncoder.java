@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Schema;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.Interval;
+import org.hillview.utils.JsonList;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+
+/**
+ * Writes objects in the format understood by the BinaryDecoder.
+ * Schemas are written only once; further occurrences are written as references.
+ */
+public class BinaryEncoder {
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream output;
+    private final IdentityHashMap<Schema, Integer> schemas;
+
+    public BinaryEncoder() {
+        this.bytes = new ByteArrayOutputStream();
+        this.output = new DataOutputStream(this.bytes);
+        this.schemas = new IdentityHashMap<Schema, Integer>();
+    }
+
+    public byte[] toByteArray() throws IOException {
+        this.output.flush();
+        return this.bytes.toByteArray();
+    }
+
+    public void writeByte(int value) throws IOException {
+        this.output.writeByte(value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        this.output.writeBoolean(value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        this.output.writeInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        this.output.writeLong(value);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        this.output.writeDouble(value);
+    }
+
+    public void writeBytes(byte[] value) throws IOException {
+        this.output.writeInt(value.length);
+        this.output.write(value);
+    }
+
+    public void writeString(@Nullable String value) throws IOException {
+        if (value == null) {
+            this.output.writeInt(-1);
+            return;
+        }
+        this.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeSchema(Schema schema) throws IOException {
+        Integer index = this.schemas.get(schema);
+        if (index != null) {
+            this.output.writeInt(index);
+            return;
+        }
+        this.schemas.put(schema, this.schemas.size());
+        this.output.writeInt(-1);
+        this.output.writeInt(schema.getColumnCount());
+        for (ColumnDescription cd : schema.getColumnDescriptions()) {
+            this.writeString(cd.name);
+            this.output.writeByte(cd.kind.ordinal());
+        }
+    }
+
+    /**
+     * Write a value stored in a column with the specified kind.
+     */
+    public void writeCell(ContentsKind kind, @Nullable Object value) throws IOException {
+        if (value == null) {
+            this.output.writeByte(BinaryWireCodec.CELL_MISSING);
+            return;
+        }
+        switch (kind) {
+            case String:
+            case Json:
+                if (value instanceof String) {
+                    this.output.writeByte(BinaryWireCodec.CELL_VALUE);
+                    this.writeString((String)value);
+                    return;
+                }
+                break;
+            case Integer:
+                if (value instanceof Integer) {
+                    this.output.writeByte(BinaryWireCodec.CELL_VALUE);
+                    this.output.writeInt((Integer)value);
+                    return;
+                }
+                break;
+            case Date:
+            case Double:
+            case Duration:
+            case Time:
+            case LocalDate:
+                if (value instanceof Double) {
+                    this.output.writeByte(BinaryWireCodec.CELL_VALUE);
+                    this.output.writeDouble((Double)value);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        this.output.writeByte(BinaryWireCodec.CELL_OBJECT);
+        this.writeObject(value);
+    }
+
+    /**
+     * Write an arbitrary object, preceded by a tag describing its type.
+     * Objects which have no binary encoding are written using Java serialization.
+     */
+    public void writeObject(@Nullable Object value) throws IOException {
+        if (value == null) {
+            this.output.writeByte(BinaryWireCodec.TAG_NULL);
+        } else if (value instanceof Integer) {
+            this.output.writeByte(BinaryWireCodec.TAG_INT);
+            this.output.writeInt((Integer)value);
+        } else if (value instanceof Long) {
+            this.output.writeByte(BinaryWireCodec.TAG_LONG);
+            this.output.writeLong((Long)value);
+        } else if (value instanceof Double) {
+            this.output.writeByte(BinaryWireCodec.TAG_DOUBLE);
+            this.output.writeDouble((Double)value);
+        } else if (value instanceof String) {
+            this.output.writeByte(BinaryWireCodec.TAG_STRING);
+            this.writeString((String)value);
+        } else if (value instanceof Boolean) {
+            this.output.writeByte(BinaryWireCodec.TAG_BOOLEAN);
+            this.output.writeBoolean((Boolean)value);
+        } else if (value instanceof Interval) {
+            Interval interval = (Interval)value;
+            this.output.writeByte(BinaryWireCodec.TAG_INTERVAL);
+            this.output.writeDouble(interval.get(true));
+            this.output.writeDouble(interval.get(false));
+        } else if (value.getClass() == JsonList.class) {
+            JsonList<?> list = (JsonList<?>)value;
+            this.output.writeByte(BinaryWireCodec.TAG_LIST);
+            this.output.writeInt(list.size());
+            for (Object o : list)
+                this.writeObject(o);
+        } else {
+            Integer tag = BinaryWireCodec.getTag(value.getClass());
+            if (tag != null) {
+                this.output.writeByte(tag);
+                ((IBinarySerializable)value).writeTo(this);
+            } else {
+                this.output.writeByte(BinaryWireCodec.TAG_JAVA);
+                this.writeBytes(SerializationUtils.serialize((Serializable)value));
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.sketches.results.*;
+import org.hillview.table.SmallTable;
+import org.hillview.table.rows.RowSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * A compact binary codec for the messages exchanged between the root and the workers.
+ * The classes of the most frequent results have hand-written encoders; each such class
+ * implements IBinarySerializable and is registered below with a tag and a reader.
+ * All other objects are encoded using Java serialization: an object that is
+ * not registered is encoded entirely by Java serialization, while a registered
+ * object may embed Java-serialized values (e.g., a Groups of an unregistered result).
+ */
+public class BinaryWireCodec implements IWireCodec {
+    public static final BinaryWireCodec instance = new BinaryWireCodec();
+
+    /**
+     * Function which reads an object written by IBinarySerializable.writeTo.
+     */
+    @FunctionalInterface
+    public interface IReader<T> {
+        T read(BinaryDecoder decoder) throws IOException;
+    }
+
+    /**
+     * First byte of each encoded message.  It differs from the first byte
+     * of the Java serialization format.
+     */
+    static final byte magic = 'H';
+
+    static final int TAG_NULL = 0;
+    static final int TAG_INT = 1;
+    static final int TAG_LONG = 2;
+    static final int TAG_DOUBLE = 3;
+    static final int TAG_STRING = 4;
+    static final int TAG_BOOLEAN = 5;
+    static final int TAG_INTERVAL = 6;
+    static final int TAG_LIST = 7;
+    static final int TAG_JAVA = 8;
+    /**
+     * Tags of registered classes start here.
+     */
+    private static final int firstClassTag = 16;
+
+    static final int CELL_MISSING = 0;
+    static final int CELL_VALUE = 1;
+    static final int CELL_OBJECT = 2;
+
+    private static final HashMap<Class<?>, Integer> tags = new HashMap<Class<?>, Integer>();
+    private static final HashMap<Integer, IReader<?>> readers = new HashMap<Integer, IReader<?>>();
+
+    static {
+        // The order of the registrations defines the tags, so new classes
+        // should be added at the end.
+        register(OperationResponse.class, OperationResponse::readFrom);
+        register(PartialResult.class, PartialResult::readFrom);
+        register(Count.class, Count::readFrom);
+        register(Groups.class, Groups::readFrom);
+        register(HLogLog.class, HLogLog::readFrom);
+        register(SmallTable.class, SmallTable::readFrom);
+        register(RowSnapshot.class, RowSnapshot::readFrom);
+        register(NextKList.class, NextKList::readFrom);
+        register(FreqKList.class, FreqKList::readFrom);
+        register(FreqKListExact.class, FreqKListExact::readFrom);
+        register(FreqKListMG.class, FreqKListMG::readFrom);
+        register(FreqKListSample.class, FreqKListSample::readFrom);
+        register(SampleList.class, SampleList::readFrom);
+    }
+
+    private static <T extends IBinarySerializable> void register(
+            Class<T> clazz, IReader<? extends T> reader) {
+        int tag = firstClassTag + tags.size();
+        if (tag > 255)
+            throw new RuntimeException("Too many registered classes");
+        tags.put(clazz, tag);
+        readers.put(tag, reader);
+    }
+
+    /**
+     * @return The tag of a class, or null if the class is not registered.
+     * Subclasses of a registered class are not registered.
+     */
+    @Nullable
+    static Integer getTag(Class<?> clazz) {
+        return tags.get(clazz);
+    }
+
+    static IReader<?> getReader(int tag) {
+        IReader<?> result = readers.get(tag);
+        if (result == null)
+            throw new RuntimeException("Unknown tag " + tag);
+        return result;
+    }
+
+    private BinaryWireCodec() {}
+
+    @Override
+    public byte[] encode(Object value) {
+        if (getTag(value.getClass()) == null)
+            return JavaWireCodec.instance.encode(value);
+        try {
+            BinaryEncoder encoder = new BinaryEncoder();
+            encoder.writeByte(magic);
+            encoder.writeObject(value);
+            return encoder.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes) {
+        if (JavaWireCodec.isJavaSerialized(bytes))
+            return JavaWireCodec.instance.decode(bytes);
+        if (bytes.length == 0 || bytes[0] != magic)
+            throw new RuntimeException("Unexpected message format");
+        try {
+            BinaryDecoder decoder = new BinaryDecoder(bytes, 1);
+            return decoder.readObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
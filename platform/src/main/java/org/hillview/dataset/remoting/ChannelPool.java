@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import org.hillview.utils.ExecutorUtils;
+import org.hillview.utils.HillviewLogger;
+import org.hillview.utils.HostAndPort;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channels used to talk to remote servers.  There is a single channel for each
+ * server, shared by all RemoteDataSets which refer to it.  Channels send keepalive
+ * pings, so broken connections are detected even when idle.  A channel which has
+ * lost its connection reconnects automatically; when a channel is requested while
+ * it is waiting to reconnect the wait is cut short.  A channel that has been shut
+ * down is replaced.
+ */
+public final class ChannelPool {
+    public static final ChannelPool instance = new ChannelPool();
+
+    /**
+     * Time between keepalive pings.  Servers must accept pings this frequent.
+     */
+    static final int keepAliveSeconds = 60;
+    private static final int keepAliveTimeoutSeconds = 20;
+
+    /*
+     * To avoid epoll CPU utilization problems, we could use PollSelectorProvider().
+     * See: https://github.com/netty/netty/issues/327
+     */
+    private static final EventLoopGroup workerElg = new NioEventLoopGroup(1,
+            ExecutorUtils.newFastLocalThreadFactory("rds-shared-worker"));
+    /*
+     * The high priority for the executor is needed to handle unsubscription
+     * requests with high priority.
+     */
+    private static final ExecutorService executorService =
+            ExecutorUtils.newNamedThreadPool("rds-shared-executor", 5, Thread.MAX_PRIORITY);
+
+    private final ConcurrentHashMap<HostAndPort, ManagedChannel> channels;
+
+    private ChannelPool() {
+        this.channels = new ConcurrentHashMap<HostAndPort, ManagedChannel>();
+    }
+
+    /**
+     * Get the channel used to talk to the specified server.
+     */
+    public ManagedChannel get(HostAndPort server) {
+        ManagedChannel channel = this.channels.compute(server,
+                (k, c) -> (c == null || c.isShutdown()) ? this.create(k) : c);
+        if (channel.getState(true) == ConnectivityState.TRANSIENT_FAILURE)
+            channel.resetConnectBackoff();
+        return channel;
+    }
+
+    private ManagedChannel create(HostAndPort server) {
+        HillviewLogger.instance.info("Creating channel", "{0}", server);
+        ManagedChannel channel = NettyChannelBuilder
+                .forAddress(server.getHost(), server.getPort())
+                .maxInboundMessageSize(HillviewServer.MAX_MESSAGE_SIZE)
+                .executor(executorService)
+                .eventLoopGroup(workerElg)
+                .keepAliveTime(keepAliveSeconds, TimeUnit.SECONDS)
+                .keepAliveTimeout(keepAliveTimeoutSeconds, TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(true)
+                .usePlaintext()   // channel is unencrypted.
+                .build();
+        this.watch(server, channel, ConnectivityState.IDLE);
+        return channel;
+    }
+
+    /**
+     * Log the state changes of a channel, to report the health of the connection.
+     */
+    private void watch(HostAndPort server, ManagedChannel channel, ConnectivityState state) {
+        channel.notifyWhenStateChanged(state, () -> {
+            ConnectivityState current = channel.getState(false);
+            if (current == ConnectivityState.TRANSIENT_FAILURE)
+                HillviewLogger.instance.warn("Lost connection", "{0}", server);
+            else
+                HillviewLogger.instance.info("Channel state", "{0}: {1}", server, current);
+            if (current != ConnectivityState.SHUTDOWN)
+                this.watch(server, channel, current);
+        });
+    }
+
+    /**
+     * @return The number of channels in the pool.
+     */
+    public int size() {
+        return this.channels.size();
+    }
+
+    /**
+     * Shut down all channels.  Channels requested later are created anew.
+     */
+    public void shutdown() {
+        for (ManagedChannel channel : this.channels.values())
+            channel.shutdown();
+        this.channels.clear();
+    }
+}
@@ -18,6 +18,7 @@
 package org.hillview.dataset.remoting;
 
 import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.OperationPriority;
 
 import java.util.List;
 
@@ -34,4 +35,9 @@ public class FlatMapOperation<T, S> extends RemoteOperation {
     public FlatMapOperation(final IMap<T, List<S>> mapper) {
         this.mapper = mapper;
     }
+
+    @Override
+    public OperationPriority getPriority() {
+        return this.mapper.getPriority();
+    }
 }
@@ -21,6 +21,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.Server;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -28,7 +29,6 @@ import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
 import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
 import io.grpc.stub.StreamObserver;
-import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.hillview.dataset.api.*;
 import org.hillview.pb.Ack;
@@ -41,8 +41,10 @@ import rx.Subscriber;
 import rx.Subscription;
 
 import javax.annotation.Nullable;
+import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
@@ -50,7 +52,7 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Server that transfers map(), sketch(), zip(), manage(), and unsubscribe() RPCs from a
+ * Server that transfers map(), sketch(), batch(), zip(), manage(), and unsubscribe() RPCs from a
  * RemoteDataSet object to locally managed IDataSet objects, and streams back results.
  * If memoization is enabled, it caches the results of (operation, dataset-index) types.
  */
@@ -112,6 +114,18 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
     private final HostAndPort listenAddress;
 
     private final MemoizedResults memoizedCommands;
+    /**
+     * Datasets evicted from the dataSets cache are written here, if not null.
+     * Null by default; see setSpillDirectory.
+     */
+    @Nullable
+    private volatile SpilledDataSets spilledDataSets;
+    /**
+     * Datasets being read back from disk, so that concurrent requests for a
+     * dataset wait for a single restore.
+     */
+    private final ConcurrentHashMap<Integer, CompletableFuture<IDataSet<?>>> restoring =
+            new ConcurrentHashMap<Integer, CompletableFuture<IDataSet<?>>>();
 
     public HillviewServer(final HostAndPort listenAddress, final IDataSet<?> initialDataset) throws IOException {
         this.initialDatasets = new HashMap<Integer, IDataSet<?>>();
@@ -125,15 +139,24 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                                         .bossEventLoopGroup(bossElg)
                                         .addService(this)
                                         .maxInboundMessageSize(MAX_MESSAGE_SIZE)
+                                        // Accept the keepalive pings of the ChannelPool
+                                        .permitKeepAliveTime(ChannelPool.keepAliveSeconds / 2, TimeUnit.SECONDS)
+                                        .permitKeepAliveWithoutCalls(true)
                                         .build()
                                         .start();
         this.dataSets = CacheBuilder.newBuilder()
                 .expireAfterAccess(EXPIRE_TIME_IN_HOURS, TimeUnit.HOURS)
                 .removalListener(
-                        (RemovalListener<Integer, IDataSet<?>>) removalNotification ->
-                                HillviewLogger.instance.info("Removing reference to dataset", "{0}: {1}",
-                                    removalNotification.getKey(), removalNotification.getValue().toString()))
+                        (RemovalListener<Integer, IDataSet<?>>) removalNotification -> {
+                            HillviewLogger.instance.info("Removing reference to dataset", "{0}: {1}",
+                                    removalNotification.getKey(), removalNotification.getValue().toString());
+                            SpilledDataSets spill = this.spilledDataSets;
+                            if (spill != null && removalNotification.wasEvicted())
+                                spill.spill(removalNotification.getKey(), removalNotification.getValue(),
+                                        this.liveDataSets());
+                        })
                 .build();
+        this.spilledDataSets = null;
         this.toUnsubscribe = CacheBuilder.newBuilder()
                 .expireAfterAccess(EXPIRE_TIME_IN_HOURS, TimeUnit.HOURS)
                 .build();
@@ -199,23 +222,56 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
     }
 
     /**
-     * Retrieve the dataset with the specified index.
+     * Retrieve the dataset with the specified index.  A spilled dataset is read back
+     * without holding the server lock, so other requests are not delayed.
      * @param index     Dataset index.
      * @param observer  Observer that is notified if the dataset is not available.
      * @return          The dataset, or null if there is no such dataset.
      */
     @Nullable
-    synchronized private IDataSet<?> getIfValid(final int index,
-                                                final StreamObserver<PartialResponse> observer) {
+    private IDataSet<?> getIfValid(final int index,
+                                   final StreamObserver<PartialResponse> observer) {
         if (index < 0)
             return this.initialDatasets.get(index);
         IDataSet<?> ds = this.dataSets.getIfPresent(index);
+        SpilledDataSets spilled = this.spilledDataSets;
+        if (ds == null && spilled != null)
+            ds = this.restore(spilled, index);
         if (ds == null)
             observer.onError(asStatusRuntimeException(
                     new DatasetMissing(index, this.listenAddress)));
         return ds;
     }
 
+    /**
+     * Read back a spilled dataset and save it in the dataSets cache.
+     * @return The dataset, or null if it is not available.
+     */
+    @Nullable
+    private IDataSet<?> restore(SpilledDataSets spilled, int index) {
+        CompletableFuture<IDataSet<?>> future = new CompletableFuture<IDataSet<?>>();
+        CompletableFuture<IDataSet<?>> running = this.restoring.putIfAbsent(index, future);
+        if (running != null)
+            return running.join();
+        IDataSet<?> ds = null;
+        try {
+            // Another request may have restored the dataset since we looked.
+            ds = this.dataSets.getIfPresent(index);
+            if (ds == null) {
+                ds = spilled.restore(index);
+                if (ds != null) {
+                    synchronized (this) {
+                        this.dataSets.put(index, ds);
+                    }
+                }
+            }
+            return ds;
+        } finally {
+            future.complete(ds);
+            this.restoring.remove(index, future);
+        }
+    }
+
     /**
      * Delete all stored datasets (except the initial ones).
      * @return The number of deleted datasets.
@@ -223,6 +279,8 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
     synchronized public int deleteAllDatasets() {
         long removed = this.dataSets.size();
         this.dataSets.invalidateAll();
+        if (this.spilledDataSets != null)
+            this.spilledDataSets.clear();
         this.memoizedCommands.clear();
         return (int)removed;
     }
@@ -231,6 +289,43 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
         this.memoizedCommands.clear();
     }
 
+    /**
+     * @return A description of the hit, miss and eviction counts of the memoization cache.
+     */
+    public String getMemoizationStatistics() {
+        return this.memoizedCommands.getStatistics();
+    }
+
+    /**
+     * The datasets held in memory.
+     */
+    private List<IDataSet<?>> liveDataSets() {
+        List<IDataSet<?>> result = new ArrayList<IDataSet<?>>(this.dataSets.asMap().values());
+        result.addAll(this.initialDatasets.values());
+        return result;
+    }
+
+    /**
+     * Change the directory where datasets evicted from memory are written.
+     * @param directory  If null evicted datasets are dropped.  Each server writes in
+     *                   its own subdirectory, so several servers can share a directory.
+     * @param maxBytes   Bound on the total size of the datasets written by this server.
+     */
+    synchronized public void setSpillDirectory(@Nullable File directory, long maxBytes) {
+        if (this.spilledDataSets != null)
+            this.spilledDataSets.shutdown();
+        this.spilledDataSets = directory == null ? null : new SpilledDataSets(
+                new File(directory, "hillview-spill-" + this.listenAddress.getPort()), maxBytes);
+    }
+
+    /**
+     * True if the dataset with the specified index is in memory or has been spilled to disk.
+     */
+    synchronized private boolean isAvailable(int index) {
+        return this.dataSets.getIfPresent(index) != null ||
+                (this.spilledDataSets != null && this.spilledDataSets.contains(index));
+    }
+
     /**
      * Change memoization policy.
      */
@@ -238,6 +333,46 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
         this.MEMOIZE = to;
     }
 
+    /**
+     * True if the operation with the specified id has been unsubscribed.
+     */
+    private boolean isCancelled(UUID id) {
+        return Boolean.TRUE.equals(this.toUnsubscribe.getIfPresent(id));
+    }
+
+    /**
+     * Build the payload of a response to a command.  Large responses are compressed
+     * if the client accepts compression.  The encoded bytes are owned by the
+     * response, so they are wrapped instead of copied.
+     */
+    private ByteString frame(Command command, byte[] bytes) {
+        WireCompression compression = WireCompression.fromOrdinal(command.getCompression());
+        byte[] compressed = compression.compress(bytes);
+        if (compressed != null) {
+            HillviewLogger.instance.info("Compressed response", "{0}: {1} bytes saved out of {2}",
+                    this.getId(command), bytes.length - compressed.length, bytes.length);
+            bytes = compressed;
+        }
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+
+    /**
+     * Subscribe to the observable produced by a command.  The computations
+     * started by the subscription are queued on the compute executor
+     * as part of the request with the command id and priority, so the work of
+     * concurrent commands is interleaved, and the queued work of a command
+     * is dropped once the command is unsubscribed.
+     */
+    private <T> Subscription subscribe(Command command, Observable<T> observable,
+                                       Subscriber<? super T> subscriber) {
+        UUID commandId = this.getId(command);
+        FairShareExecutor.Request request = new FairShareExecutor.Request(
+                commandId, command.getPriority(), () -> this.isCancelled(commandId));
+        return FairShareExecutor.callInRequest(request, () -> observable
+                .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
+                .subscribe(subscriber));
+    }
+
     /**
      * Subscriber that handles map, flatMap and zip.
      */
@@ -282,9 +417,9 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                     final OperationResponse<PartialResult<Integer>> res = new
                             OperationResponse<PartialResult<Integer>>(new
                             PartialResult<Integer>(pr.deltaDone, idsIndex));
-                    final byte[] bytes = SerializationUtils.serialize(res);
+                    final byte[] bytes = WireCodec.encode(res);
                     final PartialResponse result = PartialResponse.newBuilder()
-                            .setSerializedOp(ByteString.copyFrom(bytes)).build();
+                            .setSerializedOp(HillviewServer.this.frame(command, bytes)).build();
                     if (MEMOIZE) {
                         this.memoizedResult = result;
                         this.memoizedDatasetIndex = idsIndex;
@@ -310,9 +445,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
             final UUID commandId = this.getId(command);
             Subscriber<PartialResult<IDataSet<?>>> subscriber = this.createSubscriber(
                     command, commandId, "prune", responseObserver);
-            final Subscription sub = observable
-                    .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                    .subscribe(subscriber);
+            final Subscription sub = this.subscribe(command, observable, subscriber);
             boolean unsub = this.saveSubscription(commandId, sub, "prune");
             if (unsub)
                 sub.unsubscribe();
@@ -341,9 +474,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
             final UUID commandId = this.getId(command);
             Subscriber subscriber = this.createSubscriber(
                     command, commandId, "map", responseObserver);
-            final Subscription sub = observable
-                    .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                    .subscribe(subscriber);
+            final Subscription sub = this.subscribe(command, observable, subscriber);
             boolean unsub = this.saveSubscription(commandId, sub, "map");
             if (unsub)
                 sub.unsubscribe();
@@ -373,9 +504,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
             final UUID commandId = this.getId(command);
             Subscriber<PartialResult<IDataSet<?>>> subscriber = this.createSubscriber(
                     command, commandId, "flatMap", responseObserver);
-            final Subscription sub = observable
-                    .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                    .subscribe(subscriber);
+            final Subscription sub = this.subscribe(command, observable, subscriber);
             boolean unsub = this.saveSubscription(commandId, sub, "flatMap");
             if (unsub)
                 sub.unsubscribe();
@@ -418,9 +547,9 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                                 final OperationResponse<PartialResult<?>> res =
                                         new OperationResponse<PartialResult<?>>(
                                                 new PartialResult<Object>(1.0, this.sketchResultAccumulator));
-                                final byte[] bytes = SerializationUtils.serialize(res);
+                                final byte[] bytes = WireCodec.encode(res);
                                 final PartialResponse memoizedResult = PartialResponse.newBuilder()
-                                        .setSerializedOp(ByteString.copyFrom(bytes))
+                                        .setSerializedOp(HillviewServer.this.frame(command, bytes))
                                         .build();
                                 HillviewServer.this.memoizedCommands.insert(command, memoizedResult, 0);
                             }
@@ -451,9 +580,9 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                                         .sketchResultAccumulator, pr.deltaValue);
                             final OperationResponse<PartialResult<?>> res =
                                     new OperationResponse<PartialResult<?>>(pr);
-                            final byte[] bytes = SerializationUtils.serialize(res);
+                            final byte[] bytes = WireCodec.encode(res);
                             responseObserver.onNext(PartialResponse.newBuilder()
-                                    .setSerializedOp(ByteString.copyFrom(bytes))
+                                    .setSerializedOp(HillviewServer.this.frame(command, bytes))
                                     .build());
                         } catch (Exception ex) {
                             HillviewLogger.instance.error("Async exception", ex);
@@ -462,9 +591,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                     }, executorService);
                 }
             };
-            final Subscription sub = observable
-                    .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                    .subscribe(subscriber);
+            final Subscription sub = this.subscribe(command, observable, subscriber);
             boolean unsub = this.saveSubscription(commandId, sub, "sketch");
             if (unsub)
                 sub.unsubscribe();
@@ -475,6 +602,105 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
         }
     }
 
+    /**
+     * Implementation of batch() service in hillview.proto.
+     * All sketches in the batch are computed over the same dataset in a single pass;
+     * each partial result is streamed back as one response for each sketch, tagged
+     * with the index of the sketch in the batch.  A memoized batch is sent back as a
+     * single response holding the results of all sketches, tagged with BatchOperation.ALL_SKETCHES.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void batch(final Command command, final StreamObserver<PartialResponse> responseObserver) {
+        try {
+            boolean memoize = MEMOIZE;  // The value may change while we execute
+            final BatchOperation<?> batchOp = this.respondIfReplyIsMemoized(command, responseObserver, false);
+            if (batchOp == null)
+                return;
+            final IDataSet dataset = this.getIfValid(command.getIdsIndex(), responseObserver);
+            if (dataset == null)
+                return;
+            final Observable<PartialResult<JsonList<ISketchResult>>> observable =
+                    dataset.sketch(batchOp.batch);
+            final UUID commandId = this.getId(command);
+            Subscriber<PartialResult<JsonList<ISketchResult>>> subscriber =
+                    new Subscriber<PartialResult<JsonList<ISketchResult>>>() {
+                @Nullable private JsonList<ISketchResult> batchResultAccumulator =
+                        memoize ? batchOp.batch.zero() : null;
+                CompletableFuture<?> queue = CompletableFuture.completedFuture(null);
+
+                @Override
+                public void onCompleted() {
+                    HillviewServer.this.removeSubscription(commandId, "batch completed");
+                    queue = queue.thenRunAsync(() -> {
+                        try {
+                            responseObserver.onCompleted();
+                            if (memoize && this.batchResultAccumulator != null) {
+                                final OperationResponse<PartialResult<?>> res =
+                                        new OperationResponse<PartialResult<?>>(
+                                                new PartialResult<Object>(1.0, this.batchResultAccumulator));
+                                final byte[] bytes = WireCodec.encode(res);
+                                final PartialResponse memoizedResult = PartialResponse.newBuilder()
+                                        .setSerializedOp(HillviewServer.this.frame(command, bytes))
+                                        .setTag(BatchOperation.ALL_SKETCHES)
+                                        .build();
+                                HillviewServer.this.memoizedCommands.insert(command, memoizedResult, 0);
+                            }
+                        } catch (Throwable ex) {
+                            HillviewLogger.instance.error("Async exception", ex);
+                            this.onError(ex);
+                        }
+                    }, executorService);
+                }
+
+                @Override
+                public void onError(final Throwable e) {
+                    HillviewLogger.instance.error("Exception in batch", e);
+                    e.printStackTrace();
+                    queue = queue.thenRunAsync(() -> {
+                        responseObserver.onError(asStatusRuntimeException(e));
+                        HillviewServer.this.removeSubscription(commandId, "batch onError");
+                    }, executorService);
+                }
+
+                @Override
+                public void onNext(final PartialResult<JsonList<ISketchResult>> pr) {
+                    queue = queue.thenRunAsync(() -> {
+                        try {
+                            JsonList<ISketchResult> results = Converters.checkNull(pr.deltaValue);
+                            if (memoize && this.batchResultAccumulator != null)
+                                this.batchResultAccumulator = batchOp.batch.add(
+                                        this.batchResultAccumulator, results);
+                            for (int tag = 0; tag < results.size(); tag++) {
+                                // The progress is reported only once for all sketches.
+                                final OperationResponse<PartialResult<?>> res =
+                                        new OperationResponse<PartialResult<?>>(
+                                                new PartialResult<ISketchResult>(
+                                                        tag == 0 ? pr.deltaDone : 0, results.get(tag)));
+                                final byte[] bytes = WireCodec.encode(res);
+                                responseObserver.onNext(PartialResponse.newBuilder()
+                                        .setSerializedOp(HillviewServer.this.frame(command, bytes))
+                                        .setTag(tag)
+                                        .build());
+                            }
+                        } catch (Exception ex) {
+                            HillviewLogger.instance.error("Async exception", ex);
+                            this.onError(ex);
+                        }
+                    }, executorService);
+                }
+            };
+            final Subscription sub = this.subscribe(command, observable, subscriber);
+            boolean unsub = this.saveSubscription(commandId, sub, "batch");
+            if (unsub)
+                sub.unsubscribe();
+        } catch (final Exception e) {
+            HillviewLogger.instance.error("Exception in batch", e);
+            e.printStackTrace();
+            responseObserver.onError(asStatusRuntimeException(e));
+        }
+    }
+
     /**
      * Implementation of manage() service in hillview.proto.
      */
@@ -487,7 +713,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
             if (dataset == null)
                 return;
             final byte[] bytes = command.getSerializedOp().toByteArray();
-            final ManageOperation manage = SerializationUtils.deserialize(bytes);
+            final ManageOperation manage = WireCodec.decode(bytes);
             Observable<PartialResult<ControlMessage.StatusList>> observable = dataset.manage(manage
                     .message);
             final Callable<ControlMessage.StatusList> callable = () -> {
@@ -527,16 +753,14 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                 public void onNext(final PartialResult<ControlMessage.StatusList> pr) {
                     final OperationResponse<PartialResult<ControlMessage.StatusList>> res =
                             new OperationResponse<PartialResult<ControlMessage.StatusList>>(pr);
-                    final byte[] bytes = SerializationUtils.serialize(res);
+                    final byte[] bytes = WireCodec.encode(res);
                     responseObserver.onNext(PartialResponse.newBuilder()
-                            .setSerializedOp(ByteString.copyFrom(bytes))
+                            .setSerializedOp(HillviewServer.this.frame(command, bytes))
                             .build());
                 }
             };
             // Results of management commands are never memoized.
-            final Subscription sub = observable
-                    .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                    .subscribe(subscriber);
+            final Subscription sub = this.subscribe(command, observable, subscriber);
             boolean unsub = this.saveSubscription(commandId, sub, "manage");
             if (unsub)
                 sub.unsubscribe();
@@ -568,9 +792,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
             final Observable<PartialResult<IDataSet<?>>> observable = left.zip(right, zipOp.map);
             Subscriber<PartialResult<IDataSet<?>>> subscriber = this.createSubscriber(
                     command, commandId, "zip", responseObserver);
-            final Subscription sub = observable
-                    .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                    .subscribe(subscriber);
+            final Subscription sub = this.subscribe(command, observable, subscriber);
             boolean unsub = this.saveSubscription(commandId, sub, "zip");
             if (unsub)
                 sub.unsubscribe();
@@ -600,9 +822,7 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
             final Observable<PartialResult<IDataSet<?>>> observable = left.zipN(right, zipOp.map);
             Subscriber<PartialResult<IDataSet<?>>> subscriber = this.createSubscriber(
                     command, commandId, "zipN", responseObserver);
-            final Subscription sub = observable
-                    .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
-                    .subscribe(subscriber);
+            final Subscription sub = this.subscribe(command, observable, subscriber);
             boolean unsub = this.saveSubscription(commandId, sub, "zip");
             if (unsub)
                 sub.unsubscribe();
@@ -620,18 +840,20 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
     public void unsubscribe(final Command command, final StreamObserver<Ack> responseObserver) {
         try {
             final byte[] bytes = command.getSerializedOp().toByteArray();
-            final UnsubscribeOperation unsubscribeOp = SerializationUtils.deserialize(bytes);
+            final UnsubscribeOperation unsubscribeOp = WireCodec.decode(bytes);
             if (logSubscription)
                 HillviewLogger.instance.info("Unsubscribing", "{0}", unsubscribeOp.id);
             @Nullable
             final Subscription subscription = this.removeSubscription(unsubscribeOp.id,
                     "unsubscribe request");
+            // Remember the cancellation even if the operation is running:
+            // its tasks which are still queued are dropped without running.
+            this.toUnsubscribe.put(unsubscribeOp.id, true);
             if (subscription != null) {
                 subscription.unsubscribe();
             } else {
                 if (logSubscription)
                     HillviewLogger.instance.info("Could not find subscription", "{0}", unsubscribeOp.id);
-                this.toUnsubscribe.put(unsubscribeOp.id, true);
             }
         } catch (final Exception e) {
             HillviewLogger.instance.error("Exception in unsubscribe", e);
@@ -647,6 +869,8 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
         this.workerElg.shutdownGracefully();
         this.bossElg.shutdownGracefully();
         this.executorService.shutdownNow();
+        if (this.spilledDataSets != null)
+            this.spilledDataSets.shutdown();
     }
 
     /**
@@ -665,15 +889,14 @@ public class HillviewServer extends HillviewServerGrpc.HillviewServerImplBase {
                                            StreamObserver<PartialResponse> responseObserver,
                                            boolean checkResult) {
         final byte[] bytes = command.getSerializedOp().toByteArray();
-        T result = SerializationUtils.deserialize(bytes);
+        T result = WireCodec.decode(bytes);
         if (MEMOIZE) {
             MemoizedResults.ResponseAndId memoized = this.memoizedCommands.get(command);
             if (memoized != null) {
                 if (checkResult) {
                     int index = memoized.localDatasetIndex;
                     assert index != 0;
-                    IDataSet<?> ds = this.dataSets.getIfPresent(index);
-                    if (ds == null) {
+                    if (!this.isAvailable(index)) {
                         // This dataset no longer exists; remove it from
                         // the memoization cache as well.
                         this.memoizedCommands.remove(command, memoized);
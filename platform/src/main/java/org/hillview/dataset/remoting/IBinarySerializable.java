@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import java.io.IOException;
+
+/**
+ * Interface implemented by the objects which can be encoded by the BinaryWireCodec.
+ * Each such class must also be registered with the BinaryWireCodec, together
+ * with a function that decodes it; by convention this is a static method
+ * readFrom(BinaryDecoder).
+ */
+public interface IBinarySerializable {
+    void writeTo(BinaryEncoder encoder) throws IOException;
+}
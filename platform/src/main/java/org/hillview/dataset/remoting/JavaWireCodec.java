@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.Serializable;
+
+/**
+ * Codec using Java object serialization.  This works for all serializable
+ * objects, but is slow and produces large encodings.
+ */
+public class JavaWireCodec implements IWireCodec {
+    public static final JavaWireCodec instance = new JavaWireCodec();
+
+    private JavaWireCodec() {}
+
+    @Override
+    public byte[] encode(Object value) {
+        return SerializationUtils.serialize((Serializable)value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes) {
+        return SerializationUtils.deserialize(bytes);
+    }
+
+    /**
+     * True if the bytes start with the header of the Java serialization stream format.
+     */
+    static boolean isJavaSerialized(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == (byte)0xAC && bytes[1] == (byte)0xED;
+    }
+}
@@ -18,6 +18,7 @@
 package org.hillview.dataset.remoting;
 
 import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.OperationPriority;
 
 /**
  * Wrap an IMap object to be sent to a remote node
@@ -32,4 +33,9 @@ public class MapOperation<T, S> extends RemoteOperation {
     public MapOperation(final IMap<T, S> mapper) {
         this.mapper = mapper;
     }
+
+    @Override
+    public OperationPriority getPriority() {
+        return this.mapper.getPriority();
+    }
 }
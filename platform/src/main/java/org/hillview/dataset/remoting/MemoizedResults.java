@@ -17,22 +17,30 @@
 
 package org.hillview.dataset.remoting;
 
-import com.google.protobuf.ByteString;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import org.hillview.pb.Command;
 import org.hillview.pb.PartialResponse;
 
 import javax.annotation.Nullable;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class is used to hold memoized results from remote commands.
+ * The results are kept in a bounded cache: the total size of the memoized
+ * responses is limited, the least recently used results are evicted first,
+ * and results expire if they are not used for a while.
  */
 public class MemoizedResults {
     /**
-     * This is used as a element in the memoizedCommands hashmap below.
+     * This is used as a element in the memoizedCommands cache below.
      */
-    static class ResponseAndId {
+    public static class ResponseAndId {
         /**
          * The serialized version of the result of a computation.
          */
@@ -49,43 +57,108 @@ public class MemoizedResults {
         }
     }
 
+    /**
+     * Identifies a (command, dataset index) pair.  The command is represented
+     * by a 128-bit hash of its serialized operation, instead of the operation itself.
+     */
+    static class Key {
+        final HashCode operation;
+        final int datasetIndex;
+
+        Key(final Command command) {
+            this.operation = Hashing.murmur3_128().hashBytes(
+                    command.getSerializedOp().asReadOnlyByteBuffer());
+            this.datasetIndex = command.getIdsIndex();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return this.datasetIndex == key.datasetIndex && this.operation.equals(key.operation);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.operation, this.datasetIndex);
+        }
+    }
+
+    /**
+     * Approximate memory used by a cache entry besides the serialized response.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int EXPIRE_TIME_IN_HOURS = 2;
+    /**
+     * Default bound for the total size of the memoized responses, in bytes.
+     */
+    private static final long MAX_SIZE = Math.min(256L * 1024 * 1024,
+            Runtime.getRuntime().maxMemory() / 10);
+
     /**
      * Map each (command, dataset index) to a partial response obtained by
      * running the command on that respective dataset.
      */
-    private final ConcurrentHashMap<ByteString, Map<Integer, ResponseAndId>> memoizedCommands;
+    private final Cache<Key, ResponseAndId> memoizedCommands;
 
-    MemoizedResults() {
-        this.memoizedCommands = new ConcurrentHashMap<ByteString, Map<Integer, ResponseAndId>>();
+    public MemoizedResults() {
+        this(MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize  Bound on the total size of the memoized responses, in bytes.
+     */
+    public MemoizedResults(long maxSize) {
+        this.memoizedCommands = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher((Weigher<Key, ResponseAndId>) (key, value) ->
+                        value.response.getSerializedSize() + ENTRY_OVERHEAD)
+                .expireAfterAccess(EXPIRE_TIME_IN_HOURS, TimeUnit.HOURS)
+                .recordStats()
+                .build();
     }
 
     /**
      * Purges all memoized results
      */
     public void clear() {
-        this.memoizedCommands.clear();
+        this.memoizedCommands.invalidateAll();
     }
 
     @Nullable
     public ResponseAndId get(final Command command) {
-        ByteString ser = command.getSerializedOp();
-        if (!this.memoizedCommands.containsKey(ser))
-            return null;
-        Map<Integer, ResponseAndId> map = this.memoizedCommands.get(ser);
-        int index = command.getIdsIndex();
-        if (!map.containsKey(index))
-            return null;
-        return map.get(index);
+        return this.memoizedCommands.getIfPresent(new Key(command));
     }
 
     public void insert(final Command command, final PartialResponse response, Integer index) {
         ResponseAndId rid = new ResponseAndId(response, index);
-        this.memoizedCommands.computeIfAbsent(command.getSerializedOp(),
-                (k) -> new ConcurrentHashMap<Integer, ResponseAndId>()).put(command.getIdsIndex(), rid);
+        this.memoizedCommands.put(new Key(command), rid);
     }
 
     public void remove(final Command command, final ResponseAndId resp) {
-        Map<Integer, ResponseAndId> map = this.memoizedCommands.get(command.getSerializedOp());
-        map.remove(command.getIdsIndex());
+        this.memoizedCommands.asMap().remove(new Key(command), resp);
+    }
+
+    /**
+     * @return The hit, miss and eviction counts of the cache.
+     */
+    public CacheStats getStats() {
+        return this.memoizedCommands.stats();
+    }
+
+    /**
+     * @return The number of memoized results.
+     */
+    public long size() {
+        return this.memoizedCommands.size();
+    }
+
+    public String getStatistics() {
+        CacheStats stats = this.getStats();
+        return "Memoized results: " + this.size() +
+                ", hits: " + stats.hitCount() +
+                ", misses: " + stats.missCount() +
+                ", evictions: " + stats.evictionCount();
     }
 }
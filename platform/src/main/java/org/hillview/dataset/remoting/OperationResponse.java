@@ -18,13 +18,14 @@
 package org.hillview.dataset.remoting;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
  * Class used to wrap responses of the IDataSet methods.
  * @param <T> Return type of the result
  */
-public class OperationResponse<T> implements Serializable {
+public class OperationResponse<T> implements Serializable, IBinarySerializable {
     static final long serialVersionUID = 1;
 
     @Nullable public final T result;
@@ -32,4 +33,13 @@ public class OperationResponse<T> implements Serializable {
     public OperationResponse(@Nullable final T result) {
         this.result = result;
     }
+
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeObject(this.result);
+    }
+
+    public static OperationResponse<Object> readFrom(BinaryDecoder decoder) throws IOException {
+        return new OperationResponse<Object>(decoder.readObject());
+    }
 }
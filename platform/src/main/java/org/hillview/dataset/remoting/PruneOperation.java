@@ -18,6 +18,7 @@
 package org.hillview.dataset.remoting;
 
 import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.OperationPriority;
 
 /**
  * Wrap an IMap object to be sent to a remote node for a prune operation.
@@ -30,4 +31,9 @@ public class PruneOperation<T> extends RemoteOperation {
     public PruneOperation(final IMap<T, Boolean> isEmpty) {
         this.isEmpty = isEmpty;
     }
+
+    @Override
+    public OperationPriority getPriority() {
+        return this.isEmpty.getPriority();
+    }
 }
@@ -17,6 +17,8 @@
 
 package org.hillview.dataset.remoting;
 
+import org.hillview.dataset.api.OperationPriority;
+
 import java.io.Serializable;
 
 /**
@@ -24,4 +26,11 @@ import java.io.Serializable;
  */
 public class RemoteOperation implements Serializable {
     static final long serialVersionUID = 1;
+
+    /**
+     * Scheduling class of the operation on the workers.
+     */
+    public OperationPriority getPriority() {
+        return OperationPriority.Interactive;
+    }
 }
@@ -19,6 +19,7 @@ package org.hillview.dataset.remoting;
 
 import org.hillview.dataset.api.ISketch;
 import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.api.OperationPriority;
 
 /**
  * Wrap an ISketch object to be sent to a remote node
@@ -33,4 +34,9 @@ public class SketchOperation<T, R extends ISketchResult> extends RemoteOperation
     public SketchOperation(final ISketch<T, R> sketch) {
         this.sketch = sketch;
     }
+
+    @Override
+    public OperationPriority getPriority() {
+        return this.sketch.getPriority();
+    }
 }
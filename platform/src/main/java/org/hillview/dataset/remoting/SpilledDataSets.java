@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.Weigher;
+import org.hillview.dataset.LocalDataSet;
+import org.hillview.dataset.ParallelDataSet;
+import org.hillview.dataset.api.IDataSet;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.api.*;
+import org.hillview.table.columns.BaseArrayColumn;
+import org.hillview.table.columns.IntervalColumn;
+import org.hillview.table.columns.LazyColumn;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.membership.MembershipSetFactory;
+import org.hillview.utils.Converters;
+import org.hillview.utils.ExecutorUtils;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A second tier for the datasets of a HillviewServer.  Datasets evicted from memory
+ * are written to local disk, and they are read back when they are used again, which
+ * is much cheaper than recomputing them from their lineage.
+ * Only datasets made of tables (LocalDataSets holding Tables, and ParallelDataSets of
+ * such datasets) can be spilled.  The structure of a spilled dataset, the column
+ * loaders, the columns that are not loaded and the columns shared with datasets
+ * which are still in memory are kept in memory; the membership sets and the values of
+ * the other columns in the rows of the membership sets are written to a file.
+ * The total size of the files is bounded; the least recently spilled datasets are
+ * deleted first.  Spilled datasets are also deleted if they are not used for a long time.
+ */
+public class SpilledDataSets {
+    private static final int EXPIRE_TIME_IN_HOURS = 24;
+    private static final String FILE_PREFIX = "dataset-";
+    /**
+     * The cache of spilled datasets weighs the files in units of this many bytes.
+     */
+    private static final int WEIGHT_UNIT = 1024;
+
+    /**
+     * The in-memory part of a spilled dataset.
+     */
+    private interface INode {
+        /**
+         * Read the spilled data and rebuild the dataset.
+         */
+        IDataSet<ITable> read(DataInputStream input) throws IOException;
+    }
+
+    private static class TableNode implements INode {
+        final List<ColumnDescription> columns;
+        /**
+         * For each column: true if its data was written to disk, false if it is
+         * loaded lazily or it is shared.
+         */
+        final boolean[] written;
+        /**
+         * For each column: the column, if it is shared with a dataset in memory.
+         */
+        final IColumn[] shared;
+        @Nullable
+        final IColumnLoader loader;
+        @Nullable
+        final String sourceFile;
+
+        TableNode(Table table, Set<IColumn> live) {
+            this.columns = table.getSchema().getColumnDescriptions();
+            this.written = new boolean[this.columns.size()];
+            this.shared = new IColumn[this.columns.size()];
+            for (int i = 0; i < this.written.length; i++) {
+                IColumn col = table.getColumn(this.columns.get(i).name);
+                if (live.contains(col))
+                    this.shared[i] = col;
+                else
+                    this.written[i] = col.isLoaded();
+            }
+            this.loader = table.getColumnLoader();
+            this.sourceFile = table.getSourceFile();
+        }
+
+        void write(Table table, DataOutputStream output) throws IOException {
+            IMembershipSet set = table.getMembershipSet();
+            int max = set.getMax();
+            int size = set.getSize();
+            output.writeInt(max);
+            output.writeInt(size);
+            // Null if all rows are members.
+            int[] rows = null;
+            if (size != max) {
+                rows = set.getRows();
+                for (int row : rows)
+                    output.writeInt(row);
+            }
+            for (int i = 0; i < this.written.length; i++)
+                if (this.written[i])
+                    writeColumn(table.getColumn(this.columns.get(i).name), rows, size, output);
+        }
+
+        @Override
+        public IDataSet<ITable> read(DataInputStream input) throws IOException {
+            int max = input.readInt();
+            int size = input.readInt();
+            IMembershipSet set;
+            int[] rows = null;
+            if (size == max) {
+                set = new FullMembershipSet(max);
+            } else {
+                rows = new int[size];
+                IMutableMembershipSet mms = MembershipSetFactory.create(max, size);
+                for (int i = 0; i < size; i++) {
+                    rows[i] = input.readInt();
+                    mms.add(rows[i]);
+                }
+                set = mms.seal();
+            }
+            List<IColumn> cols = new ArrayList<IColumn>(this.columns.size());
+            for (int i = 0; i < this.written.length; i++) {
+                ColumnDescription desc = this.columns.get(i);
+                if (this.written[i])
+                    cols.add(readColumn(desc, max, rows, size, input));
+                else if (this.shared[i] != null)
+                    cols.add(this.shared[i]);
+                else
+                    cols.add(new LazyColumn(desc, max, Converters.checkNull(this.loader)));
+            }
+            return new LocalDataSet<ITable>(new Table(cols, set, this.sourceFile, this.loader));
+        }
+    }
+
+    private static class ParallelNode implements INode {
+        final List<INode> children;
+        final int bundleInterval;
+
+        ParallelNode(List<INode> children, int bundleInterval) {
+            this.children = children;
+            this.bundleInterval = bundleInterval;
+        }
+
+        @Override
+        public IDataSet<ITable> read(DataInputStream input) throws IOException {
+            List<IDataSet<ITable>> children = new ArrayList<IDataSet<ITable>>(this.children.size());
+            for (INode child : this.children)
+                children.add(child.read(input));
+            ParallelDataSet<ITable> result = new ParallelDataSet<ITable>(children);
+            result.setBundleInterval(this.bundleInterval);
+            return result;
+        }
+    }
+
+    /**
+     * A dataset which has been written to disk.
+     */
+    private static class Spilled {
+        final File file;
+        final INode root;
+        final long bytes;
+
+        Spilled(File file, INode root) {
+            this.file = file;
+            this.root = root;
+            this.bytes = file.length();
+        }
+    }
+
+    private final File directory;
+    /**
+     * Datasets are written on a separate thread; the future of a dataset being
+     * written completes when it has been added to the spilled cache, or has failed.
+     */
+    private final ExecutorService writer =
+            ExecutorUtils.newNamedThreadPool("spill", 1, -1);
+    private final ConcurrentHashMap<Integer, CompletableFuture<Void>> pending =
+            new ConcurrentHashMap<Integer, CompletableFuture<Void>>();
+    /**
+     * The datasets written to disk, weighted by the size of their files.
+     * The file of a dataset is deleted when it is removed from the cache.
+     */
+    private final Cache<Integer, Spilled> spilled;
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong restoreCount = new AtomicLong();
+
+    /**
+     * @param directory  Directory where the datasets are written.  It is created if
+     *                   necessary, and files left by a previous server are deleted.
+     * @param maxBytes   Bound on the total size of the spilled datasets.
+     */
+    public SpilledDataSets(File directory, long maxBytes) {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs())
+            HillviewLogger.instance.warn("Cannot create spill directory", "{0}", directory);
+        File[] stale = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX));
+        if (stale != null)
+            for (File f : stale)
+                deleteFile(f);
+        this.spilled = CacheBuilder.newBuilder()
+                // A single segment, so that the bound is on the total size.
+                .concurrencyLevel(1)
+                .maximumWeight(maxBytes / WEIGHT_UNIT)
+                .weigher((Weigher<Integer, Spilled>) (key, value) ->
+                        (int)Math.min(Integer.MAX_VALUE, (value.bytes + WEIGHT_UNIT - 1) / WEIGHT_UNIT))
+                .expireAfterAccess(EXPIRE_TIME_IN_HOURS, TimeUnit.HOURS)
+                .removalListener((RemovalListener<Integer, Spilled>) notification ->
+                        deleteFile(notification.getValue().file))
+                .recordStats()
+                .build();
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete())
+            HillviewLogger.instance.warn("Cannot delete spilled dataset", "{0}", file);
+    }
+
+    /**
+     * Add to a set the columns of the tables in a dataset.
+     */
+    private static void addColumns(IDataSet<?> dataSet, Set<IColumn> columns) {
+        if (dataSet instanceof LocalDataSet) {
+            Object data = ((LocalDataSet<?>)dataSet).data;
+            if (data instanceof Table)
+                columns.addAll(((Table)data).getColumns());
+        } else if (dataSet instanceof ParallelDataSet) {
+            for (IDataSet<?> child : ((ParallelDataSet<?>)dataSet).getChildren())
+                addColumns(child, columns);
+        }
+    }
+
+    /**
+     * The in-memory structure of a dataset, or null if the dataset cannot be spilled.
+     * @param live  Columns held by datasets in memory; they are not written.
+     */
+    @Nullable
+    private static INode structure(IDataSet<?> dataSet, Set<IColumn> live) {
+        if (dataSet instanceof LocalDataSet) {
+            Object data = ((LocalDataSet<?>)dataSet).data;
+            if (!(data instanceof Table))
+                return null;
+            Table table = (Table)data;
+            for (IColumn col : table.getColumns()) {
+                if (!col.isLoaded() && table.getColumnLoader() == null && !live.contains(col))
+                    return null;
+            }
+            return new TableNode(table, live);
+        }
+        if (dataSet instanceof ParallelDataSet) {
+            ParallelDataSet<?> pds = (ParallelDataSet<?>)dataSet;
+            List<INode> children = new ArrayList<INode>(pds.size());
+            for (IDataSet<?> child : pds.getChildren()) {
+                INode node = structure(child, live);
+                if (node == null)
+                    return null;
+                children.add(node);
+            }
+            return new ParallelNode(children, pds.getBundleInterval());
+        }
+        return null;
+    }
+
+    private static void write(INode node, IDataSet<?> dataSet, DataOutputStream output)
+            throws IOException {
+        if (node instanceof TableNode) {
+            ((TableNode)node).write((Table)((LocalDataSet<?>)dataSet).data, output);
+        } else {
+            ParallelNode pn = (ParallelNode)node;
+            List<? extends IDataSet<?>> children = ((ParallelDataSet<?>)dataSet).getChildren();
+            for (int i = 0; i < pn.children.size(); i++)
+                write(pn.children.get(i), children.get(i), output);
+        }
+    }
+
+    /**
+     * Write the data of a column in some rows: first a bitmap of the missing
+     * values, indexed by position in the rows, then the values which are not missing.
+     * @param rows  Rows to write; if null all rows [0, size) are written.
+     * @param size  Number of rows written.
+     */
+    private static void writeColumn(IColumn col, @Nullable int[] rows, int size,
+                                    DataOutputStream output) throws IOException {
+        ContentsKind kind = col.getKind();
+        if (kind == ContentsKind.None)
+            return;
+        BitSet missing = new BitSet(size);
+        for (int i = 0; i < size; i++)
+            if (col.isMissing(rows == null ? i : rows[i]))
+                missing.set(i);
+        long[] words = missing.toLongArray();
+        output.writeInt(words.length);
+        for (long w : words)
+            output.writeLong(w);
+        for (int i = 0; i < size; i++) {
+            if (missing.get(i))
+                continue;
+            int row = rows == null ? i : rows[i];
+            switch (kind) {
+                case String:
+                case Json:
+                    byte[] bytes = col.getString(row).getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(bytes.length);
+                    output.write(bytes);
+                    break;
+                case Integer:
+                    output.writeInt(col.getInt(row));
+                    break;
+                case Interval:
+                    output.writeDouble(col.getEndpoint(row, true));
+                    output.writeDouble(col.getEndpoint(row, false));
+                    break;
+                default:
+                    output.writeDouble(col.getDouble(row));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Read a column written by writeColumn.  The rows which were not written are missing.
+     * @param max   Number of rows of the column.
+     * @param rows  Rows written; if null all rows [0, size).
+     * @param size  Number of rows written.
+     */
+    private static IColumn readColumn(ColumnDescription desc, int max, @Nullable int[] rows,
+                                      int size, DataInputStream input) throws IOException {
+        IMutableColumn col;
+        IMutableColumn start = null;
+        IMutableColumn end = null;
+        if (desc.kind == ContentsKind.Interval) {
+            // The endpoints are stored in two double columns.
+            start = BaseArrayColumn.create(
+                    new ColumnDescription(desc.name + ":start", ContentsKind.Double), max);
+            end = BaseArrayColumn.create(
+                    new ColumnDescription(desc.name + ":end", ContentsKind.Double), max);
+            col = start;
+        } else {
+            col = BaseArrayColumn.create(desc, max);
+            if (desc.kind == ContentsKind.None)
+                return col.seal();
+        }
+        if (rows != null) {
+            BitSet written = new BitSet(max);
+            for (int row : rows)
+                written.set(row);
+            for (int row = written.nextClearBit(0); row < max; row = written.nextClearBit(row + 1)) {
+                col.setMissing(row);
+                if (end != null)
+                    end.setMissing(row);
+            }
+        }
+        long[] words = new long[input.readInt()];
+        for (int i = 0; i < words.length; i++)
+            words[i] = input.readLong();
+        BitSet missing = BitSet.valueOf(words);
+        for (int i = 0; i < size; i++) {
+            int row = rows == null ? i : rows[i];
+            if (missing.get(i)) {
+                col.setMissing(row);
+                if (end != null)
+                    end.setMissing(row);
+                continue;
+            }
+            switch (desc.kind) {
+                case String:
+                case Json:
+                    byte[] bytes = new byte[input.readInt()];
+                    input.readFully(bytes);
+                    col.set(row, new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                case Integer:
+                    col.set(row, input.readInt());
+                    break;
+                case Interval:
+                    col.set(row, input.readDouble());
+                    Converters.checkNull(end).set(row, input.readDouble());
+                    break;
+                default:
+                    col.set(row, input.readDouble());
+                    break;
+            }
+        }
+        if (start != null)
+            return new IntervalColumn(desc, start.seal(), Converters.checkNull(end).seal());
+        return col.seal();
+    }
+
+    /**
+     * Write a dataset evicted from memory to disk, if possible.
+     * @param index    Dataset index.
+     * @param dataSet  Dataset to write.
+     * @param live     Datasets still in memory; the columns the dataset shares
+     *                 with them are kept in memory instead of being written.
+     */
+    public void spill(int index, IDataSet<?> dataSet, Iterable<? extends IDataSet<?>> live) {
+        Set<IColumn> liveColumns = Collections.newSetFromMap(new IdentityHashMap<IColumn, Boolean>());
+        for (IDataSet<?> ds : live)
+            addColumns(ds, liveColumns);
+        INode root = structure(dataSet, liveColumns);
+        if (root == null)
+            return;
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            File file = new File(this.directory, FILE_PREFIX + index);
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)))) {
+                write(root, dataSet, output);
+            } catch (IOException ex) {
+                HillviewLogger.instance.error("Could not spill dataset", ex);
+                deleteFile(file);
+                return;
+            }
+            this.spillCount.incrementAndGet();
+            HillviewLogger.instance.info("Spilled dataset", "{0}: {1} bytes", index, file.length());
+            this.spilled.put(index, new Spilled(file, root));
+        }, this.writer);
+        this.pending.put(index, future);
+        future.whenComplete((v, ex) -> this.pending.remove(index, future));
+    }
+
+    /**
+     * True if the dataset with the specified index has been spilled.
+     */
+    public boolean contains(int index) {
+        return this.pending.containsKey(index) || this.spilled.getIfPresent(index) != null;
+    }
+
+    /**
+     * Read back a spilled dataset; the spilled copy is deleted.  Datasets with
+     * different indexes can be restored concurrently; the caller must not
+     * restore the same index from several threads at once.
+     * @param index  Dataset index.
+     * @return       The dataset, or null if it has not been spilled.
+     */
+    @Nullable
+    public IDataSet<?> restore(int index) {
+        CompletableFuture<Void> future = this.pending.get(index);
+        try {
+            if (future != null)
+                future.join();
+            Spilled s = this.spilled.getIfPresent(index);
+            if (s == null)
+                return null;
+            try (DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(s.file)))) {
+                IDataSet<?> result = s.root.read(input);
+                this.restoreCount.incrementAndGet();
+                HillviewLogger.instance.info("Restored spilled dataset", "{0}", index);
+                return result;
+            }
+        } catch (Exception ex) {
+            HillviewLogger.instance.error("Could not restore spilled dataset", ex);
+            return null;
+        } finally {
+            this.spilled.invalidate(index);
+        }
+    }
+
+    /**
+     * Delete all spilled datasets.
+     */
+    public void clear() {
+        this.spilled.invalidateAll();
+    }
+
+    public String getStatistics() {
+        return "Spilled datasets: " + this.spilled.size() +
+                ", spills: " + this.spillCount.get() +
+                ", restores: " + this.restoreCount.get() +
+                ", evictions: " + this.spilled.stats().evictionCount();
+    }
+
+    public void shutdown() {
+        this.writer.shutdownNow();
+        // Writes which have not run will not complete their futures.
+        for (CompletableFuture<Void> future : this.pending.values())
+            future.cancel(false);
+        this.clear();
+    }
+}
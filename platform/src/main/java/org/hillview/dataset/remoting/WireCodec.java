@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+/**
+ * The codec used for the messages between the root and the workers.
+ * Decoding recognizes the format of the data, so nodes which use
+ * different codecs can talk to each other; it also recognizes
+ * messages compressed by WireCompression.
+ */
+public final class WireCodec {
+    private static volatile IWireCodec codec = BinaryWireCodec.instance;
+
+    private WireCodec() {}
+
+    /**
+     * Set the codec used to encode messages.
+     */
+    public static void setCodec(IWireCodec codec) {
+        WireCodec.codec = codec;
+    }
+
+    public static byte[] encode(Object value) {
+        return WireCodec.codec.encode(value);
+    }
+
+    public static <T> T decode(byte[] bytes) {
+        if (WireCompression.isCompressed(bytes))
+            bytes = WireCompression.decompress(bytes);
+        return BinaryWireCodec.instance.decode(bytes);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.dataset.remoting;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression which a client accepts for the responses to a command.
+ * The server only compresses large responses, and only if this makes them smaller.
+ * Compressed responses are recognized by WireCodec.decode.
+ */
+public enum WireCompression {
+    None,
+    /**
+     * Gzip using the fastest compression level.
+     */
+    Gzip;
+
+    /**
+     * Responses smaller than this are never compressed.
+     */
+    public static final int minimumSize = 64 * 1024;
+
+    public static WireCompression fromOrdinal(int ordinal) {
+        WireCompression[] values = WireCompression.values();
+        if (ordinal < 0 || ordinal >= values.length)
+            return None;
+        return values[ordinal];
+    }
+
+    /**
+     * Compress a message.
+     * @return The compressed message, or null if the message should be sent uncompressed.
+     */
+    @Nullable
+    public byte[] compress(byte[] bytes) {
+        if (this == None || bytes.length < minimumSize)
+            return null;
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length / 4);
+        try (OutputStream stream = new GZIPOutputStream(result) {
+                { this.def.setLevel(Deflater.BEST_SPEED); }
+             }) {
+            stream.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (result.size() >= bytes.length)
+            return null;
+        return result.toByteArray();
+    }
+
+    static boolean isCompressed(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == (byte)0x1F && bytes[1] == (byte)0x8B;
+    }
+
+    static byte[] decompress(byte[] bytes) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length * 4);
+        byte[] buffer = new byte[64 * 1024];
+        try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            int read;
+            while ((read = stream.read(buffer)) > 0)
+                result.write(buffer, 0, read);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return result.toByteArray();
+    }
+}
@@ -18,6 +18,7 @@
 package org.hillview.dataset.remoting;
 
 import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.OperationPriority;
 
 import java.util.List;
 
@@ -34,4 +35,9 @@ public class ZipNOperation<T, R> extends RemoteOperation {
         this.map = map;
         this.datasetIndexes = datasetIndexes;
     }
-}
\ No newline at end of file
+
+    @Override
+    public OperationPriority getPriority() {
+        return this.map.getPriority();
+    }
+}
@@ -18,6 +18,7 @@
 package org.hillview.dataset.remoting;
 
 import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.OperationPriority;
 import org.hillview.utils.Pair;
 
 /**
@@ -33,4 +34,9 @@ public class ZipOperation<T, S, R> extends RemoteOperation {
         this.map = map;
         this.datasetIndex = datasetIndex;
     }
-}
\ No newline at end of file
+
+    @Override
+    public OperationPriority getPriority() {
+        return this.map.getPriority();
+    }
+}
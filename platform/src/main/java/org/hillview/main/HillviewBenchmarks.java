@@ -20,10 +20,7 @@ package org.hillview.main;
 import org.hillview.dataset.LocalDataSet;
 import org.hillview.dataset.ParallelDataSet;
 import org.hillview.dataset.RemoteDataSet;
-import org.hillview.dataset.api.TableSketch;
-import org.hillview.dataset.api.Empty;
-import org.hillview.dataset.api.IDataSet;
-import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.*;
 import org.hillview.dataset.remoting.HillviewServer;
 import org.hillview.management.ClusterConfig;
 import org.hillview.management.SetMemoization;
@@ -32,15 +29,18 @@ import org.hillview.sketches.*;
 import org.hillview.sketches.results.*;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.Table;
-import org.hillview.table.api.ContentsKind;
-import org.hillview.table.api.IColumn;
-import org.hillview.table.api.ITable;
+import org.hillview.table.api.*;
 import org.hillview.table.columns.DoubleArrayColumn;
+import org.hillview.table.columns.OffHeapColumn;
+import org.hillview.table.membership.DenseMembershipSet;
 import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.membership.SparseMembershipSet;
 import org.hillview.utils.*;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -101,9 +101,203 @@ public class HillviewBenchmarks extends Benchmarks {
 
     private static ITable createTable(final int colSize, final IColumn col) {
         FullMembershipSet fMap = new FullMembershipSet(colSize);
+        return createTable(fMap, col);
+    }
+
+    private static ITable createTable(final IMembershipSet set, final IColumn col) {
         List<IColumn> cols = new ArrayList<IColumn>();
         cols.add(col);
-        return new Table(cols, fMap, null, null);
+        return new Table(cols, set, null, null);
+    }
+
+    /**
+     * Runs a sketch one row at a time, without using batches.
+     */
+    private static <R extends ISketchResult & IScalable<R>, W extends ISketchWorkspace>
+    R perRowSketch(IncrementalTableSketch<R, W> sketch, ITable table) {
+        R result = Converters.checkNull(sketch.zero());
+        W workspace = sketch.initialize(table);
+        IRowIterator it = table.getRowIterator();
+        int row = it.getNextRow();
+        while (row >= 0) {
+            sketch.increment(workspace, result, row);
+            row = it.getNextRow();
+        }
+        return result;
+    }
+
+    // Compare batched and per-row execution of histogram sketches
+    // over dense and sparse membership sets.
+    private static void benchmarkBatchHistogram(String[] args) {
+        final int runCount = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        HillviewLogger.instance.setLogLevel(Level.OFF);
+        final int colSize = 20 * 1024 * 1024;
+        final DoubleArrayColumn col = generateDoubleArray(colSize, 100);
+        final DoubleArrayColumn col1 = new DoubleArrayColumn(
+                new ColumnDescription("MOD", ContentsKind.Double), colSize);
+        for (int i = 0; i < colSize; i++)
+            col1.set(i, i % 50);
+        IHistogramBuckets buckets = new DoubleHistogramBuckets(col.getName(), 0, 100, 40);
+        IHistogramBuckets buckets1 = new DoubleHistogramBuckets(col1.getName(), 0, 50, 20);
+
+        IMutableMembershipSet dense = new DenseMembershipSet(colSize, colSize / 2);
+        for (int i = 0; i < colSize; i += 2)
+            dense.add(i);
+        IMutableMembershipSet sparse = new SparseMembershipSet(colSize, colSize / 100);
+        for (int i = 0; i < colSize; i += 100)
+            sparse.add(i);
+        List<Pair<String, IMembershipSet>> sets = new ArrayList<Pair<String, IMembershipSet>>();
+        sets.add(new Pair<String, IMembershipSet>("full", new FullMembershipSet(colSize)));
+        sets.add(new Pair<String, IMembershipSet>("dense", dense.seal()));
+        sets.add(new Pair<String, IMembershipSet>("sparse", sparse.seal()));
+
+        System.out.println("Bench,Time (ms),Melems/s,Percent slower");
+        for (Pair<String, IMembershipSet> p : sets) {
+            IMembershipSet set = Converters.checkNull(p.second);
+            ITable table = createTable(set, col);
+            HistogramSketch hist = new HistogramSketch(buckets);
+            runNTimes(() -> perRowSketch(hist, table), runCount,
+                    "Per-row histogram " + p.first, set.getSize());
+            runNTimes(() -> hist.create(table), runCount,
+                    "Batch histogram " + p.first, set.getSize());
+
+            ITable table2 = new Table(Arrays.asList(col, col1), set, null, null);
+            Histogram2DSketch hist2 = new Histogram2DSketch(buckets, buckets1);
+            runNTimes(() -> perRowSketch(hist2, table2), runCount,
+                    "Per-row 2D histogram " + p.first, set.getSize());
+            runNTimes(() -> hist2.create(table2), runCount,
+                    "Batch 2D histogram " + p.first, set.getSize());
+        }
+    }
+
+    /**
+     * Total time spent in garbage collection so far, in milliseconds.
+     */
+    private static long gcTime() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            result += Math.max(gc.getCollectionTime(), 0);
+        return result;
+    }
+
+    /**
+     * Compares histograms over heap and off-heap columns, and the time spent
+     * in garbage collection by an allocation-heavy workload while the
+     * columns are live.  Arguments: run count, number of columns.
+     */
+    private static void benchmarkOffHeap(String[] args) {
+        final int runCount = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        final int columnCount = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        HillviewLogger.instance.setLogLevel(Level.OFF);
+        final int colSize = 20 * 1024 * 1024;
+        IHistogramBuckets buckets = new DoubleHistogramBuckets(desc.name, 0, 100, 40);
+        HistogramSketch hist = new HistogramSketch(buckets);
+
+        System.out.println("Bench,Time (ms),Melems/s,Percent slower");
+        for (boolean offHeap : new boolean[] { false, true }) {
+            String storage = offHeap ? "off-heap" : "heap";
+            List<IColumn> columns = new ArrayList<IColumn>();
+            for (int i = 0; i < columnCount; i++) {
+                IColumn col = generateDoubleArray(colSize, 100);
+                columns.add(offHeap ? OffHeapColumn.copy(col) : col);
+            }
+            ITable table = createTable(colSize, columns.get(0));
+            runNTimes(() -> hist.create(table), runCount, "Histogram " + storage, colSize);
+
+            System.gc();
+            long gcStart = gcTime();
+            long start = System.nanoTime();
+            for (int r = 0; r < runCount; r++) {
+                List<int[]> garbage = new ArrayList<int[]>();
+                for (int i = 0; i < 10 * 1024 * 1024; i++) {
+                    garbage.add(new int[4]);
+                    if (garbage.size() > 1024 * 1024)
+                        garbage.clear();
+                }
+            }
+            long elapsed = (System.nanoTime() - start) / (1000 * 1000);
+            System.out.println("Allocation with " + columnCount + " " + storage + " columns," +
+                    elapsed + " ms total," + (gcTime() - gcStart) + " ms in GC");
+            columns.clear();
+        }
+    }
+
+    /**
+     * Starts in-process aggregators over the specified nodes, each with at most
+     * fanOut children, until at most fanOut nodes are left.
+     * @param nodes    Nodes of the bottom level.
+     * @param port     First port to use for the aggregators.
+     * @param servers  Servers started are added to this list.
+     * @return         The nodes of the top level.
+     */
+    private static List<IDataSet<ITable>> startAggregators(
+            List<IDataSet<ITable>> nodes, int fanOut, int port,
+            List<HillviewServer> servers) throws IOException {
+        while (nodes.size() > fanOut) {
+            int count = (nodes.size() + fanOut - 1) / fanOut;
+            List<IDataSet<ITable>> next = new ArrayList<IDataSet<ITable>>(count);
+            for (int i = 0; i < count; i++) {
+                List<IDataSet<ITable>> children = new ArrayList<IDataSet<ITable>>(
+                        nodes.subList(i * nodes.size() / count, (i + 1) * nodes.size() / count));
+                HostAndPort address = HostAndPort.fromParts("127.0.0.1", port++);
+                servers.add(new HillviewServer(address, new ParallelDataSet<ITable>(children)));
+                next.add(new RemoteDataSet<ITable>(address));
+            }
+            nodes = next;
+        }
+        return nodes;
+    }
+
+    /**
+     * Compares the time to compute a histogram over a number of in-process workers
+     * when the results are merged by the root alone, by in-process trees of
+     * parallel datasets, and by trees of in-process aggregators.
+     * Arguments: run count, maximum number of workers.
+     */
+    private static void benchmarkAggregationTree(String[] args) throws IOException {
+        final int runCount = Integer.parseInt(args[0]);
+        final int maxWorkers = Integer.parseInt(args[1]);
+        final int colSize = 100000;
+        final int basePort = 4000;
+        HillviewLogger.instance.setLogLevel(Level.OFF);
+        IHistogramBuckets buckets = new DoubleHistogramBuckets(desc.name, 0, 100, 40);
+        HistogramSketch sk = new HistogramSketch(buckets);
+
+        List<HillviewServer> servers = new ArrayList<HillviewServer>();
+        List<IDataSet<ITable>> workers = new ArrayList<IDataSet<ITable>>(maxWorkers);
+        for (int i = 0; i < maxWorkers; i++) {
+            HostAndPort address = HostAndPort.fromParts("127.0.0.1", basePort + i);
+            ITable table = createTable(colSize, generateDoubleArray(colSize, 100));
+            HillviewServer server = new HillviewServer(address, new LocalDataSet<ITable>(table));
+            server.setMemoization(false);
+            servers.add(server);
+            workers.add(new RemoteDataSet<ITable>(address));
+        }
+
+        System.out.println("Bench,Time (ms),Melems/s,Percent slower");
+        int port = basePort + maxWorkers;
+        for (int count = 4; count <= maxWorkers; count *= 4) {
+            List<IDataSet<ITable>> nodes = workers.subList(0, count);
+            long elements = (long)count * colSize;
+            IDataSet<ITable> flat = new ParallelDataSet<ITable>(nodes);
+            runNTimes(() -> flat.blockingSketch(sk), runCount,
+                    count + " workers, flat", elements);
+            for (int fanOut = 2; fanOut < count; fanOut *= 2) {
+                IDataSet<ITable> tree = ParallelDataSet.createTree(nodes, fanOut);
+                runNTimes(() -> tree.blockingSketch(sk), runCount,
+                        count + " workers, tree with fan-out " + fanOut, elements);
+                List<HillviewServer> aggregators = new ArrayList<HillviewServer>();
+                IDataSet<ITable> root = new ParallelDataSet<ITable>(
+                        startAggregators(nodes, fanOut, port, aggregators));
+                port += aggregators.size();
+                for (HillviewServer a : aggregators)
+                    a.setMemoization(false);
+                runNTimes(() -> root.blockingSketch(sk), runCount,
+                        count + " workers, aggregators with fan-out " + fanOut, elements);
+                aggregators.forEach(HillviewServer::shutdown);
+            }
+        }
+        servers.forEach(HillviewServer::shutdown);
     }
 
     // Testing the performance of histogram computations
@@ -371,6 +565,9 @@ public class HillviewBenchmarks extends Benchmarks {
             case "histogram":
                 benchmarkHistogram(args);
                 break;
+            case "batchHistogram":
+                benchmarkBatchHistogram(args);
+                break;
             case "quantilesNaive":
                 benchmarkQuantiles(args);
                 break;
@@ -380,6 +577,12 @@ public class HillviewBenchmarks extends Benchmarks {
             case "quantilesError":
                 quantilesError(args);
                 break;
+            case "offHeap":
+                benchmarkOffHeap(args);
+                break;
+            case "aggregationTree":
+                benchmarkAggregationTree(args);
+                break;
             default:
                 throw new RuntimeException("Unexpected benchmark: " + bench);
         }
@@ -36,11 +36,14 @@ import java.lang.management.ManagementFactory;
 class HillviewServerRunner {
     private static void usage() {
         System.out.println("Invalid number of arguments.\n" +
-                "Usage: java -jar <jarname> [children] host:port\n" +
+                "Usage: java -jar <jarname> [children] host:port [fanout]\n" +
                 "`host:port` is the address where the service receives requests.\n" +
                 "`children` is an optional file that contains a list of children nodes.\n" +
                 "           Each child is of the form host:port.\n" +
                 "           If present this server will work as an aggregator node.\n" +
+                "           Children can be workers or other aggregators.\n" +
+                "`fanout`   is optional, and only used by aggregators: the maximum number of\n" +
+                "           children whose results are merged by a single node.\n" +
                 "The process will writes its process id into a file named hillview-worker.pid\n" +
                 "or hillview-aggregator.pid\n"
         );
@@ -58,11 +61,13 @@ class HillviewServerRunner {
                 initial = new LocalDataSet<Empty>(Empty.getInstance());
                 hostAndPort = args[0];
                 pidfile = "hillview-worker.pid";
-            } else if (args.length == 2) {
+            } else if (args.length == 2 || args.length == 3) {
                 // aggregator node
                 HillviewLogger.initialize("aggregator", "hillview-agg.log");
                 HostList cluster = HostList.fromFile(args[0]);
-                initial = RemoteDataSet.createCluster(cluster, RemoteDataSet.defaultDatasetIndex);
+                int fanOut = args.length == 3 ? Integer.parseInt(args[2]) : 0;
+                initial = RemoteDataSet.createCluster(
+                        cluster, RemoteDataSet.defaultDatasetIndex, fanOut);
                 hostAndPort = args[1];
                 pidfile = "hillview-aggregator.pid";
             } else {
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.management;
+
+import org.hillview.dataset.api.ControlMessage;
+import org.hillview.dataset.remoting.HillviewServer;
+import org.hillview.storage.NativeColumnCache;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * This control message causes the servers to change the directory and the size
+ * of the cache of loaded tables in native format; see NativeColumnCache.
+ */
+public class SetColumnCache extends ControlMessage {
+    static final long serialVersionUID = 1;
+    @Nullable
+    private final String directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory  Directory of the cache on each server; if null the cache is disabled.
+     * @param maxBytes   Bound on the total size of the cache on each server.
+     */
+    public SetColumnCache(@Nullable String directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public Status remoteServerAction(HillviewServer server) {
+        NativeColumnCache cache = NativeColumnCache.instance;
+        if (this.directory != null)
+            cache.setMaxBytes(this.maxBytes);
+        cache.setDirectory(this.directory == null ? null : new File(this.directory));
+        return new Status("OK");
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.management;
+
+import org.hillview.dataset.api.ControlMessage;
+import org.hillview.dataset.remoting.HillviewServer;
+import org.hillview.table.ColumnMemoryManager;
+
+/**
+ * This control message changes the watermarks which control the eviction of
+ * loaded columns under memory pressure; see ColumnMemoryManager.
+ */
+public class SetColumnEviction extends ControlMessage {
+    static final long serialVersionUID = 1;
+    private final double highWatermark;
+    private final double lowWatermark;
+
+    /**
+     * @param highWatermark  Fraction of the tenured heap above which columns are
+     *                       evicted; if zero eviction is disabled.
+     * @param lowWatermark   Fraction of the tenured heap at which eviction stops.
+     */
+    public SetColumnEviction(double highWatermark, double lowWatermark) {
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    public Status remoteServerAction(HillviewServer server) {
+        ColumnMemoryManager.setWatermarks(this.highWatermark, this.lowWatermark);
+        return new Status("OK");
+    }
+}
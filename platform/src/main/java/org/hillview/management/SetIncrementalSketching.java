@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.management;
+
+import org.hillview.dataset.LocalDataSet;
+import org.hillview.dataset.api.ControlMessage;
+import org.hillview.dataset.remoting.HillviewServer;
+
+/**
+ * This control message causes the servers to change the settings
+ * for the incremental computation of sketches within a single table.
+ */
+public class SetIncrementalSketching extends ControlMessage {
+    static final long serialVersionUID = 1;
+    private final int rowsPerChunk;
+    private final int intervalInMilliseconds;
+
+    /**
+     * @param rowsPerChunk  If zero incremental sketching is disabled.
+     * @param intervalInMilliseconds  Minimum time between partial results.
+     */
+    public SetIncrementalSketching(int rowsPerChunk, int intervalInMilliseconds) {
+        this.rowsPerChunk = rowsPerChunk;
+        this.intervalInMilliseconds = intervalInMilliseconds;
+    }
+
+    public Status remoteServerAction(HillviewServer server) {
+        LocalDataSet.setIncrementalSketching(this.rowsPerChunk, this.intervalInMilliseconds);
+        return new Status("OK");
+    }
+}
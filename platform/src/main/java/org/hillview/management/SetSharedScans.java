@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.management;
+
+import org.hillview.dataset.SharedScanCoordinator;
+import org.hillview.dataset.api.ControlMessage;
+import org.hillview.dataset.remoting.HillviewServer;
+
+/**
+ * This control message causes the servers to change the time window
+ * within which sketches over the same table share a single scan.
+ */
+public class SetSharedScans extends ControlMessage {
+    static final long serialVersionUID = 1;
+    private final int windowInMilliseconds;
+
+    /**
+     * @param windowInMilliseconds  If zero shared scans are disabled.
+     */
+    public SetSharedScans(int windowInMilliseconds) {
+        this.windowInMilliseconds = windowInMilliseconds;
+    }
+
+    public Status remoteServerAction(HillviewServer server) {
+        SharedScanCoordinator.setWindow(this.windowInMilliseconds);
+        return new Status("OK");
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.management;
+
+import org.hillview.dataset.api.ControlMessage;
+import org.hillview.dataset.remoting.HillviewServer;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * This control message causes the servers to write the datasets evicted from
+ * memory to local disk, or to stop doing so; see SpilledDataSets.
+ */
+public class SetSpillDirectory extends ControlMessage {
+    static final long serialVersionUID = 1;
+    @Nullable
+    private final String directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory  Directory where each server writes evicted datasets;
+     *                   if null evicted datasets are dropped.
+     * @param maxBytes   Bound on the total size of the datasets written by each server.
+     */
+    public SetSpillDirectory(@Nullable String directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public Status remoteServerAction(HillviewServer server) {
+        server.setSpillDirectory(this.directory == null ? null : new File(this.directory), this.maxBytes);
+        return new Status("OK");
+    }
+}
@@ -60,7 +60,7 @@ public class FilterMap implements IMap<ITable, ITable> {
             data = new QuantizedTable(data, this.quantization);
         ITableFilter filter = this.rowFilterPredicate.getFilter(data);
         HillviewLogger.instance.info("Filtering", "{0}", filter);
-        IMembershipSet result = data.getMembershipSet().filter(filter::test);
+        IMembershipSet result = filter.filter(data.getMembershipSet());
         return data.selectRowsFromFullTable(result);
     }
 
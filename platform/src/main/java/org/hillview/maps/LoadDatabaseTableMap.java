@@ -19,6 +19,7 @@ package org.hillview.maps;
 
 import org.hillview.dataset.api.Empty;
 import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.OperationPriority;
 import org.hillview.storage.jdbc.JdbcConnectionInformation;
 import org.hillview.table.api.ITable;
 import org.hillview.storage.jdbc.JdbcDatabase;
@@ -46,4 +47,9 @@ public class LoadDatabaseTableMap implements IMap<Empty, ITable> {
             throw new RuntimeException(e);
         }
     }
+
+    @Override
+    public OperationPriority getPriority() {
+        return OperationPriority.Background;
+    }
 }
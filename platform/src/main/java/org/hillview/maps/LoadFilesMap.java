@@ -18,7 +18,9 @@
 package org.hillview.maps;
 
 import org.hillview.dataset.api.IMap;
+import org.hillview.dataset.api.OperationPriority;
 import org.hillview.storage.IFileReference;
+import org.hillview.storage.NativeColumnCache;
 import org.hillview.table.api.ITable;
 import org.hillview.utils.Converters;
 
@@ -28,9 +30,28 @@ public class LoadFilesMap implements IMap<IFileReference, ITable> {
     static final long serialVersionUID = 1;
     public LoadFilesMap() {}
 
+    /**
+     * Loads the file.  Files which can be cached are opened from the NativeColumnCache
+     * if they were loaded before; otherwise they are written to the cache after loading.
+     */
     @Override
     public ITable apply(@Nullable IFileReference data) {
-        return Converters.checkNull(data).load();
+        IFileReference file = Converters.checkNull(data);
+        String key = NativeColumnCache.instance.isEnabled() ? file.getCacheKey() : null;
+        if (key != null) {
+            ITable cached = NativeColumnCache.instance.open(key, file.getPathname());
+            if (cached != null)
+                return cached;
+        }
+        ITable result = file.load();
+        if (key != null)
+            NativeColumnCache.instance.write(key, result);
+        return result;
+    }
+
+    @Override
+    public OperationPriority getPriority() {
+        return OperationPriority.Background;
     }
 
     @Override
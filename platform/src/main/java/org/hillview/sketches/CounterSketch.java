@@ -35,6 +35,11 @@ public class CounterSketch extends IncrementalTableSketch<Count, EmptyWorkspace>
         result.add(1);
     }
 
+    @Override
+    public void incrementBatch(EmptyWorkspace v, Count result, int[] rows, int offset, int count) {
+        result.add(count);
+    }
+
     @Override
     public EmptyWorkspace initialize(ITable data) { return EmptyWorkspace.instance; }
 
@@ -20,8 +20,11 @@ package org.hillview.sketches;
 import org.hillview.dataset.api.TableSketch;
 import org.hillview.sketches.results.DataRange;
 import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ITable;
+import org.hillview.table.columns.ZoneMap;
+import org.hillview.table.membership.SparseMembershipSet;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
@@ -41,9 +44,31 @@ public class DoubleDataRangeSketch implements TableSketch<DataRange> {
     @Override
     public DataRange create(@Nullable final ITable data) {
         IColumn column = Converters.checkNull(data).getLoadedColumn(this.col);
+        IMembershipSet set = data.getMembershipSet();
         DataRange result = new DataRange();
-        final IRowIterator myIter = data.getMembershipSet().getIterator();
-        int currRow = myIter.getNextRow();
+        ZoneMap zoneMap = column.getZoneMap();
+        if (zoneMap == null || set instanceof SparseMembershipSet) {
+            addRows(column, set.getIterator(), result);
+            return result;
+        }
+        // Blocks whose rows are all in the set are summarized by the zone map.
+        for (int block = 0; block < zoneMap.getBlockCount(); block++) {
+            int start = zoneMap.blockStart(block);
+            int end = zoneMap.blockEnd(block);
+            if (set.containsRange(start, end) && !Double.isNaN(zoneMap.getMin(block))) {
+                DataRange range = new DataRange(zoneMap.getMin(block), zoneMap.getMax(block));
+                range.presentCount = zoneMap.getPresentCount(block);
+                range.missingCount = zoneMap.getMissingCount(block);
+                result = result.add(range);
+            } else {
+                addRows(column, set.getIteratorInRange(start, end), result);
+            }
+        }
+        return result;
+    }
+
+    private static void addRows(IColumn column, IRowIterator it, DataRange result) {
+        int currRow = it.getNextRow();
         while (currRow >= 0) {
             if (!column.isMissing(currRow)) {
                 double val = column.asDouble(currRow);
@@ -51,9 +76,8 @@ public class DoubleDataRangeSketch implements TableSketch<DataRange> {
             } else {
                 result.addMissing();
             }
-            currRow = myIter.getNextRow();
+            currRow = it.getNextRow();
         }
-        return result;
     }
 
     @Override
@@ -26,21 +26,26 @@ import org.hillview.table.api.ITable;
 
 /**
  * Standard 2D histogram computed using 2 nested group-by operators.
+ * When processing batches the outer group-by sorts the rows by the bucket
+ * of the second column, and the inner histograms count each sorted run in bulk.
  */
 public class Histogram2DSketch extends GroupBySketch<
         Groups<Count>,
         GroupByWorkspace<EmptyWorkspace>,
         HistogramSketch> {
+    private final IHistogramBuckets buckets0;
 
     public Histogram2DSketch(
             IHistogramBuckets buckets0,
             IHistogramBuckets buckets1) {
         super(buckets1, new HistogramSketch(buckets0));
+        this.buckets0 = buckets0;
     }
 
     @Override
     public GroupByWorkspace<GroupByWorkspace<EmptyWorkspace>> initialize(ITable data) {
-        data.getLoadedColumns(this.buckets.getColumn(), super.buckets.getColumn());
+        // Load both columns at once, so they are available to all per-bucket workspaces.
+        data.getLoadedColumns(this.buckets0.getColumn(), this.buckets.getColumn());
         return super.initialize(data);
     }
 }
@@ -18,7 +18,9 @@
 package org.hillview.sketches;
 
 import org.hillview.sketches.highorder.GroupBySketch;
+import org.hillview.sketches.highorder.GroupByWorkspace;
 import org.hillview.sketches.results.Count;
+import org.hillview.sketches.results.Groups;
 import org.hillview.sketches.results.IHistogramBuckets;
 
 /**
@@ -32,4 +34,20 @@ public class HistogramSketch
             IHistogramBuckets buckets) {
         super(buckets, new CounterSketch());
     }
+
+    @Override
+    public void incrementBatch(GroupByWorkspace<EmptyWorkspace> workspace, Groups<Count> result,
+                               int[] rows, int offset, int count) {
+        // The per-bucket sketches only count, so there is no need to sort the rows.
+        int[] sizes = this.bucketSizes(workspace, rows, offset, count);
+        if (sizes == null) {
+            super.incrementBatch(workspace, result, rows, offset, count);
+            return;
+        }
+        int missing = sizes.length - 1;
+        for (int i = 0; i < missing; i++)
+            if (sizes[i] > 0)
+                result.perBucket.get(i).add(sizes[i]);
+        result.perMissing.add(sizes[missing]);
+    }
 }
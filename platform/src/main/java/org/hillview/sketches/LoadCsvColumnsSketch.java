@@ -71,4 +71,10 @@ public class LoadCsvColumnsSketch
         }
         return new ControlMessage.StatusList(new ControlMessage.Status("OK"));
     }
+
+    @Override
+    public boolean isSplittable() {
+        // This loads the columns of the whole table.
+        return false;
+    }
 }
@@ -18,6 +18,7 @@
 package org.hillview.sketches;
 
 import org.hillview.dataset.api.Empty;
+import org.hillview.dataset.api.OperationPriority;
 import org.hillview.dataset.api.TableSketch;
 import org.hillview.storage.CsvFileWriter;
 import org.hillview.storage.ITableWriter;
@@ -133,6 +134,16 @@ public class SaveAsFileSketch implements TableSketch<Empty> {
         return left;
     }
 
+    @Override
+    public boolean isSplittable() {
+        return false;
+    }
+
+    @Override
+    public OperationPriority getPriority() {
+        return OperationPriority.Background;
+    }
+
     @Override
     public String toString() {
         return Paths.get(this.folder,  "*." + kind).toString();
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.sketches.highorder;
+
+import org.hillview.dataset.api.*;
+import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ISketchWorkspace;
+import org.hillview.table.api.ITable;
+import org.hillview.utils.Converters;
+import org.hillview.utils.JsonList;
+import org.hillview.utils.Linq;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * Runs a batch of independent sketches, possibly of different types, over the same data.
+ * When the data is a table all the incremental table sketches in the batch
+ * that visit the same rows (all rows, or the same sample) share a single scan;
+ * the columns they use are loaded together before the scan.
+ * Remote datasets ship a batch to the workers in a single batch command,
+ * and receive the result of each sketch tagged with its index in the batch.
+ * @param <T>  Input data type.
+ */
+public class BatchSketch<T> implements ISketch<T, JsonList<ISketchResult>> {
+    static final long serialVersionUID = 1;
+    private final JsonList<ISketch<T, ISketchResult>> sketches;
+    /**
+     * Returns true for the index of a sketch whose result is no longer needed.
+     * Such sketches stop being computed, and their result is zero.
+     * Only used by batches which are run locally.
+     */
+    @Nullable
+    private final transient IntPredicate isCancelled;
+
+    @SuppressWarnings("unchecked")
+    public BatchSketch(List<? extends ISketch<T, ?>> sketches, @Nullable IntPredicate isCancelled) {
+        this.sketches = new JsonList<ISketch<T, ISketchResult>>(sketches.size());
+        for (ISketch<T, ?> sketch : sketches)
+            this.sketches.add((ISketch<T, ISketchResult>)sketch);
+        this.isCancelled = isCancelled;
+    }
+
+    public BatchSketch(List<? extends ISketch<T, ?>> sketches) {
+        this(sketches, null);
+    }
+
+    @SafeVarargs
+    public BatchSketch(ISketch<T, ?>... sketches) {
+        this(Arrays.asList(sketches));
+    }
+
+    public int size() {
+        return this.sketches.size();
+    }
+
+    public ISketch<T, ISketchResult> getSketch(int index) {
+        return this.sketches.get(index);
+    }
+
+    /**
+     * A batch result which holds the specified value for one sketch and zero for all other ones.
+     * @param index  Index of the sketch in the batch.
+     * @param value  Value for this sketch.
+     */
+    public JsonList<ISketchResult> placeAt(int index, @Nullable ISketchResult value) {
+        JsonList<ISketchResult> result = Converters.checkNull(this.zero());
+        result.set(index, value);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public JsonList<ISketchResult> zero() {
+        return Linq.map(this.sketches, IMonoid::zero);
+    }
+
+    @Nullable
+    @Override
+    public JsonList<ISketchResult> add(@Nullable JsonList<ISketchResult> left,
+                                       @Nullable JsonList<ISketchResult> right) {
+        assert left != null;
+        assert right != null;
+        return Linq.map(Linq.zip3(left, right, this.sketches),
+                t -> Converters.checkNull(t.third).add(t.first, t.second));
+    }
+
+    /**
+     * State of an incremental sketch during a shared scan.
+     */
+    private static class Scan<R extends ISketchResult & IScalable<R>, W extends ISketchWorkspace> {
+        final IncrementalTableSketch<R, W> sketch;
+        /**
+         * Index of the sketch in the batch.
+         */
+        final int index;
+        /**
+         * If true the sketch only sees a sample of the rows, given by samplingRate and seed.
+         */
+        final boolean sampled;
+        final double samplingRate;
+        final long seed;
+        @Nullable W workspace;
+        final R result;
+
+        Scan(IncrementalTableSketch<R, W> sketch, int index,
+             boolean sampled, double samplingRate, long seed) {
+            this.sketch = sketch;
+            this.index = index;
+            this.sampled = sampled;
+            this.samplingRate = samplingRate;
+            this.seed = seed;
+            this.workspace = null;
+            this.result = Converters.checkNull(sketch.zero());
+        }
+
+        static <R extends ISketchResult & IScalable<R>, W extends ISketchWorkspace> Scan<R, W>
+        overAll(IncrementalTableSketch<R, W> sketch, int index) {
+            return new Scan<R, W>(sketch, index, false, 1.0, 0);
+        }
+
+        static <R extends ISketchResult & IScalable<R>, W extends ISketchWorkspace> Scan<R, W>
+        overSample(SamplingTableSketch<W, R, ?> sketch, int index) {
+            // Sampling at rate 1 visits all rows.
+            return new Scan<R, W>(sketch.actualSketch, index,
+                    sketch.samplingRate < 1, sketch.samplingRate, sketch.seed);
+        }
+
+        /**
+         * The scan for a sketch, or null if the sketch cannot share a scan.
+         */
+        @Nullable
+        static Scan<?, ?> create(ISketch<?, ?> sketch, int index) {
+            if (sketch instanceof IncrementalTableSketch)
+                return overAll((IncrementalTableSketch<?, ?>)sketch, index);
+            if (sketch instanceof SamplingTableSketch)
+                return overSample((SamplingTableSketch<?, ?, ?>)sketch, index);
+            return null;
+        }
+
+        /**
+         * True if this scan visits the same rows as the other one.
+         */
+        boolean sameRows(Scan<?, ?> other) {
+            if (this.sampled != other.sampled)
+                return false;
+            return !this.sampled || (this.samplingRate == other.samplingRate && this.seed == other.seed);
+        }
+
+        IRowIterator getIterator(ITable table) {
+            if (!this.sampled)
+                return table.getRowIterator();
+            return table.getMembershipSet().getIteratorOverSample(this.samplingRate, this.seed, false);
+        }
+
+        void initialize(ITable table) {
+            this.workspace = this.sketch.initialize(table);
+        }
+
+        void increment(int[] rows, int count) {
+            this.sketch.incrementBatch(Converters.checkNull(this.workspace), this.result, rows, 0, count);
+        }
+
+        R getResult() {
+            if (this.sampled)
+                return this.result.rescale(this.samplingRate);
+            return this.result;
+        }
+    }
+
+    private boolean cancelled(int index) {
+        return this.isCancelled != null && this.isCancelled.test(index);
+    }
+
+    @Override
+    public JsonList<ISketchResult> create(@Nullable T data) {
+        JsonList<ISketchResult> result = new JsonList<ISketchResult>(this.sketches.size());
+        List<Scan<?, ?>> scans = new ArrayList<Scan<?, ?>>();
+        for (int i = 0; i < this.sketches.size(); i++) {
+            ISketch<T, ISketchResult> sketch = this.sketches.get(i);
+            if (this.cancelled(i)) {
+                result.add(sketch.zero());
+                continue;
+            }
+            Scan<?, ?> scan = data instanceof ITable ? Scan.create(sketch, i) : null;
+            if (scan != null) {
+                scans.add(scan);
+                result.add(null);
+            } else {
+                result.add(sketch.create(data));
+            }
+        }
+        if (scans.isEmpty())
+            return result;
+
+        ITable table = (ITable)Converters.checkNull(data);
+        // Load the columns of all sketches at once, then each sketch finds its columns loaded.
+        Set<String> columns = new LinkedHashSet<String>();
+        for (Scan<?, ?> scan : scans)
+            columns.addAll(scan.sketch.getColumnNames());
+        if (!columns.isEmpty())
+            table.getLoadedColumns(new ArrayList<String>(columns));
+        for (Scan<?, ?> scan : scans)
+            scan.initialize(table);
+
+        // All scans over the same rows share one pass.
+        int[] rows = new int[IncrementalTableSketch.BATCH_SIZE];
+        boolean[] done = new boolean[scans.size()];
+        for (int i = 0; i < scans.size(); i++) {
+            if (done[i])
+                continue;
+            List<Scan<?, ?>> pass = new ArrayList<Scan<?, ?>>();
+            for (int j = i; j < scans.size(); j++) {
+                if (!done[j] && scans.get(i).sameRows(scans.get(j))) {
+                    pass.add(scans.get(j));
+                    done[j] = true;
+                }
+            }
+            IRowIterator it = scans.get(i).getIterator(table);
+            int count = it.fillBatch(rows);
+            while (count > 0) {
+                if (this.isCancelled != null) {
+                    pass.removeIf(scan -> this.cancelled(scan.index));
+                    if (pass.isEmpty())
+                        break;
+                }
+                for (Scan<?, ?> scan : pass)
+                    scan.increment(rows, count);
+                count = it.fillBatch(rows);
+            }
+        }
+        for (Scan<?, ?> scan : scans) {
+            if (this.cancelled(scan.index))
+                result.set(scan.index, scan.sketch.zero());
+            else
+                result.set(scan.index, scan.getResult());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isSplittable() {
+        for (ISketch<T, ISketchResult> sketch : this.sketches)
+            if (!sketch.isSplittable())
+                return false;
+        return true;
+    }
+
+    /**
+     * A batch runs with the priority of its most urgent sketch.
+     */
+    @Override
+    public OperationPriority getPriority() {
+        OperationPriority result = OperationPriority.Background;
+        for (ISketch<T, ISketchResult> sketch : this.sketches)
+            if (sketch.getPriority().ordinal() < result.ordinal())
+                result = sketch.getPriority();
+        return result;
+    }
+
+    public String toString() {
+        return "BatchSketch: " + Linq.map(this.sketches, Object::toString);
+    }
+}
@@ -20,16 +20,26 @@ package org.hillview.sketches.highorder;
 import org.hillview.dataset.api.IncrementalTableSketch;
 import org.hillview.dataset.api.IScalable;
 import org.hillview.dataset.api.ISketchResult;
+import org.hillview.sketches.results.DoubleHistogramBuckets;
 import org.hillview.sketches.results.Groups;
 import org.hillview.sketches.results.IHistogramBuckets;
+import org.hillview.sketches.results.StringHistogramBuckets;
 import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IIntColumn;
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ISketchWorkspace;
 import org.hillview.table.api.ITable;
+import org.hillview.table.columns.DictionaryStringColumn;
+import org.hillview.table.columns.ZoneMap;
+import org.hillview.table.membership.SparseMembershipSet;
 import org.hillview.utils.Converters;
 import org.hillview.utils.JsonList;
 import org.hillview.utils.Linq;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Given a TableSketch S, this applies S to each group.
@@ -75,19 +85,210 @@ public class GroupBySketch<
                             workspace.bucketWorkspace.get(index), result.perBucket.get(index), rowNumber);
                 }
             } else {
-                int index = this.buckets.indexOf(workspace.column, rowNumber);
+                int index;
+                if (workspace.codeBuckets != null)
+                    index = workspace.codeBuckets[
+                            ((DictionaryStringColumn)workspace.column).getCode(rowNumber)];
+                else
+                    index = this.buckets.indexOf(workspace.column, rowNumber);
                 if (index >= 0 && index < result.perBucket.size())
                     this.bucketSketch.get(index).increment(workspace.bucketWorkspace.get(index), result.perBucket.get(index), rowNumber);
             }
         }
     }
 
+    /**
+     * Computes the bucket of each row in a batch, storing it in the workspace,
+     * and the number of rows that fall in each bucket.
+     * @return  An array with the number of rows in each bucket; the last element
+     *          is the number of rows with missing values.  The array is owned by
+     *          the workspace and is overwritten by the next call.  Returns null
+     *          for interval columns, whose rows may belong to multiple buckets.
+     */
+    @Nullable
+    protected int[] bucketSizes(GroupByWorkspace<SW> workspace, int[] rows, int offset, int count) {
+        if (workspace.endColumn != null)
+            return null;
+        workspace.ensureCapacity(count);
+        final int[] sizes = workspace.bucketSize;
+        final int[] rowBucket = workspace.rowBucket;
+        final int missing = sizes.length - 1;
+        final IColumn column = workspace.column;
+        Arrays.fill(sizes, 0);
+        // Rows in blocks whose values all fall in the same bucket are not examined.
+        @Nullable final int[] blockBuckets = workspace.blockBuckets;
+        // Integer columns with numeric buckets decode the whole batch at once.
+        final int[] values = workspace.intValues;
+        @Nullable DoubleHistogramBuckets numeric = null;
+        if (column instanceof IIntColumn && this.buckets instanceof DoubleHistogramBuckets) {
+            numeric = (DoubleHistogramBuckets)this.buckets;
+            ((IIntColumn)column).getInts(rows, offset, count, values);
+        }
+        // Columns with a sorted dictionary map codes to buckets without decoding strings.
+        @Nullable final int[] codeBuckets = workspace.codeBuckets;
+        if (codeBuckets != null)
+            ((DictionaryStringColumn)column).getCodes(rows, offset, count, values);
+        for (int i = 0; i < count; i++) {
+            int row = rows[offset + i];
+            int index;
+            if (blockBuckets != null) {
+                index = blockBuckets[row >>> ZoneMap.LogBlockRows];
+                if (index != GroupByWorkspace.MixedBlock) {
+                    rowBucket[i] = index;
+                    if (index >= 0)
+                        sizes[index]++;
+                    continue;
+                }
+            }
+            // The code of missing values is one past the dictionary
+            boolean isMissing = codeBuckets != null ?
+                    values[i] == codeBuckets.length : column.isMissing(row);
+            if (isMissing) {
+                index = missing;
+            } else {
+                if (codeBuckets != null)
+                    index = codeBuckets[values[i]];
+                else if (numeric != null)
+                    index = numeric.indexOf(values[i]);
+                else
+                    index = this.buckets.indexOf(column, row);
+                if (index < 0 || index >= missing) {
+                    rowBucket[i] = -1;
+                    continue;
+                }
+            }
+            rowBucket[i] = index;
+            sizes[index]++;
+        }
+        return sizes;
+    }
+
+    @Override
+    public void incrementBatch(GroupByWorkspace<SW> workspace, Groups<R> result,
+                               int[] rows, int offset, int count) {
+        int[] sizes = this.bucketSizes(workspace, rows, offset, count);
+        if (sizes == null) {
+            super.incrementBatch(workspace, result, rows, offset, count);
+            return;
+        }
+        // Counting sort of the rows by bucket, then one batch per bucket.
+        int missing = sizes.length - 1;
+        final int[] start = workspace.bucketStart;
+        for (int i = 0; i < sizes.length; i++)
+            start[i + 1] = start[i] + sizes[i];
+        // From now on sizes holds the next free position of each bucket.
+        final int[] next = sizes;
+        System.arraycopy(start, 0, next, 0, next.length);
+        final int[] rowBucket = workspace.rowBucket;
+        final int[] sorted = workspace.sortedRows;
+        for (int i = 0; i < count; i++) {
+            int index = rowBucket[i];
+            if (index >= 0)
+                sorted[next[index]++] = rows[offset + i];
+        }
+        for (int index = 0; index < missing; index++) {
+            int size = start[index + 1] - start[index];
+            if (size > 0)
+                this.bucketSketch.get(index).incrementBatch(
+                        workspace.bucketWorkspace.get(index), result.perBucket.get(index),
+                        sorted, start[index], size);
+        }
+        int size = start[missing + 1] - start[missing];
+        if (size > 0)
+            this.missingSketch.incrementBatch(
+                    workspace.missingWorkspace, result.perMissing, sorted, start[missing], size);
+    }
+
     @Override
     public GroupByWorkspace<SW> initialize(ITable data) {
         IColumn column = Converters.checkNull(data).getLoadedColumn(this.buckets.getColumn());
         SW missing = this.missingSketch.initialize(data);
         JsonList<SW> bucketWorkspaces = Linq.map(this.bucketSketch, s -> s.initialize(data));
-        return new GroupByWorkspace<SW>(column, bucketWorkspaces, missing);
+        GroupByWorkspace<SW> result = new GroupByWorkspace<SW>(column, bucketWorkspaces, missing);
+        if (column instanceof DictionaryStringColumn && this.buckets instanceof StringHistogramBuckets) {
+            DictionaryStringColumn dc = (DictionaryStringColumn)column;
+            // Only worth it if the dictionary is not larger than the data scanned
+            if (dc.getDictionarySize() <= data.getNumOfRows())
+                result.codeBuckets = ((StringHistogramBuckets)this.buckets).codeIndexes(dc);
+        }
+        ZoneMap zoneMap = column.getZoneMap();
+        if (zoneMap != null && this.buckets instanceof DoubleHistogramBuckets)
+            result.blockBuckets = this.blockBuckets(zoneMap, (DoubleHistogramBuckets)this.buckets);
+        return result;
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        // All buckets use the same sketch as the missing values.
+        List<String> result = this.missingSketch.getColumnNames();
+        result.add(0, this.buckets.getColumn());
+        return result;
+    }
+
+    /**
+     * Use a zone map to find the blocks whose rows all fall in the same bucket.
+     * @return For each block the bucket index, as in GroupByWorkspace.blockBuckets.
+     */
+    private int[] blockBuckets(ZoneMap zoneMap, DoubleHistogramBuckets numeric) {
+        int[] result = new int[zoneMap.getBlockCount()];
+        int bucketCount = numeric.getBucketCount();
+        for (int block = 0; block < result.length; block++) {
+            int bucket;
+            int missing = zoneMap.getMissingCount(block);
+            double min = zoneMap.getMin(block);
+            double max = zoneMap.getMax(block);
+            if (zoneMap.getPresentCount(block) == 0) {
+                bucket = missing > 0 ? bucketCount : -1;
+            } else if (missing > 0 || Double.isNaN(min)) {
+                bucket = GroupByWorkspace.MixedBlock;
+            } else {
+                // indexOf is monotone, so all values between min and max are in the same bucket.
+                int first = numeric.indexOf(min);
+                if (first != numeric.indexOf(max))
+                    bucket = GroupByWorkspace.MixedBlock;
+                else if (first < 0 || first >= bucketCount)
+                    bucket = -1;
+                else
+                    bucket = first;
+            }
+            result[block] = bucket;
+        }
+        return result;
+    }
+
+    /**
+     * When the column has a zone map the rows are processed by block: blocks with
+     * no rows in any bucket are skipped, and blocks whose rows all fall in the same
+     * bucket are given directly to the sketch of that bucket.
+     */
+    @Override
+    public Groups<R> create(@Nullable ITable data) {
+        Groups<R> result = Converters.checkNull(this.zero());
+        GroupByWorkspace<SW> workspace = this.initialize(Converters.checkNull(data));
+        IMembershipSet set = data.getMembershipSet();
+        @Nullable int[] blockBuckets = workspace.blockBuckets;
+        if (blockBuckets == null || set instanceof SparseMembershipSet) {
+            // Sparse sets do not enumerate their rows in order.
+            this.incrementAll(workspace, result, set.getIterator());
+            return result;
+        }
+        int missing = this.buckets.getBucketCount();
+        for (int block = 0; block < blockBuckets.length; block++) {
+            int bucket = blockBuckets[block];
+            if (bucket == -1)
+                continue;
+            int start = block << ZoneMap.LogBlockRows;
+            int end = (int)Math.min((long)start + ZoneMap.BlockRows, set.getMax());
+            IRowIterator it = set.getIteratorInRange(start, end);
+            if (bucket == GroupByWorkspace.MixedBlock)
+                this.incrementAll(workspace, result, it);
+            else if (bucket == missing)
+                this.missingSketch.incrementAll(workspace.missingWorkspace, result.perMissing, it);
+            else
+                this.bucketSketch.get(bucket).incrementAll(
+                        workspace.bucketWorkspace.get(bucket), result.perBucket.get(bucket), it);
+        }
+        return result;
     }
 
     @Override
@@ -35,6 +35,28 @@ public class GroupByWorkspace<SW> implements ISketchWorkspace {
     final IColumn endColumn;  // only used for Interval columns
     final JsonList<SW> bucketWorkspace;   // one per bucket
     final SW missingWorkspace;
+    // Scratch space used when processing batches of rows.
+    // Number of rows in each bucket; the last entry counts missing values.
+    final int[] bucketSize;
+    // Index in sortedRows where each bucket starts.
+    final int[] bucketStart;
+    // Bucket index for each row in the batch; -1 for rows outside all buckets.
+    int[] rowBucket;
+    // Rows of the batch sorted by bucket.
+    int[] sortedRows;
+    // Values of the rows in the batch, for integer columns, or dictionary codes.
+    int[] intValues;
+    // Bucket of each dictionary code, for columns encoded with a sorted dictionary.
+    @Nullable
+    int[] codeBuckets;
+    /**
+     * Bucket of all the rows in each block of the zone map of the column, using the
+     * same indexes as rowBucket; the bucket count for blocks with only missing values,
+     * or MixedBlock if the rows have to be examined.
+     */
+    @Nullable
+    int[] blockBuckets;
+    static final int MixedBlock = -2;
 
     GroupByWorkspace(IColumn column, JsonList<SW> bucketWorkspace, SW missingWorkspace) {
         if (column.getKind() == ContentsKind.Interval) {
@@ -47,5 +69,23 @@ public class GroupByWorkspace<SW> implements ISketchWorkspace {
         }
         this.bucketWorkspace = bucketWorkspace;
         this.missingWorkspace = missingWorkspace;
+        this.bucketSize = new int[bucketWorkspace.size() + 1];
+        this.bucketStart = new int[bucketWorkspace.size() + 2];
+        this.rowBucket = new int[0];
+        this.sortedRows = new int[0];
+        this.intValues = new int[0];
+        this.codeBuckets = null;
+        this.blockBuckets = null;
+    }
+
+    /**
+     * Make sure that the scratch space can hold a batch of this many rows.
+     */
+    void ensureCapacity(int count) {
+        if (this.rowBucket.length < count) {
+            this.rowBucket = new int[count];
+            this.sortedRows = new int[count];
+            this.intValues = new int[count];
+        }
     }
 }
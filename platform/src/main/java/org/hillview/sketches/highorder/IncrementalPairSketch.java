@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.sketches.highorder;
+
+import org.hillview.dataset.api.IScalable;
+import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.api.IncrementalTableSketch;
+import org.hillview.table.api.ISketchWorkspace;
+import org.hillview.table.api.ITable;
+import org.hillview.utils.Converters;
+import org.hillview.utils.Pair;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Runs two incremental sketches in the same scan of the data.  Unlike
+ * BatchSketch the result is also an incremental sketch, so the pair can
+ * be sampled, or run by a ProgressiveSampler.
+ * @param <R1>  Result of the first sketch.
+ * @param <W1>  Workspace of the first sketch.
+ * @param <R2>  Result of the second sketch.
+ * @param <W2>  Workspace of the second sketch.
+ */
+public class IncrementalPairSketch<
+        R1 extends ISketchResult & IScalable<R1>, W1 extends ISketchWorkspace,
+        R2 extends ISketchResult & IScalable<R2>, W2 extends ISketchWorkspace>
+        extends IncrementalTableSketch<IncrementalPairSketch.Result<R1, R2>,
+                                       IncrementalPairSketch.Workspace<W1, W2>> {
+    /**
+     * The results of the two sketches.
+     */
+    public static class Result<R1 extends IScalable<R1>, R2 extends IScalable<R2>>
+            extends Pair<R1, R2> implements IScalable<Result<R1, R2>> {
+        static final long serialVersionUID = 1;
+
+        public Result(R1 first, R2 second) {
+            super(first, second);
+        }
+
+        @Override
+        public Result<R1, R2> rescale(double samplingRate) {
+            return new Result<R1, R2>(
+                    Converters.checkNull(this.first).rescale(samplingRate),
+                    Converters.checkNull(this.second).rescale(samplingRate));
+        }
+    }
+
+    public static class Workspace<W1 extends ISketchWorkspace, W2 extends ISketchWorkspace>
+            implements ISketchWorkspace {
+        final W1 first;
+        final W2 second;
+
+        Workspace(W1 first, W2 second) {
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    private final IncrementalTableSketch<R1, W1> first;
+    private final IncrementalTableSketch<R2, W2> second;
+
+    public IncrementalPairSketch(IncrementalTableSketch<R1, W1> first,
+                                 IncrementalTableSketch<R2, W2> second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void increment(Workspace<W1, W2> workspace, Result<R1, R2> result, int rowNumber) {
+        this.first.increment(workspace.first, Converters.checkNull(result.first), rowNumber);
+        this.second.increment(workspace.second, Converters.checkNull(result.second), rowNumber);
+    }
+
+    @Override
+    public void incrementBatch(Workspace<W1, W2> workspace, Result<R1, R2> result,
+                               int[] rows, int offset, int count) {
+        this.first.incrementBatch(workspace.first, Converters.checkNull(result.first),
+                rows, offset, count);
+        this.second.incrementBatch(workspace.second, Converters.checkNull(result.second),
+                rows, offset, count);
+    }
+
+    @Override
+    public Workspace<W1, W2> initialize(ITable data) {
+        // Load the columns of both sketches with a single call.
+        data.getLoadedColumns(this.getColumnNames());
+        return new Workspace<W1, W2>(this.first.initialize(data), this.second.initialize(data));
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        List<String> result = this.first.getColumnNames();
+        for (String c : this.second.getColumnNames())
+            if (!result.contains(c))
+                result.add(c);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public Result<R1, R2> zero() {
+        return new Result<R1, R2>(
+                Converters.checkNull(this.first.zero()),
+                Converters.checkNull(this.second.zero()));
+    }
+
+    @Nullable
+    @Override
+    public Result<R1, R2> add(@Nullable Result<R1, R2> left, @Nullable Result<R1, R2> right) {
+        Converters.checkNull(left);
+        Converters.checkNull(right);
+        return new Result<R1, R2>(
+                Converters.checkNull(this.first.add(left.first, right.first)),
+                Converters.checkNull(this.second.add(left.second, right.second)));
+    }
+
+    @Override
+    public String asString() {
+        return "Pair(" + this.first.asString() + "," + this.second.asString() + ")";
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.sketches.highorder;
+
+import org.hillview.dataset.api.IDataSet;
+import org.hillview.dataset.api.IScalable;
+import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.api.IncrementalTableSketch;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.dataset.api.TableSketch;
+import org.hillview.dataset.monoids.PartialResultMonoid;
+import org.hillview.sketches.results.Count;
+import org.hillview.sketches.results.Groups;
+import org.hillview.table.api.ISketchWorkspace;
+import org.hillview.table.api.ITable;
+import org.hillview.table.membership.DisjointSampleRowIterator;
+import org.hillview.utils.Converters;
+import org.hillview.utils.CountWithConfidence;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Runs a sketch using progressive sampling ("online aggregation"): the sketch
+ * runs first over a small sample of the data, and then over growing disjoint
+ * samples, until the result is precise enough or all the data has been scanned.
+ * The observable produced emits after each stage an estimate of the result of the
+ * sketch over the whole data; the 'deltaDone' field of these PartialResults is
+ * the cumulative sampling rate (1 for the last result), and the values are not
+ * deltas: each result replaces the previous one.
+ * @param <R>  Result produced by the sketch.
+ * @param <W>  Workspace of the sketch.
+ */
+public class ProgressiveSampler<R extends ISketchResult & IScalable<R>, W extends ISketchWorkspace> {
+    /**
+     * Sampling rate of the first stage when none is specified.
+     */
+    public static final double defaultInitialRate = 0.01;
+    /**
+     * Factor by which the sampling rate grows at each stage.
+     */
+    public static final double defaultGrowth = 4;
+
+    public final IncrementalTableSketch<R, W> sketch;
+    private final double[] rates;
+    private final long seed;
+    /**
+     * Given an estimate and the cumulative sampling rate used to compute it
+     * returns true when the estimate is precise enough.
+     */
+    private final BiPredicate<R, Double> isPrecise;
+
+    /**
+     * @param sketch     Sketch to run.
+     * @param rates      Cumulative sampling rates of the stages; see DisjointSampleRowIterator.
+     * @param seed       Seed used for sampling.
+     * @param isPrecise  Returns true when an estimate computed with a sampling rate is
+     *                   precise enough, which stops the sampling.
+     */
+    public ProgressiveSampler(IncrementalTableSketch<R, W> sketch, double[] rates, long seed,
+                              BiPredicate<R, Double> isPrecise) {
+        DisjointSampleRowIterator.checkRates(rates);
+        this.sketch = sketch;
+        this.rates = rates;
+        this.seed = seed;
+        this.isPrecise = isPrecise;
+    }
+
+    /**
+     * Cumulative sampling rates which start at initialRate and grow geometrically up to 1.
+     */
+    public static double[] geometricRates(double initialRate, double growth) {
+        Converters.checkRate(initialRate);
+        if (growth <= 1)
+            throw new IllegalArgumentException("Growth factor must be larger than 1: " + growth);
+        List<Double> rates = new ArrayList<Double>();
+        for (double r = initialRate; r < 1; r *= growth)
+            rates.add(r);
+        rates.add(1.0);
+        return rates.stream().mapToDouble(d -> d).toArray();
+    }
+
+    /**
+     * A count estimated from a uniform sample, and a confidence interval
+     * of two standard deviations around it.
+     * @param estimate  Count estimated from the sample (i.e., already rescaled).
+     * @param rate      Sampling rate.
+     */
+    public static CountWithConfidence withConfidence(long estimate, double rate) {
+        if (rate >= 1)
+            return new CountWithConfidence(estimate);
+        double sampled = estimate * rate;
+        double stdev = Math.sqrt(sampled * (1 - rate)) / rate;
+        return new CountWithConfidence(estimate, Converters.toLong(Math.ceil(2 * stdev)));
+    }
+
+    /**
+     * Precision test for histograms: the confidence interval of each bucket
+     * is at most the specified fraction of the total count.
+     * @param tolerance  Fraction of the total count.
+     */
+    public static BiPredicate<Groups<Count>, Double> histogramPrecision(double tolerance) {
+        return (groups, rate) -> {
+            long total = groups.reduce((a, c) -> a + c.count, 0L);
+            for (int i = 0; i < groups.size(); i++)
+                if (withConfidence(groups.getBucket(i).count, rate).confidence > tolerance * total)
+                    return false;
+            return withConfidence(groups.getMissing().count, rate).confidence <= tolerance * total;
+        };
+    }
+
+    /**
+     * Run the sketch over a dataset.
+     */
+    public Observable<PartialResult<R>> run(IDataSet<ITable> data) {
+        return this.stage(data, 0, Converters.checkNull(this.sketch.getZero()));
+    }
+
+    /**
+     * Run one stage of the sampling.
+     * @param data     Data sketched.
+     * @param stage    Stage to run.
+     * @param sampled  Sum of the (unscaled) results of the previous stages.
+     */
+    private Observable<PartialResult<R>> stage(IDataSet<ITable> data, int stage, R sampled) {
+        TableSketch<R> stageSketch = this.sketch.sampledStage(this.rates, stage, this.seed);
+        PartialResultMonoid<R> prm = new PartialResultMonoid<R>(stageSketch);
+        return data.sketch(stageSketch)
+                .reduce(Converters.checkNull(prm.zero()), prm::add)
+                .concatMap(pr -> {
+                    R total = Converters.checkNull(this.sketch.add(sampled, pr.deltaValue));
+                    double rate = this.rates[stage];
+                    R estimate = this.sketch.rescale(total, rate);
+                    boolean last = stage == this.rates.length - 1 ||
+                            this.isPrecise.test(estimate, rate);
+                    PartialResult<R> result = new PartialResult<R>(last ? 1.0 : rate, estimate);
+                    if (last)
+                        return Observable.just(result);
+                    return Observable.just(result).concatWith(
+                            Observable.defer(() -> this.stage(data, stage + 1, total)));
+                });
+    }
+}
@@ -26,6 +26,7 @@ import org.hillview.table.api.ISketchWorkspace;
 import org.hillview.table.api.ITable;
 
 import javax.annotation.Nullable;
+import java.util.List;
 
 /**
  * A QuantizedTableSketch runs another sketch (childSketch) over a quantized table.
@@ -50,12 +51,22 @@ public class QuantizedTableSketch<
         this.childSketch.increment(workspace, result, rowNumber);
     }
 
+    @Override
+    public void incrementBatch(SW workspace, R result, int[] rows, int offset, int count) {
+        this.childSketch.incrementBatch(workspace, result, rows, offset, count);
+    }
+
     @Override
     public SW initialize(ITable data) {
         ITable qt = new QuantizedTable(data, this.quantizationSchema);
         return this.childSketch.initialize(qt);
     }
 
+    @Override
+    public List<String> getColumnNames() {
+        return this.childSketch.getColumnNames();
+    }
+
     @Nullable
     @Override
     public R zero() {
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.sketches.highorder;
+
+import org.hillview.dataset.api.IScalable;
+import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.api.IncrementalTableSketch;
+import org.hillview.dataset.api.TableSketch;
+import org.hillview.table.api.ITable;
+import org.hillview.table.api.ISketchWorkspace;
+import org.hillview.table.membership.DisjointSampleRowIterator;
+import org.hillview.utils.Converters;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs an incremental sketch over one stage of a progressive sample of a table
+ * (see DisjointSampleRowIterator).  Unlike SamplingTableSketch the result is not
+ * rescaled: the results of stages 0 to k can be added, and the sum
+ * rescaled with the cumulative rate of stage k.
+ * @param <R>  Result produced by the original and this sketch.
+ * @param <S>  Actual sketch that will be run.
+ */
+public class SampleStageTableSketch<
+        SW extends ISketchWorkspace,
+        R extends ISketchResult & IScalable<R>,
+        S extends IncrementalTableSketch<R, SW>>
+    implements TableSketch<R> {
+    protected final double[] rates;
+    protected final int stage;
+    protected final long seed;
+    protected final S actualSketch;
+
+    /**
+     * @param rates         Cumulative sampling rates of all stages.
+     * @param stage         Stage to sketch.
+     * @param seed          Seed of the progressive sample.
+     * @param actualSketch  Sketch to run.
+     */
+    public SampleStageTableSketch(double[] rates, int stage, long seed, S actualSketch) {
+        DisjointSampleRowIterator.checkRates(rates);
+        if (stage < 0 || stage >= rates.length)
+            throw new IllegalArgumentException("Illegal stage " + stage);
+        this.rates = rates;
+        this.stage = stage;
+        this.seed = seed;
+        this.actualSketch = actualSketch;
+    }
+
+    @Override
+    public R create(@Nullable ITable data) {
+        R result = Converters.checkNull(this.actualSketch.zero());
+        SW workspace = this.actualSketch.initialize(Converters.checkNull(data));
+        DisjointSampleRowIterator it = new DisjointSampleRowIterator(
+                data.getMembershipSet(), this.rates, this.stage, this.seed);
+        this.actualSketch.incrementAll(workspace, result, it);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public R zero() {
+        return this.actualSketch.zero();
+    }
+
+    @Nullable
+    @Override
+    public R add(@Nullable R left, @Nullable R right) {
+        return this.actualSketch.add(left, right);
+    }
+}
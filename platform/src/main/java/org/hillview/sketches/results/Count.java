@@ -21,14 +21,18 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
 import org.hillview.dataset.api.IJsonSketchResult;
 import org.hillview.dataset.api.IScalable;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.utils.Converters;
 
+import java.io.IOException;
 import java.util.Objects;
 
 /**
  * Represents a count (e.g., of elements a histogram bucket).
  */
-public class Count implements IJsonSketchResult, IScalable<Count> {
+public class Count implements IJsonSketchResult, IScalable<Count>, IBinarySerializable {
     public long count;
 
     public Count() {
@@ -62,6 +66,15 @@ public class Count implements IJsonSketchResult, IScalable<Count> {
         return Objects.hash(count);
     }
 
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeLong(this.count);
+    }
+
+    public static Count readFrom(BinaryDecoder decoder) throws IOException {
+        return new Count(decoder.readLong());
+    }
+
     @Override
     public JsonElement toJsonTree() { return new JsonPrimitive(this.count); }
 
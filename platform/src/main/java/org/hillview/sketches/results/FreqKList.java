@@ -21,6 +21,9 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.*;
 import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.utils.Pair;
 import org.hillview.table.Schema;
 import org.hillview.table.rows.RowSnapshot;
@@ -29,6 +32,7 @@ import org.hillview.utils.Converters;
 import org.hillview.utils.MutableInteger;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,7 +41,7 @@ import java.util.List;
  * It stores a hash-map which contains the elements and their counts, along with counts
  * of the size of the input and the desired accuracy parameter epsilon.
  */
-public class FreqKList implements ISketchResult {
+public class FreqKList implements ISketchResult, IBinarySerializable {
     static final long serialVersionUID = 1;
     
     /**
@@ -72,6 +76,36 @@ public class FreqKList implements ISketchResult {
 
     public int getSize() { return this.hMap.size(); }
 
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeLong(this.totalRows);
+        encoder.writeDouble(this.epsilon);
+        encoder.writeInt(this.hMap.size());
+        for (Object2IntMap.Entry<RowSnapshot> e : this.hMap.object2IntEntrySet()) {
+            e.getKey().writeTo(encoder);
+            encoder.writeInt(e.getIntValue());
+        }
+    }
+
+    /**
+     * Reads the hash-map written by writeTo.
+     */
+    static Object2IntOpenHashMap<RowSnapshot> readMap(BinaryDecoder decoder) throws IOException {
+        int size = decoder.readInt();
+        Object2IntOpenHashMap<RowSnapshot> hMap = new Object2IntOpenHashMap<RowSnapshot>(size);
+        for (int i = 0; i < size; i++) {
+            RowSnapshot row = RowSnapshot.readFrom(decoder);
+            hMap.put(row, decoder.readInt());
+        }
+        return hMap;
+    }
+
+    public static FreqKList readFrom(BinaryDecoder decoder) throws IOException {
+        long totalRows = decoder.readLong();
+        double epsilon = decoder.readDouble();
+        return new FreqKList(totalRows, epsilon, readMap(decoder));
+    }
+
     /**
      * @return The list of candidate heavy hitters. Used after running an approximate algorithm
      * to get candidates for computing exact counts.
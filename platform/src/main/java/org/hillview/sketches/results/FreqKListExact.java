@@ -18,10 +18,14 @@
 package org.hillview.sketches.results;
 
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
 import org.hillview.utils.Pair;
 import org.hillview.table.Schema;
 import org.hillview.table.rows.RowSnapshot;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -68,4 +72,23 @@ public class FreqKListExact extends FreqKList {
         this.hMap.forEach((rs, j) -> this.pList.add(new Pair<RowSnapshot, Integer>(rs, j)));
         return this.sortTopK(schema);
     }
+
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        super.writeTo(encoder);
+        encoder.writeInt(this.rssList.size());
+        for (RowSnapshot row : this.rssList)
+            row.writeTo(encoder);
+    }
+
+    public static FreqKListExact readFrom(BinaryDecoder decoder) throws IOException {
+        long totalRows = decoder.readLong();
+        double epsilon = decoder.readDouble();
+        Object2IntOpenHashMap<RowSnapshot> hMap = FreqKList.readMap(decoder);
+        int size = decoder.readInt();
+        List<RowSnapshot> rssList = new ArrayList<RowSnapshot>(size);
+        for (int i = 0; i < size; i++)
+            rssList.add(RowSnapshot.readFrom(decoder));
+        return new FreqKListExact(totalRows, epsilon, hMap, rssList);
+    }
 }
@@ -18,10 +18,14 @@
 package org.hillview.sketches.results;
 
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
 import org.hillview.utils.Pair;
 import org.hillview.table.Schema;
 import org.hillview.table.rows.RowSnapshot;
 
+import java.io.IOException;
+
 /**
  * This compute the Misra-Gries sketch for finding Heavy Hitters.
  */
@@ -78,4 +82,17 @@ public class FreqKListMG extends FreqKList {
         this.hMap.forEach((rs, j) -> this.pList.add(new Pair<RowSnapshot, Integer>(rs, j)));
         return this.sortTopK(schema);
     }
+
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        super.writeTo(encoder);
+        encoder.writeInt(this.maxSize);
+    }
+
+    public static FreqKListMG readFrom(BinaryDecoder decoder) throws IOException {
+        long totalRows = decoder.readLong();
+        double epsilon = decoder.readDouble();
+        Object2IntOpenHashMap<RowSnapshot> hMap = FreqKList.readMap(decoder);
+        return new FreqKListMG(totalRows, epsilon, decoder.readInt(), hMap);
+    }
 }
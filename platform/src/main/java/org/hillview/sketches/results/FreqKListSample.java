@@ -20,11 +20,15 @@ package org.hillview.sketches.results;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
 import org.hillview.utils.Pair;
 import org.hillview.table.Schema;
 import org.hillview.table.rows.RowSnapshot;
 import org.hillview.utils.Converters;
 
+import java.io.IOException;
+
 /**
  * A subclass of FreqKList that is used by the Sample Heavy Hitters Sketch.
  */
@@ -68,4 +72,17 @@ public class FreqKListSample extends FreqKList {
                     ((double) this.totalRows)/this.sampleSize));
         }
     }
+
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        super.writeTo(encoder);
+        encoder.writeInt(this.sampleSize);
+    }
+
+    public static FreqKListSample readFrom(BinaryDecoder decoder) throws IOException {
+        long totalRows = decoder.readLong();
+        double epsilon = decoder.readDouble();
+        Object2IntOpenHashMap<RowSnapshot> hMap = FreqKList.readMap(decoder);
+        return new FreqKListSample(totalRows, epsilon, decoder.readInt(), hMap);
+    }
 }
@@ -20,11 +20,15 @@ package org.hillview.sketches.results;
 import org.hillview.dataset.api.IJsonSketchResult;
 import org.hillview.dataset.api.IScalable;
 import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.utils.IGroup;
 import org.hillview.utils.JsonGroups;
 import org.hillview.utils.JsonList;
 import org.hillview.utils.Linq;
 
+import java.io.IOException;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -37,7 +41,7 @@ import java.util.function.Function;
  * @param <R>  Type of sketch result that is grouped.
  */
 public class Groups<R extends ISketchResult & IScalable<R>>
-        implements ISketchResult, IScalable<Groups<R>>, IGroup<R> {
+        implements ISketchResult, IScalable<Groups<R>>, IGroup<R>, IBinarySerializable {
     /**
      * For each bucket one result.
      */
@@ -89,6 +93,24 @@ public class Groups<R extends ISketchResult & IScalable<R>>
                 this.outOfRange.equals(groups.outOfRange) */;
     }
 
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeInt(this.perBucket.size());
+        for (R r : this.perBucket)
+            encoder.writeObject(r);
+        encoder.writeObject(this.perMissing);
+    }
+
+    public static <R extends ISketchResult & IScalable<R>> Groups<R> readFrom(
+            BinaryDecoder decoder) throws IOException {
+        int size = decoder.readInt();
+        JsonList<R> perBucket = new JsonList<R>(size);
+        for (int i = 0; i < size; i++)
+            perBucket.add(decoder.readObject());
+        R missing = decoder.readObject();
+        return new Groups<R>(perBucket, missing);
+    }
+
     public Groups<R> rescale(double samplingRate) {
         return this.map(r -> r.rescale(samplingRate));
     }
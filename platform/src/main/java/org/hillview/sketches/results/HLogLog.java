@@ -20,18 +20,23 @@ package org.hillview.sketches.results;
 import net.openhft.hashing.LongHashFunction;
 
 import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.table.api.IColumn;
 import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.IRowIterator;
 import org.hillview.utils.Converters;
 import org.hillview.utils.CountWithConfidence;
 
+import java.io.IOException;
+
 /**
  * A class that computes an approximation of the number of distinct elements in a column. Elements
  * are identified via their hashcode. The class uses the HyperLogLog algorithm for large estimates
  * and LinearCounting algorithm for small estimates.
  */
-public class HLogLog implements ISketchResult {
+public class HLogLog implements ISketchResult, IBinarySerializable {
     private static final long serialVersionUID = 1L;
     private final int regNum; // number of registers
     private final int logRegNum;
@@ -138,4 +143,24 @@ public class HLogLog implements ISketchResult {
     public CountWithConfidence getCount() {
         return new CountWithConfidence(this.distinctItemCount, this.confidence);
     }
+
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeInt(this.logRegNum);
+        encoder.writeLong(this.seed);
+        encoder.writeLong(this.distinctItemCount);
+        encoder.writeBytes(this.registers);
+    }
+
+    public static HLogLog readFrom(BinaryDecoder decoder) throws IOException {
+        int logRegNum = decoder.readInt();
+        long seed = decoder.readLong();
+        HLogLog result = new HLogLog(logRegNum, seed);
+        result.distinctItemCount = decoder.readLong();
+        byte[] registers = decoder.readBytes();
+        if (registers.length != result.regNum)
+            throw new RuntimeException("Mismatched number of registers");
+        System.arraycopy(registers, 0, result.registers, 0, registers.length);
+        return result;
+    }
 }
@@ -20,9 +20,13 @@ package org.hillview.sketches.results;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.ints.IntLists;
 import org.hillview.dataset.api.IJsonSketchResult;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.table.AggregateDescription;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.Schema;
@@ -33,13 +37,14 @@ import org.hillview.table.rows.RowSnapshot;
 import org.hillview.table.rows.VirtualRowSnapshot;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.List;
 
 /**
  * The data structure used to store the next K rows in a Table from a given starting point (topRow)
  * according to a RecordSortOrder.
  */
-public class NextKList implements IJsonSketchResult {
+public class NextKList implements IJsonSketchResult, IBinarySerializable {
     static final long serialVersionUID = 1;
     
     /**
@@ -100,6 +105,29 @@ public class NextKList implements IJsonSketchResult {
         return this.rows.getNumOfRows() == 0;
     }
 
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeObject(this.rows);
+        encoder.writeObject(this.aggregates);
+        encoder.writeInt(this.count.size());
+        for (int i = 0; i < this.count.size(); i++)
+            encoder.writeInt(this.count.getInt(i));
+        encoder.writeLong(this.startPosition);
+        encoder.writeLong(this.rowsScanned);
+    }
+
+    public static NextKList readFrom(BinaryDecoder decoder) throws IOException {
+        SmallTable rows = decoder.readObject();
+        SmallTable aggregates = decoder.readObject();
+        int size = decoder.readInt();
+        IntList count = new IntArrayList(size);
+        for (int i = 0; i < size; i++)
+            count.add(decoder.readInt());
+        long position = decoder.readLong();
+        long rowsScanned = decoder.readLong();
+        return new NextKList(rows, aggregates, count, position, rowsScanned);
+    }
+
     // Computes a schema suitable for the columns in aggregates.
     // This schema is never displayed to the user, so it's not very important.
     public static Schema getSchema(AggregateDescription[] aggregates) {
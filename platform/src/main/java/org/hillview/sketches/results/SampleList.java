@@ -18,16 +18,21 @@
 package org.hillview.sketches.results;
 
 import org.hillview.dataset.api.ISketchResult;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.table.ArrayRowOrder;
 import org.hillview.table.rows.RowSnapshot;
 import org.hillview.table.SmallTable;
 import org.hillview.utils.Converters;
 
+import java.io.IOException;
+
 /**
  * A sample of rows from a large table, stored in a small table. The expectation is that the rows
  * are sorted according to some order (this is needed for the getRow method to be meaningful).
  */
-public class SampleList implements ISketchResult {
+public class SampleList implements ISketchResult, IBinarySerializable {
     static final long serialVersionUID = 1;
     
     /**
@@ -39,6 +44,15 @@ public class SampleList implements ISketchResult {
         this.table = table;
     }
 
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        this.table.writeTo(encoder);
+    }
+
+    public static SampleList readFrom(BinaryDecoder decoder) throws IOException {
+        return new SampleList(SmallTable.readFrom(decoder));
+    }
+
     /**
      * @param q in (0,1), which is the desired quantile.
      * @return Assuming the rows are sorted, this method returns the empirical p^th quantile as an
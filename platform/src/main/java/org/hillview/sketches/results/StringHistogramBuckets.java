@@ -18,6 +18,9 @@
 package org.hillview.sketches.results;
 
 import org.hillview.table.api.IColumn;
+import org.hillview.table.columns.DictionaryStringColumn;
+
+import java.util.Arrays;
 
 /**
  * Left endpoints for string buckets.
@@ -41,4 +44,32 @@ public class StringHistogramBuckets extends ExplicitHistogramBuckets<String> {
             return -1;
         return this.indexOf(item);
     }
+
+    /**
+     * Compute the bucket of every value in the dictionary of a column,
+     * so that the bucket of a row can be found from its code.
+     * Since the dictionary is sorted only the boundaries need to be looked up.
+     * @param column  A column encoded with a sorted dictionary.
+     * @return        An array indexed with the codes of the column; each element has the
+     *                same value that indexOf would return for the corresponding string.
+     */
+    public int[] codeIndexes(DictionaryStringColumn column) {
+        int codes = column.getDictionarySize();
+        int[] result = new int[codes];
+        int bucketCount = this.getBucketCount();
+        // Codes below the first boundary are outside all buckets.
+        int first = column.search(this.leftBoundaries[0], true);
+        Arrays.fill(result, 0, first, -1);
+        int start = first;
+        for (int i = 0; i < bucketCount; i++) {
+            int end = i + 1 < bucketCount ? column.search(this.leftBoundaries[i + 1], true) : codes;
+            Arrays.fill(result, start, end, i);
+            start = end;
+        }
+        if (this.maxValue != null) {
+            int above = column.search(this.maxValue, false);
+            Arrays.fill(result, Math.max(above, first), codes, bucketCount);
+        }
+        return result;
+    }
 }
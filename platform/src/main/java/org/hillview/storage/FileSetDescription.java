@@ -20,6 +20,7 @@ package org.hillview.storage;
 import org.hillview.table.LazySchema;
 import org.hillview.dataset.api.IJson;
 import org.hillview.table.Schema;
+import org.hillview.table.Table;
 import org.hillview.table.api.ITable;
 import org.hillview.utils.Converters;
 import org.hillview.utils.HillviewLogger;
@@ -85,6 +86,10 @@ public class FileSetDescription implements IJson {
      * useful for temporary files.
      */
     public boolean deleteAfterLoading;
+    /**
+     * If true the column data is stored outside the Java heap.
+     */
+    public boolean offHeap;
     /**
      * Actual name of the dataset.
      */
@@ -175,6 +180,8 @@ public class FileSetDescription implements IJson {
                             "Unexpected file kind " + FileSetDescription.this.fileKind);
             }
             ITable result = Converters.checkNull(loader.load());
+            if (FileSetDescription.this.offHeap && result instanceof Table)
+                result = ((Table)result).toOffHeap();
             if (FileSetDescription.this.deleteAfterLoading) {
                 File file = new File(this.pathname);
                 boolean success = file.delete();
@@ -192,5 +199,38 @@ public class FileSetDescription implements IJson {
                 return file.length();
             return 0;
         }
+
+        @Override
+        public String getPathname() {
+            return this.pathname;
+        }
+
+        /**
+         * Only text files are cached, since they are expensive to parse;
+         * the other formats are already columnar.
+         */
+        @Nullable
+        @Override
+        public String getCacheKey() {
+            FileSetDescription desc = FileSetDescription.this;
+            if (desc.deleteAfterLoading)
+                return null;
+            switch (desc.fileKind) {
+                case "orc":
+                case "parquet":
+                    return null;
+                default:
+                    break;
+            }
+            File file = new File(this.pathname);
+            if (!file.exists())
+                return null;
+            return String.join("|", file.getAbsolutePath(), Long.toString(file.length()),
+                    Long.toString(file.lastModified()), desc.fileKind,
+                    Boolean.toString(desc.headerRow), String.valueOf(desc.schemaFile),
+                    desc.schema == null ? "" : desc.schema.toJson(),
+                    String.valueOf(desc.logFormat), String.valueOf(desc.startTime),
+                    String.valueOf(desc.endTime));
+        }
     }
 }
@@ -19,6 +19,8 @@ package org.hillview.storage;
 
 import org.hillview.table.api.ITable;
 
+import javax.annotation.Nullable;
+
 /**
  * This class holds a reference to a "file" from some external storage medium.
  * This class can read the data in the file into an ITable using the load method.
@@ -34,4 +36,22 @@ public interface IFileReference {
      * The size of the file in bytes.
      */
     long getSizeInBytes();
+
+    /**
+     * A key which identifies the contents of the file and the way it is loaded,
+     * used to cache the loaded table in the NativeColumnCache.
+     * @return The key, or null if the table loaded should not be cached.
+     */
+    @Nullable
+    default String getCacheKey() {
+        return null;
+    }
+
+    /**
+     * The name of the file, if it is a local file.
+     */
+    @Nullable
+    default String getPathname() {
+        return null;
+    }
 }
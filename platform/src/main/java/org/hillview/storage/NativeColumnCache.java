@@ -0,0 +1,567 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.storage;
+
+import com.google.common.hash.Hashing;
+import org.hillview.dataset.api.IJson;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Schema;
+import org.hillview.table.Table;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.ITable;
+import org.hillview.table.columns.*;
+import org.hillview.utils.Converters;
+import org.hillview.utils.ExecutorUtils;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the tables loaded from files, in a native binary columnar format.
+ * After a file is parsed the table is written in the background to a directory
+ * of the cache; later loads of the same file memory-map the column files and
+ * wrap them in off-heap columns without parsing or copying the data.
+ * Each cached table is a directory, named by a hash of the cache key, containing:
+ * - header: format version, byte order, cache key, and number of rows.
+ * - schema.json: the table schema.
+ * - one file i.col for each column i: the length of the missing value bitmap
+ *   (0 if no values are missing), the bitmap, and then the values in native byte order.
+ *   String columns store dictionary codes, and have an additional file i.dict
+ *   with the value of each code.
+ * The cache key identifies the file contents (path, size, modification time) and
+ * the way it was parsed; a changed file gets a new key.
+ * The cache is disabled until a directory is set.  The total size of the cache is
+ * bounded: when it grows above the limit the least recently used tables are deleted;
+ * the modification time of the header records the last use of a table.  Several
+ * processes can share a cache directory: each table is written to a directory with
+ * a unique temporary name, which is then atomically renamed.
+ */
+public class NativeColumnCache {
+    public static final NativeColumnCache instance = new NativeColumnCache();
+
+    private static final int MAGIC = 0x48564343;  // HVCC
+    private static final int VERSION = 1;
+    private static final String HEADER = "header";
+    private static final String SCHEMA = "schema.json";
+    private static final String TMP_SUFFIX = ".tmp";
+    /**
+     * Temporary directories older than this were left behind by a process which died.
+     */
+    private static final long STALE_TMP_MILLISECONDS = 24 * 3600 * 1000;
+    /**
+     * Default bound on the total size of the cache.
+     */
+    public static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024 * 1024;
+
+    /**
+     * Directory holding the cached tables; if null caching is disabled.
+     */
+    @Nullable
+    private volatile File directory;
+    /**
+     * Bound on the total size of the files in the cache directory.
+     */
+    private volatile long maxBytes;
+    private final ExecutorService writer =
+            ExecutorUtils.newNamedThreadPool("column-cache", 1, -1);
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private NativeColumnCache() {
+        this.directory = null;
+        this.maxBytes = DEFAULT_MAX_BYTES;
+    }
+
+    /**
+     * Set the directory holding the cached tables.
+     * @param directory  Directory; if null caching is disabled.
+     */
+    public void setDirectory(@Nullable File directory) {
+        this.directory = directory;
+    }
+
+    @Nullable
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Set the bound on the total size of the cache.
+     * @param maxBytes  Maximum number of bytes used by the cached tables.
+     */
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return this.directory != null;
+    }
+
+    @Nullable
+    private File tableDirectory(String key) {
+        File dir = this.directory;
+        if (dir == null)
+            return null;
+        String name = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).toString();
+        return new File(dir, name);
+    }
+
+    /**
+     * Open a cached table.
+     * @param key         Cache key of the file.
+     * @param sourceFile  Name of the file the table was loaded from.
+     * @return            The table, or null if it is not in the cache.
+     */
+    @Nullable
+    public ITable open(String key, @Nullable String sourceFile) {
+        File dir = this.tableDirectory(key);
+        if (dir == null || !dir.isDirectory())
+            return null;
+        try {
+            ITable result = read(dir, key, sourceFile);
+            if (result != null) {
+                // Record the use, for the eviction of the least recently used tables.
+                if (!new File(dir, HEADER).setLastModified(System.currentTimeMillis()))
+                    HillviewLogger.instance.warn("Cannot update time", "{0}", dir);
+                this.hits.incrementAndGet();
+                HillviewLogger.instance.info("Opened cached table", "{0} from {1}", sourceFile, dir);
+            }
+            return result;
+        } catch (IOException ex) {
+            HillviewLogger.instance.error("Cannot read cached table", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Write a table to the cache in the background.  Tables which are not fully loaded,
+     * or which contain columns of kinds without a native representation, are not cached.
+     * @param key    Cache key of the file.
+     * @param table  Table loaded from the file.
+     * @return       A future which completes when the table is written,
+     *               or null if the table is not cached.
+     */
+    @Nullable
+    public Future<?> write(String key, ITable table) {
+        File dir = this.tableDirectory(key);
+        if (dir == null || !canWrite(table))
+            return null;
+        return this.writer.submit(() -> {
+            // Another process may have cached the same table.
+            if (new File(dir, HEADER).exists())
+                return;
+            File tmp = temporary(dir);
+            try {
+                if (!tmp.mkdirs())
+                    throw new IOException("Cannot create " + tmp);
+                write(tmp, key, table);
+                if (dir.exists() && !new File(dir, HEADER).exists()) {
+                    // An incomplete table, e.g., left behind by a crash.
+                    File old = temporary(dir);
+                    if (dir.renameTo(old))
+                        deleteDirectory(old);
+                }
+                try {
+                    Files.move(tmp.toPath(), dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    if (!new File(dir, HEADER).exists())
+                        throw ex;
+                    // Another process has written the table in the meantime.
+                    deleteDirectory(tmp);
+                    return;
+                }
+                this.writes.incrementAndGet();
+                HillviewLogger.instance.info("Cached table", "{0} in {1}",
+                        table.getSourceFile(), dir);
+                this.evict(Converters.checkNull(dir.getParentFile()));
+            } catch (IOException ex) {
+                HillviewLogger.instance.error("Cannot cache table", ex);
+                deleteDirectory(tmp);
+            }
+        });
+    }
+
+    /**
+     * A fresh name for a temporary directory used to write or delete a table directory.
+     */
+    private static File temporary(File dir) {
+        return new File(dir.getPath() + "." + UUID.randomUUID() + TMP_SUFFIX);
+    }
+
+    /**
+     * Size in bytes of the files in a directory.
+     */
+    private static long size(File dir) {
+        long result = 0;
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                result += f.length();
+        return result;
+    }
+
+    /**
+     * Delete the least recently used tables until the cache fits in maxBytes.
+     * Also delete the temporary directories left behind by processes which died.
+     * @param root  Directory of the cache.
+     */
+    private void evict(File root) {
+        File[] entries = root.listFiles(File::isDirectory);
+        if (entries == null)
+            return;
+        long now = System.currentTimeMillis();
+        long total = 0;
+        List<File> tables = new ArrayList<File>();
+        HashMap<File, Long> lastUse = new HashMap<File, Long>();
+        for (File e : entries) {
+            if (e.getName().endsWith(TMP_SUFFIX)) {
+                if (now - e.lastModified() > STALE_TMP_MILLISECONDS)
+                    deleteDirectory(e);
+                continue;
+            }
+            File header = new File(e, HEADER);
+            lastUse.put(e, header.exists() ? header.lastModified() : e.lastModified());
+            tables.add(e);
+            total += size(e);
+        }
+        long max = this.maxBytes;
+        if (total <= max)
+            return;
+        tables.sort(Comparator.comparingLong(lastUse::get));
+        int evicted = 0;
+        for (File e : tables) {
+            if (total <= max)
+                break;
+            long size = size(e);
+            // Rename first, so that other processes never see a partly deleted table.
+            File tmp = temporary(e);
+            if (!e.renameTo(tmp))
+                continue;
+            deleteDirectory(tmp);
+            total -= size;
+            evicted++;
+        }
+        this.evictions.addAndGet(evicted);
+        HillviewLogger.instance.info("Evicted cached tables", "{0} tables, {1} bytes left",
+                evicted, total);
+    }
+
+    private static boolean canWrite(ITable table) {
+        if (table.getMembershipSet().getSize() != table.getMembershipSet().getMax() ||
+                table.getSchema().getColumnCount() == 0)
+            return false;
+        for (IColumn c : table.getColumns(table.getSchema())) {
+            if (!c.isLoaded() || c.getKind() == ContentsKind.Interval)
+                return false;
+        }
+        return true;
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                if (!f.delete())
+                    HillviewLogger.instance.warn("Cannot delete file", "{0}", f);
+        if (dir.exists() && !dir.delete())
+            HillviewLogger.instance.warn("Cannot delete directory", "{0}", dir);
+    }
+
+    /**
+     * Writes values in native byte order to a file channel.
+     */
+    private static class ColumnWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        ColumnWriter(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.nativeOrder());
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (this.buffer.remaining() < bytes)
+                this.flush();
+        }
+
+        private void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining())
+                this.channel.write(this.buffer);
+            this.buffer.clear();
+        }
+
+        void putLong(long value) throws IOException {
+            this.ensure(8);
+            this.buffer.putLong(value);
+        }
+
+        void putInt(int value) throws IOException {
+            this.ensure(4);
+            this.buffer.putInt(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            this.ensure(8);
+            this.buffer.putDouble(value);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.flush();
+            this.channel.close();
+        }
+    }
+
+    private static boolean hasMissing(IColumn col, int rows) {
+        for (int i = 0; i < rows; i++)
+            if (col.isMissing(i))
+                return true;
+        return false;
+    }
+
+    private static void writeMissing(IColumn col, int rows, ColumnWriter out) throws IOException {
+        if (!hasMissing(col, rows)) {
+            out.putLong(0);
+            return;
+        }
+        int words = (rows + 63) >>> 6;
+        out.putLong((long)words << 3);
+        for (int w = 0; w < words; w++) {
+            long word = 0;
+            for (int i = w << 6; i < Math.min(rows, (w + 1) << 6); i++)
+                if (col.isMissing(i))
+                    word |= 1L << i;
+            out.putLong(word);
+        }
+    }
+
+    private static void write(File dir, String key, ITable table) throws IOException {
+        int rows = table.getNumOfRows();
+        Schema schema = table.getSchema();
+        schema.writeToJsonFile(new File(dir, SCHEMA).toPath());
+        List<String> names = schema.getColumnNames();
+        for (int c = 0; c < names.size(); c++) {
+            IColumn col = table.getLoadedColumn(names.get(c));
+            switch (col.getKind()) {
+                case None:
+                    break;
+                case Integer:
+                    try (ColumnWriter out = new ColumnWriter(new File(dir, c + ".col"))) {
+                        writeMissing(col, rows, out);
+                        for (int i = 0; i < rows; i++)
+                            out.putInt(col.isMissing(i) ? 0 : col.getInt(i));
+                    }
+                    break;
+                case Json:
+                case String: {
+                    HashMap<String, Integer> codes = new HashMap<String, Integer>();
+                    List<String> dictionary = new ArrayList<String>();
+                    try (ColumnWriter out = new ColumnWriter(new File(dir, c + ".col"))) {
+                        out.putLong(0);
+                        for (int i = 0; i < rows; i++) {
+                            String s = col.getString(i);
+                            Integer code = codes.get(s);
+                            if (code == null) {
+                                code = dictionary.size();
+                                codes.put(s, code);
+                                dictionary.add(s);
+                            }
+                            out.putInt(code);
+                        }
+                    }
+                    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(new File(dir, c + ".dict"))))) {
+                        out.writeInt(dictionary.size());
+                        for (String s : dictionary) {
+                            if (s == null) {
+                                out.writeInt(-1);
+                            } else {
+                                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                                out.writeInt(bytes.length);
+                                out.write(bytes);
+                            }
+                        }
+                    }
+                    break;
+                }
+                default:
+                    try (ColumnWriter out = new ColumnWriter(new File(dir, c + ".col"))) {
+                        writeMissing(col, rows, out);
+                        for (int i = 0; i < rows; i++)
+                            out.putDouble(col.isMissing(i) ? 0 : col.getDouble(i));
+                    }
+                    break;
+            }
+        }
+        // The header is written last: a directory with a header is complete.
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(dir, HEADER))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(keyBytes.length);
+            out.write(keyBytes);
+            out.writeInt(rows);
+        }
+    }
+
+    /**
+     * Memory-map the buffers of a column file.
+     * @param logBytesPerRow  Log base 2 of the size of a value.
+     * @param missing         The missing value bitmap is stored here; null if there is none.
+     * @return                The data chunks.
+     */
+    private static ByteBuffer[] map(File file, int rows, int logBytesPerRow,
+                                    ByteBuffer[] missing) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+            while (lengthBuffer.hasRemaining())
+                if (channel.read(lengthBuffer) < 0)
+                    throw new EOFException(file.toString());
+            long missingLength = lengthBuffer.getLong(0);
+            long position = 8;
+            missing[0] = null;
+            if (missingLength > 0) {
+                missing[0] = channel.map(FileChannel.MapMode.READ_ONLY, position, missingLength)
+                        .order(ByteOrder.nativeOrder());
+                position += missingLength;
+            }
+            ByteBuffer[] chunks = new ByteBuffer[OffHeapColumn.chunkCount(rows)];
+            for (int i = 0; i < chunks.length; i++) {
+                int chunkRows = Math.min(rows - (i << OffHeapColumn.LogChunkRows),
+                        1 << OffHeapColumn.LogChunkRows);
+                long length = (long)chunkRows << logBytesPerRow;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                        .order(ByteOrder.nativeOrder());
+                position += length;
+            }
+            if (position != channel.size())
+                throw new IOException("Unexpected size of " + file + ": " + channel.size());
+            return chunks;
+        }
+    }
+
+    private static List<String> readDictionary(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            int count = in.readInt();
+            List<String> result = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                int length = in.readInt();
+                if (length < 0) {
+                    result.add(null);
+                } else {
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    result.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+            return result;
+        }
+    }
+
+    @Nullable
+    private static ITable read(File dir, String key, @Nullable String sourceFile) throws IOException {
+        File header = new File(dir, HEADER);
+        if (!header.exists())
+            return null;
+        int rows;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(header)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            boolean littleEndian = in.readBoolean();
+            if (littleEndian != (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN))
+                return null;
+            byte[] keyBytes = new byte[in.readInt()];
+            in.readFully(keyBytes);
+            if (!key.equals(new String(keyBytes, StandardCharsets.UTF_8)))
+                return null;
+            rows = in.readInt();
+        }
+        Path schemaFile = new File(dir, SCHEMA).toPath();
+        Schema schema = IJson.gsonInstance.fromJson(
+                new String(Files.readAllBytes(schemaFile), StandardCharsets.UTF_8), Schema.class);
+        List<IColumn> columns = new ArrayList<IColumn>();
+        ByteBuffer[] missing = new ByteBuffer[1];
+        int c = 0;
+        for (ColumnDescription desc : schema.getColumnDescriptions()) {
+            File file = new File(dir, c + ".col");
+            switch (desc.kind) {
+                case None:
+                    columns.add(new EmptyColumn(desc, rows));
+                    break;
+                case Integer: {
+                    ByteBuffer[] chunks = map(file, rows, 2, missing);
+                    columns.add(new OffHeapIntColumn(desc, rows, chunks, missing[0]));
+                    break;
+                }
+                case Json:
+                case String: {
+                    ByteBuffer[] chunks = map(file, rows, 2, missing);
+                    List<String> dictionary = readDictionary(new File(dir, c + ".dict"));
+                    columns.add(new OffHeapStringColumn(desc, rows, chunks, dictionary));
+                    break;
+                }
+                case Interval:
+                    throw new IOException("Unexpected column kind " + desc.kind);
+                default: {
+                    ByteBuffer[] chunks = map(file, rows, 3, missing);
+                    columns.add(new OffHeapDoubleColumn(desc, rows, chunks, missing[0]));
+                    break;
+                }
+            }
+            c++;
+        }
+        return new Table(columns, sourceFile, null);
+    }
+
+    public String getStatistics() {
+        return "Cached tables written: " + this.writes.get() + ", opened: " + this.hits.get() +
+                ", evicted: " + this.evictions.get();
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table;
+
+import com.google.common.collect.MapMaker;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.columns.CompressedIntColumn;
+import org.hillview.table.columns.DictionaryStringColumn;
+import org.hillview.table.columns.OffHeapColumn;
+import org.hillview.utils.HillviewLogger;
+
+import javax.annotation.Nullable;
+import javax.management.NotificationEmitter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the memory held by the columns which tables have loaded lazily
+ * through their column loaders.  When the live data in the tenured heap grows above
+ * a high watermark the least recently used columns are evicted: the tables holding
+ * them get back a LazyColumn, which is loaded again on the next access.  Eviction
+ * runs until the estimated memory of the evicted columns brings the live data below
+ * a low watermark.  The live data is the usage of the tenured memory pool measured
+ * after its last garbage collection, so uncollected garbage does not cause evictions;
+ * the garbage collector also notifies the manager when it exceeds the high watermark.
+ * Eviction is disabled by default; see setWatermarks.
+ * Columns are not kept alive by the manager: it only holds weak references.
+ * Eviction happens on a separate thread, which never holds more than one table lock.
+ */
+public class ColumnMemoryManager {
+    public static final ColumnMemoryManager instance = new ColumnMemoryManager();
+
+    /**
+     * Eviction starts when the live data is above this fraction of the tenured pool.
+     * If zero eviction is disabled.
+     */
+    private static volatile double highWatermark = 0;
+    /**
+     * Eviction stops when the live data is estimated to be below this fraction
+     * of the tenured pool.
+     */
+    private static volatile double lowWatermark = 0;
+    /**
+     * The heap pool holding long-lived objects, whose usage after collection is
+     * monitored; null if the garbage collector does not provide one.
+     */
+    @Nullable
+    private static final MemoryPoolMXBean tenured = findTenuredPool();
+
+    /**
+     * A table which holds a loaded column under a specific name.
+     */
+    private static class Holder {
+        final WeakReference<Table> table;
+        final String name;
+
+        Holder(Table table, String name) {
+            this.table = new WeakReference<Table>(table);
+            this.name = name;
+        }
+    }
+
+    /**
+     * Information about a loaded column.
+     */
+    private static class Entry {
+        final WeakReference<IColumn> column;
+        final long bytes;
+        final List<Holder> holders;
+        volatile long lastAccess;
+
+        Entry(IColumn column, long bytes) {
+            this.column = new WeakReference<IColumn>(column);
+            this.bytes = bytes;
+            this.holders = new ArrayList<Holder>();
+        }
+    }
+
+    /**
+     * Loaded columns, indexed by column identity.
+     */
+    private final ConcurrentMap<IColumn, Entry> loaded;
+    /**
+     * Logical clock used to order accesses.
+     */
+    private final AtomicLong clock;
+    private final AtomicLong evictions;
+    private final AtomicLong evictedBytes;
+    private final AtomicBoolean evictionPending;
+    /**
+     * Number of collections of the tenured pool when the last eviction started.
+     * The usage after collection does not reflect an eviction until the pool
+     * is collected again, so no other eviction starts before then.
+     */
+    private final AtomicLong lastEvictionCollections;
+    private final ExecutorService evictor;
+
+    private ColumnMemoryManager() {
+        this.loaded = new MapMaker().weakKeys().makeMap();
+        this.clock = new AtomicLong();
+        this.evictions = new AtomicLong();
+        this.evictedBytes = new AtomicLong();
+        this.evictionPending = new AtomicBoolean();
+        this.lastEvictionCollections = new AtomicLong(-1);
+        this.evictor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "column-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        NotificationEmitter emitter = (NotificationEmitter)ManagementFactory.getMemoryMXBean();
+        emitter.addNotificationListener((notification, handback) -> {
+            if (notification.getType().equals(
+                    MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED))
+                this.checkPressure();
+        }, null, null);
+    }
+
+    /**
+     * The heap pool of the old generation: the heap pool which supports both
+     * usage and collection usage thresholds.
+     */
+    @Nullable
+    private static MemoryPoolMXBean findTenuredPool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() &&
+                    pool.isCollectionUsageThresholdSupported())
+                return pool;
+        }
+        HillviewLogger.instance.warn("No tenured memory pool; column eviction is disabled");
+        return null;
+    }
+
+    /**
+     * @return The number of collections performed by the collectors of a pool.
+     */
+    private static long collections(MemoryPoolMXBean pool) {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            for (String name : gc.getMemoryPoolNames()) {
+                if (name.equals(pool.getName())) {
+                    result += gc.getCollectionCount();
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The maximum size of the tenured pool.
+     */
+    private static long tenuredMax(MemoryPoolMXBean pool) {
+        long max = pool.getUsage().getMax();
+        return max > 0 ? max : Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Set the watermarks which control eviction, as fractions of the tenured pool.
+     * @param high  Fraction of the tenured pool above which eviction starts;
+     *              if zero eviction is disabled.
+     * @param low   Fraction of the tenured pool at which eviction stops.
+     */
+    public static void setWatermarks(double high, double low) {
+        if (high < 0 || high > 1 || low < 0 || low > high)
+            throw new IllegalArgumentException("Illegal watermarks: " + high + ", " + low);
+        ColumnMemoryManager.lowWatermark = low;
+        ColumnMemoryManager.highWatermark = high;
+        MemoryPoolMXBean pool = ColumnMemoryManager.tenured;
+        if (pool != null)
+            // A zero threshold disables the notifications.
+            pool.setCollectionUsageThreshold((long)(high * tenuredMax(pool)));
+    }
+
+    public static boolean isEnabled() {
+        return ColumnMemoryManager.highWatermark > 0 && ColumnMemoryManager.tenured != null;
+    }
+
+    /**
+     * Estimated number of bytes used by the data of a column.
+     */
+    static long estimateBytes(IColumn column) {
+        if (column instanceof CompressedIntColumn)
+            return ((CompressedIntColumn)column).sizeInBytes();
+        if (column instanceof DictionaryStringColumn)
+            return ((DictionaryStringColumn)column).sizeInBytes();
+        long rows = column.sizeInRows();
+        long perRow;
+        switch (column.getKind()) {
+            case Integer:
+                perRow = 4;
+                break;
+            case Json:
+            case String:
+                // An index in the dictionary, plus an amortized share of the dictionary.
+                perRow = 8;
+                break;
+            case Interval:
+                perRow = 16;
+                break;
+            case None:
+                perRow = 0;
+                break;
+            default:
+                perRow = 8;
+                break;
+        }
+        // Missing bit vector.
+        return rows * perRow + rows / 8;
+    }
+
+    /**
+     * Start tracking a column produced by a column loader.
+     * Only such columns can be evicted, since the loader can build them again.
+     * @param column  Column loaded.
+     */
+    void register(IColumn column) {
+        if (column instanceof OffHeapColumn)
+            // Does not use the heap
+            return;
+        this.loaded.putIfAbsent(column, new Entry(column, estimateBytes(column)));
+    }
+
+    /**
+     * Record that a table has accessed a loaded column.  Columns which
+     * have not been registered are ignored.
+     * @param table   Table which holds the column.
+     * @param column  Loaded column.
+     */
+    void touch(Table table, IColumn column) {
+        Entry entry = this.loaded.get(column);
+        if (entry == null)
+            return;
+        entry.lastAccess = this.clock.incrementAndGet();
+        synchronized (entry.holders) {
+            boolean found = false;
+            Iterator<Holder> it = entry.holders.iterator();
+            while (it.hasNext()) {
+                Table t = it.next().table.get();
+                if (t == null)
+                    // The table has been garbage-collected
+                    it.remove();
+                else if (t == table)
+                    found = true;
+            }
+            if (!found)
+                entry.holders.add(new Holder(table, column.getName()));
+        }
+    }
+
+    /**
+     * Start an eviction in the background if the live data in the tenured pool,
+     * as measured after its last collection, is above the high watermark.
+     */
+    void checkPressure() {
+        double high = ColumnMemoryManager.highWatermark;
+        MemoryPoolMXBean pool = ColumnMemoryManager.tenured;
+        if (high <= 0 || pool == null)
+            return;
+        MemoryUsage usage = pool.getCollectionUsage();
+        if (usage == null)
+            return;
+        long max = tenuredMax(pool);
+        long used = usage.getUsed();
+        if (used < high * max)
+            return;
+        if (!this.evictionPending.compareAndSet(false, true))
+            return;
+        long count = collections(pool);
+        if (count == this.lastEvictionCollections.get()) {
+            // The usage was measured before the last eviction.
+            this.evictionPending.set(false);
+            return;
+        }
+        this.lastEvictionCollections.set(count);
+        long toFree = used - (long)(ColumnMemoryManager.lowWatermark * max);
+        this.evictor.execute(() -> {
+            try {
+                this.evict(toFree);
+            } finally {
+                this.evictionPending.set(false);
+            }
+        });
+    }
+
+    /**
+     * Evict least recently used columns until their estimated size reaches
+     * the specified number of bytes.  The caller must not hold any table locks.
+     * @param bytes  Number of bytes to free.
+     * @return       The estimated number of bytes freed.
+     */
+    public long evict(long bytes) {
+        List<Entry> entries = new ArrayList<Entry>(this.loaded.values());
+        entries.sort(Comparator.comparingLong(e -> e.lastAccess));
+        long freed = 0;
+        int columns = 0;
+        for (Entry e : entries) {
+            if (freed >= bytes)
+                break;
+            IColumn column = e.column.get();
+            if (column == null)
+                continue;
+            List<Holder> holders;
+            synchronized (e.holders) {
+                holders = new ArrayList<Holder>(e.holders);
+                e.holders.clear();
+            }
+            for (Holder h : holders) {
+                Table table = h.table.get();
+                if (table != null)
+                    table.evictColumn(h.name, column);
+            }
+            this.loaded.remove(column);
+            freed += e.bytes;
+            columns++;
+        }
+        if (columns > 0) {
+            this.evictions.addAndGet(columns);
+            this.evictedBytes.addAndGet(freed);
+            HillviewLogger.instance.info("Evicted columns", "{0} columns, {1} bytes",
+                    columns, freed);
+        }
+        return freed;
+    }
+
+    /**
+     * @return The estimated number of bytes held by the loaded columns tracked.
+     */
+    public long getLoadedBytes() {
+        long result = 0;
+        for (Entry e : this.loaded.values())
+            result += e.bytes;
+        return result;
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.get();
+    }
+
+    public String getStatistics() {
+        return "Loaded columns: " + this.loaded.size() + ", bytes: " + this.getLoadedBytes() +
+                ", evicted columns: " + this.getEvictionCount() +
+                ", evicted bytes: " + this.evictedBytes.get();
+    }
+}
@@ -25,6 +25,7 @@ import org.hillview.table.api.IColumn;
 import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.ITable;
 import org.hillview.table.api.IndexComparator;
+import org.hillview.table.columns.DictionaryStringColumn;
 import org.hillview.table.rows.RowSnapshot;
 import org.hillview.table.rows.VirtualRowSnapshot;
 import org.hillview.utils.Converters;
@@ -32,6 +33,7 @@ import org.hillview.utils.Linq;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
@@ -124,10 +126,57 @@ public class RecordOrder implements Serializable {
      */
     public int[] getSortedRowOrder(final ITable table, IMembershipSet set) {
         int[] order = set.getRows();
+        if (!this.sortOrientationList.isEmpty()) {
+            ColumnSortOrientation first = this.sortOrientationList.get(0);
+            IColumn col = table.getLoadedColumn(first.columnDescription.name);
+            if (col instanceof DictionaryStringColumn &&
+                    ((DictionaryStringColumn)col).getDictionarySize() < order.length) {
+                // Sort by the codes of the first column, then each group of equal
+                // codes by the remaining columns.
+                int[] start = sortByCode((DictionaryStringColumn)col, order, first.isAscending);
+                if (this.sortOrientationList.size() > 1) {
+                    IndexComparator comparator = this.getIndexComparator(table);
+                    for (int i = 0; i < start.length - 1; i++)
+                        if (start[i + 1] - start[i] > 1)
+                            IntArrays.quickSort(order, start[i], start[i + 1], comparator);
+                }
+                return order;
+            }
+        }
         IntArrays.quickSort(order, this.getIndexComparator(table));
         return order;
     }
 
+    /**
+     * Counting sort of rows using the codes of a column encoded with a sorted dictionary.
+     * Missing values come last in ascending order, as with the column comparator.
+     * @param column     Column to sort on.
+     * @param rows       Rows to sort; sorted in place.
+     * @param ascending  Sort direction.
+     * @return           The index in rows where each group of equal codes starts,
+     *                   followed by the number of rows.
+     */
+    private static int[] sortByCode(DictionaryStringColumn column, int[] rows, boolean ascending) {
+        // One key for each value, and one for missing values.
+        int keys = column.getDictionarySize() + 1;
+        int[] codes = new int[rows.length];
+        column.getCodes(rows, 0, rows.length, codes);
+        if (!ascending)
+            for (int i = 0; i < codes.length; i++)
+                codes[i] = keys - 1 - codes[i];
+        int[] start = new int[keys + 1];
+        for (int c : codes)
+            start[c + 1]++;
+        for (int i = 0; i < keys; i++)
+            start[i + 1] += start[i];
+        int[] next = Arrays.copyOf(start, keys);
+        int[] sorted = new int[rows.length];
+        for (int i = 0; i < rows.length; i++)
+            sorted[next[codes[i]]++] = rows[i];
+        System.arraycopy(sorted, 0, rows, 0, rows.length);
+        return start;
+    }
+
     /**
      * Given two Tables in sorted order, decide the order in which to merge them. We do not treat
      * equality specially: any order is ok. This is used for instance in computing Quantiles.
@@ -21,6 +21,9 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.hillview.dataset.api.IJsonSketchResult;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.table.api.*;
 import org.hillview.table.columns.ObjectArrayColumn;
 import org.hillview.table.membership.FullMembershipSet;
@@ -28,6 +31,7 @@ import org.hillview.table.rows.RowSnapshot;
 import org.hillview.utils.Linq;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -38,7 +42,7 @@ import java.util.List;
  * ObjectArrayColumns (except in tests); for example, the String*Columns are not serializable.
  * Some tests use non-serializable small tables.
  */
-public class SmallTable extends BaseTable implements IJsonSketchResult {
+public class SmallTable extends BaseTable implements IJsonSketchResult, IBinarySerializable {
     static final long serialVersionUID = 1;
     final Schema schema;
     private final int rowCount;
@@ -200,4 +204,30 @@ public class SmallTable extends BaseTable implements IJsonSketchResult {
             return new SmallTable();
         }
     }
+
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeSchema(this.schema);
+        encoder.writeInt(this.rowCount);
+        for (ColumnDescription cd : this.schema.getColumnDescriptions()) {
+            IColumn col = this.getColumn(cd.name);
+            for (int i = 0; i < this.rowCount; i++)
+                encoder.writeCell(cd.kind, col.getData(i));
+        }
+    }
+
+    public static SmallTable readFrom(BinaryDecoder decoder) throws IOException {
+        Schema schema = decoder.readSchema();
+        int rowCount = decoder.readInt();
+        if (schema.getColumnCount() == 0)
+            return new SmallTable();
+        List<IColumn> cols = new ArrayList<IColumn>(schema.getColumnCount());
+        for (ColumnDescription cd : schema.getColumnDescriptions()) {
+            ObjectArrayColumn col = new ObjectArrayColumn(cd, rowCount);
+            for (int i = 0; i < rowCount; i++)
+                col.set(i, decoder.readCell(cd.kind));
+            cols.add(col);
+        }
+        return new SmallTable(cols, schema);
+    }
 }
@@ -19,7 +19,9 @@ package org.hillview.table;
 
 import org.hillview.table.api.*;
 import org.hillview.table.columns.LazyColumn;
+import org.hillview.table.columns.OffHeapColumn;
 import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.utils.Converters;
 import org.hillview.utils.Linq;
 
 import javax.annotation.Nullable;
@@ -167,18 +169,68 @@ public class Table extends BaseTable {
             if (this.columnLoader == null)
                 throw new RuntimeException("Cannot load columns dynamically");
             List<? extends IColumn> cols = this.columnLoader.loadColumns(toLoad);
-            for (IColumn c: cols)
+            for (IColumn c: cols) {
                 this.columns.put(c.getName(), c);
+                // Only columns produced by the loader can be evicted: the loader can rebuild them.
+                ColumnMemoryManager.instance.register(c);
+            }
         }
         for (String name : columns) {
             IColumn col = this.columns.get(name);
             if (col == null)
                 throw new RuntimeException("Cannot get column " + name);
+            if (this.columnLoader != null)
+                ColumnMemoryManager.instance.touch(this, col);
             result.add(col);
         }
+        if (!toLoad.isEmpty())
+            ColumnMemoryManager.instance.checkPressure();
         return result;
     }
 
+    /**
+     * Replace a loaded column with a lazy column, which will be loaded again
+     * on the next access.  Invoked by the ColumnMemoryManager.
+     * @param name    Name of the column.
+     * @param column  Loaded column to evict; if the table no longer holds this
+     *                column nothing happens.
+     */
+    synchronized void evictColumn(String name, IColumn column) {
+        if (this.columnLoader == null || this.columns.get(name) != column)
+            return;
+        this.columns.put(name, new LazyColumn(
+                column.getDescription(), column.sizeInRows(), this.columnLoader));
+    }
+
+    /**
+     * Creates a table with the same contents whose column data is stored outside
+     * the Java heap.  Columns which are loaded lazily are moved off-heap when loaded.
+     */
+    public Table toOffHeap() {
+        @Nullable IColumnLoader loader = null;
+        if (this.columnLoader != null) {
+            IColumnLoader original = this.columnLoader;
+            loader = names -> Linq.map(original.loadColumns(names), OffHeapColumn::copy);
+        }
+        List<IColumn> cols = new ArrayList<IColumn>();
+        for (IColumn c : this.getColumns()) {
+            if (c.isLoaded())
+                cols.add(OffHeapColumn.copy(c));
+            else
+                cols.add(new LazyColumn(c.getDescription(), c.sizeInRows(),
+                        Converters.checkNull(loader)));
+        }
+        return new Table(cols, this.members, this.sourceFile, loader);
+    }
+
+    /**
+     * @return The loader of the columns which are loaded lazily, if any.
+     */
+    @Nullable
+    public IColumnLoader getColumnLoader() {
+        return this.columnLoader;
+    }
+
     @Nullable
     @Override
     public String getSourceFile() {
@@ -215,6 +267,13 @@ public class Table extends BaseTable {
         return new Table(this.getColumns(), set, this.sourceFile, this.columnLoader);
     }
 
+    @Override
+    public ITable selectRowSubset(IMembershipSet set) {
+        if (this.columnLoader == null)
+            return this.selectRowsFromFullTable(set);
+        return new Table(this.getColumns(), set, this.sourceFile, this::getLoadedColumns);
+    }
+
     /**
      * Generates a table that contains all the columns, and only
      * the rows contained in IMembership Set members with consecutive numbering.
@@ -146,6 +146,20 @@ public interface IColumn extends Serializable, ICast {
      */
     IndexComparator getComparator();
 
+    /**
+     * @return True if the column is known to hold its values in non-decreasing order
+     * (as given by the comparator) and no value is missing.  A false result means only
+     * that the order is not known.
+     */
+    default boolean isSorted() { return false; }
+
+    /**
+     * @return The zone map of the column, holding summaries of the values in blocks of rows;
+     *         null if the column does not have one.
+     */
+    @Nullable
+    default ZoneMap getZoneMap() { return null; }
+
     /**
      * Compresses an IColumn to an ObjectArrayColumn, ordered according to the specified rowOrder
      * @param rowOrder specifies the set of rows and their order.
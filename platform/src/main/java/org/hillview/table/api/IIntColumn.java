@@ -60,6 +60,19 @@ public interface IIntColumn extends IColumn {
         };
     }
 
+    /**
+     * Read the values of a batch of rows; the values of missing rows are unspecified.
+     * Encoded columns override this to decode a whole batch at once.
+     * @param rows    Array holding the row indexes.
+     * @param offset  Index in rows of the first row to read.
+     * @param count   Number of rows to read.
+     * @param result  The value of row rows[offset + i] is written to result[i].
+     */
+    default void getInts(int[] rows, int offset, int count, int[] result) {
+        for (int i = 0; i < count; i++)
+            result[i] = this.getInt(rows[offset + i]);
+    }
+
     @Override
     default long hashCode64(int rowIndex, LongHashFunction hash) {
         assert !this.isMissing(rowIndex);
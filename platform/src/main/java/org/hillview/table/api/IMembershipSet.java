@@ -40,6 +40,31 @@ public interface IMembershipSet extends IRowOrder {
      */
     boolean isMember(int rowIndex);
 
+    /**
+     * @param start  First row in the range.
+     * @param end    First row after the range.
+     * @return An iterator over the rows of this set that lie in the range [start, end).
+     */
+    default IRowIterator getIteratorInRange(int start, int end) {
+        final IRowIterator it = this.getIterator();
+        return () -> {
+            int row = it.getNextRow();
+            while (row >= 0 && (row < start || row >= end))
+                row = it.getNextRow();
+            return row;
+        };
+    }
+
+    /**
+     * @param start  First row in the range.
+     * @param end    First row after the range.
+     * @return True if the set is known to contain all the rows in the range [start, end).
+     *         The default implementation does not know, and returns false.
+     */
+    default boolean containsRange(int start, int end) {
+        return false;
+    }
+
     /**
      * Return a membership containing only the rows in the current one where
      * the predicate evaluates to true.
@@ -25,4 +25,21 @@ public interface IRowIterator {
     // Returns -1 when iteration is completed; else it returns
     // the index of the next row.
     int getNextRow();
+
+    /**
+     * Fill a buffer with the next rows produced by this iterator.
+     * @param buffer  Buffer to fill; its length is the maximum number of rows returned.
+     * @return        The number of rows written to the buffer, starting at index 0.
+     *                Returns 0 when iteration is completed.
+     */
+    default int fillBatch(int[] buffer) {
+        int count = 0;
+        while (count < buffer.length) {
+            int row = this.getNextRow();
+            if (row < 0)
+                break;
+            buffer[count++] = row;
+        }
+        return count;
+    }
 }
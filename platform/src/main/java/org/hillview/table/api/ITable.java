@@ -106,6 +106,18 @@ public interface ITable {
      */
     ITable selectRowsFromFullTable(IMembershipSet set);
 
+    /**
+     * Creates a new table which has the same data as this one and a subset of its rows.
+     * Unlike selectRowsFromFullTable, columns which are not yet loaded are loaded
+     * through this table, so that all the subsets share a single copy of each column.
+     *
+     * @param set: Membership set of the resulting table; should be a subset of
+     *             the membership set of this table.
+     */
+    default ITable selectRowSubset(IMembershipSet set) {
+        return this.selectRowsFromFullTable(set);
+    }
+
     /**
      * Return a new table which only contains the specified columns.
      *
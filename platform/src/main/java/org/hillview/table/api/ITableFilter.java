@@ -17,8 +17,14 @@
 
 package org.hillview.table.api;
 
+import org.hillview.table.columns.ZoneMap;
+import org.hillview.table.membership.MembershipSetFactory;
+
 /**
  * Interface implemented by filters that run over all rows in a table.
+ * A filter is created for one table by ITableFilterDescription.getFilter and
+ * must only be used by one thread at a time: testBatch may reuse buffers held
+ * by the filter.
  */
 public interface ITableFilter {
     /**
@@ -26,4 +32,42 @@ public interface ITableFilter {
      * @param rowIndex Row index in the table.
      */
     boolean test(int rowIndex);
+
+    /**
+     * Test a batch of rows.  The rows which pass the filter are moved to the
+     * beginning of the array, in the same order.  The default implementation calls
+     * test for each row; filters can override this with a tight loop over the column data.
+     * @param rows   Array holding the row numbers; overwritten.
+     * @param count  Number of rows in the array.
+     * @return       The number of rows which pass the filter.
+     */
+    default int testBatch(int[] rows, int count) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            if (this.test(row))
+                rows[kept++] = row;
+        }
+        return kept;
+    }
+
+    /**
+     * Decide, without testing them, whether the rows in a block pass the filter,
+     * using the zone maps of the columns.  The default implementation does not know.
+     * @param block  Block of rows, as defined by ZoneMap.
+     */
+    default ZoneMap.Match matchBlock(int block) {
+        return ZoneMap.Match.Some;
+    }
+
+    /**
+     * Compute the rows of a membership set which pass the filter.
+     * The default implementation tests the rows in batches, skipping the
+     * blocks of rows which matchBlock says have no matching rows.
+     * Filters which can find these rows faster than by testing each row override this.
+     * @param set  Set of rows to filter.
+     */
+    default IMembershipSet filter(IMembershipSet set) {
+        return MembershipSetFactory.filter(set, this);
+    }
 }
@@ -26,7 +26,8 @@ public interface ITableFilterDescription extends IJson {
     /**
      * Called before the test is applied to each row index.
      * @param table: Table on which the test operates.
-     * @return       A new filter, customized for this table.
+     * @return       A new filter, customized for this table.  Filters are not
+     *               thread-safe; each thread filtering the table needs its own.
      */
     ITableFilter getFilter(ITable table);
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IIntColumn;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * An integer column encoded with a frame of reference: each value is stored
+ * as its difference from the column minimum, using the smallest number of bits
+ * which fits all differences.
+ */
+public final class BitPackedIntColumn extends CompressedIntColumn {
+    static final long serialVersionUID = 1;
+
+    private final int min;
+    private final int bits;
+    private final long[] words;
+
+    BitPackedIntColumn(ColumnDescription description, IIntColumn column,
+                       int min, int max, @Nullable BitSet missing) {
+        super(description, column.sizeInRows(), missing);
+        this.min = min;
+        this.bits = BitPacking.bitsNeeded((long)max - min);
+        this.words = BitPacking.allocate((long)this.size * this.bits);
+        for (int i = 0; i < this.size; i++) {
+            if (!this.isMissing(i))
+                BitPacking.put(this.words, (long)i * this.bits, this.bits,
+                        (long)column.getInt(i) - min);
+        }
+    }
+
+    private BitPackedIntColumn(ColumnDescription description, BitPackedIntColumn other) {
+        super(description, other);
+        this.min = other.min;
+        this.bits = other.bits;
+        this.words = other.words;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new BitPackedIntColumn(this.description.rename(newName), this);
+    }
+
+    @Override
+    public int getInt(int rowIndex) {
+        return (int)(this.min + BitPacking.get(this.words, (long)rowIndex * this.bits, this.bits));
+    }
+
+    @Override
+    public void getInts(int[] rows, int offset, int count, int[] result) {
+        final int bits = this.bits;
+        final long[] words = this.words;
+        final long min = this.min;
+        for (int i = 0; i < count; i++)
+            result[i] = (int)(min + BitPacking.get(words, (long)rows[offset + i] * bits, bits));
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return BitPacking.sizeInBytes(this.words) + this.missingSizeInBytes();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+/**
+ * Helpers to store small unsigned integers packed in arrays of longs.
+ */
+final class BitPacking {
+    private BitPacking() {}
+
+    /**
+     * Number of bits needed to represent all values between 0 and range.
+     */
+    static int bitsNeeded(long range) {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    /**
+     * Allocate an array that can hold the specified number of bits.
+     * An extra word is allocated, so that reads never need to check the array bounds.
+     */
+    static long[] allocate(long bits) {
+        return new long[(int)((bits + 63) >>> 6) + 1];
+    }
+
+    /**
+     * Store a value using the specified number of bits, starting at the specified bit.
+     * The destination bits must be zero.
+     */
+    static void put(long[] words, long bitPosition, int bits, long value) {
+        if (bits == 0)
+            return;
+        int word = (int)(bitPosition >>> 6);
+        int shift = (int)(bitPosition & 63);
+        words[word] |= value << shift;
+        if (shift + bits > 64)
+            words[word + 1] |= value >>> (64 - shift);
+    }
+
+    /**
+     * Read a value stored with the specified number of bits, starting at the specified bit.
+     */
+    static long get(long[] words, long bitPosition, int bits) {
+        if (bits == 0)
+            return 0;
+        int word = (int)(bitPosition >>> 6);
+        int shift = (int)(bitPosition & 63);
+        long value = words[word] >>> shift;
+        if (shift + bits > 64)
+            value |= words[word + 1] << (64 - shift);
+        return value & (-1L >>> (64 - bits));
+    }
+
+    /**
+     * Estimated memory used by an array of longs.
+     */
+    static long sizeInBytes(long[] words) {
+        return 16 + 8L * words.length;
+    }
+}
@@ -50,6 +50,11 @@ class CategoryEncoding {
         return encoding;
     }
 
+    /**
+     * Number of distinct values encoded; the codes are between 0 and size - 1.
+     */
+    int size() { return this.intEncoding.size(); }
+
     public void clear() {
         this.intEncoding.clear();
         this.intDecoding.clear();
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IIntColumn;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Base class for immutable integer columns stored in a compressed encoding.
+ * The encoding of a column is chosen when it is sealed, by the compress method.
+ */
+public abstract class CompressedIntColumn extends BaseColumn implements IIntColumn {
+    static final long serialVersionUID = 1;
+
+    /**
+     * Only encodings which need at most this fraction of the uncompressed size are used.
+     */
+    private static final double MAX_RATIO = .75;
+
+    final int size;
+    @Nullable
+    final BitSet missing;
+    /**
+     * True if the values are in non-decreasing order and none is missing.
+     */
+    private boolean sorted;
+    @Nullable
+    private ZoneMap zoneMap;
+
+    CompressedIntColumn(ColumnDescription description, int size, @Nullable BitSet missing) {
+        super(description);
+        this.size = size;
+        this.missing = missing;
+        this.sorted = false;
+        this.zoneMap = null;
+    }
+
+    /**
+     * A column with a new description which shares the data of another column.
+     */
+    CompressedIntColumn(ColumnDescription description, CompressedIntColumn other) {
+        super(description);
+        this.size = other.size;
+        this.missing = other.missing;
+        this.sorted = other.sorted;
+        this.zoneMap = other.zoneMap;
+    }
+
+    @Override
+    public boolean isSorted() {
+        return this.sorted;
+    }
+
+    @Nullable
+    @Override
+    public ZoneMap getZoneMap() {
+        return this.zoneMap;
+    }
+
+    @Override
+    public boolean isLoaded() { return true; }
+
+    @Override
+    public int sizeInRows() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isMissing(int rowIndex) {
+        return this.missing != null && this.missing.get(rowIndex);
+    }
+
+    /**
+     * @return The estimated memory used by the column data.
+     */
+    public abstract long sizeInBytes();
+
+    long missingSizeInBytes() {
+        return this.missing == null ? 0 : this.missing.size() / 8;
+    }
+
+    /**
+     * Statistics of a column used to choose an encoding.
+     */
+    private static class Statistics {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int runs = 0;
+        boolean sorted = true;
+        long blockBits = 0;
+        @Nullable
+        BitSet missing = null;
+
+        Statistics(IIntColumn column) {
+            int size = column.sizeInRows();
+            boolean first = true;
+            int previous = 0;
+            int blockMin = 0, blockMax = 0;
+            boolean blockEmpty = true;
+            for (int i = 0; i < size; i++) {
+                if (column.isMissing(i)) {
+                    if (this.missing == null)
+                        this.missing = new BitSet(size);
+                    this.missing.set(i);
+                } else {
+                    int value = column.getInt(i);
+                    this.min = Math.min(this.min, value);
+                    this.max = Math.max(this.max, value);
+                    if (first || value != previous)
+                        this.runs++;
+                    if (!first && value < previous)
+                        this.sorted = false;
+                    previous = value;
+                    first = false;
+                    if (blockEmpty) {
+                        blockMin = value;
+                        blockMax = value;
+                        blockEmpty = false;
+                    } else {
+                        blockMin = Math.min(blockMin, value);
+                        blockMax = Math.max(blockMax, value);
+                    }
+                }
+                if ((i & DeltaIntColumn.BlockMask) == DeltaIntColumn.BlockMask || i == size - 1) {
+                    if (!blockEmpty)
+                        this.blockBits += DeltaIntColumn.BlockSize *
+                                (long)BitPacking.bitsNeeded((long)blockMax - blockMin);
+                    blockEmpty = true;
+                }
+            }
+            if (first) {
+                this.min = 0;
+                this.max = 0;
+            }
+        }
+    }
+
+    /**
+     * Choose the most compact encoding for an integer column.
+     * @param column  Column to compress.
+     * @return        A compressed column with the same contents, or the column
+     *                itself if no encoding saves enough memory.
+     */
+    public static IColumn compress(IIntColumn column) {
+        if (column instanceof CompressedIntColumn)
+            return column;
+        int size = column.sizeInRows();
+        Statistics stats = new Statistics(column);
+        long plain = 4L * size;
+        long bitPacked = (long)size * BitPacking.bitsNeeded((long)stats.max - stats.min) / 8;
+        long runLength = 8L * stats.runs;
+        long delta = stats.sorted ?
+                stats.blockBits / 8 + 9L * ((size + DeltaIntColumn.BlockMask) / DeltaIntColumn.BlockSize) :
+                Long.MAX_VALUE;
+        long best = Math.min(bitPacked, Math.min(runLength, delta));
+        if (best > MAX_RATIO * plain)
+            return column;
+        ColumnDescription desc = column.getDescription();
+        CompressedIntColumn result;
+        if (best == runLength)
+            result = new RunLengthIntColumn(desc, column, stats.runs, stats.missing);
+        else if (best == delta)
+            result = new DeltaIntColumn(desc, column, stats.missing);
+        else
+            result = new BitPackedIntColumn(desc, column, stats.min, stats.max, stats.missing);
+        result.sorted = stats.sorted && stats.missing == null;
+        ZoneMap zoneMap = column.getZoneMap();
+        result.zoneMap = zoneMap != null ? zoneMap : ZoneMap.compute(column);
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IIntColumn;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * An integer column encoded in blocks of consecutive rows: each block stores
+ * its minimum value, and the deltas of its values from this minimum, using the
+ * smallest number of bits which fits the deltas of the block.  This suits sorted
+ * data, where the minimum of a block is its first value and the deltas are small,
+ * while keeping random access in constant time.
+ */
+public final class DeltaIntColumn extends CompressedIntColumn {
+    static final long serialVersionUID = 1;
+
+    static final int LogBlockSize = 7;
+    static final int BlockSize = 1 << LogBlockSize;
+    static final int BlockMask = BlockSize - 1;
+
+    /**
+     * Minimum value in each block.
+     */
+    private final int[] bases;
+    /**
+     * Number of bits used by the deltas of each block.
+     */
+    private final byte[] bits;
+    /**
+     * Bit position where each block starts.
+     */
+    private final long[] starts;
+    private final long[] words;
+
+    DeltaIntColumn(ColumnDescription description, IIntColumn column, @Nullable BitSet missing) {
+        super(description, column.sizeInRows(), missing);
+        int blocks = (this.size + BlockMask) >>> LogBlockSize;
+        this.bases = new int[blocks];
+        this.bits = new byte[blocks];
+        this.starts = new long[blocks];
+        long position = 0;
+        for (int b = 0; b < blocks; b++) {
+            int first = b << LogBlockSize;
+            int last = Math.min(first + BlockSize, this.size);
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = first; i < last; i++) {
+                if (this.isMissing(i))
+                    continue;
+                int value = column.getInt(i);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (min > max) {
+                // All values are missing.
+                min = 0;
+                max = 0;
+            }
+            this.bases[b] = min;
+            this.bits[b] = (byte)BitPacking.bitsNeeded((long)max - min);
+            this.starts[b] = position;
+            position += (long)(last - first) * this.bits[b];
+        }
+        this.words = BitPacking.allocate(position);
+        for (int i = 0; i < this.size; i++) {
+            if (this.isMissing(i))
+                continue;
+            int b = i >>> LogBlockSize;
+            int bits = this.bits[b];
+            BitPacking.put(this.words, this.starts[b] + (long)(i & BlockMask) * bits, bits,
+                    (long)column.getInt(i) - this.bases[b]);
+        }
+    }
+
+    private DeltaIntColumn(ColumnDescription description, DeltaIntColumn other) {
+        super(description, other);
+        this.bases = other.bases;
+        this.bits = other.bits;
+        this.starts = other.starts;
+        this.words = other.words;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new DeltaIntColumn(this.description.rename(newName), this);
+    }
+
+    @Override
+    public int getInt(int rowIndex) {
+        int b = rowIndex >>> LogBlockSize;
+        int bits = this.bits[b];
+        return (int)(this.bases[b] + BitPacking.get(
+                this.words, this.starts[b] + (long)(rowIndex & BlockMask) * bits, bits));
+    }
+
+    @Override
+    public void getInts(int[] rows, int offset, int count, int[] result) {
+        final int[] bases = this.bases;
+        final byte[] bits = this.bits;
+        final long[] starts = this.starts;
+        final long[] words = this.words;
+        for (int i = 0; i < count; i++) {
+            int row = rows[offset + i];
+            int b = row >>> LogBlockSize;
+            int width = bits[b];
+            result[i] = (int)(bases[b] + BitPacking.get(
+                    words, starts[b] + (long)(row & BlockMask) * width, width));
+        }
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return BitPacking.sizeInBytes(this.words) + 17L * this.bases.length +
+                this.missingSizeInBytes();
+    }
+}
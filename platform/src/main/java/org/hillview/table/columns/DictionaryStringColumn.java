@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.hillview.table.columns;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IStringColumn;
+import org.hillview.table.api.IStringFilter;
+import org.hillview.table.api.IndexComparator;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * An immutable string column encoded with a sorted dictionary.  The distinct values
+ * are stored in increasing order, UTF-8 encoded, in a single byte array; each row
+ * holds the index of its value in the dictionary, bit-packed.  The codes preserve
+ * the order of the values, so rows can be compared by comparing their codes.
+ * Missing values have the largest code, so they sort last, as in Converters.compareStrings.
+ * Each value is decoded into a Java string the first time it is read; the strings
+ * are kept, so reading a value again does not allocate.
+ */
+public final class DictionaryStringColumn extends BaseColumn implements IStringColumn {
+    static final long serialVersionUID = 1;
+
+    private final int size;
+    /**
+     * Concatenated UTF-8 encodings of the distinct values, in sorted order.
+     */
+    private final byte[] dictionary;
+    /**
+     * Start of each value in the dictionary; the last element is the dictionary length.
+     */
+    private final int[] offsets;
+    private final int bits;
+    private final long[] codes;
+    /**
+     * True if the codes are in non-decreasing order and no value is missing.
+     */
+    private final boolean sorted;
+    /**
+     * The values already decoded, indexed by code; allocated on first use.
+     * Not serialized: the dictionary holds the same data.
+     */
+    @Nullable
+    private transient volatile String[] decoded;
+
+    /**
+     * Create a column from values that are already dictionary-encoded.
+     * @param description  Column description.
+     * @param size         Number of rows.
+     * @param encoding     Encoding of the values, in any order.
+     * @param rowCode      Code of each row in the encoding.
+     */
+    DictionaryStringColumn(ColumnDescription description, int size,
+                           CategoryEncoding encoding, IntUnaryOperator rowCode) {
+        super(description);
+        if (!description.kind.isString())
+            throw new RuntimeException("Unexpected kind for string column: " + description.kind);
+        this.size = size;
+        int encoded = encoding.size();
+        String[] values = new String[encoded];
+        int[] order = new int[encoded];
+        int distinct = 0;
+        for (int i = 0; i < encoded; i++) {
+            values[i] = encoding.decode(i);
+            if (values[i] != null)
+                order[distinct++] = i;
+        }
+        IntArrays.quickSort(order, 0, distinct, (a, b) -> values[a].compareTo(values[b]));
+
+        // The code of each value in the encoding
+        int[] remap = new int[encoded];
+        byte[][] utf8 = new byte[distinct][];
+        long length = 0;
+        for (int i = 0; i < encoded; i++)
+            remap[i] = distinct;
+        for (int i = 0; i < distinct; i++) {
+            remap[order[i]] = i;
+            utf8[i] = values[order[i]].getBytes(StandardCharsets.UTF_8);
+            length += utf8[i].length;
+        }
+        if (length > Integer.MAX_VALUE)
+            throw new RuntimeException("Dictionary too large for column " + description.name);
+        this.dictionary = new byte[(int)length];
+        this.offsets = new int[distinct + 1];
+        int offset = 0;
+        for (int i = 0; i < distinct; i++) {
+            this.offsets[i] = offset;
+            System.arraycopy(utf8[i], 0, this.dictionary, offset, utf8[i].length);
+            offset += utf8[i].length;
+        }
+        this.offsets[distinct] = offset;
+
+        this.bits = BitPacking.bitsNeeded(distinct);
+        this.codes = BitPacking.allocate((long)size * this.bits);
+        boolean sorted = true;
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int code = remap[rowCode.applyAsInt(i)];
+            BitPacking.put(this.codes, (long)i * this.bits, this.bits, code);
+            // The missing code is the largest, so missing values must be rejected explicitly
+            sorted = sorted && code >= previous && code != distinct;
+            previous = code;
+        }
+        this.sorted = sorted;
+    }
+
+    private DictionaryStringColumn(ColumnDescription description, DictionaryStringColumn other) {
+        super(description);
+        this.size = other.size;
+        this.dictionary = other.dictionary;
+        this.offsets = other.offsets;
+        this.bits = other.bits;
+        this.codes = other.codes;
+        this.sorted = other.sorted;
+        this.decoded = other.decoded;
+    }
+
+    /**
+     * Encode a string column with a sorted dictionary.
+     * @param column  Column to encode.
+     * @return        A column with the same contents.
+     */
+    public static DictionaryStringColumn create(IStringColumn column) {
+        if (column instanceof DictionaryStringColumn)
+            return (DictionaryStringColumn)column;
+        int size = column.sizeInRows();
+        CategoryEncoding encoding = new CategoryEncoding();
+        int[] rowCodes = new int[size];
+        for (int i = 0; i < size; i++)
+            rowCodes[i] = encoding.encode(column.getString(i));
+        return new DictionaryStringColumn(column.getDescription(), size, encoding, i -> rowCodes[i]);
+    }
+
+    @Override
+    public boolean isLoaded() { return true; }
+
+    @Override
+    public int sizeInRows() {
+        return this.size;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new DictionaryStringColumn(this.description.rename(newName), this);
+    }
+
+    /**
+     * @return The number of distinct values in the column, excluding missing values.
+     */
+    public int getDictionarySize() {
+        return this.offsets.length - 1;
+    }
+
+    /**
+     * The code of the value in a row: the index of the value in the sorted dictionary,
+     * or getDictionarySize() if the value is missing.
+     */
+    public int getCode(int rowIndex) {
+        return (int)BitPacking.get(this.codes, (long)rowIndex * this.bits, this.bits);
+    }
+
+    /**
+     * Read the codes of a batch of rows.
+     * @param rows    Array of row indexes.
+     * @param offset  First element of rows to read.
+     * @param count   Number of rows to read.
+     * @param result  Array receiving the codes, starting at index 0.
+     */
+    public void getCodes(int[] rows, int offset, int count, int[] result) {
+        final int bits = this.bits;
+        final long[] codes = this.codes;
+        for (int i = 0; i < count; i++)
+            result[i] = (int)BitPacking.get(codes, (long)rows[offset + i] * bits, bits);
+    }
+
+    /**
+     * The value with the specified code.
+     * @param code  A number between 0 and getDictionarySize() - 1.
+     */
+    public String decode(int code) {
+        String[] decoded = this.decoded;
+        if (decoded == null) {
+            // Racing threads may allocate different arrays; each array is a valid cache.
+            decoded = new String[this.getDictionarySize()];
+            this.decoded = decoded;
+        }
+        String result = decoded[code];
+        if (result == null) {
+            int start = this.offsets[code];
+            result = new String(this.dictionary, start, this.offsets[code + 1] - start,
+                    StandardCharsets.UTF_8);
+            decoded[code] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Find the position of a value in the dictionary.
+     * @param value      Value to search.
+     * @param inclusive  If true return the first code whose value is greater or equal to value,
+     *                   else the first code whose value is strictly greater.
+     * @return           A code between 0 and getDictionarySize().
+     */
+    public int search(String value, boolean inclusive) {
+        int low = 0;
+        int high = this.getDictionarySize();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = this.decode(mid).compareTo(value);
+            if (c < 0 || (c == 0 && !inclusive))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Evaluate a string filter once for each value in the dictionary.
+     * @param filter  Filter to evaluate.
+     * @return        A bitmap indexed by code, where the codes whose values pass the
+     *                filter are set; this includes the code of missing values if the
+     *                filter accepts null.
+     */
+    public BitSet filterCodes(IStringFilter filter) {
+        int codes = this.getDictionarySize();
+        BitSet result = new BitSet(codes + 1);
+        for (int i = 0; i < codes; i++)
+            if (filter.test(this.decode(i)))
+                result.set(i);
+        if (filter.test(null))
+            result.set(codes);
+        return result;
+    }
+
+    @Override
+    public boolean isMissing(int rowIndex) {
+        return this.getCode(rowIndex) == this.getDictionarySize();
+    }
+
+    @Nullable
+    @Override
+    public String getString(int rowIndex) {
+        int code = this.getCode(rowIndex);
+        if (code == this.getDictionarySize())
+            return null;
+        return this.decode(code);
+    }
+
+    @Nullable
+    @Override
+    public Object getObject(int rowIndex) {
+        return this.getString(rowIndex);
+    }
+
+    @Override
+    public boolean isSorted() {
+        return this.sorted;
+    }
+
+    @Override
+    public IndexComparator getComparator() {
+        return new IndexComparator() {
+            @Override
+            public int compare(final int i, final int j) {
+                return Integer.compare(
+                        DictionaryStringColumn.this.getCode(i), DictionaryStringColumn.this.getCode(j));
+            }
+        };
+    }
+
+    /**
+     * @return The estimated memory used by the column data, including the
+     *         array of decoded values but not the decoded strings themselves.
+     */
+    public long sizeInBytes() {
+        return BitPacking.sizeInBytes(this.codes) + 16 + this.dictionary.length +
+                16 + 4L * this.offsets.length + 16 + 4L * this.getDictionarySize();
+    }
+}
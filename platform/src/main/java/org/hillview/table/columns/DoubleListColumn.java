@@ -41,31 +41,70 @@ public class DoubleListColumn
     // Only used for Date kinds
     @Nullable
     private DateParsing dateParser;
+    // Computed when the column is sealed.
+    private boolean sorted;
+    @Nullable
+    private ZoneMap zoneMap;
 
     public DoubleListColumn(final ColumnDescription desc) {
         super(desc);
         this.segments = new ArrayList<double []>();
+        this.sorted = false;
+        this.zoneMap = null;
     }
 
     private DoubleListColumn(final ColumnDescription desc, ArrayList<double[]> segments,
-                             @Nullable ArrayList<BitSet> missing, int size) {
+                             @Nullable ArrayList<BitSet> missing, int size, boolean sorted,
+                             @Nullable ZoneMap zoneMap) {
         super(desc);
         this.segments = segments;
         this.missing = missing;
         this.size = size;
+        this.sorted = sorted;
+        this.zoneMap = zoneMap;
     }
 
     @Override
     public IColumn seal() {
         this.checkMissingSize(this.segments.size());
         this.segments.trimToSize();
+        this.sorted = this.checkSorted();
+        this.zoneMap = ZoneMap.compute(this);
         return this;
     }
 
+    /**
+     * True if the values are in non-decreasing order and none is missing or NaN.
+     */
+    private boolean checkSorted() {
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < this.size; i++) {
+            if (this.isMissing(i))
+                return false;
+            double d = this.getDouble(i);
+            if (!(d >= previous))
+                return false;
+            previous = d;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isSorted() {
+        return this.sorted;
+    }
+
+    @Nullable
+    @Override
+    public ZoneMap getZoneMap() {
+        return this.zoneMap;
+    }
+
     @Override
     public IColumn rename(String newName) {
         return new DoubleListColumn(
-                this.description.rename(newName), this.segments, this.missing, this.size);
+                this.description.rename(newName), this.segments, this.missing, this.size, this.sorted,
+                this.zoneMap);
     }
 
     @Override
@@ -67,6 +67,13 @@ public final class IntArrayColumn
         return this.data[rowIndex];
     }
 
+    @Override
+    public void getInts(int[] rows, int offset, int count, int[] result) {
+        final int[] data = this.data;
+        for (int i = 0; i < count; i++)
+            result[i] = data[rows[offset + i]];
+    }
+
     public void set(final int rowIndex, final int value) {
         this.data[rowIndex] = value;
     }
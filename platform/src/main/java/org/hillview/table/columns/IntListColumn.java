@@ -37,26 +37,41 @@ public final class IntListColumn
     static final long serialVersionUID = 1;
 
     private final ArrayList<int[]> segments;
+    // Computed when the column is sealed.
+    @Nullable
+    private ZoneMap zoneMap;
 
    public IntListColumn(final ColumnDescription desc) {
         super(desc);
         if (this.description.kind != ContentsKind.Integer)
             throw new InvalidParameterException("Kind should be Integer " + this.description.kind);
         this.segments = new ArrayList<int []>();
+        this.zoneMap = null;
     }
 
     private IntListColumn(ColumnDescription desc, ArrayList<int[]> segments,
-                          @Nullable ArrayList<BitSet> missing, int size) {
+                          @Nullable ArrayList<BitSet> missing, int size, @Nullable ZoneMap zoneMap) {
         super(desc);
         this.missing = missing;
         this.segments = segments;
         this.size = size;
+        this.zoneMap = zoneMap;
     }
 
+    /**
+     * Sealing a list column chooses a compressed encoding for it, if one saves memory.
+     */
     @Override
     public IColumn seal() {
         this.checkMissingSize(this.segments.size());
-        return this;
+        this.zoneMap = ZoneMap.compute(this);
+        return CompressedIntColumn.compress(this);
+    }
+
+    @Nullable
+    @Override
+    public ZoneMap getZoneMap() {
+        return this.zoneMap;
     }
 
     @Override
@@ -69,7 +84,7 @@ public final class IntListColumn
     @Override
     public IColumn rename(String newName) {
         return new IntListColumn(this.description.rename(newName), this.segments,
-                this.missing, this.size);
+                this.missing, this.size, this.zoneMap);
     }
 
     @Override
@@ -169,7 +169,8 @@ public final class ObjectArrayColumn extends BaseArrayColumn {
         assert(value == null ||
                 value instanceof String ||
                 value instanceof Integer ||
-                value instanceof Double);
+                value instanceof Double ||
+                value instanceof Interval);
         this.data[rowIndex] = value;
     }
 
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IMutableColumn;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.InvalidParameterException;
+
+/**
+ * Base class for columns whose data is stored outside the Java heap, in direct
+ * byte buffers, so that it is not scanned by the garbage collector.
+ * A direct buffer can hold at most 2GB, so the data is split into chunks
+ * of a fixed number of rows.  Missing values are stored in an off-heap bitmap,
+ * which is only allocated when the first missing value is set.
+ * The off-heap memory is released when the column is garbage-collected.
+ * The buffers can also be supplied by the caller, e.g., memory-mapped from a file.
+ * When serialized an off-heap column is replaced with an equivalent heap column.
+ */
+public abstract class OffHeapColumn extends BaseColumn implements IMutableColumn {
+    static final long serialVersionUID = 1;
+
+    /**
+     * Log base 2 of the number of rows in each chunk.
+     */
+    public static final int LogChunkRows = 24;
+    private static final int ChunkMask = (1 << LogChunkRows) - 1;
+
+    private final int size;
+    private final int logBytesPerRow;
+    private final transient ByteBuffer[] chunks;
+    @Nullable
+    private transient ByteBuffer missing;
+
+    /**
+     * Allocate an off-heap column.
+     * @param description     Column description.
+     * @param size            Number of rows.
+     * @param logBytesPerRow  Log base 2 of the number of bytes used for each row.
+     */
+    OffHeapColumn(ColumnDescription description, int size, int logBytesPerRow) {
+        super(description);
+        if (size < 0)
+            throw new InvalidParameterException("Size must be positive: " + size);
+        this.size = size;
+        this.logBytesPerRow = logBytesPerRow;
+        int chunkCount = chunkCount(size);
+        this.chunks = new ByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            int rows = Math.min(size - (i << LogChunkRows), 1 << LogChunkRows);
+            this.chunks[i] = allocate((long)rows << logBytesPerRow);
+        }
+        this.missing = null;
+    }
+
+    /**
+     * A column which uses existing buffers.
+     * @param chunks   Buffers holding the data, each of them with 1 << LogChunkRows rows,
+     *                 except the last one.
+     * @param missing  Missing value bitmap, one bit per row; null if no values are missing.
+     */
+    OffHeapColumn(ColumnDescription description, int size, int logBytesPerRow,
+                  ByteBuffer[] chunks, @Nullable ByteBuffer missing) {
+        super(description);
+        if (chunks.length != chunkCount(size))
+            throw new InvalidParameterException("Expected " + chunkCount(size) +
+                    " chunks, not " + chunks.length);
+        this.size = size;
+        this.logBytesPerRow = logBytesPerRow;
+        this.chunks = chunks;
+        this.missing = missing;
+    }
+
+    /**
+     * A column with a new description which shares the data of another column.
+     */
+    OffHeapColumn(ColumnDescription description, OffHeapColumn other) {
+        super(description);
+        this.size = other.size;
+        this.logBytesPerRow = other.logBytesPerRow;
+        this.chunks = other.chunks;
+        this.missing = other.missing;
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        return ByteBuffer.allocateDirect((int)bytes).order(ByteOrder.nativeOrder());
+    }
+
+    ByteBuffer chunk(int rowIndex) {
+        return this.chunks[rowIndex >>> LogChunkRows];
+    }
+
+    int offset(int rowIndex) {
+        return (rowIndex & ChunkMask) << this.logBytesPerRow;
+    }
+
+    @Override
+    public boolean isLoaded() { return true; }
+
+    @Override
+    public int sizeInRows() {
+        return this.size;
+    }
+
+    @Override
+    public IColumn seal() {
+        return this;
+    }
+
+    @Override
+    public boolean isMissing(int rowIndex) {
+        if (this.missing == null)
+            return false;
+        long word = this.missing.getLong((rowIndex >>> 6) << 3);
+        return (word & (1L << rowIndex)) != 0;
+    }
+
+    @Override
+    public void setMissing(int rowIndex) {
+        if (this.missing == null)
+            this.missing = allocate((long)((this.size + 63) >>> 6) << 3);
+        int offset = (rowIndex >>> 6) << 3;
+        this.missing.putLong(offset, this.missing.getLong(offset) | (1L << rowIndex));
+    }
+
+    /**
+     * Number of chunks needed for a column with the specified number of rows.
+     */
+    public static int chunkCount(int rows) {
+        return (rows + ChunkMask) >>> LogChunkRows;
+    }
+
+    /**
+     * @return The number of bytes held outside the heap by this column.
+     */
+    public long getOffHeapBytes() {
+        long result = (long)this.size << this.logBytesPerRow;
+        if (this.missing != null)
+            result += this.missing.capacity();
+        return result;
+    }
+
+    /**
+     * @return A column with the same contents stored in the Java heap.
+     */
+    public abstract IColumn toHeap();
+
+    /**
+     * Direct buffers cannot be serialized; a heap column is serialized instead.
+     */
+    Object writeReplace() {
+        return this.toHeap();
+    }
+
+    /**
+     * Copy the missing values of this column into a heap column.
+     */
+    void copyMissing(IMutableColumn to) {
+        if (this.missing == null)
+            return;
+        for (int i = 0; i < this.size; i++)
+            if (this.isMissing(i))
+                to.setMissing(i);
+    }
+
+    /**
+     * Copy a column to the off-heap memory.
+     * @param column  Column to copy.
+     * @return        A column with the same contents whose data is off-heap;
+     *                if the kind of the column has no off-heap representation
+     *                (or it is already off-heap) the column itself.
+     */
+    public static IColumn copy(IColumn column) {
+        if (column instanceof OffHeapColumn)
+            return column;
+        int size = column.sizeInRows();
+        OffHeapColumn result;
+        switch (column.getKind()) {
+            case Integer: {
+                OffHeapIntColumn col = new OffHeapIntColumn(column.getDescription(), size);
+                for (int i = 0; i < size; i++) {
+                    if (column.isMissing(i))
+                        col.setMissing(i);
+                    else
+                        col.set(i, column.getInt(i));
+                }
+                result = col;
+                break;
+            }
+            case Date:
+            case Double:
+            case Duration:
+            case Time:
+            case LocalDate: {
+                OffHeapDoubleColumn col = new OffHeapDoubleColumn(column.getDescription(), size);
+                for (int i = 0; i < size; i++) {
+                    if (column.isMissing(i))
+                        col.setMissing(i);
+                    else
+                        col.set(i, column.getDouble(i));
+                }
+                result = col;
+                break;
+            }
+            case Json:
+            case String: {
+                OffHeapStringColumn col = new OffHeapStringColumn(column.getDescription(), size);
+                for (int i = 0; i < size; i++)
+                    col.set(i, column.getString(i));
+                result = col;
+                break;
+            }
+            default:
+                return column;
+        }
+        result.parsingExceptionCount = column.getParsingExceptionCount();
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IDoubleColumn;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * Column of doubles stored outside the Java heap.
+ */
+public final class OffHeapDoubleColumn extends OffHeapColumn implements IDoubleColumn {
+    static final long serialVersionUID = 1;
+
+    public OffHeapDoubleColumn(final ColumnDescription description, final int size) {
+        super(description, size, 3);
+    }
+
+    /**
+     * Create a column over existing buffers, e.g., memory-mapped from a file.
+     * Such a column is read-only if the buffers are.
+     */
+    public OffHeapDoubleColumn(final ColumnDescription description, final int size,
+                               final ByteBuffer[] chunks, @Nullable final ByteBuffer missing) {
+        super(description, size, 3, chunks, missing);
+    }
+
+    private OffHeapDoubleColumn(final ColumnDescription description,
+                                final OffHeapDoubleColumn other) {
+        super(description, other);
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new OffHeapDoubleColumn(this.description.rename(newName), this);
+    }
+
+    @Override
+    public double getDouble(final int rowIndex) {
+        return this.chunk(rowIndex).getDouble(this.offset(rowIndex));
+    }
+
+    @Override
+    public void set(final int rowIndex, final double value) {
+        this.chunk(rowIndex).putDouble(this.offset(rowIndex), value);
+    }
+
+    @Override
+    public IColumn toHeap() {
+        DoubleArrayColumn result = new DoubleArrayColumn(this.description, this.sizeInRows());
+        for (int i = 0; i < this.sizeInRows(); i++)
+            result.set(i, this.getDouble(i));
+        this.copyMissing(result);
+        return result;
+    }
+}
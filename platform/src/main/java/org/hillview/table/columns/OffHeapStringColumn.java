@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IStringColumn;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Column of strings whose dictionary codes are stored outside the Java heap.
+ * The dictionary of distinct values is kept in the heap: decoding strings from
+ * off-heap bytes would allocate a new string on each access.
+ * Missing values are represented by null strings.
+ */
+public final class OffHeapStringColumn extends OffHeapColumn implements IStringColumn {
+    static final long serialVersionUID = 1;
+
+    private final CategoryEncoding encoding;
+
+    public OffHeapStringColumn(final ColumnDescription description, final int size) {
+        super(description, size, 2);
+        if (!description.kind.isString())
+            throw new RuntimeException("Unexpected kind for string column: " + description.kind);
+        this.encoding = new CategoryEncoding();
+    }
+
+    /**
+     * Create a column over existing buffers of codes, e.g., memory-mapped from a file.
+     * Such a column is read-only if the buffers are.
+     * @param dictionary  The value of each code; may contain null.
+     */
+    public OffHeapStringColumn(final ColumnDescription description, final int size,
+                               final ByteBuffer[] chunks, final List<String> dictionary) {
+        super(description, size, 2, chunks, null);
+        if (!description.kind.isString())
+            throw new RuntimeException("Unexpected kind for string column: " + description.kind);
+        this.encoding = new CategoryEncoding();
+        for (String s : dictionary)
+            this.encoding.encode(s);
+    }
+
+    private OffHeapStringColumn(final ColumnDescription description,
+                                final OffHeapStringColumn other) {
+        super(description, other);
+        this.encoding = other.encoding;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new OffHeapStringColumn(this.description.rename(newName), this);
+    }
+
+    @Nullable
+    @Override
+    public String getString(final int rowIndex) {
+        return this.encoding.decode(this.chunk(rowIndex).getInt(this.offset(rowIndex)));
+    }
+
+    @Override
+    public boolean isMissing(final int rowIndex) {
+        return this.getString(rowIndex) == null;
+    }
+
+    @Override
+    public void setMissing(final int rowIndex) {
+        this.set(rowIndex, null);
+    }
+
+    @Override
+    public void set(final int rowIndex, @Nullable final String value) {
+        this.chunk(rowIndex).putInt(this.offset(rowIndex), this.encoding.encode(value));
+    }
+
+    @Override
+    public IColumn toHeap() {
+        StringArrayColumn result = new StringArrayColumn(this.description, this.sizeInRows());
+        for (int i = 0; i < this.sizeInRows(); i++)
+            result.set(i, this.getString(i));
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IIntColumn;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * An integer column encoded as a sequence of runs of equal values.
+ * Missing values do not break runs.
+ */
+public final class RunLengthIntColumn extends CompressedIntColumn {
+    static final long serialVersionUID = 1;
+
+    /**
+     * Value of each run.
+     */
+    private final int[] values;
+    /**
+     * First row after each run.
+     */
+    private final int[] ends;
+
+    RunLengthIntColumn(ColumnDescription description, IIntColumn column,
+                       int runs, @Nullable BitSet missing) {
+        super(description, column.sizeInRows(), missing);
+        // There is at least one run, even if all values are missing.
+        runs = Math.max(runs, 1);
+        this.values = new int[runs];
+        this.ends = new int[runs];
+        int run = -1;
+        for (int i = 0; i < this.size; i++) {
+            if (this.isMissing(i))
+                continue;
+            int value = column.getInt(i);
+            if (run < 0 || value != this.values[run]) {
+                if (run >= 0)
+                    this.ends[run] = i;
+                run++;
+                this.values[run] = value;
+            }
+        }
+        this.ends[Math.max(run, 0)] = this.size;
+    }
+
+    private RunLengthIntColumn(ColumnDescription description, RunLengthIntColumn other) {
+        super(description, other);
+        this.values = other.values;
+        this.ends = other.ends;
+    }
+
+    @Override
+    public IColumn rename(String newName) {
+        return new RunLengthIntColumn(this.description.rename(newName), this);
+    }
+
+    /**
+     * Index of the run containing the specified row.
+     */
+    private int findRun(int rowIndex) {
+        int low = 0;
+        int high = this.ends.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.ends[mid] <= rowIndex)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    @Override
+    public int getInt(int rowIndex) {
+        return this.values[this.findRun(rowIndex)];
+    }
+
+    /**
+     * Rows in a batch are usually increasing, so the runs are scanned forward,
+     * and only searched when a row precedes the previous one.
+     */
+    @Override
+    public void getInts(int[] rows, int offset, int count, int[] result) {
+        if (count == 0)
+            return;
+        int run = this.findRun(rows[offset]);
+        int previous = rows[offset];
+        for (int i = 0; i < count; i++) {
+            int row = rows[offset + i];
+            if (row < previous)
+                run = this.findRun(row);
+            else
+                while (this.ends[run] <= row)
+                    run++;
+            result[i] = this.values[run];
+            previous = row;
+        }
+    }
+
+    /**
+     * @return The number of runs.
+     */
+    public int getRunCount() {
+        return this.values.length;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return 32 + 8L * this.values.length + this.missingSizeInBytes();
+    }
+}
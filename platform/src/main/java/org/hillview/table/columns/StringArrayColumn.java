@@ -58,8 +58,14 @@ public class StringArrayColumn extends BaseArrayColumn
         this.encoding = encoding;
     }
 
+    /**
+     * A sealed column uses a sorted dictionary, whose codes can be compared directly.
+     */
     @Override
-    public IColumn seal() { return this; }
+    public IColumn seal() {
+        return new DictionaryStringColumn(
+                this.description, this.data.length, this.encoding, i -> this.data[i]);
+    }
 
     @Override
     public boolean isMissing(final int rowIndex) {
@@ -98,19 +98,7 @@ public class StringListColumn extends BaseListColumn implements IStringColumn {
             throw new ArrayIndexOutOfBoundsException(
                     "Index " + rowIndex + " larger than " + this.size);
         if (this.isSparse()) {
-            int segmentId = rowIndex >> LogSegmentSize;
-            final int localIndex = rowIndex & SegmentMask;
-            if (segmentId < this.firstShortSegment) {
-                // use the byte segments
-                byte[] segment = this.byteSegments.get(segmentId);
-                byte index = segment[localIndex];
-                return this.encoding.decode(Byte.toUnsignedInt(index));
-            } else {
-                segmentId = segmentId - this.firstShortSegment;
-                short[] segment = this.shortSegments.get(segmentId);
-                short index = segment[localIndex];
-                return this.encoding.decode(Short.toUnsignedInt(index));
-            }
+            return this.encoding.decode(this.getEncoding(rowIndex));
         } else {
             final int segmentId = rowIndex >> LogSegmentSize;
             final int localIndex = rowIndex & SegmentMask;
@@ -119,8 +107,35 @@ public class StringListColumn extends BaseListColumn implements IStringColumn {
         }
     }
 
+    /**
+     * The code of a row in the dictionary encoding; only used by the sparse representation.
+     */
+    private int getEncoding(final int rowIndex) {
+        int segmentId = rowIndex >> LogSegmentSize;
+        final int localIndex = rowIndex & SegmentMask;
+        if (segmentId < this.firstShortSegment) {
+            // use the byte segments
+            byte[] segment = this.byteSegments.get(segmentId);
+            byte index = segment[localIndex];
+            return Byte.toUnsignedInt(index);
+        } else {
+            segmentId = segmentId - this.firstShortSegment;
+            short[] segment = this.shortSegments.get(segmentId);
+            short index = segment[localIndex];
+            return Short.toUnsignedInt(index);
+        }
+    }
+
+    /**
+     * A sealed column uses a sorted dictionary, whose codes can be compared directly.
+     */
     @Override
-    public IColumn seal() { return this; }
+    public IColumn seal() {
+        if (this.isSparse())
+            return new DictionaryStringColumn(
+                    this.description, this.size, this.encoding, this::getEncoding);
+        return DictionaryStringColumn.create(this);
+    }
 
     @Override
     void grow() {
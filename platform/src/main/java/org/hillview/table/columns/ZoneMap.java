@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.columns;
+
+import org.hillview.table.api.IColumn;
+
+import java.io.Serializable;
+
+/**
+ * A zone map summarizes the values of a numeric column in fixed-size blocks of rows:
+ * for each block it holds the minimum and maximum value and the number of missing values.
+ * Filters and sketches use it to skip the blocks which cannot contain interesting
+ * values, and to process at once the blocks whose values are all treated in the same way.
+ * Values are converted to doubles.
+ */
+public final class ZoneMap implements Serializable {
+    static final long serialVersionUID = 1;
+
+    /**
+     * Log base 2 of the number of rows in a block.
+     */
+    public static final int LogBlockRows = 16;
+    public static final int BlockRows = 1 << LogBlockRows;
+
+    /**
+     * How the rows in a block relate to a predicate.
+     */
+    public enum Match {
+        /**
+         * No row in the block satisfies the predicate.
+         */
+        None,
+        /**
+         * Some rows may satisfy the predicate; they have to be tested.
+         */
+        Some,
+        /**
+         * All rows in the block satisfy the predicate.
+         */
+        All
+    }
+
+    private final int rows;
+    /**
+     * Minimum value in each block; +Infinity if the block has no values,
+     * NaN if a value in the block is NaN.
+     */
+    private final double[] min;
+    /**
+     * Maximum value in each block; -Infinity if the block has no values,
+     * NaN if a value in the block is NaN.
+     */
+    private final double[] max;
+    private final int[] missing;
+
+    private ZoneMap(int rows) {
+        this.rows = rows;
+        int blocks = (int)(((long)rows + BlockRows - 1) >>> LogBlockRows);
+        this.min = new double[blocks];
+        this.max = new double[blocks];
+        this.missing = new int[blocks];
+    }
+
+    /**
+     * Compute the zone map of a column.
+     * @param column  A column whose values can be converted to doubles.
+     */
+    public static ZoneMap compute(IColumn column) {
+        ZoneMap result = new ZoneMap(column.sizeInRows());
+        for (int block = 0; block < result.min.length; block++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int missing = 0;
+            boolean nan = false;
+            int end = result.blockEnd(block);
+            for (int i = result.blockStart(block); i < end; i++) {
+                if (column.isMissing(i)) {
+                    missing++;
+                    continue;
+                }
+                double d = column.asDouble(i);
+                if (d < min)
+                    min = d;
+                if (d > max)
+                    max = d;
+                nan |= Double.isNaN(d);
+            }
+            result.min[block] = nan ? Double.NaN : min;
+            result.max[block] = nan ? Double.NaN : max;
+            result.missing[block] = missing;
+        }
+        return result;
+    }
+
+    public int getBlockCount() {
+        return this.min.length;
+    }
+
+    /**
+     * @return The block containing the specified row.
+     */
+    public static int blockOf(int rowIndex) {
+        return rowIndex >>> LogBlockRows;
+    }
+
+    /**
+     * @return The first row of a block.
+     */
+    public int blockStart(int block) {
+        return block << LogBlockRows;
+    }
+
+    /**
+     * @return The first row after a block.
+     */
+    public int blockEnd(int block) {
+        return (int)Math.min((long)(block + 1) << LogBlockRows, this.rows);
+    }
+
+    public double getMin(int block) {
+        return this.min[block];
+    }
+
+    public double getMax(int block) {
+        return this.max[block];
+    }
+
+    public int getMissingCount(int block) {
+        return this.missing[block];
+    }
+
+    /**
+     * @return The number of rows in a block which have a value.
+     */
+    public int getPresentCount(int block) {
+        return this.blockEnd(block) - this.blockStart(block) - this.missing[block];
+    }
+
+    /**
+     * Decide which rows in a block have values in the range [low, high].
+     * @param block           Block index.
+     * @param low             Lower bound of the range.
+     * @param high            Upper bound of the range.
+     * @param includeMissing  If true missing values satisfy the predicate.
+     */
+    public Match match(int block, double low, double high, boolean includeMissing) {
+        boolean none = true;
+        boolean all = true;
+        if (this.getPresentCount(block) > 0) {
+            double min = this.min[block];
+            double max = this.max[block];
+            // Comparisons with NaN are false, so a block with NaN values is never decided.
+            none = max < low || min > high;
+            all = low <= min && max <= high;
+        }
+        if (this.missing[block] > 0) {
+            none &= !includeMissing;
+            all &= includeMissing;
+        }
+        if (all)
+            return Match.All;
+        if (none)
+            return Match.None;
+        return Match.Some;
+    }
+}
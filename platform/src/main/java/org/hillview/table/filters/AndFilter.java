@@ -17,7 +17,17 @@
 
 package org.hillview.table.filters;
 
+import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.ITableFilter;
+import org.hillview.table.columns.ZoneMap;
+import org.hillview.table.membership.IntervalMembershipSet;
+import org.hillview.table.membership.MembershipSetFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * This filter execute an array of other filters and returns true only when all return true.
@@ -36,6 +46,145 @@ public class AndFilter implements ITableFilter {
         return true;
     }
 
+    /**
+     * Combine the decisions of several filters on a block of rows.
+     */
+    static ZoneMap.Match matchAll(Iterable<ITableFilter> filters, int block) {
+        ZoneMap.Match result = ZoneMap.Match.All;
+        for (ITableFilter f: filters) {
+            ZoneMap.Match m = f.matchBlock(block);
+            if (m == ZoneMap.Match.None)
+                return m;
+            if (m == ZoneMap.Match.Some)
+                result = m;
+        }
+        return result;
+    }
+
+    @Override
+    public ZoneMap.Match matchBlock(int block) {
+        return matchAll(Arrays.asList(this.filters), block);
+    }
+
+    @Override
+    public int testBatch(int[] rows, int count) {
+        for (ITableFilter f: this.filters) {
+            if (count == 0)
+                break;
+            count = f.testBatch(rows, count);
+        }
+        return count;
+    }
+
+    /**
+     * Range filters on sorted columns are applied first, without scanning;
+     * the other filters are evaluated in batches, most selective first,
+     * and each one only tests the rows that passed the previous ones.
+     */
+    @Override
+    public IMembershipSet filter(IMembershipSet set) {
+        List<ITableFilter> rest = new ArrayList<ITableFilter>();
+        for (ITableFilter f: this.filters) {
+            IntervalMembershipSet rows = null;
+            if (f instanceof RangeFilterDescription.RangeFilter)
+                rows = ((RangeFilterDescription.RangeFilter)f).sortedRows();
+            if (rows != null)
+                set = rows.intersection(set);
+            else
+                rest.add(f);
+        }
+        if (rest.isEmpty())
+            return set;
+        if (rest.size() == 1)
+            return rest.get(0).filter(set);
+        return MembershipSetFactory.filter(set, new Conjunction(rest));
+    }
+
+    /**
+     * A filter in a conjunction, with the number of rows it has tested and passed.
+     */
+    private static class Conjunct {
+        final ITableFilter filter;
+        long tested;
+        long passed;
+
+        Conjunct(ITableFilter filter) {
+            this.filter = filter;
+        }
+
+        /**
+         * Estimated fraction of the rows which pass the filter.
+         */
+        double passRate() {
+            return (this.passed + 1.0) / (this.tested + 2.0);
+        }
+    }
+
+    /**
+     * Evaluates a conjunction of filters in batches, ordering the filters
+     * by their estimated selectivity.  On the first batch all filters test all
+     * rows, to estimate the fraction of the rows passing each filter; afterwards the
+     * estimates are updated with the rows tested by each filter, and the filters
+     * are reordered after each batch.  The scratch buffer and the estimates
+     * are updated by testBatch, so an instance must be used by one thread;
+     * AndFilter.filter creates one for each call.
+     */
+    private static class Conjunction implements ITableFilter {
+        private final List<ITableFilter> filters;
+        private final Conjunct[] conjuncts;
+        @Nullable
+        private int[] scratch;
+
+        Conjunction(List<ITableFilter> filters) {
+            this.filters = filters;
+            this.conjuncts = new Conjunct[filters.size()];
+            for (int i = 0; i < this.conjuncts.length; i++)
+                this.conjuncts[i] = new Conjunct(filters.get(i));
+            this.scratch = null;
+        }
+
+        @Override
+        public boolean test(int rowIndex) {
+            for (Conjunct c: this.conjuncts)
+                if (!c.filter.test(rowIndex))
+                    return false;
+            return true;
+        }
+
+        @Override
+        public ZoneMap.Match matchBlock(int block) {
+            return matchAll(this.filters, block);
+        }
+
+        @Override
+        public int testBatch(int[] rows, int count) {
+            if (this.scratch == null) {
+                this.scratch = new int[rows.length];
+                for (Conjunct c: this.conjuncts) {
+                    System.arraycopy(rows, 0, this.scratch, 0, count);
+                    c.tested += count;
+                    c.passed += c.filter.testBatch(this.scratch, count);
+                }
+                Arrays.sort(this.conjuncts, Comparator.comparingDouble(Conjunct::passRate));
+                for (Conjunct c: this.conjuncts) {
+                    if (count == 0)
+                        break;
+                    count = c.filter.testBatch(rows, count);
+                }
+                return count;
+            }
+            for (Conjunct c: this.conjuncts) {
+                if (count == 0)
+                    break;
+                c.tested += count;
+                count = c.filter.testBatch(rows, count);
+                c.passed += count;
+            }
+            Arrays.sort(this.conjuncts, Comparator.comparingDouble(Conjunct::passRate));
+            return count;
+        }
+    }
+
     public String toString() {
         return "AndFilter[" + this.filters.length + "]";
     }
@@ -18,9 +18,17 @@
 package org.hillview.table.filters;
 
 import org.hillview.table.api.ITableFilter;
+import org.hillview.table.columns.ZoneMap;
+
+import javax.annotation.Nullable;
 
 public class NotFilter implements ITableFilter {
     private final ITableFilter filter;
+    /**
+     * Copy of the batch tested by the negated filter; reused across calls.
+     */
+    @Nullable
+    private int[] scratch;
 
     NotFilter(ITableFilter filter) {
         this.filter = filter;
@@ -30,6 +38,40 @@ public class NotFilter implements ITableFilter {
         return !this.filter.test(rowIndex);
     }
 
+    @Override
+    public ZoneMap.Match matchBlock(int block) {
+        switch (this.filter.matchBlock(block)) {
+            case None:
+                return ZoneMap.Match.All;
+            case All:
+                return ZoneMap.Match.None;
+            default:
+                return ZoneMap.Match.Some;
+        }
+    }
+
+    /**
+     * Evaluates the negated filter on a copy of the batch; the rows it keeps are
+     * a subsequence of the batch, so the complement is found by a merge.
+     */
+    @Override
+    public int testBatch(int[] rows, int count) {
+        if (this.scratch == null || this.scratch.length < count)
+            this.scratch = new int[rows.length];
+        System.arraycopy(rows, 0, this.scratch, 0, count);
+        int passed = this.filter.testBatch(this.scratch, count);
+        int kept = 0;
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            if (next < passed && this.scratch[next] == row)
+                next++;
+            else
+                rows[kept++] = row;
+        }
+        return kept;
+    }
+
     public String toString() {
         return "NotFilter(" + this.filter + ")";
     }
@@ -18,6 +18,7 @@
 package org.hillview.table.filters;
 
 import org.hillview.table.api.ITableFilter;
+import org.hillview.table.columns.ZoneMap;
 
 /**
  * This filter executes an array of other filters and returns true when either returns true.
@@ -36,6 +37,19 @@ public class OrFilter implements ITableFilter {
         return false;
     }
 
+    @Override
+    public ZoneMap.Match matchBlock(int block) {
+        ZoneMap.Match result = ZoneMap.Match.None;
+        for (ITableFilter f: this.filters) {
+            ZoneMap.Match m = f.matchBlock(block);
+            if (m == ZoneMap.Match.All)
+                return m;
+            if (m == ZoneMap.Match.Some)
+                result = m;
+        }
+        return result;
+    }
+
     public String toString() {
         return "OrFilter(" + this.filters.length + ")";
     }
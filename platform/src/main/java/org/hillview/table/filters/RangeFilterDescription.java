@@ -20,8 +20,11 @@ package org.hillview.table.filters;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.api.*;
 import org.hillview.table.columns.ColumnQuantization;
+import org.hillview.table.columns.DictionaryStringColumn;
 import org.hillview.table.columns.DoubleColumnQuantization;
 import org.hillview.table.columns.StringColumnQuantization;
+import org.hillview.table.columns.ZoneMap;
+import org.hillview.table.membership.IntervalMembershipSet;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
@@ -48,13 +51,114 @@ public class RangeFilterDescription implements ITableFilterDescription {
             return new DoubleRangeFilter(col);
     }
 
-    public class DoubleRangeFilter implements ITableFilter {
+    /**
+     * Base class for the range filters.  When the column is sorted the rows which
+     * pass the filter are a contiguous range, which is found by binary search.
+     */
+    public abstract class RangeFilter implements ITableFilter {
         final IColumn column;
 
-        DoubleRangeFilter(IColumn column) {
+        RangeFilter(IColumn column) {
             this.column = column;
         }
 
+        /**
+         * @return True if the value in the row is below the range when
+         *         inclusive is true, or not above the range otherwise.
+         */
+        abstract boolean before(int rowIndex, boolean inclusive);
+
+        /**
+         * First row where before(row, inclusive) is false; assumes that the column is sorted.
+         */
+        private int search(boolean inclusive) {
+            int low = 0;
+            int high = this.column.sizeInRows();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.before(mid, inclusive))
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * @return The set of all rows of the column that pass the filter, if they
+         *         can be found without scanning the column, null otherwise.
+         */
+        @Nullable
+        IntervalMembershipSet sortedRows() {
+            if (!this.column.isSorted())
+                return null;
+            int start = this.search(true);
+            int end = this.search(false);
+            return new IntervalMembershipSet(this.column.sizeInRows(), start, Math.max(start, end));
+        }
+
+        @Override
+        public IMembershipSet filter(IMembershipSet set) {
+            IntervalMembershipSet rows = this.sortedRows();
+            if (rows == null)
+                return ITableFilter.super.filter(set);
+            return rows.intersection(set);
+        }
+    }
+
+    public class DoubleRangeFilter extends RangeFilter {
+        DoubleRangeFilter(IColumn column) {
+            super(column);
+        }
+
+        @Override
+        boolean before(int rowIndex, boolean inclusive) {
+            double d = this.column.asDouble(rowIndex);
+            RangeFilterDescription desc = RangeFilterDescription.this;
+            return inclusive ? d < desc.min : d <= desc.max;
+        }
+
+        @Override
+        public ZoneMap.Match matchBlock(int block) {
+            ZoneMap zoneMap = this.column.getZoneMap();
+            if (zoneMap == null || block >= zoneMap.getBlockCount() ||
+                    this.column.getKind() == ContentsKind.Interval)
+                return ZoneMap.Match.Some;
+            RangeFilterDescription desc = RangeFilterDescription.this;
+            return zoneMap.match(block, desc.min, desc.max, desc.includeMissing);
+        }
+
+        @Override
+        public int testBatch(int[] rows, int count) {
+            RangeFilterDescription desc = RangeFilterDescription.this;
+            final IColumn column = this.column;
+            int kept = 0;
+            if (column.getKind() == ContentsKind.Interval) {
+                for (int i = 0; i < count; i++) {
+                    int row = rows[i];
+                    if (this.test(row))
+                        rows[kept++] = row;
+                }
+                return kept;
+            }
+            final double min = desc.min;
+            final double max = desc.max;
+            final boolean includeMissing = desc.includeMissing;
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                boolean pass;
+                if (column.isMissing(row)) {
+                    pass = includeMissing;
+                } else {
+                    double d = column.asDouble(row);
+                    pass = (min <= d) && (d <= max);
+                }
+                rows[kept] = row;
+                kept += pass ? 1 : 0;
+            }
+            return kept;
+        }
+
         public boolean test(int rowIndex) {
             RangeFilterDescription desc = RangeFilterDescription.this;
             boolean result;
@@ -111,11 +215,69 @@ public class RangeFilterDescription implements ITableFilterDescription {
         return result;
     }
 
-    public class StringRangeFilter implements ITableFilter {
-        final IColumn column;
+    public class StringRangeFilter extends RangeFilter {
+        /**
+         * For dictionary-encoded columns the codes of the values in the range
+         * are the interval [firstCode, endCode).
+         */
+        private final int firstCode;
+        private final int endCode;
+        /**
+         * Codes of the batch being tested; kept between calls, so the filter
+         * cannot test batches from several threads.
+         */
+        @Nullable
+        private int[] codes;
 
         StringRangeFilter(IColumn column) {
-            this.column = column;
+            super(column);
+            if (column instanceof DictionaryStringColumn) {
+                DictionaryStringColumn dict = (DictionaryStringColumn)column;
+                RangeFilterDescription desc = RangeFilterDescription.this;
+                this.firstCode = dict.search(desc.minString, true);
+                this.endCode = Math.max(this.firstCode, dict.search(desc.maxString, false));
+            } else {
+                this.firstCode = 0;
+                this.endCode = 0;
+            }
+            this.codes = null;
+        }
+
+        @Override
+        public int testBatch(int[] rows, int count) {
+            int kept = 0;
+            if (!(this.column instanceof DictionaryStringColumn)) {
+                for (int i = 0; i < count; i++) {
+                    int row = rows[i];
+                    if (this.test(row))
+                        rows[kept++] = row;
+                }
+                return kept;
+            }
+            DictionaryStringColumn dict = (DictionaryStringColumn)this.column;
+            if (this.codes == null || this.codes.length < count)
+                this.codes = new int[rows.length];
+            final int[] codes = this.codes;
+            dict.getCodes(rows, 0, count, codes);
+            final int first = this.firstCode;
+            final int end = this.endCode;
+            // Missing values have a code equal to the dictionary size.
+            final int missing = RangeFilterDescription.this.includeMissing ?
+                    dict.getDictionarySize() : -1;
+            for (int i = 0; i < count; i++) {
+                int code = codes[i];
+                boolean pass = (first <= code && code < end) || code == missing;
+                rows[kept] = rows[i];
+                kept += pass ? 1 : 0;
+            }
+            return kept;
+        }
+
+        @Override
+        boolean before(int rowIndex, boolean inclusive) {
+            String s = Converters.checkNull(this.column.getString(rowIndex));
+            RangeFilterDescription desc = RangeFilterDescription.this;
+            return inclusive ? s.compareTo(desc.minString) < 0 : s.compareTo(desc.maxString) <= 0;
         }
 
         public boolean test(int rowIndex) {
@@ -18,6 +18,10 @@
 package org.hillview.table.filters;
 
 import org.hillview.table.api.*;
+import org.hillview.table.columns.DictionaryStringColumn;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
 
 public class StringColumnFilterDescription implements ITableFilterDescription {
     static final long serialVersionUID = 1;
@@ -45,13 +49,31 @@ public class StringColumnFilterDescription implements ITableFilterDescription {
     /**
      * This filter maps a given Table to a Table that only contains the given value in the
      * specified column.
+     * For columns encoded with a dictionary the string filter is evaluated once for each
+     * dictionary value, and rows are tested by looking up their codes.
      */
     public class StringColumnFilter implements ITableFilter {
         private final IColumn column;
         private final IStringFilter stringFilter;
+        /**
+         * Codes whose values pass the filter, for dictionary-encoded columns.
+         */
+        @Nullable
+        private final BitSet selectedCodes;
+        /**
+         * Buffer holding the codes of a batch of rows; owned by the thread using the filter.
+         */
+        @Nullable
+        private int[] codes;
+
         StringColumnFilter(ITable table) {
             this.stringFilter = StringFilterFactory.getFilter(stringFilterDescription);
             this.column = table.getLoadedColumn(StringColumnFilterDescription.this.colName);
+            if (this.column instanceof DictionaryStringColumn &&
+                    ((DictionaryStringColumn)this.column).getDictionarySize() <= table.getNumOfRows())
+                this.selectedCodes = ((DictionaryStringColumn)this.column).filterCodes(this.stringFilter);
+            else
+                this.selectedCodes = null;
         }
 
         /**
@@ -59,7 +81,32 @@ public class StringColumnFilterDescription implements ITableFilterDescription {
          */
         @Override
         public boolean test(int rowIndex) {
+            if (this.selectedCodes != null)
+                return this.selectedCodes.get(((DictionaryStringColumn)this.column).getCode(rowIndex));
             return this.stringFilter.test(column.asString(rowIndex));
         }
+
+        @Override
+        public int testBatch(int[] rows, int count) {
+            int kept = 0;
+            if (this.selectedCodes == null) {
+                for (int i = 0; i < count; i++) {
+                    int row = rows[i];
+                    if (this.test(row))
+                        rows[kept++] = row;
+                }
+                return kept;
+            }
+            if (this.codes == null || this.codes.length < count)
+                this.codes = new int[rows.length];
+            final int[] codes = this.codes;
+            final BitSet selected = this.selectedCodes;
+            ((DictionaryStringColumn)this.column).getCodes(rows, 0, count, codes);
+            for (int i = 0; i < count; i++) {
+                rows[kept] = rows[i];
+                kept += selected.get(codes[i]) ? 1 : 0;
+            }
+            return kept;
+        }
     }
 }
@@ -23,24 +23,43 @@ import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ISampledRowIterator;
 import org.hillview.utils.Randomness;
 
-import java.util.BitSet;
+import java.util.Arrays;
 
 /**
  * A dense membership set.
  */
 public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet {
-    private final BitSet membershipMap;
+    /**
+     * Bitmap of the rows in the set: bit i of words[j] is set if row 64 * j + i
+     * is a member.  Grows as rows are added; the iterators extract the rows
+     * from it a word at a time.
+     */
+    private long[] words;
     private final int max;
     private int size;
     private final static double samplingThreshold = 0.05;
     private final static double samplingSizeMinimum = 100; // if size is smaller than this no need to sample
 
     public DenseMembershipSet(int max, int expectedSize) {
-        this.membershipMap = new BitSet(expectedSize);
+        this.words = new long[(expectedSize + 63) >>> 6];
         this.max = max;
         this.size = 0;
     }
 
+    /**
+     * A sealed set with the rows set in a bitmap.
+     * @param max    Maximum size.
+     * @param words  Bitmap with one bit for each row; it must not be modified afterwards.
+     */
+    public DenseMembershipSet(int max, long[] words) {
+        this.words = words;
+        this.max = max;
+        int size = 0;
+        for (long word : words)
+            size += Long.bitCount(word);
+        this.size = size;
+    }
+
     @Override
     public int getMax() {
         return this.max;
@@ -48,7 +67,55 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
 
     @Override
     public boolean isMember(int rowIndex) {
-        return this.membershipMap.get(rowIndex);
+        return isSet(this.words, rowIndex);
+    }
+
+    @Override
+    public boolean containsRange(int start, int end) {
+        final long[] words = this.words;
+        int wordIndex = start >>> 6;
+        if (wordIndex >= words.length)
+            return start >= end;
+        long word = ~words[wordIndex] & (-1L << start);
+        while (word == 0) {
+            wordIndex++;
+            if (wordIndex == words.length)
+                return (wordIndex << 6) >= end;
+            word = ~words[wordIndex];
+        }
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word) >= end;
+    }
+
+    private static boolean isSet(long[] words, int index) {
+        int wordIndex = index >>> 6;
+        return wordIndex < words.length && (words[wordIndex] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return The index of the first set bit at or after from, or -1 if there is none.
+     */
+    private static int nextSetBit(long[] words, int from) {
+        int wordIndex = from >>> 6;
+        if (wordIndex >= words.length)
+            return -1;
+        long word = words[wordIndex] & (-1L << from);
+        while (word == 0) {
+            wordIndex++;
+            if (wordIndex == words.length)
+                return -1;
+            word = words[wordIndex];
+        }
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @return One more than the largest row in the set, or 0 if the set is empty.
+     */
+    private int length() {
+        for (int i = this.words.length - 1; i >= 0; i--)
+            if (this.words[i] != 0)
+                return (i << 6) + 64 - Long.numberOfLeadingZeros(this.words[i]);
+        return 0;
     }
 
     private IMembershipSet denseSample(int k, long seed) {
@@ -88,9 +155,10 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
         final Randomness psg = new Randomness(seed);
         IMutableMembershipSet mms = MembershipSetFactory.create(this.getMax(), k);
         int i = 0;
+        int length = this.length();
         while ((i < numOfTries * k) && (mms.size() < k)){
-            int index = psg.nextInt(this.membershipMap.length());
-            if (this.membershipMap.get(index))
+            int index = psg.nextInt(length);
+            if (isSet(this.words, index))
                     mms.add(index);
             i++;
         }
@@ -99,9 +167,16 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
 
     @Override
     public void add(int index) {
-        if (this.membershipMap.get(index))
+        int wordIndex = index >>> 6;
+        if (wordIndex >= this.words.length) {
+            int length = Math.max(2 * this.words.length, wordIndex + 1);
+            length = Math.min(length, Math.max((this.max + 63) >>> 6, wordIndex + 1));
+            this.words = Arrays.copyOf(this.words, length);
+        }
+        long bit = 1L << index;
+        if ((this.words[wordIndex] & bit) != 0)
             return;
-        this.membershipMap.set(index);
+        this.words[wordIndex] |= bit;
         this.size++;
     }
 
@@ -120,7 +195,12 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
 
     @Override
     public IRowIterator getIterator() {
-        return new DenseMembershipIterator(this.membershipMap);
+        return new DenseMembershipIterator(this);
+    }
+
+    @Override
+    public IRowIterator getIteratorInRange(int start, int end) {
+        return new DenseMembershipIterator(this, start, end);
     }
 
     /**
@@ -141,7 +221,7 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
             usedRate = computeRate(rate);
         if (usedRate >= 1)
             return new NoSampleRowIterator(this.getIterator());
-        return new DenseSampledRowIterator (this.membershipMap, usedRate, seed);
+        return new DenseSampledRowIterator (this, usedRate, seed);
     }
 
     private double computeRate(double rate) {
@@ -157,45 +237,120 @@ public class DenseMembershipSet implements IMembershipSet, IMutableMembershipSet
      * as a member which makes it non thread-safe.
      */
     private static class DenseSampledRowIterator implements ISampledRowIterator {
-        private final BitSet bits;
+        private final DenseMembershipSet set;
         private final Randomness prg;
         private final double rate;
         int cursor = -1;
 
-        DenseSampledRowIterator(BitSet bits, double rate, long seed) {
-            this.bits = bits;
+        DenseSampledRowIterator(DenseMembershipSet set, double rate, long seed) {
+            this.set = set;
             this.prg = new Randomness(seed);
             this.rate = rate;
         }
 
         @Override
         public int getNextRow() {
+            final long[] words = this.set.words;
             this.cursor += this.prg.nextGeometric(rate);
-            while (this.cursor < this.bits.size()) {
-                if (this.bits.get(cursor))
+            while (this.cursor < words.length << 6) {
+                if (isSet(words, this.cursor))
                     return this.cursor;
                 this.cursor += this.prg.nextGeometric(rate);
             }
             return - 1;
         }
 
+        @Override
+        public int fillBatch(int[] buffer) {
+            int count = 0;
+            int cursor = this.cursor;
+            final long[] words = this.set.words;
+            final int size = words.length << 6;
+            while (count < buffer.length) {
+                cursor += this.prg.nextGeometric(this.rate);
+                if (cursor >= size)
+                    break;
+                if (isSet(words, cursor))
+                    buffer[count++] = cursor;
+            }
+            this.cursor = cursor;
+            return count;
+        }
+
         @Override
         public double rate() { return this.rate; }
     }
 
     public static class DenseMembershipIterator implements IRowIterator {
-        private final BitSet bits;
+        /**
+         * The words are read from the set on each call, since they are
+         * reallocated when the set grows.
+         */
+        private final DenseMembershipSet set;
         private int current;
+        private final int end;
+
+        DenseMembershipIterator(DenseMembershipSet set) {
+            this(set, 0, Integer.MAX_VALUE);
+        }
 
-        DenseMembershipIterator(BitSet bits) {
-            this.bits = bits;
-            this.current = -1;
+        /**
+         * Iterates over the set bits in the range [start, end).
+         */
+        DenseMembershipIterator(DenseMembershipSet set, int start, int end) {
+            this.set = set;
+            this.current = start - 1;
+            this.end = end;
         }
 
         @Override
         public int getNextRow() {
-            this.current = this.bits.nextSetBit(this.current + 1);
+            this.current = nextSetBit(this.set.words, this.current + 1);
+            if (this.current < 0 || this.current >= this.end) {
+                // Stay at the end of the range once the iteration is completed.
+                this.current = this.end - 1;
+                return -1;
+            }
             return this.current;
         }
+
+        /**
+         * Extracts the set bits a word at a time.
+         */
+        @Override
+        public int fillBatch(int[] buffer) {
+            final long[] words = this.set.words;
+            int from = this.current + 1;
+            if (from >= this.end || buffer.length == 0)
+                return 0;
+            // Index of the word holding the last row in the range.
+            final int lastWord = Math.min(words.length - 1, (this.end - 1) >>> 6);
+            int wordIndex = from >>> 6;
+            if (wordIndex > lastWord) {
+                this.current = this.end - 1;
+                return 0;
+            }
+            long word = words[wordIndex] & (-1L << from);
+            int count = 0;
+            while (count < buffer.length) {
+                while (word == 0) {
+                    wordIndex++;
+                    if (wordIndex > lastWord) {
+                        this.current = this.end - 1;
+                        return count;
+                    }
+                    word = words[wordIndex];
+                }
+                int row = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                if (row >= this.end) {
+                    this.current = this.end - 1;
+                    return count;
+                }
+                buffer[count++] = row;
+                word &= word - 1;
+            }
+            this.current = buffer[count - 1];
+            return count;
+        }
     }
 }
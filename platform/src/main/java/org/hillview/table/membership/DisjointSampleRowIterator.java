@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.utils.IntSet;
+
+import javax.annotation.Nullable;
+
+/**
+ * Iterates over one stage of a progressive sample of a membership set.
+ * A progressive sample is described by an increasing sequence of cumulative
+ * rates r_0 < r_1 < ... <= 1.  The samples of the stages are disjoint, and the union
+ * of the samples of stages 0 to k is a uniform sample of the set with rate r_k.
+ * Stage k samples the set with rate (r_k - r_{k-1}) / (1 - r_{k-1}) and discards
+ * the rows sampled by the previous stages, which are regenerated from their seeds.
+ */
+public class DisjointSampleRowIterator implements ISampledRowIterator {
+    private final ISampledRowIterator current;
+    /**
+     * Used when the samples are produced in increasing row order:
+     * iterators over the samples of the previous stages, and
+     * the last row produced by each of them.
+     */
+    @Nullable
+    private final ISampledRowIterator[] previous;
+    @Nullable
+    private final int[] previousRow;
+    /**
+     * Used otherwise: the rows sampled by the previous stages.
+     */
+    @Nullable
+    private final IntSet excluded;
+    private final double rate;
+
+    /**
+     * Create an iterator over a stage of a progressive sample.
+     * @param set    Set that is sampled.
+     * @param rates  Cumulative sampling rates of all stages.
+     * @param stage  Stage whose rows are produced.
+     * @param seed   Seed of the progressive sample.
+     */
+    public DisjointSampleRowIterator(IMembershipSet set, double[] rates, int stage, long seed) {
+        DisjointSampleRowIterator.checkRates(rates);
+        this.rate = rates[stage] - (stage == 0 ? 0 : rates[stage - 1]);
+        this.current = stageIterator(set, rates, stage, seed);
+        if (DisjointSampleRowIterator.sortedSamples(set)) {
+            this.previous = new ISampledRowIterator[stage];
+            this.previousRow = new int[stage];
+            for (int i = 0; i < stage; i++) {
+                this.previous[i] = stageIterator(set, rates, i, seed);
+                this.previousRow[i] = this.previous[i].getNextRow();
+            }
+            this.excluded = null;
+        } else {
+            // Only sparse sets produce samples out of order; these are small.
+            this.previous = null;
+            this.previousRow = null;
+            this.excluded = new IntSet();
+            for (int i = 0; i < stage; i++) {
+                ISampledRowIterator it = stageIterator(set, rates, i, seed);
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                    this.excluded.add(row);
+            }
+        }
+    }
+
+    /**
+     * Check that the rates describe a progressive sample.
+     */
+    public static void checkRates(double[] rates) {
+        if (rates.length == 0)
+            throw new IllegalArgumentException("No sampling rates");
+        double previous = 0;
+        for (double r : rates) {
+            if (r <= previous || r > 1)
+                throw new IllegalArgumentException("Sampling rates must be increasing in (0, 1]: " + r);
+            previous = r;
+        }
+    }
+
+    /**
+     * Iterator over all rows sampled in a stage, including the ones
+     * that have been sampled by previous stages.
+     */
+    private static ISampledRowIterator stageIterator(
+            IMembershipSet set, double[] rates, int stage, long seed) {
+        double before = stage == 0 ? 0 : rates[stage - 1];
+        double rate = Math.min(1, (rates[stage] - before) / (1 - before));
+        return set.getIteratorOverSample(rate, seed + stage, true);
+    }
+
+    /**
+     * True if the sampled iterators of the set produce the rows in increasing order.
+     */
+    private static boolean sortedSamples(IMembershipSet set) {
+        // Views find their samples in a sorted array of rows.
+        return set instanceof RangeRestrictedMembershipSet ||
+                set instanceof FullMembershipSet || set instanceof DenseMembershipSet ||
+                set instanceof RoaringMembershipSet || set instanceof IntervalMembershipSet;
+    }
+
+    private boolean isExcluded(int row) {
+        if (this.excluded != null)
+            return this.excluded.contains(row);
+        assert this.previous != null && this.previousRow != null;
+        for (int i = 0; i < this.previous.length; i++) {
+            while (this.previousRow[i] >= 0 && this.previousRow[i] < row)
+                this.previousRow[i] = this.previous[i].getNextRow();
+            if (this.previousRow[i] == row)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int getNextRow() {
+        int row = this.current.getNextRow();
+        while (row >= 0 && this.isExcluded(row))
+            row = this.current.getNextRow();
+        return row;
+    }
+
+    /**
+     * @return The probability that a row of the set is in the sample of this stage.
+     */
+    @Override
+    public double rate() {
+        return this.rate;
+    }
+}
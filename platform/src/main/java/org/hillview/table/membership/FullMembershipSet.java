@@ -55,11 +55,21 @@ public class FullMembershipSet implements IMembershipSet {
         return this.rowCount;
     }
 
+    @Override
+    public boolean containsRange(int start, int end) {
+        return start >= 0 && end <= this.rowCount;
+    }
+
     @Override
     public IRowIterator getIterator() {
         return new FullMembershipIterator(this.rowCount);
     }
 
+    @Override
+    public IRowIterator getIteratorInRange(int start, int end) {
+        return new FullMembershipIterator(start, Math.min(end, this.rowCount));
+    }
+
     /**
      * The procedure
      * samples k times with replacement so it may return a set with less than k distinct items
@@ -148,14 +158,36 @@ public class FullMembershipSet implements IMembershipSet {
                 return this.cursor;
             else return - 1;
         }
+
+        @Override
+        public int fillBatch(int[] buffer) {
+            int count = 0;
+            int cursor = this.cursor;
+            while (count < buffer.length) {
+                cursor += this.prg.nextGeometric(this.rate);
+                if (cursor >= this.range)
+                    break;
+                buffer[count++] = cursor;
+            }
+            this.cursor = cursor;
+            return count;
+        }
     }
 
     public static class FullMembershipIterator implements IRowIterator {
-        private int cursor = 0;
+        private int cursor;
         private final int range;
 
         public FullMembershipIterator(final int range) {
-            this.range = range;
+            this(0, range);
+        }
+
+        /**
+         * Iterates over the rows in the range [start, end).
+         */
+        public FullMembershipIterator(final int start, final int end) {
+            this.cursor = start;
+            this.range = end;
         }
 
         @Override
@@ -166,5 +198,15 @@ public class FullMembershipSet implements IMembershipSet {
             }
             else return - 1;
         }
+
+        @Override
+        public int fillBatch(int[] buffer) {
+            int count = Math.min(buffer.length, this.range - this.cursor);
+            int first = this.cursor;
+            for (int i = 0; i < count; i++)
+                buffer[i] = first + i;
+            this.cursor += count;
+            return count;
+        }
     }
 }
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.hillview.table.membership;
+
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.IMutableMembershipSet;
+import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.utils.Randomness;
+
+import java.util.Arrays;
+
+/**
+ * A membership set made of a list of runs of consecutive rows [start, end).
+ * This is a compact representation for sets which select a few contiguous ranges
+ * of rows, e.g., range filters on sorted columns.  Membership tests use a binary
+ * search on the runs; the rows are enumerated in increasing order.
+ */
+public class IntervalMembershipSet implements IMembershipSet {
+    private final int max;
+    /**
+     * First row of each run; runs are sorted, non-empty and not adjacent.
+     */
+    private final int[] starts;
+    /**
+     * First row after each run.
+     */
+    private final int[] ends;
+    /**
+     * Number of rows in the runs before each run; has one extra element with the set size.
+     */
+    private final int[] before;
+
+    /**
+     * A set containing a single run of rows.
+     * @param max    Maximum number of rows.
+     * @param start  First row in the set.
+     * @param end    First row after the set.
+     */
+    public IntervalMembershipSet(int max, int start, int end) {
+        this(max, new int[] { start }, new int[] { end });
+    }
+
+    /**
+     * A set containing several runs of rows.
+     * @param max     Maximum number of rows.
+     * @param starts  First row of each run; runs must be sorted and must not overlap.
+     * @param ends    First row after each run.
+     */
+    public IntervalMembershipSet(int max, int[] starts, int[] ends) {
+        if (starts.length != ends.length)
+            throw new IllegalArgumentException("Mismatched run boundaries");
+        this.max = max;
+        // Drop empty runs and coalesce adjacent ones
+        int[] s = new int[starts.length];
+        int[] e = new int[ends.length];
+        int runs = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] >= ends[i])
+                continue;
+            if (runs > 0 && starts[i] < e[runs - 1])
+                throw new IllegalArgumentException("Runs are not sorted: " + starts[i]);
+            if (runs > 0 && starts[i] == e[runs - 1]) {
+                e[runs - 1] = ends[i];
+            } else {
+                s[runs] = starts[i];
+                e[runs] = ends[i];
+                runs++;
+            }
+        }
+        this.starts = Arrays.copyOf(s, runs);
+        this.ends = Arrays.copyOf(e, runs);
+        this.before = new int[runs + 1];
+        for (int i = 0; i < runs; i++)
+            this.before[i + 1] = this.before[i] + this.ends[i] - this.starts[i];
+    }
+
+    @Override
+    public int getMax() {
+        return this.max;
+    }
+
+    /**
+     * @return The number of runs in the set.
+     */
+    public int getRunCount() {
+        return this.starts.length;
+    }
+
+    /**
+     * Index of the run which contains the row or precedes it; -1 if none.
+     */
+    private int runOf(int rowIndex) {
+        int index = Arrays.binarySearch(this.starts, rowIndex);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    @Override
+    public boolean isMember(int rowIndex) {
+        int run = this.runOf(rowIndex);
+        return run >= 0 && rowIndex < this.ends[run];
+    }
+
+    @Override
+    public int getSize() {
+        return this.before[this.starts.length];
+    }
+
+    @Override
+    public boolean containsRange(int start, int end) {
+        // Adjacent runs are coalesced, so the range must be inside a single run.
+        int run = this.runOf(start);
+        return run >= 0 && end <= this.ends[run];
+    }
+
+    @Override
+    public IRowIterator getIterator() {
+        return new IntervalIterator(0, this.max);
+    }
+
+    @Override
+    public IRowIterator getIteratorInRange(int start, int end) {
+        return new IntervalIterator(start, end);
+    }
+
+    @Override
+    public IMembershipSet sample(int k, long seed) {
+        if (k >= this.getSize())
+            return this;
+        int[] ranks = new FullMembershipSet(this.getSize()).sample(k, seed).getRows();
+        Arrays.sort(ranks);
+        IMutableMembershipSet mms = MembershipSetFactory.create(this.max, k);
+        int run = 0;
+        for (int rank : ranks) {
+            while (this.before[run + 1] <= rank)
+                run++;
+            mms.add(this.starts[run] + rank - this.before[run]);
+        }
+        return mms.seal();
+    }
+
+    @Override
+    public ISampledRowIterator getIteratorOverSample(double rate, long seed, boolean enforceRate) {
+        if (rate >= 1)
+            return new NoSampleRowIterator(this.getIterator());
+        // Skipping rows is cheap, so enforceRate is always assumed to be true
+        return new IntervalSampledRowIterator(rate, seed);
+    }
+
+    /**
+     * The kind of set operation performed on two sets.
+     */
+    private enum Operation {
+        And, Or, AndNot;
+
+        boolean apply(boolean left, boolean right) {
+            switch (this) {
+                case And:
+                    return left && right;
+                case Or:
+                    return left || right;
+                default:
+                    return left && !right;
+            }
+        }
+    }
+
+    /**
+     * Combine two lists of runs by sweeping over their boundaries.
+     */
+    private IntervalMembershipSet combine(IntervalMembershipSet other, Operation op) {
+        int n = 2 * this.starts.length;
+        int m = 2 * other.starts.length;
+        int[] s = new int[(n + m) / 2 + 1];
+        int[] e = new int[(n + m) / 2 + 1];
+        int runs = 0;
+        int i = 0, j = 0;
+        boolean inLeft = false, inRight = false, inResult = false;
+        while (i < n || j < m) {
+            int left = i < n ? this.boundary(i) : Integer.MAX_VALUE;
+            int right = j < m ? other.boundary(j) : Integer.MAX_VALUE;
+            int position = Math.min(left, right);
+            if (left == position) {
+                inLeft = !inLeft;
+                i++;
+            }
+            if (right == position) {
+                inRight = !inRight;
+                j++;
+            }
+            boolean in = op.apply(inLeft, inRight);
+            if (in && !inResult) {
+                s[runs] = position;
+            } else if (!in && inResult) {
+                e[runs] = position;
+                runs++;
+            }
+            inResult = in;
+        }
+        return new IntervalMembershipSet(this.max, Arrays.copyOf(s, runs), Arrays.copyOf(e, runs));
+    }
+
+    /**
+     * Boundaries of the runs: even indexes are starts, odd indexes are ends.
+     */
+    private int boundary(int index) {
+        return (index & 1) == 0 ? this.starts[index >> 1] : this.ends[index >> 1];
+    }
+
+    @Override
+    public IMembershipSet intersection(IMembershipSet other) {
+        if (other instanceof FullMembershipSet)
+            return this;
+        if (other instanceof IntervalMembershipSet)
+            return this.combine((IntervalMembershipSet)other, Operation.And);
+        // Only look at the rows of the other set inside the runs
+        IMutableMembershipSet mms = MembershipSetFactory.create(
+                this.max, Math.min(this.getSize(), other.getSize()));
+        for (int i = 0; i < this.starts.length; i++) {
+            IRowIterator it = other.getIteratorInRange(this.starts[i], this.ends[i]);
+            for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                mms.add(row);
+        }
+        return mms.seal();
+    }
+
+    @Override
+    public IMembershipSet union(IMembershipSet other) {
+        if (other instanceof FullMembershipSet)
+            return other;
+        if (other instanceof IntervalMembershipSet)
+            return this.combine((IntervalMembershipSet)other, Operation.Or);
+        return IMembershipSet.super.union(other);
+    }
+
+    @Override
+    public IMembershipSet setMinus(IMembershipSet other) {
+        if (other instanceof IntervalMembershipSet)
+            return this.combine((IntervalMembershipSet)other, Operation.AndNot);
+        return IMembershipSet.super.setMinus(other);
+    }
+
+    /**
+     * Iterates over the rows of the set within a range.
+     */
+    private class IntervalIterator implements IRowIterator {
+        private final int end;
+        /**
+         * Index of the current run.
+         */
+        private int run;
+        /**
+         * Next row to return.
+         */
+        private int current;
+        /**
+         * End of the current run, restricted to the range.
+         */
+        private int runEnd;
+
+        IntervalIterator(int start, int end) {
+            this.end = end;
+            int r = IntervalMembershipSet.this.runOf(start);
+            if (r < 0 || start >= IntervalMembershipSet.this.ends[r]) {
+                // The start is not in a run
+                r++;
+                this.current = r < IntervalMembershipSet.this.starts.length ?
+                        IntervalMembershipSet.this.starts[r] : end;
+            } else {
+                this.current = start;
+            }
+            this.run = r;
+            this.runEnd = r < IntervalMembershipSet.this.starts.length ?
+                    Math.min(IntervalMembershipSet.this.ends[r], end) : end;
+        }
+
+        /**
+         * Move to the next run.
+         * @return False if there are no more runs in the range.
+         */
+        private boolean nextRun() {
+            this.run++;
+            if (this.run >= IntervalMembershipSet.this.starts.length ||
+                    IntervalMembershipSet.this.starts[this.run] >= this.end) {
+                this.run = IntervalMembershipSet.this.starts.length;
+                this.current = this.runEnd;
+                return false;
+            }
+            this.current = IntervalMembershipSet.this.starts[this.run];
+            this.runEnd = Math.min(IntervalMembershipSet.this.ends[this.run], this.end);
+            return true;
+        }
+
+        @Override
+        public int getNextRow() {
+            if (this.current < this.runEnd)
+                return this.current++;
+            if (!this.nextRun())
+                return -1;
+            return this.current++;
+        }
+
+        @Override
+        public int fillBatch(int[] buffer) {
+            int count = 0;
+            while (count < buffer.length) {
+                if (this.current >= this.runEnd && !this.nextRun())
+                    break;
+                int n = Math.min(this.runEnd - this.current, buffer.length - count);
+                int row = this.current;
+                for (int i = 0; i < n; i++)
+                    buffer[count + i] = row + i;
+                count += n;
+                this.current += n;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * An iterator over a sample of the rows: the gaps between consecutive sampled rows
+     * are geometrically distributed.  The class has a Randomness object as a member which
+     * makes it non thread-safe.
+     */
+    private class IntervalSampledRowIterator implements ISampledRowIterator {
+        private final Randomness prg;
+        private final double rate;
+        /**
+         * Rank of the last row returned.
+         */
+        private long rank;
+        private int run;
+
+        IntervalSampledRowIterator(double rate, long seed) {
+            this.prg = new Randomness(seed);
+            this.rate = rate;
+            this.rank = -1;
+            this.run = 0;
+        }
+
+        @Override
+        public int getNextRow() {
+            this.rank += this.prg.nextGeometric(this.rate);
+            int[] before = IntervalMembershipSet.this.before;
+            if (this.rank >= before[before.length - 1])
+                return -1;
+            while (before[this.run + 1] <= this.rank)
+                this.run++;
+            return IntervalMembershipSet.this.starts[this.run] + (int)(this.rank - before[this.run]);
+        }
+
+        @Override
+        public double rate() { return this.rate; }
+    }
+}
@@ -20,7 +20,11 @@ package org.hillview.table.membership;
 import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.IMutableMembershipSet;
 import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ITableFilter;
+import org.hillview.table.columns.ZoneMap;
 
+import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.function.IntPredicate;
 
 /**
@@ -29,18 +33,135 @@ import java.util.function.IntPredicate;
 public class MembershipSetFactory {
     private static final int sizeEstimationSampleSize = 40;
 
+    /**
+     * Sets over at least this many rows use a compressed bitmap.
+     */
+    private static final int minimumRoaringMax = 1 << 16;
+
+    /**
+     * Number of rows tested together when filtering.
+     */
+    private static final int filterBatchSize = 1024;
+
     /**
      * Creates a mutable membership set.
+     * Sets over many rows use a compressed bitmap, which adapts to the density
+     * of each range of rows and supports fast set operations.
      * @param maxSize        Maximum size.
      * @param estimatedSize  Estimated number of elements inside.
      */
     public static IMutableMembershipSet create(int maxSize, int estimatedSize) {
+        if (maxSize >= minimumRoaringMax)
+            return new RoaringMembershipSet(maxSize);
         if (estimatedSize >= maxSize / 30)
             return new DenseMembershipSet(maxSize, estimatedSize);
         else
             return new SparseMembershipSet(maxSize, estimatedSize);
     }
 
+    /**
+     * Compute the rows of a membership set which pass a filter.  The rows are
+     * tested in batches.  The result of a small set is built by adding the rows
+     * which pass.  The other sets are filtered one block of rows at a time: the
+     * rows of a block which pass are collected in a bitmap of the block's size,
+     * which becomes a chunk of the result.  Blocks of rows which the filter
+     * decides as a whole are not tested.
+     * @param set     Set of rows to filter.
+     * @param filter  Filter to apply; it is only used by the calling thread.
+     */
+    public static IMembershipSet filter(IMembershipSet set, ITableFilter filter) {
+        final int max = set.getMax();
+        int[] rows = new int[filterBatchSize];
+        int size = set.getSize();
+        // Sparse sets do not enumerate their rows in order, so they are not scanned by block.
+        if (set instanceof SparseMembershipSet || size < max / 30) {
+            IMutableMembershipSet result = create(max, size);
+            IRowIterator it = set.getIterator();
+            for (int count = it.fillBatch(rows); count > 0; count = it.fillBatch(rows)) {
+                int kept = filter.testBatch(rows, count);
+                for (int i = 0; i < kept; i++)
+                    result.add(rows[i]);
+            }
+            return result.seal();
+        }
+
+        ZoneMap.Match[] matches = blockMatches(filter, max);
+        if (max < minimumRoaringMax) {
+            // A single block.
+            assert max <= ZoneMap.BlockRows;
+            long[] words = new long[(max + 63) >>> 6];
+            filterBlock(set, filter, match(matches, 0), 0, max, rows, words);
+            return new DenseMembershipSet(max, words);
+        }
+        // Each block of rows is a chunk of the result.
+        assert ZoneMap.BlockRows == RoaringMembershipSet.ChunkRows;
+        RoaringMembershipSet result = new RoaringMembershipSet(max);
+        long[] words = new long[ZoneMap.BlockRows >>> 6];
+        int blocks = (int)(((long)max + ZoneMap.BlockRows - 1) >>> ZoneMap.LogBlockRows);
+        for (int block = 0; block < blocks; block++) {
+            int start = block << ZoneMap.LogBlockRows;
+            int end = (int)Math.min((long)start + ZoneMap.BlockRows, max);
+            if (filterBlock(set, filter, match(matches, block), start, end, rows, words)) {
+                result.setChunk(block, words);
+                Arrays.fill(words, 0L);
+            }
+        }
+        return result;
+    }
+
+    private static ZoneMap.Match match(@Nullable ZoneMap.Match[] matches, int block) {
+        return matches == null ? ZoneMap.Match.Some : matches[block];
+    }
+
+    /**
+     * Set in a bitmap the bits of the rows of a set in a block which pass a filter.
+     * @param match  How the filter matches the rows in the block.
+     * @param start  First row of the block; a multiple of 64.
+     * @param end    First row after the block.
+     * @param rows   Buffer for a batch of rows.
+     * @param words  Bitmap; bit i is set if row start + i passes.  Must be all zero.
+     * @return       True if any bit was set.
+     */
+    private static boolean filterBlock(IMembershipSet set, ITableFilter filter, ZoneMap.Match match,
+                                       int start, int end, int[] rows, long[] words) {
+        if (match == ZoneMap.Match.None)
+            return false;
+        if (match == ZoneMap.Match.All && set.containsRange(start, end)) {
+            int bits = end - start;
+            Arrays.fill(words, 0, bits >>> 6, -1L);
+            if ((bits & 63) != 0)
+                words[bits >>> 6] = (1L << bits) - 1;
+            return bits > 0;
+        }
+        boolean any = false;
+        IRowIterator it = set.getIteratorInRange(start, end);
+        for (int count = it.fillBatch(rows); count > 0; count = it.fillBatch(rows)) {
+            int kept = match == ZoneMap.Match.All ? count : filter.testBatch(rows, count);
+            for (int i = 0; i < kept; i++) {
+                int bit = rows[i] - start;
+                words[bit >>> 6] |= 1L << bit;
+            }
+            any |= kept > 0;
+        }
+        return any;
+    }
+
+    /**
+     * @return For each block of rows how the filter matches it; null if all
+     *         blocks have to be tested.
+     */
+    @Nullable
+    private static ZoneMap.Match[] blockMatches(ITableFilter filter, int max) {
+        int blocks = (int)(((long)max + ZoneMap.BlockRows - 1) >>> ZoneMap.LogBlockRows);
+        ZoneMap.Match[] result = new ZoneMap.Match[blocks];
+        boolean useful = false;
+        for (int i = 0; i < blocks; i++) {
+            result[i] = filter.matchBlock(i);
+            useful |= result[i] != ZoneMap.Match.Some;
+        }
+        return useful ? result : null;
+    }
+
     /**
      * Estimates the size of a filter applied to an IMembershipSet
      * @return an approximation of the size based on sampling. May return 0.
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.IMutableMembershipSet;
+import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.utils.Randomness;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A view of the rows of a membership set that lie in a range [start, end).
+ * This is used to split a large table into pieces without copying its
+ * membership set.  A view of a view is a view of the underlying set.
+ */
+public class RangeRestrictedMembershipSet implements IMembershipSet {
+    private final IMembershipSet base;
+    private final int start;
+    private final int end;
+    /**
+     * Number of rows in the set; computed lazily, -1 if not yet known.
+     */
+    private int size;
+    /**
+     * Sample of the base set, shared by all the views of the same base set.
+     */
+    private final SharedSample sample;
+
+    /**
+     * Create a view of the rows of a membership set in a range.
+     * @param base   Membership set that is restricted.
+     * @param start  First row in the range.
+     * @param end    First row after the range.
+     */
+    public RangeRestrictedMembershipSet(IMembershipSet base, int start, int end) {
+        assert 0 <= start && start <= end && end <= base.getMax();
+        if (base instanceof RangeRestrictedMembershipSet) {
+            RangeRestrictedMembershipSet view = (RangeRestrictedMembershipSet)base;
+            this.base = view.base;
+            this.sample = view.sample;
+            this.start = Math.max(start, view.start);
+            this.end = Math.max(Math.min(end, view.end), this.start);
+        } else {
+            this.base = base;
+            this.sample = new SharedSample(base);
+            this.start = start;
+            this.end = end;
+        }
+        this.size = -1;
+    }
+
+    /**
+     * Split a membership set into views over consecutive ranges of rows which
+     * share the samples of the set.
+     * @param set    Set to split.
+     * @param parts  Number of ranges; the ranges have the same length.
+     */
+    public static List<IMembershipSet> split(IMembershipSet set, int parts) {
+        RangeRestrictedMembershipSet whole = new RangeRestrictedMembershipSet(set, 0, set.getMax());
+        long max = set.getMax();
+        List<IMembershipSet> result = new ArrayList<IMembershipSet>(parts);
+        for (int i = 0; i < parts; i++) {
+            int start = (int)(max * i / parts);
+            int end = (int)(max * (i + 1) / parts);
+            result.add(new RangeRestrictedMembershipSet(whole, start, end));
+        }
+        return result;
+    }
+
+    /**
+     * Split a membership set into views over consecutive ranges of rows
+     * with the same number of rows, which share the samples of the set.
+     * The ranges are found in a single pass over the set.
+     * @param set           Set to split.
+     * @param rowsPerPiece  Number of rows of the set in each range, except the last one.
+     */
+    public static List<IMembershipSet> splitBySize(IMembershipSet set, int rowsPerPiece) {
+        if (rowsPerPiece <= 0)
+            throw new IllegalArgumentException("Piece size must be positive: " + rowsPerPiece);
+        RangeRestrictedMembershipSet whole = new RangeRestrictedMembershipSet(set, 0, set.getMax());
+        List<IMembershipSet> result = new ArrayList<IMembershipSet>();
+        if (set instanceof FullMembershipSet) {
+            for (int start = 0; start < set.getMax(); start += rowsPerPiece) {
+                int end = Math.min(set.getMax(), start + rowsPerPiece);
+                result.add(new RangeRestrictedMembershipSet(whole, start, end, end - start));
+            }
+            return result;
+        }
+        int[] batch = new int[1024];
+        // Iterators over ranges produce the rows in increasing order.
+        IRowIterator it = set.getIteratorInRange(0, set.getMax());
+        // First row of the current piece, and number of rows seen in the piece.
+        int start = 0;
+        int count = 0;
+        for (int n = it.fillBatch(batch); n > 0; n = it.fillBatch(batch)) {
+            int i = 0;
+            while (i < n) {
+                int taken = Math.min(n - i, rowsPerPiece - count);
+                count += taken;
+                i += taken;
+                if (count == rowsPerPiece) {
+                    int end = batch[i - 1] + 1;
+                    result.add(new RangeRestrictedMembershipSet(whole, start, end, count));
+                    start = end;
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0)
+            result.add(new RangeRestrictedMembershipSet(whole, start, set.getMax(), count));
+        return result;
+    }
+
+    /**
+     * A view of a view with a known number of rows.
+     */
+    private RangeRestrictedMembershipSet(
+            RangeRestrictedMembershipSet view, int start, int end, int size) {
+        this(view, start, end);
+        this.size = size;
+    }
+
+    @Override
+    public int getMax() {
+        return this.base.getMax();
+    }
+
+    @Override
+    public boolean isMember(int rowIndex) {
+        return rowIndex >= this.start && rowIndex < this.end && this.base.isMember(rowIndex);
+    }
+
+    @Override
+    public int getSize() {
+        if (this.size < 0) {
+            int count = 0;
+            int[] batch = new int[1024];
+            IRowIterator it = this.getIterator();
+            for (int n = it.fillBatch(batch); n > 0; n = it.fillBatch(batch))
+                count += n;
+            this.size = count;
+        }
+        return this.size;
+    }
+
+    @Override
+    public boolean containsRange(int start, int end) {
+        return start >= this.start && end <= this.end && this.base.containsRange(start, end);
+    }
+
+    @Override
+    public IRowIterator getIterator() {
+        return this.base.getIteratorInRange(this.start, this.end);
+    }
+
+    @Override
+    public IRowIterator getIteratorInRange(int start, int end) {
+        int first = Math.max(start, this.start);
+        return this.base.getIteratorInRange(first, Math.max(Math.min(end, this.end), first));
+    }
+
+    /**
+     * Reservoir sampling over the rows in the view.
+     */
+    @Override
+    public IMembershipSet sample(int k, long seed) {
+        if (k >= this.getSize())
+            return this;
+        final Randomness psg = new Randomness(seed);
+        int[] chosen = new int[k];
+        IRowIterator it = this.getIterator();
+        int i = 0;
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow(), i++) {
+            if (i < k) {
+                chosen[i] = row;
+            } else {
+                int j = psg.nextInt(i + 1);
+                if (j < k)
+                    chosen[j] = row;
+            }
+        }
+        IMutableMembershipSet mms = MembershipSetFactory.create(this.getMax(), k);
+        for (int row : chosen)
+            mms.add(row);
+        return mms.seal();
+    }
+
+    /**
+     * The sample of the view contains exactly the rows of the sample of the base
+     * set which are in the range, so views covering disjoint ranges produce
+     * disjoint samples whose union is the sample of the base set.
+     */
+    @Override
+    public ISampledRowIterator getIteratorOverSample(double rate, long seed, boolean enforceRate) {
+        SharedSample.Rows rows = this.sample.get(rate, seed, enforceRate);
+        if (rows.rows == null)
+            return new NoSampleRowIterator(this.getIterator());
+        return new SortedRowIterator(rows.rows, this.start, this.end, rows.usedRate);
+    }
+
+    /**
+     * A sample of the base set, computed once and shared by the views which
+     * split the base set, so that each view finds its rows in the sample with
+     * a binary search instead of iterating over the whole sample.
+     * Only a few recent samples are kept: all the pieces of a split sketch
+     * use the same sampling parameters, and a progressive sample uses one
+     * set of parameters for each of its stages.
+     */
+    private static final class SharedSample {
+        /**
+         * Rows of a sample of the base set.
+         */
+        static final class Rows {
+            final double rate;
+            final long seed;
+            final boolean enforceRate;
+            /**
+             * Sampling rate actually used by the base set.
+             */
+            final double usedRate;
+            /**
+             * Sampled rows, sorted; null if the sample contains all rows.
+             */
+            @Nullable
+            final int[] rows;
+
+            Rows(double rate, long seed, boolean enforceRate,
+                 double usedRate, @Nullable int[] rows) {
+                this.rate = rate;
+                this.seed = seed;
+                this.enforceRate = enforceRate;
+                this.usedRate = usedRate;
+                this.rows = rows;
+            }
+        }
+
+        /**
+         * Maximum number of samples kept.
+         */
+        private static final int maxSamples = 16;
+        private final IMembershipSet base;
+        /**
+         * Samples computed, the most recent last.
+         */
+        private final List<Rows> samples;
+
+        SharedSample(IMembershipSet base) {
+            this.base = base;
+            this.samples = new ArrayList<Rows>();
+        }
+
+        synchronized Rows get(double rate, long seed, boolean enforceRate) {
+            for (Rows r : this.samples)
+                if (r.rate == rate && r.seed == seed && r.enforceRate == enforceRate)
+                    return r;
+            ISampledRowIterator it = this.base.getIteratorOverSample(rate, seed, enforceRate);
+            double usedRate = it.rate();
+            int[] rows = null;
+            if (usedRate < 1) {
+                rows = new int[1024];
+                int[] batch = new int[1024];
+                int count = 0;
+                for (int n = it.fillBatch(batch); n > 0; n = it.fillBatch(batch)) {
+                    if (count + n > rows.length)
+                        rows = Arrays.copyOf(rows, 2 * rows.length);
+                    System.arraycopy(batch, 0, rows, count, n);
+                    count += n;
+                }
+                rows = Arrays.copyOf(rows, count);
+                Arrays.sort(rows);
+            }
+            Rows result = new Rows(rate, seed, enforceRate, usedRate, rows);
+            if (this.samples.size() == maxSamples)
+                this.samples.remove(0);
+            this.samples.add(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,816 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.hillview.table.membership;
+
+import org.hillview.table.api.IMembershipSet;
+import org.hillview.table.api.IMutableMembershipSet;
+import org.hillview.table.api.IRowIterator;
+import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.utils.Randomness;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A compressed bitmap membership set, organized like a Roaring bitmap.
+ * The rows are split in chunks of 2^16 consecutive values; the rows of each chunk are
+ * stored in a container, whose representation depends on the number of rows:
+ * a sorted array of 16-bit values for sparse chunks, a bitmap for dense chunks,
+ * or a list of runs for chunks made of long intervals (only chosen when the set is sealed).
+ * Set operations between two such sets work one container at a time,
+ * using word-level operations on bitmaps, and the set size is maintained without iterating.
+ * Rows are enumerated in increasing order.
+ */
+public class RoaringMembershipSet implements IMembershipSet, IMutableMembershipSet {
+    private static final int LogChunkSize = 16;
+    static final int ChunkRows = 1 << LogChunkSize;
+    private static final int ChunkMask = (1 << LogChunkSize) - 1;
+    /**
+     * Number of 64-bit words in a bitmap container.
+     */
+    private static final int BitmapWords = 1 << (LogChunkSize - 6);
+    /**
+     * Array containers never hold more values than this; above it a bitmap is smaller.
+     */
+    private static final int MaxArraySize = 4096;
+    private final static double samplingThreshold = 0.05;
+    private final static double samplingSizeMinimum = 100; // if size is smaller than this no need to sample
+
+    private final int max;
+    /**
+     * One container for each chunk of rows; null if the chunk has no rows.
+     */
+    private final Container[] containers;
+    private int size;
+
+    public RoaringMembershipSet(int max) {
+        this.max = max;
+        this.containers = new Container[(max >>> LogChunkSize) + 1];
+        this.size = 0;
+    }
+
+    /**
+     * Create a set with the same rows as another membership set.
+     */
+    public static RoaringMembershipSet copy(IMembershipSet set) {
+        if (set instanceof RoaringMembershipSet)
+            return (RoaringMembershipSet)set;
+        RoaringMembershipSet result = new RoaringMembershipSet(set.getMax());
+        if (set instanceof SparseMembershipSet) {
+            // Rows are enumerated in hash order; adding them sorted is much cheaper.
+            int[] rows = set.getRows();
+            Arrays.sort(rows);
+            for (int row : rows)
+                result.add(row);
+        } else {
+            IRowIterator it = set.getIterator();
+            for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                result.add(row);
+        }
+        return result.seal();
+    }
+
+    /**
+     * Set the rows of a chunk from a bitmap, replacing the rows it had.
+     * @param chunk  Chunk index; the chunk holds rows [chunk * ChunkRows, (chunk + 1) * ChunkRows).
+     * @param words  Bitmap of the rows in the chunk, relative to its first row;
+     *               it is copied, so the caller can reuse it.
+     */
+    void setChunk(int chunk, long[] words) {
+        Container previous = this.containers[chunk];
+        if (previous != null)
+            this.size -= previous.cardinality();
+        Container c = Container.fromWords(Arrays.copyOf(words, BitmapWords));
+        if (c != null) {
+            c = c.optimize();
+            this.size += c.cardinality();
+        }
+        this.containers[chunk] = c;
+    }
+
+    @Override
+    public int getMax() {
+        return this.max;
+    }
+
+    @Override
+    public boolean isMember(int rowIndex) {
+        int chunk = rowIndex >>> LogChunkSize;
+        if (chunk >= this.containers.length)
+            return false;
+        Container c = this.containers[chunk];
+        return c != null && c.contains(rowIndex & ChunkMask);
+    }
+
+    /**
+     * Only ranges covering all the rows of a chunk are recognized.
+     */
+    @Override
+    public boolean containsRange(int start, int end) {
+        if ((start & ChunkMask) != 0 || start >= this.max ||
+                end != Math.min((long)start + ChunkMask + 1, this.max))
+            return false;
+        Container c = this.containers[start >>> LogChunkSize];
+        return c != null && c.cardinality() == end - start;
+    }
+
+    @Override
+    public void add(int index) {
+        int chunk = index >>> LogChunkSize;
+        int low = index & ChunkMask;
+        Container c = this.containers[chunk];
+        if (c == null) {
+            c = new ArrayContainer();
+        } else if (c.contains(low)) {
+            return;
+        }
+        this.containers[chunk] = c.add(low);
+        this.size++;
+    }
+
+    /**
+     * Choose the most compact representation for each container.
+     */
+    @Override
+    public RoaringMembershipSet seal() {
+        for (int i = 0; i < this.containers.length; i++)
+            if (this.containers[i] != null)
+                this.containers[i] = this.containers[i].optimize();
+        return this;
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public RoaringIterator getIterator() {
+        return new RoaringIterator(this.containers, 0, this.max);
+    }
+
+    @Override
+    public IRowIterator getIteratorInRange(int start, int end) {
+        return new RoaringIterator(this.containers, start, Math.min(end, this.max));
+    }
+
+    @Override
+    public IMembershipSet sample(int k, long seed) {
+        if (k >= this.size)
+            return this;
+        // Choose the ranks of the sampled rows, then find the rows in one pass.
+        int[] ranks = new FullMembershipSet(this.size).sample(k, seed).getRows();
+        Arrays.sort(ranks);
+        RoaringMembershipSet result = new RoaringMembershipSet(this.max);
+        RoaringIterator it = this.getIterator();
+        int previous = -1;
+        for (int rank : ranks) {
+            it.skip(rank - previous - 1);
+            result.add(it.getNextRow());
+            previous = rank;
+        }
+        return result.seal();
+    }
+
+    @Override
+    public ISampledRowIterator getIteratorOverSample(double rate, long seed, boolean enforceRate) {
+        double usedRate;
+        if (enforceRate)
+            usedRate = rate;
+        else
+            usedRate = this.computeRate(rate);
+        if (usedRate >= 1)
+            return new NoSampleRowIterator(this.getIterator());
+        return new RoaringSampledRowIterator(this.getIterator(), usedRate, seed);
+    }
+
+    private double computeRate(double rate) {
+        if (this.size < RoaringMembershipSet.samplingSizeMinimum)
+            return 1;
+        if (rate <= RoaringMembershipSet.samplingThreshold)
+            return rate;
+        else return 1;
+    }
+
+    /**
+     * The kind of set operation performed on two sets.
+     */
+    private enum Operation {
+        And, Or, AndNot
+    }
+
+    private IMembershipSet combine(IMembershipSet other, Operation op) {
+        RoaringMembershipSet right = copy(other);
+        RoaringMembershipSet result = new RoaringMembershipSet(this.max);
+        int chunks = Math.min(result.containers.length,
+                Math.max(this.containers.length, right.containers.length));
+        for (int i = 0; i < chunks; i++) {
+            Container l = i < this.containers.length ? this.containers[i] : null;
+            Container r = i < right.containers.length ? right.containers[i] : null;
+            Container c;
+            switch (op) {
+                case And:
+                    c = l == null || r == null ? null : l.and(r);
+                    break;
+                case Or:
+                    c = l == null ? r : (r == null ? l : l.or(r));
+                    break;
+                case AndNot:
+                    c = l == null || r == null ? l : l.andNot(r);
+                    break;
+                default:
+                    throw new RuntimeException("Unexpected operation " + op);
+            }
+            if (c != null) {
+                result.containers[i] = c;
+                result.size += c.cardinality();
+            }
+        }
+        return result.seal();
+    }
+
+    @Override
+    public IMembershipSet intersection(IMembershipSet other) {
+        if (other instanceof FullMembershipSet)
+            return this;
+        return this.combine(other, Operation.And);
+    }
+
+    @Override
+    public IMembershipSet union(IMembershipSet other) {
+        if (other instanceof FullMembershipSet)
+            return other;
+        return this.combine(other, Operation.Or);
+    }
+
+    @Override
+    public IMembershipSet setMinus(IMembershipSet other) {
+        if (other instanceof FullMembershipSet)
+            return new EmptyMembershipSet(this.max);
+        return this.combine(other, Operation.AndNot);
+    }
+
+    /**
+     * Enumerates the values in a container, in increasing order.
+     */
+    private interface Cursor {
+        /**
+         * @return The next value, or -1 when the container is exhausted.
+         */
+        int next();
+    }
+
+    /**
+     * The set of rows within a chunk, as 16-bit values.
+     */
+    private static abstract class Container {
+        abstract int cardinality();
+        abstract boolean contains(int low);
+        /**
+         * Add a value which is not in the container.
+         * @return The container holding the result; may differ from this one.
+         */
+        abstract Container add(int low);
+        /**
+         * Set the bits of the values in this container in a bitmap.
+         */
+        abstract void orInto(long[] words);
+        abstract Cursor cursor();
+        abstract int runCount();
+
+        /**
+         * @return A container with the same values and the smallest representation.
+         */
+        Container optimize() {
+            int card = this.cardinality();
+            int runs = this.runCount();
+            long current = card <= MaxArraySize ? 2L * card : 8L * BitmapWords;
+            if (4L * runs < current) {
+                if (this instanceof RunContainer)
+                    return this;
+                return new RunContainer(this, runs);
+            }
+            if (card <= MaxArraySize) {
+                if (this instanceof ArrayContainer) {
+                    ArrayContainer a = (ArrayContainer)this;
+                    if (a.values.length > a.count)
+                        a.values = Arrays.copyOf(a.values, a.count);
+                    return a;
+                }
+                return new ArrayContainer(this);
+            }
+            return this instanceof BitmapContainer ? this : new BitmapContainer(this);
+        }
+
+        long[] toWords() {
+            long[] words = new long[BitmapWords];
+            this.orInto(words);
+            return words;
+        }
+
+        @Nullable
+        Container and(Container other) {
+            if (this instanceof ArrayContainer)
+                return ((ArrayContainer)this).filter(other, true);
+            if (other instanceof ArrayContainer)
+                return ((ArrayContainer)other).filter(this, true);
+            long[] words = this.toWords();
+            long[] right = other instanceof BitmapContainer ?
+                    ((BitmapContainer)other).words : other.toWords();
+            for (int i = 0; i < BitmapWords; i++)
+                words[i] &= right[i];
+            return fromWords(words);
+        }
+
+        @Nullable
+        Container or(Container other) {
+            long[] words = this.toWords();
+            other.orInto(words);
+            return fromWords(words);
+        }
+
+        @Nullable
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer)
+                return ((ArrayContainer)this).filter(other, false);
+            long[] words = this.toWords();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer a = (ArrayContainer)other;
+                for (int i = 0; i < a.count; i++)
+                    words[a.values[i] >>> 6] &= ~(1L << a.values[i]);
+            } else {
+                long[] right = other instanceof BitmapContainer ?
+                        ((BitmapContainer)other).words : other.toWords();
+                for (int i = 0; i < BitmapWords; i++)
+                    words[i] &= ~right[i];
+            }
+            return fromWords(words);
+        }
+
+        /**
+         * @return A container with the set bits of a bitmap, or null if there are none.
+         */
+        @Nullable
+        static Container fromWords(long[] words) {
+            int card = 0;
+            for (long w : words)
+                card += Long.bitCount(w);
+            if (card == 0)
+                return null;
+            BitmapContainer result = new BitmapContainer(words, card);
+            if (card <= MaxArraySize)
+                return new ArrayContainer(result);
+            return result;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int count;
+
+        ArrayContainer() {
+            this.values = new char[4];
+            this.count = 0;
+        }
+
+        ArrayContainer(Container other) {
+            this.count = other.cardinality();
+            this.values = new char[this.count];
+            Cursor cursor = other.cursor();
+            for (int i = 0; i < this.count; i++)
+                this.values[i] = (char)cursor.next();
+        }
+
+        private ArrayContainer(char[] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        @Override
+        int cardinality() {
+            return this.count;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return Arrays.binarySearch(this.values, 0, this.count, (char)low) >= 0;
+        }
+
+        @Override
+        Container add(int low) {
+            if (this.count == MaxArraySize)
+                return new BitmapContainer(this).add(low);
+            if (this.count == this.values.length)
+                this.values = Arrays.copyOf(this.values, Math.min(MaxArraySize, 2 * this.count));
+            // Rows are often added in increasing order
+            int position = this.count == 0 || this.values[this.count - 1] < low ?
+                    this.count : -Arrays.binarySearch(this.values, 0, this.count, (char)low) - 1;
+            System.arraycopy(this.values, position, this.values, position + 1, this.count - position);
+            this.values[position] = (char)low;
+            this.count++;
+            return this;
+        }
+
+        /**
+         * Keep the values which are (or are not) in another container.
+         */
+        @Nullable
+        Container filter(Container other, boolean keepMembers) {
+            char[] result = new char[this.count];
+            int kept = 0;
+            for (int i = 0; i < this.count; i++)
+                if (other.contains(this.values[i]) == keepMembers)
+                    result[kept++] = this.values[i];
+            if (kept == 0)
+                return null;
+            return new ArrayContainer(result, kept);
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < this.count; i++)
+                words[this.values[i] >>> 6] |= 1L << this.values[i];
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer &&
+                    this.count + ((ArrayContainer)other).count <= MaxArraySize) {
+                // Merge the two sorted arrays
+                ArrayContainer o = (ArrayContainer)other;
+                char[] result = new char[this.count + o.count];
+                int i = 0, j = 0, k = 0;
+                while (i < this.count && j < o.count) {
+                    char a = this.values[i];
+                    char b = o.values[j];
+                    if (a <= b)
+                        i++;
+                    if (b <= a)
+                        j++;
+                    result[k++] = a <= b ? a : b;
+                }
+                while (i < this.count)
+                    result[k++] = this.values[i++];
+                while (j < o.count)
+                    result[k++] = o.values[j++];
+                return new ArrayContainer(result, k);
+            }
+            return super.or(other);
+        }
+
+        @Override
+        Cursor cursor() {
+            return new Cursor() {
+                int index = 0;
+
+                @Override
+                public int next() {
+                    if (this.index >= ArrayContainer.this.count)
+                        return -1;
+                    return ArrayContainer.this.values[this.index++];
+                }
+            };
+        }
+
+        @Override
+        int runCount() {
+            int runs = 0;
+            for (int i = 0; i < this.count; i++)
+                if (i == 0 || this.values[i] != this.values[i - 1] + 1)
+                    runs++;
+            return runs;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int card;
+
+        BitmapContainer(long[] words, int card) {
+            this.words = words;
+            this.card = card;
+        }
+
+        BitmapContainer(Container other) {
+            this(other.toWords(), other.cardinality());
+        }
+
+        @Override
+        int cardinality() {
+            return this.card;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (this.words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(int low) {
+            this.words[low >>> 6] |= 1L << low;
+            this.card++;
+            return this;
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < BitmapWords; i++)
+                words[i] |= this.words[i];
+        }
+
+        @Override
+        long[] toWords() {
+            return this.words.clone();
+        }
+
+        @Override
+        Cursor cursor() {
+            return new Cursor() {
+                int index = 0;
+                long word = BitmapContainer.this.words[0];
+
+                @Override
+                public int next() {
+                    while (this.word == 0) {
+                        if (++this.index >= BitmapWords)
+                            return -1;
+                        this.word = BitmapContainer.this.words[this.index];
+                    }
+                    int bit = Long.numberOfTrailingZeros(this.word);
+                    this.word &= this.word - 1;
+                    return (this.index << 6) + bit;
+                }
+            };
+        }
+
+        @Override
+        int runCount() {
+            int runs = 0;
+            long carry = 0;
+            for (long w : this.words) {
+                // Count the bits that start a run
+                runs += Long.bitCount(w & ~((w << 1) | carry));
+                carry = w >>> 63;
+            }
+            return runs;
+        }
+    }
+
+    private static final class RunContainer extends Container {
+        /**
+         * First value of each run.
+         */
+        final char[] starts;
+        /**
+         * Last value of each run.
+         */
+        final char[] ends;
+        final int card;
+
+        RunContainer(Container other, int runs) {
+            this.starts = new char[runs];
+            this.ends = new char[runs];
+            this.card = other.cardinality();
+            Cursor cursor = other.cursor();
+            int run = -1;
+            for (int v = cursor.next(); v >= 0; v = cursor.next()) {
+                if (run < 0 || v != this.ends[run] + 1) {
+                    run++;
+                    this.starts[run] = (char)v;
+                }
+                this.ends[run] = (char)v;
+            }
+        }
+
+        @Override
+        int cardinality() {
+            return this.card;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int index = Arrays.binarySearch(this.starts, (char)low);
+            if (index >= 0)
+                return true;
+            // Run which starts before the value
+            index = -index - 2;
+            return index >= 0 && low <= this.ends[index];
+        }
+
+        @Override
+        Container add(int low) {
+            return new BitmapContainer(this).add(low);
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < this.starts.length; i++) {
+                int start = this.starts[i];
+                int end = this.ends[i] + 1;
+                int first = start >>> 6;
+                int last = (end - 1) >>> 6;
+                if (first == last) {
+                    words[first] |= (-1L << start) & (-1L >>> (64 - end));
+                } else {
+                    words[first] |= -1L << start;
+                    for (int w = first + 1; w < last; w++)
+                        words[w] = -1L;
+                    words[last] |= -1L >>> (64 - end);
+                }
+            }
+        }
+
+        @Override
+        Cursor cursor() {
+            return new Cursor() {
+                int run = 0;
+                int value = RunContainer.this.starts.length > 0 ? RunContainer.this.starts[0] : 0;
+
+                @Override
+                public int next() {
+                    if (this.run >= RunContainer.this.starts.length)
+                        return -1;
+                    int result = this.value;
+                    if (result == RunContainer.this.ends[this.run]) {
+                        this.run++;
+                        if (this.run < RunContainer.this.starts.length)
+                            this.value = RunContainer.this.starts[this.run];
+                    } else {
+                        this.value++;
+                    }
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        int runCount() {
+            return this.starts.length;
+        }
+    }
+
+    /**
+     * Iterates over the rows of the set in a range, in increasing order.
+     */
+    public static class RoaringIterator implements IRowIterator {
+        private final Container[] containers;
+        private final int start;
+        private final int end;
+        /**
+         * Index of the current container.
+         */
+        private int chunk;
+        @Nullable
+        private Cursor cursor;
+        /**
+         * Number of values of the current container not yet returned.
+         */
+        private int remaining;
+
+        RoaringIterator(Container[] containers, int start, int end) {
+            this.containers = containers;
+            this.start = start;
+            this.end = end;
+            this.chunk = (start >>> LogChunkSize) - 1;
+            this.cursor = null;
+            this.remaining = 0;
+        }
+
+        /**
+         * Move to the next non-empty container.
+         * @return False if there are no more containers in the range.
+         */
+        private boolean nextContainer() {
+            do {
+                this.chunk++;
+                if (this.chunk >= this.containers.length ||
+                        ((long)this.chunk << LogChunkSize) >= this.end) {
+                    this.cursor = null;
+                    this.chunk = this.containers.length;
+                    return false;
+                }
+            } while (this.containers[this.chunk] == null);
+            Container c = this.containers[this.chunk];
+            this.cursor = c.cursor();
+            this.remaining = c.cardinality();
+            return true;
+        }
+
+        @Override
+        public int getNextRow() {
+            while (true) {
+                if (this.cursor != null) {
+                    int low = this.cursor.next();
+                    if (low >= 0) {
+                        this.remaining--;
+                        int row = (this.chunk << LogChunkSize) + low;
+                        if (row >= this.end) {
+                            this.cursor = null;
+                            this.chunk = this.containers.length;
+                            return -1;
+                        }
+                        if (row >= this.start)
+                            return row;
+                        continue;
+                    }
+                }
+                if (!this.nextContainer())
+                    return -1;
+            }
+        }
+
+        @Override
+        public int fillBatch(int[] buffer) {
+            int count = 0;
+            while (count < buffer.length) {
+                if (this.cursor != null) {
+                    final Cursor c = this.cursor;
+                    final int base = this.chunk << LogChunkSize;
+                    int low;
+                    while (count < buffer.length && (low = c.next()) >= 0) {
+                        this.remaining--;
+                        int row = base + low;
+                        if (row >= this.end) {
+                            this.cursor = null;
+                            this.chunk = this.containers.length;
+                            return count;
+                        }
+                        if (row >= this.start)
+                            buffer[count++] = row;
+                    }
+                    if (count == buffer.length)
+                        break;
+                }
+                if (!this.nextContainer())
+                    break;
+            }
+            return count;
+        }
+
+        /**
+         * Skip over rows; only used for iterators which start at row 0.
+         * @param count  Number of rows to skip.
+         */
+        void skip(int count) {
+            while (count > 0) {
+                if (this.cursor != null && count < this.remaining) {
+                    this.remaining -= count;
+                    for (; count > 0; count--)
+                        this.cursor.next();
+                    return;
+                }
+                count -= this.remaining;
+                this.remaining = 0;
+                if (!this.nextContainer())
+                    return;
+            }
+        }
+    }
+
+    /**
+     * An iterator over a sample of the rows: the gaps between consecutive sampled rows
+     * are geometrically distributed.  The class has a Randomness object as a member which
+     * makes it non thread-safe.
+     */
+    private static class RoaringSampledRowIterator implements ISampledRowIterator {
+        private final RoaringIterator iterator;
+        private final Randomness prg;
+        private final double rate;
+
+        RoaringSampledRowIterator(RoaringIterator iterator, double rate, long seed) {
+            this.iterator = iterator;
+            this.prg = new Randomness(seed);
+            this.rate = rate;
+        }
+
+        @Override
+        public int getNextRow() {
+            this.iterator.skip(this.prg.nextGeometric(this.rate) - 1);
+            return this.iterator.getNextRow();
+        }
+
+        @Override
+        public double rate() { return this.rate; }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.table.membership;
+
+import org.hillview.table.api.ISampledRowIterator;
+
+import java.util.Arrays;
+
+/**
+ * Iterates over the rows of a sorted array of rows which lie in a range.
+ */
+class SortedRowIterator implements ISampledRowIterator {
+    private final int[] rows;
+    private final double rate;
+    /**
+     * Index of the next row to return.
+     */
+    private int current;
+    /**
+     * Index after the last row to return.
+     */
+    private final int end;
+
+    /**
+     * Iterate over the rows in the range [start, end).
+     * @param rows   Rows sorted in increasing order, without duplicates.
+     * @param rate   Sampling rate which produced the rows.
+     */
+    SortedRowIterator(int[] rows, int start, int end, double rate) {
+        this.rows = rows;
+        this.rate = rate;
+        this.current = indexOf(rows, start);
+        this.end = Math.max(this.current, indexOf(rows, end));
+    }
+
+    /**
+     * Index of the first element in a sorted array which is not smaller than the value.
+     */
+    static int indexOf(int[] rows, int value) {
+        int index = Arrays.binarySearch(rows, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    @Override
+    public double rate() { return this.rate; }
+
+    @Override
+    public int getNextRow() {
+        if (this.current >= this.end)
+            return -1;
+        return this.rows[this.current++];
+    }
+
+    @Override
+    public int fillBatch(int[] buffer) {
+        int count = Math.min(buffer.length, this.end - this.current);
+        System.arraycopy(this.rows, this.current, buffer, 0, count);
+        this.current += count;
+        return count;
+    }
+}
@@ -25,6 +25,9 @@ import org.hillview.utils.Converters;
 import org.hillview.utils.IntSet;
 import org.hillview.utils.Randomness;
 
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
 /**
  * This implementation uses a Set data structure to store the membership. It uses the Set's
  * membership and iterator methods. The upside is that it is efficient in space and that the
@@ -38,6 +41,12 @@ public class SparseMembershipSet implements IMembershipSet, IMutableMembershipSe
      * The sorting takes time but makes the iterator faster */
     public static final int thresholdSortedIterator = 50000000;
     private final int max;
+    /**
+     * The rows of the set in increasing order; computed by the first iteration
+     * over a range of rows, and discarded when the set is modified.
+     */
+    @Nullable
+    private volatile int[] sortedRows;
 
     @Override
     public int getMax() { return this.max; }
@@ -53,6 +62,7 @@ public class SparseMembershipSet implements IMembershipSet, IMutableMembershipSe
 
     public void add(int index) {
         this.membershipMap.add(index);
+        this.sortedRows = null;
     }
 
     /**
@@ -100,6 +110,32 @@ public class SparseMembershipSet implements IMembershipSet, IMutableMembershipSe
     @Override
     public IRowIterator getIterator() { return new SparseIterator(this.membershipMap); }
 
+    /**
+     * The rows are kept in a hash table, so to find the rows in a range they are
+     * sorted once; after that each range is found with a binary search.
+     */
+    @Override
+    public IRowIterator getIteratorInRange(int start, int end) {
+        return new SortedRowIterator(this.getSortedRows(), start, end, 1);
+    }
+
+    private int[] getSortedRows() {
+        int[] rows = this.sortedRows;
+        if (rows == null) {
+            rows = new int[this.getSize()];
+            IntSet.IntSetIterator it = this.membershipMap.getIterator();
+            int[] batch = new int[1024];
+            int count = 0;
+            for (int n = it.fillBatch(batch); n > 0; n = it.fillBatch(batch)) {
+                System.arraycopy(batch, 0, rows, count, n);
+                count += n;
+            }
+            Arrays.sort(rows);
+            this.sortedRows = rows;
+        }
+        return rows;
+    }
+
     /**
      * Returns an iterator that runs over the sampled data.
      * @param rate  Sampling rate.
@@ -165,5 +201,10 @@ public class SparseMembershipSet implements IMembershipSet, IMutableMembershipSe
         public int getNextRow() {
             return this.mySetIterator.getNext();
         }
+
+        @Override
+        public int fillBatch(int[] buffer) {
+            return this.mySetIterator.fillBatch(buffer);
+        }
     }
 }
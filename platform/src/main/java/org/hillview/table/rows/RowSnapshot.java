@@ -20,6 +20,9 @@ package org.hillview.table.rows;
 import com.google.gson.JsonElement;
 import org.hillview.dataset.api.IJson;
 import org.hillview.dataset.api.IJsonSketchResult;
+import org.hillview.dataset.remoting.BinaryDecoder;
+import org.hillview.dataset.remoting.BinaryEncoder;
+import org.hillview.dataset.remoting.IBinarySerializable;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.Schema;
 import org.hillview.table.api.ContentsKind;
@@ -29,6 +32,7 @@ import org.hillview.table.api.Interval;
 import org.hillview.utils.Converters;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -38,7 +42,7 @@ import java.util.*;
  * double encoding.
  */
 public class RowSnapshot extends BaseRowSnapshot
-        implements IJson, IJsonSketchResult {
+        implements IJson, IJsonSketchResult, IBinarySerializable {
     static final long serialVersionUID = 1;
     /**
      * Maps a column name to a value.
@@ -102,6 +106,8 @@ public class RowSnapshot extends BaseRowSnapshot
     @Override
     public boolean exists() { return true; }
 
+    public Schema getSchema() { return this.schema; }
+
     @Override
     public boolean isMissing(String colName) { return (this.fields.get(colName) == null); }
 
@@ -276,4 +282,20 @@ public class RowSnapshot extends BaseRowSnapshot
     public int hashCode() {
         return Converters.foldHash(this.cachedHashcode);
     }
+
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeSchema(this.schema);
+        for (ColumnDescription cd : this.schema.getColumnDescriptions())
+            encoder.writeCell(cd.kind, this.fields.get(cd.name));
+    }
+
+    public static RowSnapshot readFrom(BinaryDecoder decoder) throws IOException {
+        Schema schema = decoder.readSchema();
+        Object[] data = new Object[schema.getColumnCount()];
+        int index = 0;
+        for (ColumnDescription cd : schema.getColumnDescriptions())
+            data[index++] = decoder.readCell(cd.kind);
+        return new RowSnapshot(schema, data);
+    }
 }
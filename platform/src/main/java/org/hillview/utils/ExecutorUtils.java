@@ -2,12 +2,14 @@ package org.hillview.utils;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import org.hillview.dataset.api.OperationPriority;
 import rx.Scheduler;
 import rx.schedulers.Schedulers;
 
 import javax.annotation.Nullable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 
 /**
@@ -40,6 +42,15 @@ public class ExecutorUtils {
                 newNamedThreadFactory(poolName, true, priority));
     }
 
+    /**
+     * Single daemon thread which runs tasks after a delay.  The tasks should be short.
+     * @param poolName  Pattern to use for the thread names.
+     */
+    public static ScheduledExecutorService newNamedScheduledThreadPool(final String poolName) {
+        return Executors.newSingleThreadScheduledExecutor(
+                newNamedThreadFactory(poolName, true, -1));
+    }
+
     /**
      * Default netty thread with faster access to thread local storage.
      */
@@ -75,13 +86,16 @@ public class ExecutorUtils {
     }
 
     /**
-     * Use for all compute-heavy tasks.
+     * Use for all compute-heavy tasks.  This is a work-stealing pool which shares
+     * the threads fairly between requests, giving precedence to the more urgent
+     * ones (see OperationPriority); see FairShareExecutor.
      */
     public static synchronized ExecutorService getComputeExecutorService() {
         if (computeExecutorService == null) {
             int cpuCount = Runtime.getRuntime().availableProcessors();
             HillviewLogger.instance.info("Detect CPUs", "Using {0} processors", cpuCount);
-            computeExecutorService = newNamedThreadPool("computation", cpuCount, -1);
+            computeExecutorService = new FairShareExecutor(
+                    "computation", cpuCount, OperationPriority.values().length);
         }
         return computeExecutorService;
     }
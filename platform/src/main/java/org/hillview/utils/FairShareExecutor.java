@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.utils;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * An executor service which runs tasks on a work-stealing ForkJoinPool and
+ * shares the threads fairly between requests.  Each task belongs to a request,
+ * identified by a key; the request is the one set by callWithKey on the thread which
+ * submits the task (tasks submitted while running a task inherit its request).
+ * At most 'parallelism' submitted tasks run at once; the other ones wait in
+ * per-request queues, which are served in round-robin order, so that the tasks
+ * of concurrent requests interleave instead of running one after the other.
+ * Subtasks forked by a running task are stolen by idle threads of the pool.
+ *
+ * Each request also has a priority; 0 is the most urgent.  Waiting tasks of a more
+ * urgent request are always started first.  In addition, tasks with priority p
+ * and less urgent ones together use at most parallelism - p threads (but at least one),
+ * so that some threads are always left for the more urgent requests.
+ * Waiting tasks of a request which has been cancelled are dropped without running;
+ * dropped tasks which are futures (e.g., created by submit or invokeAll) are cancelled,
+ * so that the threads waiting for their results are released.
+ */
+public class FairShareExecutor extends AbstractExecutorService {
+    /**
+     * Describes the request that a task belongs to.
+     */
+    public static class Request {
+        public final Object key;
+        /**
+         * Priority of the request; 0 is the most urgent.
+         */
+        public final int priority;
+        /**
+         * Returns true when the request has been cancelled.
+         */
+        @Nullable
+        private final BooleanSupplier isCancelled;
+
+        public Request(Object key, int priority, @Nullable BooleanSupplier isCancelled) {
+            this.key = key;
+            this.priority = priority;
+            this.isCancelled = isCancelled;
+        }
+
+        public Request(Object key) {
+            this(key, 0, null);
+        }
+
+        boolean cancelled() {
+            return this.isCancelled != null && this.isCancelled.getAsBoolean();
+        }
+    }
+
+    /**
+     * Request used for tasks submitted without a request.
+     */
+    private static final Request defaultRequest = new Request("default");
+    private static final ThreadLocal<Request> currentRequest = new ThreadLocal<Request>();
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    /**
+     * Tasks waiting to run, one queue for each request, for each priority level.
+     * The order of the keys is the order in which the queues are served.
+     */
+    private final List<LinkedHashMap<Object, ArrayDeque<Runnable>>> pending;
+    /**
+     * Request of each waiting queue.
+     */
+    private final HashMap<Object, Request> pendingRequest;
+    /**
+     * Number of tasks submitted to the pool which have not yet completed,
+     * for each priority level.
+     */
+    private final int[] running;
+    /**
+     * Number of tasks dropped because their request was cancelled.
+     */
+    private long dropped;
+
+    /**
+     * Create a fair-share executor.
+     * @param poolName        Pattern to use for the thread names.
+     * @param parallelism     Number of threads.
+     * @param priorityLevels  Number of priority levels; priorities of requests
+     *                        larger than this are treated as the least urgent level.
+     */
+    public FairShareExecutor(String poolName, int parallelism, int priorityLevels) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = p -> {
+            ForkJoinWorkerThread thread =
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(poolName + "-" + threadIndex.getAndIncrement());
+            return thread;
+        };
+        this.pool = new ForkJoinPool(parallelism, factory, null, false);
+        this.parallelism = parallelism;
+        this.pending = new ArrayList<LinkedHashMap<Object, ArrayDeque<Runnable>>>(priorityLevels);
+        for (int i = 0; i < priorityLevels; i++)
+            this.pending.add(new LinkedHashMap<Object, ArrayDeque<Runnable>>());
+        this.pendingRequest = new HashMap<Object, Request>();
+        this.running = new int[priorityLevels];
+        this.dropped = 0;
+    }
+
+    public FairShareExecutor(String poolName, int parallelism) {
+        this(poolName, parallelism, 1);
+    }
+
+    /**
+     * @return The request key of the current thread, or null if none is set.
+     */
+    @Nullable
+    public static Object getCurrentKey() {
+        Request request = currentRequest.get();
+        return request == null ? null : request.key;
+    }
+
+    /**
+     * @return The request of the current thread, or null if none is set.
+     */
+    @Nullable
+    public static Request getCurrentRequest() {
+        return currentRequest.get();
+    }
+
+    /**
+     * Invoke a function as part of the specified request; all tasks submitted
+     * by this thread while the function runs belong to this request.
+     * @param request   Request.
+     * @param function  Function to invoke.
+     * @return          The result of the function.
+     */
+    public static <T> T callInRequest(Request request, Supplier<T> function) {
+        Request previous = currentRequest.get();
+        currentRequest.set(request);
+        try {
+            return function.get();
+        } finally {
+            currentRequest.set(previous);
+        }
+    }
+
+    /**
+     * Invoke a function with the specified request key and the most urgent priority.
+     * @param key       Request key.
+     * @param function  Function to invoke.
+     * @return          The result of the function.
+     */
+    public static <T> T callWithKey(Object key, Supplier<T> function) {
+        return callInRequest(new Request(key), function);
+    }
+
+    private int level(Request request) {
+        return Math.max(0, Math.min(request.priority, this.running.length - 1));
+    }
+
+    /**
+     * True if one more task with the specified priority level can start.
+     * Must be called with the lock held.
+     */
+    private boolean canStart(int level) {
+        int total = 0;
+        int lessUrgent = 0;
+        for (int i = 0; i < this.running.length; i++) {
+            total += this.running[i];
+            if (i >= level)
+                lessUrgent += this.running[i];
+        }
+        return total < this.parallelism &&
+                lessUrgent < Math.max(1, this.parallelism - level);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Request request = currentRequest.get();
+        if (request == null)
+            request = defaultRequest;
+        int level = this.level(request);
+        boolean cancelled;
+        synchronized (this) {
+            if (this.pool.isShutdown())
+                throw new RejectedExecutionException("Executor is shut down");
+            cancelled = request.cancelled();
+            if (cancelled) {
+                this.dropped++;
+            } else if (!this.canStart(level)) {
+                this.pending.get(level).computeIfAbsent(
+                        request.key, k -> new ArrayDeque<Runnable>()).add(command);
+                this.pendingRequest.putIfAbsent(request.key, request);
+                return;
+            } else {
+                this.running[level]++;
+            }
+        }
+        if (cancelled)
+            drop(command);
+        else
+            this.dispatch(request, command);
+    }
+
+    /**
+     * Called for a task that is not run because its request has been cancelled.
+     * Must be called without the lock held, since cancelling a future
+     * runs its completion code.
+     */
+    private static void drop(Runnable command) {
+        if (command instanceof Future<?>)
+            ((Future<?>)command).cancel(false);
+    }
+
+    private void dispatch(Request request, Runnable command) {
+        this.pool.execute(() -> {
+            Request previous = currentRequest.get();
+            currentRequest.set(request);
+            try {
+                command.run();
+            } finally {
+                currentRequest.set(previous);
+                this.completed(request);
+            }
+        });
+    }
+
+    /**
+     * Called when a task completes; starts the next task of the
+     * most urgent request whose turn it is.
+     */
+    private void completed(Request request) {
+        Request nextRequest = null;
+        Runnable next = null;
+        List<Runnable> dropped = new ArrayList<Runnable>();
+        synchronized (this) {
+            this.running[this.level(request)]--;
+            if (this.pool.isShutdown())
+                return;
+            // Drop the tasks of all cancelled requests, even the ones which cannot start yet,
+            // so that nobody waits for them.
+            for (LinkedHashMap<Object, ArrayDeque<Runnable>> queues : this.pending) {
+                Iterator<Map.Entry<Object, ArrayDeque<Runnable>>> it = queues.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Object, ArrayDeque<Runnable>> e = it.next();
+                    if (Converters.checkNull(this.pendingRequest.get(e.getKey())).cancelled()) {
+                        this.dropped += e.getValue().size();
+                        dropped.addAll(e.getValue());
+                        this.pendingRequest.remove(e.getKey());
+                        it.remove();
+                    }
+                }
+            }
+            for (int level = 0; level < this.pending.size() && next == null; level++) {
+                LinkedHashMap<Object, ArrayDeque<Runnable>> queues = this.pending.get(level);
+                while (!queues.isEmpty() && this.canStart(level)) {
+                    Iterator<Map.Entry<Object, ArrayDeque<Runnable>>> it = queues.entrySet().iterator();
+                    Map.Entry<Object, ArrayDeque<Runnable>> first = it.next();
+                    Object key = first.getKey();
+                    ArrayDeque<Runnable> queue = first.getValue();
+                    Request r = Converters.checkNull(this.pendingRequest.get(key));
+                    // Move this request at the end of the round-robin order.
+                    it.remove();
+                    next = queue.poll();
+                    if (queue.isEmpty())
+                        this.pendingRequest.remove(key);
+                    else
+                        queues.put(key, queue);
+                    nextRequest = r;
+                    this.running[level]++;
+                    break;
+                }
+            }
+        }
+        for (Runnable r : dropped)
+            drop(r);
+        if (next != null)
+            this.dispatch(Converters.checkNull(nextRequest), next);
+    }
+
+    /**
+     * @return The number of tasks waiting for a thread.
+     */
+    public synchronized int getPendingCount() {
+        int result = 0;
+        for (LinkedHashMap<Object, ArrayDeque<Runnable>> level : this.pending)
+            for (ArrayDeque<Runnable> q : level.values())
+                result += q.size();
+        return result;
+    }
+
+    /**
+     * @return The number of tasks dropped because their request was cancelled.
+     */
+    public synchronized long getDroppedCount() {
+        return this.dropped;
+    }
+
+    @Override
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = new ArrayList<Runnable>();
+        synchronized (this) {
+            for (LinkedHashMap<Object, ArrayDeque<Runnable>> level : this.pending) {
+                for (ArrayDeque<Runnable> q : level.values())
+                    result.addAll(q);
+                level.clear();
+            }
+            this.pendingRequest.clear();
+        }
+        this.pool.shutdownNow();
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.pool.awaitTermination(timeout, unit);
+    }
+}
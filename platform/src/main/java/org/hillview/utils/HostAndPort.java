@@ -19,6 +19,8 @@ package org.hillview.utils;
 
 import org.hillview.dataset.api.IJson;
 
+import java.util.Objects;
+
 /**
  * This class represents a hostname and a port.
  */
@@ -55,4 +57,17 @@ public class HostAndPort implements IJson {
     public String toString() {
         return this.host + ":" + this.port;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HostAndPort that = (HostAndPort) o;
+        return this.port == that.port && this.host.equals(that.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.host, this.port);
+    }
 }
@@ -254,6 +254,33 @@ public class IntSet {
             }
             return -1;
         }
+
+        /**
+         * Fill a buffer with the next elements of the set.
+         * @return The number of elements written in the buffer; 0 when the iteration is completed.
+         */
+        public int fillBatch(int[] buffer) {
+            if (!this.hasNext() || buffer.length == 0)
+                return 0;
+            int count = 0;
+            if (this.mustReturnZero) {
+                this.mustReturnZero = false;
+                buffer[count++] = 0;
+                --this.c;
+            }
+            final int[] key = this.iteratorKey;
+            final int first = count;
+            final int end = count + Math.min(buffer.length - count, this.c);
+            int pos = this.pos;
+            while (count < end && pos >= 0) {
+                int k = key[pos--];
+                if (k != 0)
+                    buffer[count++] = k;
+            }
+            this.pos = pos;
+            this.c -= count - first;
+            return count;
+        }
     }
 }
 
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataStructures;
+
+import org.hillview.test.BaseTest;
+import org.hillview.utils.FairShareExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class FairShareExecutorTest extends BaseTest {
+    @Test
+    public void testInterleaving() throws InterruptedException {
+        FairShareExecutor executor = new FairShareExecutor("test", 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        // Occupy the only thread, so that all other tasks are queued.
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ignored) {}
+        });
+        CountDownLatch done = new CountDownLatch(6);
+        FairShareExecutor.callWithKey("A", () -> {
+            for (int i = 0; i < 3; i++)
+                executor.execute(() -> { order.add("A"); done.countDown(); });
+            return null;
+        });
+        FairShareExecutor.callWithKey("B", () -> {
+            for (int i = 0; i < 3; i++)
+                executor.execute(() -> {
+                    Assert.assertEquals("B", FairShareExecutor.getCurrentKey());
+                    order.add("B");
+                    done.countDown();
+                });
+            return null;
+        });
+        Assert.assertEquals(6, executor.getPendingCount());
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals("[A, B, A, B, A, B]", order.toString());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPriorities() throws InterruptedException {
+        FairShareExecutor executor = new FairShareExecutor("test", 1, 3);
+        CountDownLatch blocked = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ignored) {}
+        });
+        CountDownLatch done = new CountDownLatch(4);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        FairShareExecutor.Request background = new FairShareExecutor.Request("S", 2, null);
+        FairShareExecutor.Request interactive = new FairShareExecutor.Request("I", 0, null);
+        FairShareExecutor.Request dropped = new FairShareExecutor.Request("C", 0, cancelled::get);
+        FairShareExecutor.callInRequest(background, () -> {
+            for (int i = 0; i < 2; i++)
+                executor.execute(() -> { order.add("S"); done.countDown(); });
+            return null;
+        });
+        FairShareExecutor.callInRequest(dropped, () -> {
+            for (int i = 0; i < 2; i++)
+                executor.execute(() -> order.add("C"));
+            return null;
+        });
+        FairShareExecutor.callInRequest(interactive, () -> {
+            for (int i = 0; i < 2; i++)
+                executor.execute(() -> { order.add("I"); done.countDown(); });
+            return null;
+        });
+        Assert.assertEquals(6, executor.getPendingCount());
+        cancelled.set(true);
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals("[I, I, S, S]", order.toString());
+        Assert.assertEquals(2, executor.getDroppedCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCancelledFutures() throws Exception {
+        FairShareExecutor executor = new FairShareExecutor("test", 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ignored) {}
+        });
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        FairShareExecutor.Request request = new FairShareExecutor.Request("C", 0, cancelled::get);
+        Future<Integer> queued = FairShareExecutor.callInRequest(
+                request, () -> executor.submit(() -> 1));
+        cancelled.set(true);
+        // Submitted after the request has been cancelled.
+        Future<Integer> late = FairShareExecutor.callInRequest(
+                request, () -> executor.submit(() -> 2));
+        Assert.assertTrue(late.isCancelled());
+        blocked.countDown();
+        try {
+            queued.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the future to be cancelled");
+        } catch (CancellationException ignored) {
+            // expected
+        }
+        Assert.assertEquals(2, executor.getDroppedCount());
+        Assert.assertEquals(Integer.valueOf(3), executor.submit(() -> 3).get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testReservedThreads() throws InterruptedException {
+        // Priority 1 tasks can only use one of the two threads.
+        FairShareExecutor executor = new FairShareExecutor("test", 2, 2);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        FairShareExecutor.callInRequest(new FairShareExecutor.Request("M", 1, null), () -> {
+            for (int i = 0; i < 2; i++)
+                executor.execute(() -> {
+                    try {
+                        blocked.await();
+                    } catch (InterruptedException ignored) {}
+                    done.countDown();
+                });
+            return null;
+        });
+        Assert.assertEquals(1, executor.getPendingCount());
+        // The urgent task can run while the other thread is busy.
+        CountDownLatch urgent = new CountDownLatch(1);
+        FairShareExecutor.callInRequest(new FairShareExecutor.Request("I", 0, null), () -> {
+            executor.execute(() -> { urgent.countDown(); done.countDown(); });
+            return null;
+        });
+        Assert.assertTrue(urgent.await(10, TimeUnit.SECONDS));
+        blocked.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataStructures;
+
+import org.hillview.maps.FilterMap;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.api.*;
+import org.hillview.table.columns.DoubleListColumn;
+import org.hillview.table.columns.StringListColumn;
+import org.hillview.table.filters.RangeFilterArrayDescription;
+import org.hillview.table.filters.RangeFilterDescription;
+import org.hillview.table.membership.IntervalMembershipSet;
+import org.hillview.test.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangeFilterTest extends BaseTest {
+    private static final int size = 10000;
+
+    private static ITable sortedTable() {
+        DoubleListColumn sorted = new DoubleListColumn(
+                new ColumnDescription("Sorted", ContentsKind.Double));
+        DoubleListColumn unsorted = new DoubleListColumn(
+                new ColumnDescription("Unsorted", ContentsKind.Double));
+        StringListColumn names = new StringListColumn(
+                new ColumnDescription("Name", ContentsKind.String));
+        for (int i = 0; i < size; i++) {
+            sorted.append(i / 2);
+            unsorted.append((i * 7) % size);
+            names.append(String.format("%05d", i / 10));
+        }
+        return new Table(new IColumn[] {
+                sorted.seal(), unsorted.seal(), names.seal() }, null, null);
+    }
+
+    private static RangeFilterDescription range(ITable table, String column, double min, double max) {
+        RangeFilterDescription result = new RangeFilterDescription();
+        result.cd = table.getSchema().getDescription(column);
+        result.min = min;
+        result.max = max;
+        return result;
+    }
+
+    private static void check(ITable table, ITable result, ITableFilter filter) {
+        int count = 0;
+        IRowIterator it = table.getMembershipSet().getIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow()) {
+            boolean passes = filter.test(row);
+            Assert.assertEquals(passes, result.getMembershipSet().isMember(row));
+            if (passes)
+                count++;
+        }
+        Assert.assertEquals(count, result.getNumOfRows());
+    }
+
+    @Test
+    public void testSortedDoubleColumn() {
+        ITable table = sortedTable();
+        Assert.assertTrue(table.getLoadedColumn("Sorted").isSorted());
+        Assert.assertFalse(table.getLoadedColumn("Unsorted").isSorted());
+
+        RangeFilterDescription desc = range(table, "Sorted", 100.5, 2000);
+        ITable result = new FilterMap(desc).apply(table);
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.getMembershipSet() instanceof IntervalMembershipSet);
+        Assert.assertEquals(2 * (2000 - 101 + 1), result.getNumOfRows());
+        check(table, result, desc.getFilter(table));
+
+        // Nothing in range
+        desc = range(table, "Sorted", size, 2 * size);
+        result = new FilterMap(desc).apply(table);
+        Assert.assertNotNull(result);
+        Assert.assertEquals(0, result.getNumOfRows());
+
+        desc = range(table, "Unsorted", 100, 2000);
+        result = new FilterMap(desc).apply(table);
+        Assert.assertNotNull(result);
+        Assert.assertFalse(result.getMembershipSet() instanceof IntervalMembershipSet);
+        check(table, result, desc.getFilter(table));
+    }
+
+    @Test
+    public void testSortedStringColumn() {
+        ITable table = sortedTable();
+        Assert.assertTrue(table.getLoadedColumn("Name").isSorted());
+        RangeFilterDescription desc = new RangeFilterDescription();
+        desc.cd = table.getSchema().getDescription("Name");
+        desc.minString = "00010";
+        desc.maxString = "00019";
+        ITable result = new FilterMap(desc).apply(table);
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.getMembershipSet() instanceof IntervalMembershipSet);
+        Assert.assertEquals(100, result.getNumOfRows());
+        check(table, result, desc.getFilter(table));
+    }
+
+    @Test
+    public void testSubsetOfSortedColumn() {
+        ITable table = sortedTable();
+        // Filter on the sorted column, then on the unsorted one, then on the sorted one again.
+        ITable first = new FilterMap(range(table, "Unsorted", 0, size / 2)).apply(table);
+        Assert.assertNotNull(first);
+        RangeFilterDescription desc = range(first, "Sorted", 1000, 3000);
+        ITable result = new FilterMap(desc).apply(first);
+        Assert.assertNotNull(result);
+        check(first, result, desc.getFilter(first));
+    }
+
+    @Test
+    public void testConjunction() {
+        final int rows = 100000;
+        DoubleListColumn x = new DoubleListColumn(new ColumnDescription("X", ContentsKind.Double));
+        DoubleListColumn y = new DoubleListColumn(new ColumnDescription("Y", ContentsKind.Double));
+        StringListColumn s = new StringListColumn(new ColumnDescription("S", ContentsKind.String));
+        for (int i = 0; i < rows; i++) {
+            if (i % 17 == 0)
+                x.appendMissing();
+            else
+                x.append((i * 31) % 1000);
+            y.append((i * 7) % 100);
+            s.append("s" + (i * 13) % 50);
+        }
+        ITable table = new Table(new IColumn[] { x.seal(), y.seal(), s.seal() }, null, null);
+        RangeFilterDescription sRange = new RangeFilterDescription();
+        sRange.cd = table.getSchema().getDescription("S");
+        sRange.minString = "s1";
+        sRange.maxString = "s3";
+        for (boolean complement : new boolean[] { false, true }) {
+            RangeFilterArrayDescription desc = new RangeFilterArrayDescription();
+            desc.filters = new RangeFilterDescription[] {
+                    range(table, "X", 100, 900), range(table, "Y", 10, 12), sRange };
+            desc.complement = complement;
+            ITable result = new FilterMap(desc).apply(table);
+            Assert.assertNotNull(result);
+            check(table, result, desc.getFilter(table));
+            Assert.assertTrue(result.getNumOfRows() > 0);
+
+            // Filter a subset of the rows
+            ITable subset = new FilterMap(range(table, "Y", 0, 50)).apply(table);
+            Assert.assertNotNull(subset);
+            result = new FilterMap(desc).apply(subset);
+            Assert.assertNotNull(result);
+            check(subset, result, desc.getFilter(subset));
+        }
+    }
+}
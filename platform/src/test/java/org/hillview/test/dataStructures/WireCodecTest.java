@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataStructures;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.dataset.remoting.BinaryWireCodec;
+import org.hillview.dataset.remoting.JavaWireCodec;
+import org.hillview.dataset.remoting.OperationResponse;
+import org.hillview.dataset.remoting.WireCodec;
+import org.hillview.dataset.remoting.WireCompression;
+import org.hillview.sketches.MGFreqKSketch;
+import org.hillview.sketches.SampleHeavyHittersSketch;
+import org.hillview.sketches.results.*;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.SmallTable;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.ITable;
+import org.hillview.table.api.Interval;
+import org.hillview.table.columns.DoubleArrayColumn;
+import org.hillview.table.columns.IntervalColumn;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.rows.RowSnapshot;
+import org.hillview.test.BaseTest;
+import org.hillview.test.TestUtil;
+import org.hillview.utils.Converters;
+import org.hillview.utils.IntArrayGenerator;
+import org.hillview.utils.JsonList;
+import org.hillview.utils.TestTables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tests the codecs used to exchange messages between the root and the workers.
+ */
+public class WireCodecTest extends BaseTest {
+    private static <T> T roundTrip(Object value, boolean binary) {
+        byte[] bytes = BinaryWireCodec.instance.encode(value);
+        Assert.assertEquals(binary, bytes[0] == 'H');
+        return WireCodec.decode(bytes);
+    }
+
+    private static void checkTablesEqual(SmallTable expected, SmallTable actual) {
+        Assert.assertEquals(expected.getSchema(), actual.getSchema());
+        Assert.assertEquals(expected.getNumOfRows(), actual.getNumOfRows());
+        for (int i = 0; i < expected.getNumOfRows(); i++)
+            Assert.assertEquals(new RowSnapshot(expected, i), new RowSnapshot(actual, i));
+    }
+
+    private static Groups<Count> getGroups(int buckets) {
+        JsonList<Count> perBucket = new JsonList<Count>(buckets);
+        for (int i = 0; i < buckets; i++)
+            perBucket.add(new Count(i * 1000L));
+        return new Groups<Count>(perBucket, new Count(3));
+    }
+
+    @Test
+    public void testCountAndGroups() {
+        Count c = roundTrip(new Count(1L << 40), true);
+        Assert.assertEquals(1L << 40, c.count);
+
+        Groups<Count> groups = getGroups(10);
+        OperationResponse<PartialResult<Groups<Count>>> response =
+                new OperationResponse<PartialResult<Groups<Count>>>(
+                        new PartialResult<Groups<Count>>(0.25, groups));
+        OperationResponse<PartialResult<Groups<Count>>> received = roundTrip(response, true);
+        Assert.assertNotNull(received.result);
+        Assert.assertEquals(0.25, received.result.deltaDone, 0);
+        Assert.assertEquals(groups, received.result.deltaValue);
+
+        OperationResponse<Object> empty = roundTrip(new OperationResponse<Object>(null), true);
+        Assert.assertNull(empty.result);
+    }
+
+    @Test
+    public void testHLogLog() {
+        final int size = 100000;
+        HLogLog hll = new HLogLog(12, 1234);
+        hll.createHLL(IntArrayGenerator.getRandIntArray(size, 10000, "X", this.getRandomness()),
+                new FullMembershipSet(size));
+        HLogLog received = roundTrip(hll, true);
+        Assert.assertEquals(hll.distinctItemCount, received.distinctItemCount);
+        Assert.assertEquals(hll.distinctItemsEstimator(), received.distinctItemsEstimator());
+        Assert.assertEquals(hll.union(hll).distinctItemsEstimator(),
+                received.union(hll).distinctItemsEstimator());
+    }
+
+    @Test
+    public void testTables() {
+        SmallTable table = TestTables.getMissingIntTable(100, 3);
+        checkTablesEqual(table, roundTrip(table, true));
+        SmallTable strings = TestTables.testTable().compress();
+        checkTablesEqual(strings, roundTrip(strings, true));
+        checkTablesEqual(new SmallTable(), roundTrip(new SmallTable(), true));
+
+        SampleList sample = new SampleList(table);
+        SampleList receivedSample = roundTrip(sample, true);
+        checkTablesEqual(table, receivedSample.table);
+
+        IntArrayList counts = new IntArrayList(new int[] { 5, 4, 3, 2, 1 });
+        SmallTable rows = TestTables.getIntTable(5, 2);
+        NextKList list = new NextKList(rows, null, counts, 7, 100);
+        NextKList receivedList = roundTrip(list, true);
+        checkTablesEqual(rows, receivedList.rows);
+        Assert.assertNull(receivedList.aggregates);
+        Assert.assertEquals(counts, receivedList.count);
+        Assert.assertEquals(7, receivedList.startPosition);
+        Assert.assertEquals(100, receivedList.rowsScanned);
+    }
+
+    @Test
+    public void testIntervals() {
+        final int size = 100;
+        DoubleArrayColumn start = new DoubleArrayColumn(
+                new ColumnDescription("start", ContentsKind.Double), size);
+        DoubleArrayColumn end = new DoubleArrayColumn(
+                new ColumnDescription("end", ContentsKind.Double), size);
+        for (int i = 0; i < size; i++) {
+            start.set(i, i);
+            end.set(i, i * 2.5);
+            if (i % 10 == 3)
+                end.setMissing(i);
+        }
+        IntervalColumn intervals = new IntervalColumn(
+                new ColumnDescription("interval", ContentsKind.Interval), start, end);
+        SmallTable table = new SmallTable(new IColumn[] { start, intervals });
+        SmallTable received = roundTrip(table, true);
+        Assert.assertEquals(table.getSchema(), received.getSchema());
+        IColumn col = received.getLoadedColumn("interval");
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(intervals.isMissing(i), col.isMissing(i));
+            if (intervals.isMissing(i))
+                continue;
+            Interval expected = Converters.checkNull(intervals.getInterval(i));
+            Assert.assertEquals(0, expected.compareTo(Converters.checkNull(col.getInterval(i))));
+            Assert.assertEquals(i, col.getEndpoint(i, true), 0);
+            Assert.assertEquals(i * 2.5, col.getEndpoint(i, false), 0);
+        }
+    }
+
+    @Test
+    public void testFreqKLists() {
+        ITable table = TestTables.getRepIntTable(1000, 2);
+        FreqKListMG mg = new MGFreqKSketch(table.getSchema(), 0.05).create(table);
+        Assert.assertNotNull(mg);
+        FreqKListMG receivedMg = roundTrip(mg, true);
+        Assert.assertEquals(mg.hMap, receivedMg.hMap);
+        Assert.assertEquals(mg.totalRows, receivedMg.totalRows);
+        Assert.assertEquals(mg.getErrBound(), receivedMg.getErrBound(), 0);
+
+        FreqKListSample sample = new SampleHeavyHittersSketch(
+                table.getSchema(), 0.05, table.getNumOfRows(), 1234).create(table);
+        Assert.assertNotNull(sample);
+        FreqKListSample receivedSample = roundTrip(sample, true);
+        Assert.assertEquals(sample.hMap, receivedSample.hMap);
+        Assert.assertEquals(sample.sampleSize, receivedSample.sampleSize);
+
+        FreqKListExact exact = new FreqKListExact(
+                mg.totalRows, mg.epsilon, mg.hMap, mg.getList());
+        FreqKListExact receivedExact = roundTrip(exact, true);
+        Assert.assertEquals(exact.hMap, receivedExact.hMap);
+        Assert.assertEquals(exact.rssList, receivedExact.rssList);
+    }
+
+    @Test
+    public void testJavaFallback() {
+        // Objects without a binary encoding are serialized by Java,
+        // both at the top level and nested in objects with a binary encoding.
+        ArrayList<String> list = new ArrayList<String>(Arrays.asList("a", "b"));
+        Assert.assertEquals(list, roundTrip(list, false));
+        PartialResult<ArrayList<String>> pr = roundTrip(
+                new PartialResult<ArrayList<String>>(list), true);
+        Assert.assertEquals(list, pr.deltaValue);
+        // Messages encoded by Java serialization are always understood.
+        Groups<Count> groups = getGroups(5);
+        Assert.assertEquals(groups, WireCodec.decode(JavaWireCodec.instance.encode(groups)));
+    }
+
+    @Test
+    public void testCompression() {
+        SmallTable table = TestTables.getIntTable(100000, 2, 100);
+        byte[] bytes = BinaryWireCodec.instance.encode(table);
+        Assert.assertNull(WireCompression.None.compress(bytes));
+        Assert.assertNull(WireCompression.Gzip.compress(new byte[100]));
+        byte[] compressed = WireCompression.Gzip.compress(bytes);
+        Assert.assertNotNull(compressed);
+        Assert.assertTrue(compressed.length < bytes.length);
+        checkTablesEqual(table, WireCodec.decode(compressed));
+    }
+
+    @Test
+    public void testThroughput() {
+        Groups<Count> groups = getGroups(100);
+        SmallTable table = TestTables.getIntTable(1000, 3);
+        Object[] values = new Object[] { groups, table };
+        for (Object value : values) {
+            byte[] java = JavaWireCodec.instance.encode(value);
+            byte[] binary = BinaryWireCodec.instance.encode(value);
+            Assert.assertTrue(binary.length < java.length);
+            if (toPrint)
+                System.out.println(value.getClass().getSimpleName() + " encoding size: Java " +
+                        java.length + ", binary " + binary.length);
+            TestUtil.runPerfTest("Java " + value.getClass().getSimpleName(),
+                    k -> JavaWireCodec.instance.decode(JavaWireCodec.instance.encode(value)), 10);
+            TestUtil.runPerfTest("Binary " + value.getClass().getSimpleName(),
+                    k -> BinaryWireCodec.instance.decode(BinaryWireCodec.instance.encode(value)), 10);
+        }
+    }
+}
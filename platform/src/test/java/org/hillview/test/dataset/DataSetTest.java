@@ -147,6 +147,24 @@ public class DataSetTest extends BaseTest {
         Assert.assertEquals(result1.intValue(), 13);
     }
 
+    @Test
+    public void aggregationTreeTest() {
+        final int leaves = 10;
+        final ArrayList<IDataSet<Integer>> elements = new ArrayList<IDataSet<Integer>>(leaves);
+        for (int i = 0; i < leaves; i++)
+            elements.add(new LocalDataSet<Integer>(i));
+        final ParallelDataSet<Integer> tree = ParallelDataSet.createTree(elements, 3);
+        // 10 leaves are grouped in 4 nodes, which are grouped in 2 nodes.
+        Assert.assertEquals(2, tree.size());
+        final ParallelDataSet<Integer> flat = ParallelDataSet.createTree(elements, 0);
+        Assert.assertEquals(leaves, flat.size());
+
+        final IDataSet<Integer> mapped = tree.blockingMap(new Increment());
+        final IntegerWrapper result = mapped.blockingSketch(new Sketch());
+        Assert.assertNotNull(result);
+        Assert.assertEquals(55, result.intValue());
+    }
+
     @Test
     public void parallelProgressTest() {
         int partitions = 10;
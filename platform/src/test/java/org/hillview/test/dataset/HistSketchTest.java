@@ -18,19 +18,26 @@
 package org.hillview.test.dataset;
 import org.hillview.dataset.LocalDataSet;
 import org.hillview.dataset.ParallelDataSet;
-import org.hillview.dataset.api.IDataSet;
-import org.hillview.dataset.api.TableSketch;
+import org.hillview.dataset.api.*;
 import org.hillview.sketches.*;
+import org.hillview.sketches.highorder.BatchSketch;
+import org.hillview.sketches.highorder.IncrementalPairSketch;
+import org.hillview.sketches.highorder.ProgressiveSampler;
 import org.hillview.sketches.results.*;
-import org.hillview.table.api.IIntColumn;
+import org.hillview.table.api.*;
+import org.hillview.table.membership.DenseMembershipSet;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.membership.SparseMembershipSet;
 import org.hillview.test.BaseTest;
+import org.hillview.utils.JsonList;
 import org.hillview.utils.TestTables;
 import org.hillview.table.SmallTable;
 import org.hillview.table.Table;
-import org.hillview.table.api.ITable;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.List;
+
 /**
  * Test class for the sketches of all types of histograms.
  */
@@ -197,4 +204,135 @@ public class HistSketchTest extends BaseTest {
         Assert.assertNotNull(h1);
         Assert.assertEquals(h0, h1);
     }
+
+    private static <R extends ISketchResult & IScalable<R>, W extends ISketchWorkspace>
+    R perRowSketch(IncrementalTableSketch<R, W> sketch, ITable table) {
+        R result = sketch.zero();
+        Assert.assertNotNull(result);
+        W workspace = sketch.initialize(table);
+        IRowIterator it = table.getRowIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            sketch.increment(workspace, result, row);
+        return result;
+    }
+
+    @Test
+    public void batchHistogramTest() {
+        int bigSize = 100000;
+        SmallTable bigTable = TestTables.getIntTable(bigSize, 2);
+        String colName1 = bigTable.getSchema().getColumnNames().get(0);
+        String colName2 = bigTable.getSchema().getColumnNames().get(1);
+        IHistogramBuckets buckets1 = new DoubleHistogramBuckets(colName1, 1, 50, 10);
+        IHistogramBuckets buckets2 = new DoubleHistogramBuckets(colName2, 1, 50, 15);
+
+        IMutableMembershipSet dense = new DenseMembershipSet(bigSize, bigSize / 2);
+        for (int i = 0; i < bigSize; i += 2)
+            dense.add(i);
+        IMutableMembershipSet sparse = new SparseMembershipSet(bigSize, bigSize / 100);
+        for (int i = 0; i < bigSize; i += 100)
+            sparse.add(i);
+        for (IMembershipSet set : new IMembershipSet[] {
+                new FullMembershipSet(bigSize), dense.seal(), sparse.seal() }) {
+            ITable table = bigTable.selectRowsFromFullTable(set);
+            HistogramSketch hist = new HistogramSketch(buckets1);
+            Groups<Count> h = hist.create(table);
+            Assert.assertEquals(perRowSketch(hist, table), h);
+            Histogram2DSketch hist2 = new Histogram2DSketch(buckets1, buckets2);
+            Groups<Groups<Count>> h2 = hist2.create(table);
+            Assert.assertEquals(perRowSketch(hist2, table), h2);
+        }
+    }
+
+    @Test
+    public void progressiveHistogramTest() {
+        int bigSize = 100000;
+        SmallTable bigTable = TestTables.getIntTable(bigSize, 2);
+        String colName = bigTable.getSchema().getColumnNames().get(0);
+        IHistogramBuckets buckets = new DoubleHistogramBuckets(colName, 0, 1600, 10);
+        HistogramSketch hist = new HistogramSketch(buckets);
+        IDataSet<ITable> data = new LocalDataSet<ITable>(bigTable);
+        Groups<Count> exact = data.blockingSketch(hist);
+        double[] rates = ProgressiveSampler.geometricRates(0.01, 4);
+        Assert.assertEquals(5, rates.length);
+
+        // Never precise enough: all stages run, and the last one is exact.
+        ProgressiveSampler<Groups<Count>, ?> sampler = new ProgressiveSampler<>(
+                hist, rates, 1, (g, r) -> false);
+        List<PartialResult<Groups<Count>>> results = sampler.run(data).toList().toBlocking().single();
+        Assert.assertEquals(rates.length, results.size());
+        Assert.assertEquals(rates[0], results.get(0).deltaDone, 1e-6);
+        Assert.assertEquals(1.0, results.get(rates.length - 1).deltaDone, 1e-6);
+        Assert.assertEquals(exact, results.get(rates.length - 1).deltaValue);
+        // The first estimate is already close to the exact result.
+        Groups<Count> first = results.get(0).deltaValue;
+        for (int i = 0; i < exact.size(); i++)
+            Assert.assertEquals(exact.getBucket(i).count, first.getBucket(i).count,
+                    0.5 * exact.getBucket(i).count);
+
+        // With a loose tolerance the sampling stops early.
+        sampler = new ProgressiveSampler<>(
+                hist, rates, 1, ProgressiveSampler.histogramPrecision(0.1));
+        results = sampler.run(data).toList().toBlocking().single();
+        Assert.assertTrue(results.size() < rates.length);
+        Assert.assertEquals(1.0, results.get(results.size() - 1).deltaDone, 1e-6);
+    }
+
+    @Test
+    public void progressivePairTest() {
+        int bigSize = 100000;
+        SmallTable bigTable = TestTables.getIntTable(bigSize, 2);
+        String colName = bigTable.getSchema().getColumnNames().get(0);
+        HistogramSketch hist = new HistogramSketch(new DoubleHistogramBuckets(colName, 0, 1600, 10));
+        HistogramSketch cdf = new HistogramSketch(new DoubleHistogramBuckets(colName, 0, 1600, 100));
+        IDataSet<ITable> data = new LocalDataSet<ITable>(bigTable);
+        Groups<Count> exactHist = data.blockingSketch(hist);
+        Groups<Count> exactCdf = data.blockingSketch(cdf);
+
+        IncrementalPairSketch<Groups<Count>, ?, Groups<Count>, ?> pair =
+                new IncrementalPairSketch<>(hist, cdf);
+        IncrementalPairSketch.Result<Groups<Count>, Groups<Count>> both = data.blockingSketch(pair);
+        Assert.assertNotNull(both);
+        Assert.assertEquals(exactHist, both.first);
+        Assert.assertEquals(exactCdf, both.second);
+
+        double[] rates = ProgressiveSampler.geometricRates(0.01, 4);
+        ProgressiveSampler<IncrementalPairSketch.Result<Groups<Count>, Groups<Count>>, ?> sampler =
+                new ProgressiveSampler<>(pair, rates, 1, (p, r) -> false);
+        List<PartialResult<IncrementalPairSketch.Result<Groups<Count>, Groups<Count>>>> results =
+                sampler.run(data).toList().toBlocking().single();
+        Assert.assertEquals(rates.length, results.size());
+        IncrementalPairSketch.Result<Groups<Count>, Groups<Count>> last =
+                results.get(rates.length - 1).deltaValue;
+        Assert.assertNotNull(last);
+        Assert.assertEquals(exactHist, last.first);
+        Assert.assertEquals(exactCdf, last.second);
+    }
+
+    @Test
+    public void batchSketchTest() {
+        final int bigSize = 100000;
+        SmallTable bigTable = TestTables.getIntTable(bigSize, 2);
+        String colName1 = bigTable.getSchema().getColumnNames().get(0);
+        String colName2 = bigTable.getSchema().getColumnNames().get(1);
+        HistogramSketch hist1 = new HistogramSketch(new DoubleHistogramBuckets(colName1, 1, 50, 10));
+        HistogramSketch hist2 = new HistogramSketch(new DoubleHistogramBuckets(colName2, 1, 50, 15));
+        ParallelDataSet<ITable> data = TestTables.makeParallel(bigTable, bigSize / 10);
+        BatchSketch<ITable> batch = new BatchSketch<ITable>(hist1, new CounterSketch(), hist2);
+        JsonList<ISketchResult> results = data.blockingSketch(batch);
+        Assert.assertNotNull(results);
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(data.blockingSketch(hist1), results.get(0));
+        Assert.assertEquals(bigSize, ((Count)results.get(1)).count);
+        Assert.assertEquals(data.blockingSketch(hist2), results.get(2));
+
+        // Sketches sampled with the same parameters share a scan
+        TableSketch<Groups<Count>> sampled1 = hist1.sampled(0.1, 1);
+        TableSketch<Groups<Count>> sampled2 = hist2.sampled(0.1, 1);
+        batch = new BatchSketch<ITable>(sampled1, hist2, sampled2);
+        results = data.blockingSketch(batch);
+        Assert.assertNotNull(results);
+        Assert.assertEquals(data.blockingSketch(sampled1), results.get(0));
+        Assert.assertEquals(data.blockingSketch(hist2), results.get(1));
+        Assert.assertEquals(data.blockingSketch(sampled2), results.get(2));
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataset;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.hillview.dataset.remoting.MemoizedResults;
+import org.hillview.pb.Command;
+import org.hillview.pb.PartialResponse;
+import org.hillview.test.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the memoization cache of the servers.
+ */
+public class MemoizedResultsTest extends BaseTest {
+    private static Command command(int op, int index) {
+        byte[] bytes = new byte[100];
+        bytes[0] = (byte)op;
+        return Command.newBuilder()
+                .setSerializedOp(UnsafeByteOperations.unsafeWrap(bytes))
+                .setIdsIndex(index)
+                .build();
+    }
+
+    private static PartialResponse response(int size) {
+        return PartialResponse.newBuilder()
+                .setSerializedOp(ByteString.copyFrom(new byte[size]))
+                .build();
+    }
+
+    @Test
+    public void testMemoization() {
+        MemoizedResults results = new MemoizedResults();
+        Assert.assertNull(results.get(command(1, 1)));
+        results.insert(command(1, 1), response(10), 5);
+        MemoizedResults.ResponseAndId memoized = results.get(command(1, 1));
+        Assert.assertNotNull(memoized);
+        // The same operation on a different dataset is a different command.
+        Assert.assertNull(results.get(command(1, 2)));
+        Assert.assertNull(results.get(command(2, 1)));
+        Assert.assertEquals(1, results.getStats().hitCount());
+        Assert.assertEquals(3, results.getStats().missCount());
+        results.remove(command(1, 1), memoized);
+        Assert.assertNull(results.get(command(1, 1)));
+        Assert.assertEquals(0, results.size());
+    }
+
+    @Test
+    public void testEviction() {
+        // Room for about 10 responses
+        MemoizedResults results = new MemoizedResults(10 * 1024);
+        for (int i = 0; i < 100; i++)
+            results.insert(command(i, 1), response(1000), 0);
+        Assert.assertTrue(results.size() <= 10);
+        Assert.assertTrue(results.getStats().evictionCount() >= 90);
+        // The most recent result is still there
+        Assert.assertNotNull(results.get(command(99, 1)));
+        results.clear();
+        Assert.assertEquals(0, results.size());
+    }
+}
@@ -22,10 +22,12 @@ import org.hillview.dataset.ParallelDataSet;
 import org.hillview.dataset.monoids.PartialResultMonoid;
 import org.hillview.dataset.RemoteDataSet;
 import org.hillview.dataset.api.*;
+import org.hillview.dataset.remoting.ChannelPool;
 import org.hillview.dataset.remoting.HillviewServer;
 import org.hillview.maps.FalseMap;
 import org.hillview.sketches.NextKSketch;
 import org.hillview.sketches.SampleQuantileSketch;
+import org.hillview.sketches.highorder.BatchSketch;
 import org.hillview.sketches.results.ColumnSortOrientation;
 import org.hillview.sketches.results.NextKList;
 import org.hillview.sketches.results.SampleList;
@@ -195,6 +197,43 @@ public class RemotingTest extends BaseTest {
         assertEquals(50005000, result);
     }
 
+    @Test
+    public void testChannelSharing() {
+        final IDataSet<int[]> remoteIds = new RemoteDataSet<int[]>(serverAddress);
+        final IDataSet<int[]> remoteIdsNew = remoteIds.blockingMap(new IncrementMap());
+        final int channels = ChannelPool.instance.size();
+        final IDataSet<int[]> other = new RemoteDataSet<int[]>(
+                HostAndPort.fromParts(serverAddress.host, serverAddress.port));
+        DataSetTest.IntegerWrapper first = remoteIdsNew.blockingSketch(new SumSketch());
+        DataSetTest.IntegerWrapper second = other.blockingSketch(new SumSketch());
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(50005000, first.intValue());
+        assertEquals(49995000, second.intValue());
+        // All datasets of the same server share its channel
+        assertEquals(channels, ChannelPool.instance.size());
+        assertTrue(ChannelPool.instance.get(serverAddress) ==
+                ChannelPool.instance.get(HostAndPort.fromString(serverAddress.toString())));
+    }
+
+    @Test
+    public void testBatch() {
+        final IDataSet<int[]> remoteIds = new RemoteDataSet<int[]>(serverAddress);
+        BatchSketch<int[]> batch = new BatchSketch<int[]>(new SumSketch(), new ImmutableListSketch());
+        JsonList<ISketchResult> result = remoteIds.blockingSketch(batch);
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertEquals(49995000, ((DataSetTest.IntegerWrapper)result.get(0)).intValue());
+        assertEquals(10, ((JsonList<?>)result.get(1)).size());
+
+        // The second time the result is memoized
+        result = remoteIds.blockingSketch(batch);
+        assertNotNull(result);
+        assertEquals(2, result.size());
+        assertEquals(49995000, ((DataSetTest.IntegerWrapper)result.get(0)).intValue());
+        assertEquals(10, ((JsonList<?>)result.get(1)).size());
+    }
+
     //@Test
     public void testRaceSerialized() throws InterruptedException {
         final ExecutorService es = Executors.newFixedThreadPool(10);
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.dataset;
+
+import org.hillview.dataset.LocalDataSet;
+import org.hillview.dataset.ParallelDataSet;
+import org.hillview.dataset.api.IDataSet;
+import org.hillview.dataset.remoting.SpilledDataSets;
+import org.hillview.table.SmallTable;
+import org.hillview.table.Table;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IMutableMembershipSet;
+import org.hillview.table.api.ITable;
+import org.hillview.table.membership.DenseMembershipSet;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.TestTables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the datasets spilled to disk by the servers.
+ */
+public class SpilledDataSetsTest extends BaseTest {
+    private static String contents(IDataSet<ITable> dataSet) {
+        if (dataSet instanceof LocalDataSet) {
+            ITable table = ((LocalDataSet<ITable>)dataSet).data;
+            Assert.assertNotNull(table);
+            return table.toLongString(table.getNumOfRows());
+        }
+        StringBuilder builder = new StringBuilder();
+        for (IDataSet<ITable> child : ((ParallelDataSet<ITable>)dataSet).getChildren())
+            builder.append(contents(child));
+        return builder.toString();
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        File directory = Files.createTempDirectory("spill").toFile();
+        SpilledDataSets spilled = new SpilledDataSets(directory, 1 << 30);
+        SmallTable ints = TestTables.getMissingIntTable(1000, 2);
+        Table table = new Table(ints.getColumns(), null, null);
+        IMutableMembershipSet dense = new DenseMembershipSet(1000, 500);
+        for (int i = 0; i < 1000; i += 3)
+            dense.add(i);
+        List<IDataSet<ITable>> children = new ArrayList<IDataSet<ITable>>();
+        children.add(new LocalDataSet<ITable>(TestTables.testTable()));
+        children.add(new LocalDataSet<ITable>(table.selectRowsFromFullTable(dense.seal())));
+        ParallelDataSet<ITable> original = new ParallelDataSet<ITable>(children);
+
+        Assert.assertNull(spilled.restore(1));
+        spilled.spill(1, original, Collections.emptyList());
+        Assert.assertTrue(spilled.contains(1));
+        @SuppressWarnings("unchecked")
+        IDataSet<ITable> restored = (IDataSet<ITable>)spilled.restore(1);
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(contents(original), contents(restored));
+        // The spilled copy is deleted once restored.
+        Assert.assertFalse(spilled.contains(1));
+        Assert.assertNull(spilled.restore(1));
+
+        // Datasets which do not hold tables are not spilled.
+        spilled.spill(2, new LocalDataSet<Integer>(2), Collections.emptyList());
+        Assert.assertFalse(spilled.contains(2));
+        spilled.shutdown();
+        String[] files = directory.list();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(0, files.length);
+        Assert.assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testSharedColumns() throws IOException {
+        File directory = Files.createTempDirectory("spill").toFile();
+        SpilledDataSets spilled = new SpilledDataSets(directory, 1 << 30);
+        SmallTable ints = TestTables.getMissingIntTable(1000, 2);
+        Table table = new Table(ints.getColumns(), null, null);
+        IMutableMembershipSet dense = new DenseMembershipSet(1000, 500);
+        for (int i = 0; i < 1000; i += 3)
+            dense.add(i);
+        LocalDataSet<ITable> parent = new LocalDataSet<ITable>(table);
+        LocalDataSet<ITable> child = new LocalDataSet<ITable>(table.selectRowsFromFullTable(dense.seal()));
+
+        // The child shares all its columns with the parent, so only its rows are written.
+        spilled.spill(1, child, Collections.singletonList(parent));
+        @SuppressWarnings("unchecked")
+        IDataSet<ITable> restored = (IDataSet<ITable>)spilled.restore(1);
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(contents(child), contents(restored));
+        ITable restoredTable = ((LocalDataSet<ITable>)restored).data;
+        for (IColumn col : table.getColumns())
+            Assert.assertSame(col, restoredTable.getColumn(col.getName()));
+        spilled.shutdown();
+        Assert.assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testBound() throws IOException {
+        File directory = Files.createTempDirectory("spill").toFile();
+        // Each table takes about 8KB on disk.
+        SpilledDataSets spilled = new SpilledDataSets(directory, 20 * 1024);
+        SmallTable ints = TestTables.getMissingIntTable(1000, 2);
+        for (int i = 1; i <= 5; i++) {
+            Table table = new Table(ints.getColumns(), null, null);
+            spilled.spill(i, new LocalDataSet<ITable>(table), Collections.emptyList());
+        }
+        // The datasets are written in order, so restoring the last one waits for all writes.
+        Assert.assertNotNull(spilled.restore(5));
+        long total = 0;
+        File[] files = directory.listFiles();
+        Assert.assertNotNull(files);
+        for (File f : files)
+            total += f.length();
+        Assert.assertTrue(total <= 20 * 1024);
+        // The oldest datasets have been deleted.
+        Assert.assertFalse(spilled.contains(1));
+        Assert.assertNull(spilled.restore(1));
+        spilled.shutdown();
+        Assert.assertTrue(directory.delete());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.storage;
+
+import org.hillview.storage.NativeColumnCache;
+import org.hillview.table.Table;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.ITable;
+import org.hillview.table.columns.OffHeapColumn;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.TestTables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.hillview.test.table.DoubleArrayTest.generateDoubleArray;
+
+/**
+ * Tests for the cache of loaded tables in the native columnar format.
+ */
+public class NativeColumnCacheTest extends BaseTest {
+    @Test
+    public void testWriteAndOpen() throws Exception {
+        NativeColumnCache cache = NativeColumnCache.instance;
+        File previous = cache.getDirectory();
+        try {
+            cache.setDirectory(Files.createTempDirectory("columns").toFile());
+            Table people = TestTables.testTable();
+            List<IColumn> columns = new ArrayList<IColumn>(people.getColumns());
+            columns.add(TestTables.getMissingIntTable(people.getNumOfRows(), 1)
+                    .getColumns().get(0).rename("Missing"));
+            columns.add(generateDoubleArray(people.getNumOfRows(), 5));
+            Table table = new Table(columns, "people.csv", null);
+
+            Assert.assertNull(cache.open("key", "people.csv"));
+            Future<?> written = cache.write("key", table);
+            Assert.assertNotNull(written);
+            written.get();
+
+            ITable cached = cache.open("key", "people.csv");
+            Assert.assertNotNull(cached);
+            Assert.assertEquals("people.csv", cached.getSourceFile());
+            Assert.assertEquals(table.getSchema(), cached.getSchema());
+            for (IColumn c : cached.getColumns(cached.getSchema()))
+                Assert.assertTrue(c instanceof OffHeapColumn);
+            Assert.assertEquals(table.toLongString(table.getNumOfRows()),
+                    cached.toLongString(cached.getNumOfRows()));
+            Assert.assertNull(cache.open("other key", "people.csv"));
+        } finally {
+            cache.setDirectory(previous);
+        }
+    }
+
+    private static long size(File directory) {
+        long result = 0;
+        File[] files = directory.listFiles();
+        if (files != null)
+            for (File f : files)
+                result += f.isDirectory() ? size(f) : f.length();
+        return result;
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        NativeColumnCache cache = NativeColumnCache.instance;
+        File previous = cache.getDirectory();
+        long previousMax = cache.getMaxBytes();
+        try {
+            File dir = Files.createTempDirectory("columns").toFile();
+            cache.setDirectory(dir);
+            Table table = TestTables.testTable();
+            Future<?> written = cache.write("key1", table);
+            Assert.assertNotNull(written);
+            written.get();
+            Assert.assertNotNull(cache.open("key1", "people.csv"));
+            long tableSize = size(dir);
+            // Make the first table the least recently used one
+            File[] tables = dir.listFiles();
+            Assert.assertNotNull(tables);
+            Assert.assertEquals(1, tables.length);
+            Assert.assertTrue(new File(tables[0], "header").setLastModified(
+                    System.currentTimeMillis() - 10000));
+
+            // Room for only one table
+            cache.setMaxBytes(tableSize + tableSize / 2);
+            written = cache.write("key2", table);
+            Assert.assertNotNull(written);
+            written.get();
+            Assert.assertNull(cache.open("key1", "people.csv"));
+            Assert.assertNotNull(cache.open("key2", "people.csv"));
+            tables = dir.listFiles();
+            Assert.assertNotNull(tables);
+            // No temporary directories are left behind
+            Assert.assertEquals(1, tables.length);
+        } finally {
+            cache.setDirectory(previous);
+            cache.setMaxBytes(previousMax);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.table;
+
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.ColumnMemoryManager;
+import org.hillview.table.Table;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IColumnLoader;
+import org.hillview.table.api.ITable;
+import org.hillview.table.columns.IntArrayColumn;
+import org.hillview.table.membership.SparseMembershipSet;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.Linq;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ColumnMemoryManagerTest extends BaseTest {
+    private static final int size = 1000;
+    private int loads = 0;
+
+    private List<IntArrayColumn> load(List<String> names) {
+        return Linq.map(names, n -> {
+            this.loads++;
+            IntArrayColumn col = new IntArrayColumn(
+                    new ColumnDescription(n, ContentsKind.Integer), size);
+            for (int i = 0; i < size; i++)
+                col.set(i, i * n.length());
+            return col;
+        });
+    }
+
+    @Test
+    public void evictAndReloadTest() {
+        List<ColumnDescription> desc = Arrays.asList(
+                new ColumnDescription("a", ContentsKind.Integer),
+                new ColumnDescription("bb", ContentsKind.Integer));
+        IColumnLoader loader = this::load;
+        // Start with no columns tracked
+        ColumnMemoryManager.instance.evict(Long.MAX_VALUE);
+        Table table = Table.createLazyTable(desc, size, null, loader);
+        IColumn a = table.getLoadedColumn("a");
+        IColumn b = table.getLoadedColumn("bb");
+        Assert.assertEquals(2, this.loads);
+        Assert.assertTrue(table.getColumn("a").isLoaded());
+
+        // "a" is the least recently used column.
+        long freed = ColumnMemoryManager.instance.evict(1);
+        Assert.assertTrue(freed > 0);
+        Assert.assertFalse(table.getColumn("a").isLoaded());
+        Assert.assertTrue(table.getColumn("bb").isLoaded());
+        // The evicted column is still usable by whoever holds it.
+        Assert.assertEquals(10, a.getInt(10));
+
+        IColumn reloaded = table.getLoadedColumn("a");
+        Assert.assertEquals(3, this.loads);
+        Assert.assertNotSame(a, reloaded);
+        for (int i = 0; i < size; i++)
+            Assert.assertEquals(a.getInt(i), reloaded.getInt(i));
+        Assert.assertSame(b, table.getLoadedColumn("bb"));
+        Assert.assertEquals(3, this.loads);
+    }
+
+    @Test
+    public void evictFromSubsetTest() {
+        List<ColumnDescription> desc = Collections.singletonList(
+                new ColumnDescription("a", ContentsKind.Integer));
+        Table table = Table.createLazyTable(desc, size, null, this::load);
+        table.getLoadedColumn("a");
+        SparseMembershipSet set = new SparseMembershipSet(size, size / 2);
+        for (int i = 0; i < size; i += 2)
+            set.add(i);
+        ITable subset = table.selectRowSubset(set.seal());
+        IColumn a = subset.getLoadedColumn("a");
+        Assert.assertEquals(1, this.loads);
+
+        ColumnMemoryManager.instance.evict(Long.MAX_VALUE);
+        Assert.assertFalse(table.getColumn("a").isLoaded());
+        Assert.assertFalse(subset.getColumn("a").isLoaded());
+        IColumn reloaded = subset.getLoadedColumn("a");
+        Assert.assertEquals(2, this.loads);
+        Assert.assertEquals(a.getInt(4), reloaded.getInt(4));
+        Assert.assertTrue(table.getColumn("a").isLoaded());
+    }
+
+    @Test
+    public void computedColumnsNotEvictedTest() {
+        List<ColumnDescription> desc = Collections.singletonList(
+                new ColumnDescription("a", ContentsKind.Integer));
+        Table table = Table.createLazyTable(desc, size, null, this::load);
+        IColumn a = table.getLoadedColumn("a");
+        // A column computed from "a", which the loader cannot produce
+        IntArrayColumn c = new IntArrayColumn(new ColumnDescription("c", ContentsKind.Integer), size);
+        for (int i = 0; i < size; i++)
+            c.set(i, a.getInt(i) + 1);
+        ITable replaced = table.replace(Arrays.asList(a, c));
+        Assert.assertSame(c, replaced.getLoadedColumn("c"));
+        Assert.assertSame(a, replaced.getLoadedColumn("a"));
+
+        ColumnMemoryManager.instance.evict(Long.MAX_VALUE);
+        Assert.assertFalse(table.getColumn("a").isLoaded());
+        Assert.assertFalse(replaced.getColumn("a").isLoaded());
+        Assert.assertSame(c, replaced.getColumn("c"));
+        Assert.assertSame(c, replaced.getLoadedColumn("c"));
+        Assert.assertEquals(1, this.loads);
+    }
+
+    @Test
+    public void watermarksTest() {
+        // Eviction is disabled unless enabled explicitly.
+        Assert.assertFalse(ColumnMemoryManager.isEnabled());
+        ColumnMemoryManager.setWatermarks(.85, .70);
+        ColumnMemoryManager.setWatermarks(0, 0);
+        Assert.assertFalse(ColumnMemoryManager.isEnabled());
+        try {
+            ColumnMemoryManager.setWatermarks(.5, .7);
+            Assert.fail("Low watermark above the high one");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+}
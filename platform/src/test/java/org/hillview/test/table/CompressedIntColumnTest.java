@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.table;
+
+import org.hillview.sketches.HistogramSketch;
+import org.hillview.sketches.results.Count;
+import org.hillview.sketches.results.DoubleHistogramBuckets;
+import org.hillview.sketches.results.Groups;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IIntColumn;
+import org.hillview.table.columns.*;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.Randomness;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.function.IntUnaryOperator;
+
+public class CompressedIntColumnTest extends BaseTest {
+    private static final ColumnDescription desc = new ColumnDescription("X", ContentsKind.Integer);
+    private static final int size = 10000;
+
+    /**
+     * Creates a list column with the specified values, where every 7th value is missing.
+     */
+    private static IntListColumn create(IntUnaryOperator value) {
+        IntListColumn col = new IntListColumn(desc);
+        for (int i = 0; i < size; i++) {
+            if (i % 7 == 3)
+                col.appendMissing();
+            else
+                col.append(value.applyAsInt(i));
+        }
+        return col;
+    }
+
+    private static void checkSame(IIntColumn expected, IColumn actual) {
+        Assert.assertEquals(expected.sizeInRows(), actual.sizeInRows());
+        int[] rows = new int[size / 3];
+        for (int i = 0; i < rows.length; i++)
+            rows[i] = 3 * i;
+        int[] values = new int[rows.length];
+        actual.to(IIntColumn.class).getInts(rows, 0, rows.length, values);
+        for (int i = 0; i < expected.sizeInRows(); i++) {
+            Assert.assertEquals(expected.isMissing(i), actual.isMissing(i));
+            if (expected.isMissing(i))
+                continue;
+            Assert.assertEquals(expected.getInt(i), actual.getInt(i));
+            if (i % 3 == 0)
+                Assert.assertEquals(expected.getInt(i), values[i / 3]);
+        }
+    }
+
+    @Test
+    public void runLengthTest() {
+        IntListColumn col = create(i -> i / 1000);
+        IColumn sealed = col.seal();
+        Assert.assertTrue(sealed instanceof RunLengthIntColumn);
+        Assert.assertEquals(10, ((RunLengthIntColumn)sealed).getRunCount());
+        checkSame(col, sealed);
+        checkSame(col, sealed.rename("Y"));
+    }
+
+    @Test
+    public void bitPackedTest() {
+        Randomness random = new Randomness(1);
+        IntListColumn col = create(i -> 200 + random.nextInt(50));
+        IColumn sealed = col.seal();
+        Assert.assertTrue(sealed instanceof BitPackedIntColumn);
+        Assert.assertTrue(((CompressedIntColumn)sealed).sizeInBytes() < size);
+        checkSame(col, sealed);
+    }
+
+    @Test
+    public void negativeTest() {
+        IntListColumn col = create(i -> (i % 2 == 0 ? -1 : 1) * (i % 100));
+        IColumn sealed = col.seal();
+        Assert.assertTrue(sealed instanceof CompressedIntColumn);
+        checkSame(col, sealed);
+    }
+
+    @Test
+    public void deltaTest() {
+        IntListColumn col = create(i -> 1500000000 + i * 3);
+        IColumn sealed = col.seal();
+        Assert.assertTrue(sealed instanceof DeltaIntColumn);
+        checkSame(col, sealed);
+    }
+
+    @Test
+    public void incompressibleTest() {
+        Randomness random = new Randomness(2);
+        IntListColumn col = create(i -> random.nextInt());
+        Assert.assertSame(col, col.seal());
+    }
+
+    @Test
+    public void allMissingTest() {
+        IntListColumn col = new IntListColumn(desc);
+        for (int i = 0; i < 100; i++)
+            col.appendMissing();
+        IColumn sealed = col.seal();
+        Assert.assertTrue(sealed instanceof CompressedIntColumn);
+        for (int i = 0; i < 100; i++)
+            Assert.assertTrue(sealed.isMissing(i));
+    }
+
+    @Test
+    public void histogramTest() {
+        IntListColumn col = create(i -> i / 1000);
+        IColumn sealed = col.seal();
+        DoubleHistogramBuckets buckets = new DoubleHistogramBuckets("X", 0, 10, 5);
+        HistogramSketch sketch = new HistogramSketch(buckets);
+        Groups<Count> expected = sketch.create(
+                new Table(Collections.singletonList(col), null, null));
+        Groups<Count> actual = sketch.create(
+                new Table(Collections.singletonList(sealed), null, null));
+        Assert.assertNotNull(expected);
+        Assert.assertNotNull(actual);
+        for (int i = 0; i < 5; i++)
+            Assert.assertEquals(expected.perBucket.get(i).count, actual.perBucket.get(i).count);
+        Assert.assertEquals(expected.perMissing.count, actual.perMissing.count);
+        Assert.assertEquals(size / 7 + 1, actual.perMissing.count);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.hillview.test.table;
+
+import org.hillview.sketches.results.ColumnSortOrientation;
+import org.hillview.sketches.results.StringHistogramBuckets;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.RecordOrder;
+import org.hillview.table.Table;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.api.IndexComparator;
+import org.hillview.table.columns.DictionaryStringColumn;
+import org.hillview.table.columns.StringArrayColumn;
+import org.hillview.table.columns.StringListColumn;
+import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.Converters;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Random;
+
+public class DictionaryStringColumnTest extends BaseTest {
+    private final ColumnDescription desc = new ColumnDescription("test", ContentsKind.String);
+    private static final String[] words = {
+            "", "a", "ab", "b", "Z", "zebra", "\u00e9t\u00e9", "\uffff", "\ud83d\ude00", "10", "9"
+    };
+
+    private String[] randomValues(int size) {
+        Random random = new Random(0);
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            int index = random.nextInt(words.length + 1);
+            values[i] = index == words.length ? null : words[index];
+        }
+        return values;
+    }
+
+    private static void checkSame(String[] values, IColumn column) {
+        Assert.assertEquals(values.length, column.sizeInRows());
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], column.getString(i));
+            Assert.assertEquals(values[i] == null, column.isMissing(i));
+        }
+    }
+
+    @Test
+    public void testSeal() {
+        String[] values = this.randomValues(10000);
+        StringArrayColumn array = new StringArrayColumn(this.desc, values);
+        IColumn sealed = array.seal();
+        Assert.assertTrue(sealed instanceof DictionaryStringColumn);
+        checkSame(values, sealed);
+        Assert.assertEquals(words.length, ((DictionaryStringColumn)sealed).getDictionarySize());
+
+        StringListColumn list = new StringListColumn(this.desc);
+        for (String v : values)
+            list.append(v);
+        sealed = list.seal();
+        Assert.assertTrue(sealed instanceof DictionaryStringColumn);
+        checkSame(values, sealed);
+        checkSame(values, sealed.rename("other"));
+        // Decoded values are cached, so reading again does not allocate
+        for (int i = 0; i < values.length; i++)
+            Assert.assertSame(sealed.getString(i), sealed.getString(i));
+
+        // Dense list column
+        list = new StringListColumn(this.desc);
+        String[] distinct = new String[70000];
+        for (int i = 0; i < distinct.length; i++) {
+            distinct[i] = i % 3 == 0 ? null : Integer.toString(i);
+            list.append(distinct[i]);
+        }
+        checkSame(distinct, list.seal());
+    }
+
+    @Test
+    public void testEmpty() {
+        String[] values = new String[] { null, null };
+        IColumn sealed = new StringArrayColumn(this.desc, values).seal();
+        checkSame(values, sealed);
+        Assert.assertEquals(0, ((DictionaryStringColumn)sealed).getDictionarySize());
+    }
+
+    @Test
+    public void testComparator() {
+        String[] values = this.randomValues(500);
+        IColumn column = new StringArrayColumn(this.desc, values).seal();
+        IndexComparator comparator = column.getComparator();
+        for (int i = 0; i < values.length; i++)
+            for (int j = 0; j < values.length; j++)
+                Assert.assertEquals(
+                        Integer.signum(Converters.compareStrings(values[i], values[j])),
+                        Integer.signum(comparator.compare(i, j)));
+    }
+
+    @Test
+    public void testBuckets() {
+        DictionaryStringColumn column = (DictionaryStringColumn)
+                new StringArrayColumn(this.desc, this.randomValues(1000)).seal();
+        StringHistogramBuckets[] allBuckets = {
+                new StringHistogramBuckets("test", new String[] { "a", "b", "c" }),
+                new StringHistogramBuckets("test", new String[] { "1", "Z", "ab" }, "zebra"),
+                new StringHistogramBuckets("test", new String[] { "aa" }, "b"),
+                new StringHistogramBuckets("test", new String[] { "\uffff" })
+        };
+        for (StringHistogramBuckets buckets : allBuckets) {
+            int[] indexes = buckets.codeIndexes(column);
+            Assert.assertEquals(column.getDictionarySize(), indexes.length);
+            for (int code = 0; code < indexes.length; code++)
+                Assert.assertEquals(buckets.indexOf(column.decode(code)), indexes[code]);
+        }
+    }
+
+    @Test
+    public void testSort() {
+        String[] values = this.randomValues(2000);
+        IColumn column = new StringArrayColumn(this.desc, values).seal();
+        Table table = new Table(Collections.singletonList(column), null, null);
+        for (boolean ascending : new boolean[] { true, false }) {
+            RecordOrder order = new RecordOrder();
+            order.append(new ColumnSortOrientation(this.desc, ascending));
+            int[] sorted = order.getSortedRowOrder(table, new FullMembershipSet(values.length));
+            Assert.assertEquals(values.length, sorted.length);
+            for (int i = 1; i < sorted.length; i++) {
+                int c = Converters.compareStrings(values[sorted[i - 1]], values[sorted[i]]);
+                if (ascending)
+                    Assert.assertTrue(c <= 0);
+                else
+                    Assert.assertTrue(c >= 0);
+            }
+        }
+    }
+}
@@ -21,15 +21,26 @@ import org.hillview.table.api.IMembershipSet;
 import org.hillview.table.api.IMutableMembershipSet;
 import org.hillview.table.api.IRowIterator;
 import org.hillview.table.api.ISampledRowIterator;
+import org.hillview.table.api.ITableFilter;
+import org.hillview.table.columns.ZoneMap;
 import org.hillview.table.membership.DenseMembershipSet;
+import org.hillview.table.membership.DisjointSampleRowIterator;
 import org.hillview.table.membership.EmptyMembershipSet;
 import org.hillview.table.membership.FullMembershipSet;
+import org.hillview.table.membership.IntervalMembershipSet;
 import org.hillview.table.membership.MembershipSetFactory;
+import org.hillview.table.membership.RangeRestrictedMembershipSet;
+import org.hillview.table.membership.RoaringMembershipSet;
+import org.hillview.table.membership.SparseMembershipSet;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.IntSet;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 /* Tests for the three Membership Classes:
  * FullMembership, LazyMembership, SparseMembership
  */
@@ -155,4 +166,348 @@ public class MembershipTest extends BaseTest {
         Assert.assertTrue( counter > 0.9 * iter.rate() * dms.getSize());
         Assert.assertTrue( counter < 1.1 * iter.rate() * dms.getSize());
     }
+
+    @Test
+    public void TestRangeRestrictedMembership() {
+        final int max = 10000;
+        IMutableMembershipSet dense = new DenseMembershipSet(max, max / 3);
+        IMutableMembershipSet sparse = new SparseMembershipSet(max, max / 100);
+        for (int i = 0; i < max; i += 3)
+            dense.add(i);
+        for (int i = 0; i < max; i += 100)
+            sparse.add(i);
+        for (IMembershipSet set : new IMembershipSet[] {
+                new FullMembershipSet(max), dense.seal(), sparse.seal() }) {
+            int total = 0;
+            int sampled = 0;
+            for (int start = 0; start < max; start += 3001) {
+                int end = Math.min(max, start + 3001);
+                IMembershipSet range = new RangeRestrictedMembershipSet(set, start, end);
+                int count = 0;
+                IRowIterator it = range.getIterator();
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow()) {
+                    Assert.assertTrue(row >= start && row < end);
+                    Assert.assertTrue(set.isMember(row));
+                    Assert.assertTrue(range.isMember(row));
+                    count++;
+                }
+                Assert.assertEquals(-1, it.getNextRow());
+                Assert.assertEquals(count, range.getSize());
+                total += count;
+                ISampledRowIterator sit = range.getIteratorOverSample(0.1, 0, true);
+                for (int row = sit.getNextRow(); row >= 0; row = sit.getNextRow()) {
+                    Assert.assertTrue(range.isMember(row));
+                    sampled++;
+                }
+            }
+            Assert.assertEquals(set.getSize(), total);
+            int expected = 0;
+            ISampledRowIterator sit = set.getIteratorOverSample(0.1, 0, true);
+            while (sit.getNextRow() >= 0)
+                expected++;
+            Assert.assertEquals(expected, sampled);
+        }
+    }
+
+    @Test
+    public void TestSplit() {
+        final int max = 100000;
+        Random random = new Random(2);
+        IMutableMembershipSet dense = new DenseMembershipSet(max, max / 2);
+        IMutableMembershipSet sparse = new SparseMembershipSet(max, 1000);
+        for (int i = 0; i < max / 2; i++) {
+            int row = random.nextInt(max);
+            dense.add(row);
+            if (i % 50 == 0)
+                sparse.add(row);
+        }
+        for (IMembershipSet set : new IMembershipSet[] { dense.seal(), sparse.seal() }) {
+            int[] rows = set.getRows();
+            Arrays.sort(rows);
+            IntSet sample = new IntSet();
+            ISampledRowIterator sit = set.getIteratorOverSample(0.1, 5, true);
+            for (int row = sit.getNextRow(); row >= 0; row = sit.getNextRow())
+                sample.add(row);
+
+            List<IMembershipSet> pieces = RangeRestrictedMembershipSet.split(set, 7);
+            Assert.assertEquals(7, pieces.size());
+            int index = 0;
+            int sampled = 0;
+            for (IMembershipSet piece : pieces) {
+                IRowIterator it = piece.getIterator();
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                    Assert.assertEquals(rows[index++], row);
+                int previous = -1;
+                sit = piece.getIteratorOverSample(0.1, 5, true);
+                Assert.assertEquals(0.1, sit.rate(), 0);
+                for (int row = sit.getNextRow(); row >= 0; row = sit.getNextRow()) {
+                    Assert.assertTrue(row > previous);
+                    Assert.assertTrue(piece.isMember(row));
+                    Assert.assertTrue(sample.contains(row));
+                    previous = row;
+                    sampled++;
+                }
+            }
+            Assert.assertEquals(rows.length, index);
+            Assert.assertEquals(sample.size(), sampled);
+        }
+    }
+
+    @Test
+    public void TestSplitBySize() {
+        final int max = 100000;
+        Random random = new Random(3);
+        IMutableMembershipSet dense = new DenseMembershipSet(max, max / 2);
+        IMutableMembershipSet sparse = new SparseMembershipSet(max, 1000);
+        for (int i = 0; i < max / 2; i++) {
+            int row = random.nextInt(max);
+            dense.add(row);
+            if (i % 50 == 0)
+                sparse.add(row);
+        }
+        for (IMembershipSet set : new IMembershipSet[] {
+                new FullMembershipSet(max), dense.seal(), sparse.seal() }) {
+            int[] rows = set.getRows();
+            Arrays.sort(rows);
+            int rowsPerPiece = set.getSize() / 4 + 3;
+            List<IMembershipSet> pieces = RangeRestrictedMembershipSet.splitBySize(set, rowsPerPiece);
+            Assert.assertEquals(4, pieces.size());
+            int index = 0;
+            for (IMembershipSet piece : pieces) {
+                int count = 0;
+                IRowIterator it = piece.getIterator();
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow(), count++)
+                    Assert.assertEquals(rows[index++], row);
+                Assert.assertEquals(count, piece.getSize());
+                if (index < rows.length)
+                    Assert.assertEquals(rowsPerPiece, count);
+            }
+            Assert.assertEquals(rows.length, index);
+        }
+    }
+
+    @Test
+    public void TestDisjointSamples() {
+        final int max = 100000;
+        IMutableMembershipSet dense = new DenseMembershipSet(max, max / 3);
+        IMutableMembershipSet sparse = new SparseMembershipSet(max, max / 100);
+        for (int i = 0; i < max; i += 3)
+            dense.add(i);
+        for (int i = 0; i < max; i += 100)
+            sparse.add(i);
+        double[] rates = { 0.05, 0.2, 1.0 };
+        RoaringMembershipSet roaring = RoaringMembershipSet.copy(dense.seal());
+        for (IMembershipSet set : new IMembershipSet[] {
+                new FullMembershipSet(max), dense.seal(), sparse.seal(), roaring,
+                new RangeRestrictedMembershipSet(dense.seal(), 1000, 50000),
+                new IntervalMembershipSet(max, new int[] { 10, 5000 }, new int[] { 3000, 90000 }) }) {
+            IntSet seen = new IntSet();
+            int total = 0;
+            for (int stage = 0; stage < rates.length; stage++) {
+                ISampledRowIterator it = new DisjointSampleRowIterator(set, rates, stage, 1);
+                int count = 0;
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow()) {
+                    Assert.assertTrue(set.isMember(row));
+                    // Stages are disjoint
+                    Assert.assertTrue(seen.add(row));
+                    count++;
+                }
+                total += count;
+                if (stage == 0 && set.getSize() > 10000)
+                    Assert.assertEquals(rates[0] * set.getSize(), count, 0.2 * rates[0] * set.getSize());
+            }
+            // The last stage has rate 1, so all rows have been sampled.
+            Assert.assertEquals(set.getSize(), total);
+        }
+    }
+
+    private static void checkSame(IMembershipSet expected, IMembershipSet actual) {
+        Assert.assertEquals(expected.getSize(), actual.getSize());
+        IRowIterator it = actual.getIterator();
+        int previous = -1;
+        int count = 0;
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow()) {
+            Assert.assertTrue(row > previous);
+            Assert.assertTrue(expected.isMember(row));
+            previous = row;
+            count++;
+        }
+        Assert.assertEquals(expected.getSize(), count);
+    }
+
+    @Test
+    public void TestRoaringMembership() {
+        final int max = 1000000;
+        Random random = new Random(0);
+        IMutableMembershipSet[] dense = new IMutableMembershipSet[3];
+        RoaringMembershipSet[] roaring = new RoaringMembershipSet[3];
+        for (int i = 0; i < 3; i++) {
+            dense[i] = new DenseMembershipSet(max, max / 3);
+            roaring[i] = new RoaringMembershipSet(max);
+        }
+        for (int i = 0; i < 50000; i++) {
+            // Sparse random rows, dense rows, and long runs
+            int[] rows = { random.nextInt(max), (i * 7) % max, 300000 + i / 3 * 5 + i % 3 };
+            for (int j = 0; j < 3; j++) {
+                dense[j].add(rows[j]);
+                roaring[j].add(rows[j]);
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            IMembershipSet d = dense[i].seal();
+            IMembershipSet r = roaring[i].seal();
+            checkSame(d, r);
+            for (int row = 0; row < max; row += 13)
+                Assert.assertEquals(d.isMember(row), r.isMember(row));
+            for (int j = 0; j < 3; j++) {
+                IMembershipSet other = dense[j].seal();
+                checkSame(d.union(other), r.union(roaring[j]));
+                checkSame(d.intersection(other), r.intersection(roaring[j]));
+                checkSame(d.setMinus(other), r.setMinus(roaring[j]));
+                checkSame(d.intersection(other), r.intersection(other));
+            }
+            IMembershipSet sample = r.sample(1000, 1);
+            Assert.assertEquals(1000, sample.getSize());
+            IRowIterator it = sample.getIterator();
+            for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                Assert.assertTrue(r.isMember(row));
+        }
+        IMembershipSet filtered = new FullMembershipSet(max).filter(row -> row % 10 == 0);
+        Assert.assertTrue(filtered instanceof RoaringMembershipSet);
+        Assert.assertEquals(max / 10, filtered.getSize());
+    }
+
+    @Test
+    public void TestIntervalMembership() {
+        final int max = 100000;
+        IntervalMembershipSet empty = new IntervalMembershipSet(max, 5, 5);
+        Assert.assertEquals(0, empty.getSize());
+        Assert.assertEquals(-1, empty.getIterator().getNextRow());
+
+        // Empty runs are dropped and adjacent runs are coalesced.
+        IntervalMembershipSet set = new IntervalMembershipSet(max,
+                new int[] { 100, 150, 300, 400, 50000 }, new int[] { 150, 300, 350, 400, 60000 });
+        Assert.assertEquals(2, set.getRunCount());
+        Assert.assertEquals(250 + 10000, set.getSize());
+        IMutableMembershipSet expected = new DenseMembershipSet(max, set.getSize());
+        for (int i = 100; i < 350; i++)
+            expected.add(i);
+        for (int i = 50000; i < 60000; i++)
+            expected.add(i);
+        IMembershipSet d = expected.seal();
+        checkSame(d, set);
+        for (int row = 0; row < max; row += 7)
+            Assert.assertEquals(d.isMember(row), set.isMember(row));
+
+        int[] batch = new int[100];
+        IRowIterator it = set.getIterator();
+        int count = 0;
+        for (int n = it.fillBatch(batch); n > 0; n = it.fillBatch(batch)) {
+            for (int i = 0; i < n; i++)
+                Assert.assertTrue(d.isMember(batch[i]));
+            count += n;
+        }
+        Assert.assertEquals(set.getSize(), count);
+
+        IntervalMembershipSet other = new IntervalMembershipSet(max, 200, 55000);
+        IMutableMembershipSet otherRows = new DenseMembershipSet(max, other.getSize());
+        for (int i = 200; i < 55000; i++)
+            otherRows.add(i);
+        IMembershipSet otherDense = otherRows.seal();
+        checkSame(d.intersection(otherDense), set.intersection(other));
+        checkSame(d.union(otherDense), set.union(other));
+        checkSame(d.setMinus(otherDense), set.setMinus(other));
+        checkSame(d.intersection(otherDense), set.intersection(otherDense));
+        Assert.assertTrue(set.intersection(other) instanceof IntervalMembershipSet);
+
+        IMembershipSet sample = set.sample(1000, 1);
+        Assert.assertEquals(1000, sample.getSize());
+        it = sample.getIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            Assert.assertTrue(set.isMember(row));
+    }
+
+    /**
+     * Check that fillBatch produces the same rows as getNextRow.
+     */
+    private static void checkBatches(IRowIterator expected, IRowIterator actual, int batchSize) {
+        int[] batch = new int[batchSize];
+        for (int n = actual.fillBatch(batch); n > 0; n = actual.fillBatch(batch)) {
+            for (int i = 0; i < n; i++)
+                Assert.assertEquals(expected.getNextRow(), batch[i]);
+        }
+        Assert.assertEquals(-1, expected.getNextRow());
+        Assert.assertEquals(0, actual.fillBatch(batch));
+    }
+
+    @Test
+    public void TestFillBatch() {
+        final int max = 200000;
+        Random random = new Random(1);
+        IMutableMembershipSet dense = new DenseMembershipSet(max, max / 2);
+        IMutableMembershipSet sparse = new SparseMembershipSet(max, 1000);
+        RoaringMembershipSet roaring = new RoaringMembershipSet(max);
+        for (int i = 0; i < max / 2; i++) {
+            int row = random.nextInt(max);
+            dense.add(row);
+            roaring.add(row);
+            if (i % 100 == 0)
+                sparse.add(row);
+        }
+        sparse.add(0);
+        IMembershipSet[] sets = {
+                new FullMembershipSet(max), dense.seal(), sparse.seal(), roaring.seal(),
+                new RangeRestrictedMembershipSet(dense.seal(), 1000, 150000),
+                new IntervalMembershipSet(max, new int[] { 10, 5000 }, new int[] { 3000, 90000 }) };
+        for (IMembershipSet set : sets) {
+            for (int batchSize : new int[] { 1, 7, 64, 1024 }) {
+                checkBatches(set.getIterator(), set.getIterator(), batchSize);
+                checkBatches(set.getIteratorInRange(63, 100001),
+                        set.getIteratorInRange(63, 100001), batchSize);
+                checkBatches(set.getIteratorOverSample(0.01, 3, true),
+                        set.getIteratorOverSample(0.01, 3, true), batchSize);
+                checkBatches(set.getIteratorOverSample(1, 3, true),
+                        set.getIteratorOverSample(1, 3, true), batchSize);
+            }
+        }
+    }
+
+    @Test
+    public void TestFactoryFilter() {
+        // Blocks 0, 3, ... have no matches, blocks 1, 4, ... only matches.
+        ITableFilter filter = new ITableFilter() {
+            @Override
+            public boolean test(int row) {
+                int block = row >>> ZoneMap.LogBlockRows;
+                return block % 3 == 1 || (block % 3 == 2 && row % 7 == 2);
+            }
+
+            @Override
+            public ZoneMap.Match matchBlock(int block) {
+                return block % 3 == 0 ? ZoneMap.Match.None :
+                        (block % 3 == 1 ? ZoneMap.Match.All : ZoneMap.Match.Some);
+            }
+        };
+        Random random = new Random(2);
+        for (int max : new int[] { 0, 1000, 70000, 300001 }) {
+            IMutableMembershipSet dense = new DenseMembershipSet(max, max / 3);
+            IMutableMembershipSet sparse = new SparseMembershipSet(max, 100);
+            for (int i = 0; i < max; i++) {
+                if (random.nextInt(3) == 0)
+                    dense.add(i);
+                if (i % 97 == 0)
+                    sparse.add(i);
+            }
+            IMembershipSet[] sets = { new FullMembershipSet(max), dense.seal(), sparse.seal(),
+                    new IntervalMembershipSet(max, new int[] { 0 }, new int[] { max / 2 }) };
+            for (IMembershipSet set : sets) {
+                IMembershipSet result = MembershipSetFactory.filter(set, filter);
+                IMembershipSet expected = set.filter(filter::test);
+                Assert.assertEquals(expected.getSize(), result.getSize());
+                IRowIterator it = result.getIterator();
+                for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                    Assert.assertTrue(expected.isMember(row));
+            }
+        }
+    }
 }
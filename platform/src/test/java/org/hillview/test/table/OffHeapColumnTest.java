@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.table;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.api.ContentsKind;
+import org.hillview.table.api.IColumn;
+import org.hillview.table.columns.*;
+import org.hillview.test.BaseTest;
+import org.hillview.utils.IntArrayGenerator;
+import org.hillview.utils.Linq;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hillview.test.table.DoubleArrayTest.generateDoubleArray;
+
+public class OffHeapColumnTest extends BaseTest {
+    private static void checkSame(IColumn expected, IColumn actual) {
+        Assert.assertEquals(expected.sizeInRows(), actual.sizeInRows());
+        Assert.assertEquals(expected.getKind(), actual.getKind());
+        for (int i = 0; i < expected.sizeInRows(); i++) {
+            Assert.assertEquals(expected.isMissing(i), actual.isMissing(i));
+            if (!expected.isMissing(i))
+                Assert.assertEquals(expected.getObject(i), actual.getObject(i));
+        }
+    }
+
+    @Test
+    public void copyTest() {
+        IntArrayColumn ints = IntArrayGenerator.getMissingIntArray("X", 1000, 5);
+        IColumn offInts = OffHeapColumn.copy(ints);
+        Assert.assertTrue(offInts instanceof OffHeapIntColumn);
+        checkSame(ints, offInts);
+
+        DoubleArrayColumn doubles = generateDoubleArray(1000, 100);
+        IColumn offDoubles = OffHeapColumn.copy(doubles);
+        Assert.assertTrue(offDoubles instanceof OffHeapDoubleColumn);
+        checkSame(doubles, offDoubles);
+
+        StringArrayColumn strings = new StringArrayColumn(
+                new ColumnDescription("S", ContentsKind.String),
+                new String[] { "a", null, "b", "a", "", null });
+        IColumn offStrings = OffHeapColumn.copy(strings);
+        Assert.assertTrue(offStrings instanceof OffHeapStringColumn);
+        checkSame(strings, offStrings);
+
+        IColumn renamed = offInts.rename("Y");
+        Assert.assertEquals("Y", renamed.getName());
+        checkSame(ints, renamed);
+    }
+
+    @Test
+    public void noMissingTest() {
+        OffHeapDoubleColumn col = new OffHeapDoubleColumn(
+                new ColumnDescription("D", ContentsKind.Double), 100);
+        for (int i = 0; i < 100; i++)
+            col.set(i, i / 2.0);
+        Assert.assertEquals(800, col.getOffHeapBytes());
+        Assert.assertFalse(col.isMissing(63));
+        col.setMissing(64);
+        Assert.assertTrue(col.isMissing(64));
+        Assert.assertFalse(col.isMissing(63));
+        Assert.assertFalse(col.isMissing(65));
+        Assert.assertEquals(816, col.getOffHeapBytes());
+        Assert.assertEquals(49.5, col.getDouble(99), 0);
+    }
+
+    @Test
+    public void serializationTest() {
+        IntArrayColumn ints = IntArrayGenerator.getMissingIntArray("X", 1000, 7);
+        IColumn offInts = OffHeapColumn.copy(ints);
+        IColumn copy = SerializationUtils.clone(offInts);
+        Assert.assertTrue(copy instanceof IntArrayColumn);
+        checkSame(ints, copy);
+    }
+
+    @Test
+    public void lazyTableTest() {
+        IntArrayColumn ints = IntArrayGenerator.getMissingIntArray("X", 100, 3);
+        DoubleArrayColumn doubles = generateDoubleArray(100, 10);
+        List<IColumn> columns = Arrays.asList(ints, doubles);
+        Table table = Table.createLazyTable(
+                Linq.map(columns, IColumn::getDescription), 100, null,
+                names -> Linq.where(columns, c -> names.contains(c.getName())));
+        Table offHeap = table.toOffHeap();
+        Assert.assertFalse(offHeap.getColumn("X").isLoaded());
+        IColumn x = offHeap.getLoadedColumn("X");
+        Assert.assertTrue(x instanceof OffHeapIntColumn);
+        checkSame(ints, x);
+        IColumn d = offHeap.getLoadedColumn(doubles.getName());
+        Assert.assertTrue(d instanceof OffHeapDoubleColumn);
+        checkSame(doubles, d);
+    }
+}
@@ -20,14 +20,18 @@ package org.hillview.test.table;
 import org.hillview.maps.FilterMap;
 import org.hillview.table.*;
 import org.hillview.table.api.*;
+import org.hillview.table.columns.StringArrayColumn;
 import org.hillview.table.filters.StringColumnsFilterDescription;
 import org.hillview.table.filters.StringFilterDescription;
 import org.hillview.table.filters.StringColumnFilterDescription;
+import org.hillview.table.filters.StringFilterFactory;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.TestTables;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collections;
+
 public class StringColumnFilterTest extends BaseTest {
     @Test
     public void testFilterSmallTable() {
@@ -162,4 +166,38 @@ public class StringColumnFilterTest extends BaseTest {
             row = it.getNextRow();
         }
     }
+
+    @Test
+    public void testFilterDictionaryColumn() {
+        String[] names = {"John", "Robert", "Ed", "Sam", "Ned", "Jaime", "Rickard", null};
+        int size = 1000;
+        String[] values = new String[size];
+        for (int i = 0; i < size; i++)
+            values[i] = names[(i * 7) % names.length];
+        ColumnDescription desc = new ColumnDescription("Name", ContentsKind.String);
+        IColumn sealed = new StringArrayColumn(desc, values).seal();
+        Table table = new Table(Collections.singletonList(sealed), null, null);
+
+        StringFilterDescription[] filters = {
+                new StringFilterDescription("ed"),
+                new StringFilterDescription("ed", true, false, false, false, false, false),
+                new StringFilterDescription("R.*", false, true, true, false, false, false),
+                new StringFilterDescription("Sam", false, false, true, true, false, false),
+                new StringFilterDescription(null),
+        };
+        for (StringFilterDescription f : filters) {
+            IStringFilter expected = StringFilterFactory.getFilter(f);
+            FilterMap filterMap = new FilterMap(new StringColumnFilterDescription("Name", f));
+            ITable result = filterMap.apply(table);
+            Assert.assertNotNull(result);
+            int count = 0;
+            for (String v : values)
+                if (expected.test(v))
+                    count++;
+            Assert.assertEquals(count, result.getNumOfRows());
+            IRowIterator it = result.getMembershipSet().getIterator();
+            for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+                Assert.assertTrue(expected.test(values[row]));
+        }
+    }
 }
@@ -19,20 +19,30 @@ package org.hillview.test.table;
 
 import org.hillview.dataset.LocalDataSet;
 import org.hillview.dataset.ParallelDataSet;
+import org.hillview.dataset.SharedScanCoordinator;
 import org.hillview.dataset.api.IDataSet;
+import org.hillview.dataset.api.PartialResult;
+import org.hillview.dataset.api.TableSketch;
+import org.hillview.sketches.CounterSketch;
+import org.hillview.sketches.HistogramSketch;
 import org.hillview.sketches.SampleQuantileSketch;
-import org.hillview.sketches.results.ColumnSortOrientation;
-import org.hillview.sketches.results.SampleList;
+import org.hillview.sketches.results.*;
 import org.hillview.table.RecordOrder;
 import org.hillview.table.SmallTable;
+import org.hillview.table.api.IMutableMembershipSet;
 import org.hillview.table.api.ITable;
 import org.hillview.table.api.IndexComparator;
+import org.hillview.table.membership.DenseMembershipSet;
 import org.hillview.test.BaseTest;
 import org.hillview.utils.TestTables;
+import org.hillview.utils.Utilities;
 import org.junit.Assert;
 import org.junit.Test;
+import rx.Observable;
+import rx.Subscription;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import static junit.framework.TestCase.assertTrue;
 
@@ -79,4 +89,143 @@ public class TableDataSetTest extends BaseTest {
         for (int i = 0; i < (sl.table.getNumOfRows() - 1); i++)
             assertTrue(comp.compare(i, i + 1) <= 0);
     }
+
+    @Test
+    public void parallelSketchingTest() {
+        final int size = 100000;
+        SmallTable table = TestTables.getIntTable(size, 2);
+        String colName = table.getSchema().getColumnNames().get(0);
+        IHistogramBuckets buckets = new DoubleHistogramBuckets(colName, 0, 100, 10);
+        IMutableMembershipSet dense = new DenseMembershipSet(size, size / 2);
+        for (int i = 0; i < size; i += 2)
+            dense.add(i);
+        for (ITable t : new ITable[] { table, table.selectRowsFromFullTable(dense.seal()) }) {
+            LocalDataSet<ITable> ld = new LocalDataSet<ITable>(t);
+            Groups<Count> sequential = ld.blockingSketch(new HistogramSketch(buckets));
+            Count count = ld.blockingSketch(new CounterSketch());
+            try {
+                LocalDataSet.setParallelSketching(true, size / 10);
+                Groups<Count> parallel = ld.blockingSketch(new HistogramSketch(buckets));
+                Assert.assertEquals(sequential, parallel);
+                Assert.assertEquals(count, ld.blockingSketch(new CounterSketch()));
+            } finally {
+                LocalDataSet.setParallelSketching(false);
+            }
+        }
+    }
+
+    @Test
+    public void incrementalSketchingTest() {
+        final int size = 100000;
+        SmallTable table = TestTables.getIntTable(size, 2);
+        String colName = table.getSchema().getColumnNames().get(0);
+        IHistogramBuckets buckets = new DoubleHistogramBuckets(colName, 0, 100, 10);
+        LocalDataSet<ITable> ld = new LocalDataSet<ITable>(table);
+        HistogramSketch sketch = new HistogramSketch(buckets);
+        Groups<Count> sequential = ld.blockingSketch(sketch);
+        try {
+            LocalDataSet.setIncrementalSketching(size / 10, 0);
+            List<PartialResult<Groups<Count>>> partials =
+                    ld.sketch(sketch).toList().toBlocking().single();
+            Assert.assertEquals(10, partials.size());
+            Groups<Count> sum = sketch.zero();
+            double done = 0;
+            for (PartialResult<Groups<Count>> pr : partials) {
+                sum = sketch.add(sum, pr.deltaValue);
+                done += pr.deltaDone;
+            }
+            Assert.assertEquals(sequential, sum);
+            Assert.assertEquals(1.0, done, 1e-6);
+            Assert.assertEquals(sequential, ld.blockingSketch(sketch));
+        } finally {
+            LocalDataSet.setIncrementalSketching(0, 0);
+        }
+    }
+
+    @Test
+    public void sharedScanTest() {
+        final int size = 100000;
+        SmallTable table = TestTables.getIntTable(size, 2);
+        List<String> colNames = table.getSchema().getColumnNames();
+        HistogramSketch hist0 = new HistogramSketch(new DoubleHistogramBuckets(colNames.get(0), 0, 100, 10));
+        HistogramSketch hist1 = new HistogramSketch(new DoubleHistogramBuckets(colNames.get(1), 0, 100, 20));
+        LocalDataSet<ITable> ld = new LocalDataSet<ITable>(table);
+        Groups<Count> expected0 = ld.blockingSketch(hist0);
+        Groups<Count> expected1 = ld.blockingSketch(hist1);
+        SharedScanCoordinator coordinator = SharedScanCoordinator.instance;
+        long scans = coordinator.getScanCount();
+        long sketches = coordinator.getSketchCount();
+        long rowsSaved = coordinator.getRowsSaved();
+        try {
+            SharedScanCoordinator.setWindow(100);
+            List<Object> results = Observable.zip(
+                    ld.sketch(hist0).last(), ld.sketch(new CounterSketch()).last(), ld.sketch(hist1).last(),
+                    (a, b, c) -> Utilities.<Object>list(a.deltaValue, b.deltaValue, c.deltaValue))
+                    .toBlocking().single();
+            Assert.assertEquals(expected0, results.get(0));
+            Assert.assertEquals(size, ((Count)results.get(1)).count);
+            Assert.assertEquals(expected1, results.get(2));
+        } finally {
+            SharedScanCoordinator.setWindow(0);
+        }
+        Assert.assertEquals(3, coordinator.getSketchCount() - sketches);
+        // Each scan shared by k sketches saves k - 1 scans of the table.
+        long scansDone = coordinator.getScanCount() - scans;
+        Assert.assertEquals((3 - scansDone) * size, coordinator.getRowsSaved() - rowsSaved);
+    }
+
+    @Test
+    public void sharedSampledScanTest() {
+        final int size = 100000;
+        SmallTable table = TestTables.getIntTable(size, 2);
+        List<String> colNames = table.getSchema().getColumnNames();
+        TableSketch<Groups<Count>> hist0 = new HistogramSketch(
+                new DoubleHistogramBuckets(colNames.get(0), 0, 100, 10)).sampled(.1, 3);
+        TableSketch<Groups<Count>> hist1 = new HistogramSketch(
+                new DoubleHistogramBuckets(colNames.get(1), 0, 100, 20)).sampled(.1, 3);
+        LocalDataSet<ITable> ld = new LocalDataSet<ITable>(table);
+        Groups<Count> expected0 = ld.blockingSketch(hist0);
+        Groups<Count> expected1 = ld.blockingSketch(hist1);
+        SharedScanCoordinator coordinator = SharedScanCoordinator.instance;
+        long scans = coordinator.getScanCount();
+        long sketches = coordinator.getSketchCount();
+        long rowsSaved = coordinator.getRowsSaved();
+        try {
+            SharedScanCoordinator.setWindow(100);
+            List<Groups<Count>> results = Observable.zip(
+                    ld.sketch(hist0).last(), ld.sketch(hist1).last(),
+                    (a, b) -> Utilities.list(a.deltaValue, b.deltaValue))
+                    .toBlocking().single();
+            Assert.assertEquals(expected0, results.get(0));
+            Assert.assertEquals(expected1, results.get(1));
+        } finally {
+            SharedScanCoordinator.setWindow(0);
+        }
+        // Both sampled sketches went through the coordinator.
+        Assert.assertEquals(2, coordinator.getSketchCount() - sketches);
+        long scansDone = coordinator.getScanCount() - scans;
+        Assert.assertEquals((2 - scansDone) * size, coordinator.getRowsSaved() - rowsSaved);
+    }
+
+    @Test
+    public void sharedScanCancelTest() {
+        final int size = 100000;
+        SmallTable table = TestTables.getIntTable(size, 2);
+        List<String> colNames = table.getSchema().getColumnNames();
+        HistogramSketch hist0 = new HistogramSketch(new DoubleHistogramBuckets(colNames.get(0), 0, 100, 10));
+        HistogramSketch hist1 = new HistogramSketch(new DoubleHistogramBuckets(colNames.get(1), 0, 100, 20));
+        LocalDataSet<ITable> ld = new LocalDataSet<ITable>(table);
+        Groups<Count> expected1 = ld.blockingSketch(hist1);
+        try {
+            SharedScanCoordinator.setWindow(100);
+            // A sketch cancelled while waiting for the scan does not affect the others
+            Subscription cancelled = ld.sketch(hist0).subscribe(
+                    r -> Assert.fail("Received a result after unsubscribing"));
+            cancelled.unsubscribe();
+            Groups<Count> result = ld.blockingSketch(hist1);
+            Assert.assertEquals(expected1, result);
+        } finally {
+            SharedScanCoordinator.setWindow(0);
+        }
+    }
 }
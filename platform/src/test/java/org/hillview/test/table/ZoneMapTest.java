@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2020 VMware Inc. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.hillview.test.table;
+
+import org.hillview.maps.FilterMap;
+import org.hillview.sketches.DoubleDataRangeSketch;
+import org.hillview.sketches.HistogramSketch;
+import org.hillview.sketches.results.Count;
+import org.hillview.sketches.results.DataRange;
+import org.hillview.sketches.results.DoubleHistogramBuckets;
+import org.hillview.sketches.results.Groups;
+import org.hillview.table.ColumnDescription;
+import org.hillview.table.Table;
+import org.hillview.table.api.*;
+import org.hillview.table.columns.DoubleArrayColumn;
+import org.hillview.table.columns.DoubleListColumn;
+import org.hillview.table.columns.ZoneMap;
+import org.hillview.table.filters.RangeFilterArrayDescription;
+import org.hillview.table.filters.RangeFilterDescription;
+import org.hillview.table.membership.IntervalMembershipSet;
+import org.hillview.test.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZoneMapTest extends BaseTest {
+    private static final int size = 5 * ZoneMap.BlockRows + 1000;
+    private static final ColumnDescription desc = new ColumnDescription("X", ContentsKind.Double);
+
+    /**
+     * The values of block b are between 100 * b and 100 * b + 50, in no particular order;
+     * block 2 also has missing values.
+     */
+    private static boolean isMissing(int row) {
+        return ZoneMap.blockOf(row) == 2 && row % 10 == 0;
+    }
+
+    private static double value(int row) {
+        return 100 * ZoneMap.blockOf(row) + (row * 7) % 51;
+    }
+
+    /**
+     * The same data with a zone map and without one.
+     */
+    private static ITable[] tables() {
+        DoubleListColumn list = new DoubleListColumn(desc);
+        DoubleArrayColumn array = new DoubleArrayColumn(desc, size);
+        for (int i = 0; i < size; i++) {
+            if (isMissing(i)) {
+                list.appendMissing();
+                array.setMissing(i);
+            } else {
+                list.append(value(i));
+                array.set(i, value(i));
+            }
+        }
+        IColumn sealed = list.seal();
+        Assert.assertNotNull(sealed.getZoneMap());
+        Assert.assertNull(array.getZoneMap());
+        return new ITable[] {
+                new Table(new IColumn[] { sealed }, null, null),
+                new Table(new IColumn[] { array }, null, null) };
+    }
+
+    private static RangeFilterDescription range(double min, double max, boolean includeMissing) {
+        RangeFilterDescription result = new RangeFilterDescription();
+        result.cd = desc;
+        result.min = min;
+        result.max = max;
+        result.includeMissing = includeMissing;
+        return result;
+    }
+
+    private static void checkSameRows(ITable expected, ITable actual) {
+        Assert.assertEquals(expected.getNumOfRows(), actual.getNumOfRows());
+        IRowIterator it = expected.getMembershipSet().getIterator();
+        for (int row = it.getNextRow(); row >= 0; row = it.getNextRow())
+            Assert.assertTrue(actual.getMembershipSet().isMember(row));
+    }
+
+    @Test
+    public void testZoneMap() {
+        ZoneMap zoneMap = tables()[0].getLoadedColumn("X").getZoneMap();
+        Assert.assertNotNull(zoneMap);
+        Assert.assertEquals(6, zoneMap.getBlockCount());
+        Assert.assertEquals(1000, zoneMap.blockEnd(5) - zoneMap.blockStart(5));
+        for (int b = 0; b < zoneMap.getBlockCount(); b++) {
+            Assert.assertEquals(100 * b, zoneMap.getMin(b), 0);
+            Assert.assertEquals(100 * b + 50, zoneMap.getMax(b), 0);
+            Assert.assertEquals(b == 2 ? ZoneMap.BlockRows / 10 : 0, zoneMap.getMissingCount(b));
+        }
+        Assert.assertEquals(ZoneMap.Match.All, zoneMap.match(1, 100, 150, false));
+        Assert.assertEquals(ZoneMap.Match.Some, zoneMap.match(1, 120, 150, false));
+        Assert.assertEquals(ZoneMap.Match.None, zoneMap.match(1, 151, 1000, false));
+        Assert.assertEquals(ZoneMap.Match.Some, zoneMap.match(2, 200, 250, false));
+        Assert.assertEquals(ZoneMap.Match.All, zoneMap.match(2, 200, 250, true));
+        Assert.assertEquals(ZoneMap.Match.None, zoneMap.match(2, 0, 10, false));
+        Assert.assertEquals(ZoneMap.Match.Some, zoneMap.match(2, 0, 10, true));
+
+        DoubleListColumn withNaN = new DoubleListColumn(desc);
+        withNaN.append(1);
+        withNaN.append(Double.NaN);
+        zoneMap = withNaN.seal().getZoneMap();
+        Assert.assertNotNull(zoneMap);
+        Assert.assertEquals(ZoneMap.Match.Some, zoneMap.match(0, 0, 2, false));
+        Assert.assertEquals(ZoneMap.Match.Some, zoneMap.match(0, 5, 7, false));
+    }
+
+    @Test
+    public void testRangeFilter() {
+        ITable[] tables = tables();
+        RangeFilterDescription[] ranges = {
+                range(100, 150, false), range(120, 330, false), range(200, 250, true),
+                range(0, 10, true), range(1000, 2000, false) };
+        for (RangeFilterDescription r : ranges) {
+            ITable expected = new FilterMap(r).apply(tables[1]);
+            ITable actual = new FilterMap(r).apply(tables[0]);
+            Assert.assertNotNull(expected);
+            Assert.assertNotNull(actual);
+            checkSameRows(expected, actual);
+
+            RangeFilterArrayDescription array = new RangeFilterArrayDescription();
+            array.filters = new RangeFilterDescription[] { r, range(130, 420, false) };
+            array.complement = true;
+            expected = new FilterMap(array).apply(tables[1]);
+            actual = new FilterMap(array).apply(tables[0]);
+            Assert.assertNotNull(expected);
+            Assert.assertNotNull(actual);
+            checkSameRows(expected, actual);
+        }
+    }
+
+    @Test
+    public void testSketches() {
+        ITable[] tables = tables();
+        IMembershipSet subset = new IntervalMembershipSet(size,
+                new int[] { 1000, 2 * ZoneMap.BlockRows }, new int[] { 5000, 4 * ZoneMap.BlockRows + 10 });
+        ITable[] subsets = {
+                tables[0].selectRowsFromFullTable(subset), tables[1].selectRowsFromFullTable(subset) };
+        for (ITable[] t : new ITable[][] { tables, subsets }) {
+            DoubleDataRangeSketch sketch = new DoubleDataRangeSketch("X");
+            DataRange expected = sketch.create(t[1]);
+            DataRange actual = sketch.create(t[0]);
+            Assert.assertNotNull(expected);
+            Assert.assertNotNull(actual);
+            Assert.assertEquals(expected.min, actual.min, 0);
+            Assert.assertEquals(expected.max, actual.max, 0);
+            Assert.assertEquals(expected.presentCount, actual.presentCount);
+            Assert.assertEquals(expected.missingCount, actual.missingCount);
+
+            for (DoubleHistogramBuckets buckets : new DoubleHistogramBuckets[] {
+                    new DoubleHistogramBuckets("X", 100, 300, 4),
+                    new DoubleHistogramBuckets("X", 0, 600, 6),
+                    new DoubleHistogramBuckets("X", 120, 130, 3) }) {
+                HistogramSketch histogram = new HistogramSketch(buckets);
+                Groups<Count> expectedCounts = histogram.create(t[1]);
+                Groups<Count> actualCounts = histogram.create(t[0]);
+                Assert.assertEquals(expectedCounts, actualCounts);
+            }
+        }
+    }
+}
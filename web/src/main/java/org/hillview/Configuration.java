@@ -81,4 +81,81 @@ public class Configuration {
     public String getGreenplumDumpDirectory() {
         return this.getProperty("greenplumDumpDirectory", "/tmp");
     }
+
+    /**
+     * Maximum number of backend servers whose results are merged by a single node
+     * of the root; 0 means that all of them are merged by the same node.
+     * The root still connects to all servers; aggregator processes are
+     * needed to reduce its network fan-in.
+     */
+    public int getAggregationFanOut() {
+        return Integer.parseInt(this.getProperty("aggregationFanOut", "0"));
+    }
+
+    /**
+     * Number of rows in each chunk when the workers sketch tables incrementally.
+     */
+    public int getIncrementalRowsPerChunk() {
+        return Integer.parseInt(this.getProperty("incrementalRowsPerChunk", "1048576"));
+    }
+
+    /**
+     * Minimum time between the partial results of a table sketched incrementally.
+     */
+    public int getIncrementalIntervalInMilliseconds() {
+        return Integer.parseInt(this.getProperty("incrementalIntervalInMilliseconds", "500"));
+    }
+
+    /**
+     * Sketches over the same table arriving within this time share a scan
+     * when shared scans are enabled.
+     */
+    public int getSharedScanWindowInMilliseconds() {
+        return Integer.parseInt(this.getProperty("sharedScanWindowInMilliseconds", "20"));
+    }
+
+    /**
+     * Directory on each worker where loaded files are cached in native format
+     * when the column cache is enabled.
+     */
+    public String getColumnCacheDirectory() {
+        return this.getProperty("columnCacheDirectory", "/tmp/hillview-column-cache");
+    }
+
+    /**
+     * Bound on the total size of the column cache of each worker.
+     */
+    public long getColumnCacheMaxBytes() {
+        return Long.parseLong(this.getProperty("columnCacheMaxBytes", "10737418240"));
+    }
+
+    /**
+     * Directory on each worker where datasets evicted from memory are written
+     * when spilling is enabled.
+     */
+    public String getSpillDirectory() {
+        return this.getProperty("spillDirectory", "/tmp/hillview-spill");
+    }
+
+    /**
+     * Bound on the total size of the datasets spilled by each worker.
+     */
+    public long getSpillMaxBytes() {
+        return Long.parseLong(this.getProperty("spillMaxBytes", "10737418240"));
+    }
+
+    /**
+     * Fraction of the tenured heap of a worker above which loaded columns are
+     * evicted, when column eviction is enabled.
+     */
+    public double getColumnEvictionHighWatermark() {
+        return Double.parseDouble(this.getProperty("columnEvictionHighWatermark", ".85"));
+    }
+
+    /**
+     * Fraction of the tenured heap of a worker at which column eviction stops.
+     */
+    public double getColumnEvictionLowWatermark() {
+        return Double.parseDouble(this.getProperty("columnEvictionLowWatermark", ".70"));
+    }
 }
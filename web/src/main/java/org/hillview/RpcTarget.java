@@ -24,6 +24,8 @@ import org.hillview.dataset.api.*;
 import org.hillview.dataset.monoids.PRDataSetMonoid;
 import org.hillview.dataset.monoids.PartialResultMonoid;
 import org.hillview.sketches.highorder.PostProcessedSketch;
+import org.hillview.sketches.highorder.ProgressiveSampler;
+import org.hillview.table.api.ITable;
 import org.hillview.targets.InitialObjectTarget;
 import org.hillview.utils.*;
 import rx.Observable;
@@ -458,6 +460,26 @@ public abstract class RpcTarget implements IJson, IRpcTarget {
         this.runObservedSketch(data, sketch, robs, context);
     }
 
+    /**
+     * Runs a sketch using progressive sampling.  Each partial result sent
+     * to the client is an estimate of the sketch result over the whole data.
+     * @param data            Data to sketch.
+     * @param sampler         Progressive sampler that runs the sketch.
+     * @param postprocessing  Function applied to each estimate before sending it.
+     */
+    public <R extends ISketchResult & IScalable<R>, S extends IJson> void
+    runProgressiveSketch(IDataSet<ITable> data, ProgressiveSampler<R, ?> sampler,
+                         Function<R, S> postprocessing,
+                         RpcRequest request, RpcRequestContext context) {
+        SketchResultObserver<R, S> robs = new SketchResultObserver<R, S>(
+                sampler.sketch.asString(), this, request, context, postprocessing);
+        // The estimates are not deltas, so they are not added up.
+        Subscription sub = sampler.run(data)
+                .unsubscribeOn(ExecutorUtils.getUnsubscribeScheduler())
+                .subscribe(robs);
+        this.saveSubscription(context, sub);
+    }
+
     /**
      * Helper function which runs a streaming computation that returns a dataset.
      * @param stream       Result produced by computation.
@@ -98,7 +98,8 @@ public class InitialObjectTarget extends RpcTarget {
     }
 
     private void initialize(final HostList description) {
-        this.emptyDataset = RemoteDataSet.createCluster(description, RemoteDataSet.defaultDatasetIndex);
+        this.emptyDataset = RemoteDataSet.createCluster(description, RemoteDataSet.defaultDatasetIndex,
+                Configuration.instance.getAggregationFanOut());
         PingSketch<Empty> ping = new PingSketch<Empty>();
         this.workers = new ArrayList<>(Converters.checkNull(this.emptyDataset.blockingSketch(ping)));
     }
@@ -315,6 +316,87 @@ public class InitialObjectTarget extends RpcTarget {
         this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
     }
 
+    @HillviewRpc
+    public void setParallelSketching(RpcRequest request, RpcRequestContext context) {
+        SetParallelSketching tm = new SetParallelSketching(true);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void unsetParallelSketching(RpcRequest request, RpcRequestContext context) {
+        SetParallelSketching tm = new SetParallelSketching(false);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void setIncrementalSketching(RpcRequest request, RpcRequestContext context) {
+        SetIncrementalSketching tm = new SetIncrementalSketching(
+                Configuration.instance.getIncrementalRowsPerChunk(),
+                Configuration.instance.getIncrementalIntervalInMilliseconds());
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void unsetIncrementalSketching(RpcRequest request, RpcRequestContext context) {
+        SetIncrementalSketching tm = new SetIncrementalSketching(0, 0);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void setSharedScans(RpcRequest request, RpcRequestContext context) {
+        SetSharedScans tm = new SetSharedScans(
+                Configuration.instance.getSharedScanWindowInMilliseconds());
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void unsetSharedScans(RpcRequest request, RpcRequestContext context) {
+        SetSharedScans tm = new SetSharedScans(0);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void setColumnCache(RpcRequest request, RpcRequestContext context) {
+        SetColumnCache tm = new SetColumnCache(
+                Configuration.instance.getColumnCacheDirectory(),
+                Configuration.instance.getColumnCacheMaxBytes());
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void unsetColumnCache(RpcRequest request, RpcRequestContext context) {
+        SetColumnCache tm = new SetColumnCache(null, 0);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void setSpilling(RpcRequest request, RpcRequestContext context) {
+        SetSpillDirectory tm = new SetSpillDirectory(
+                Configuration.instance.getSpillDirectory(),
+                Configuration.instance.getSpillMaxBytes());
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void unsetSpilling(RpcRequest request, RpcRequestContext context) {
+        SetSpillDirectory tm = new SetSpillDirectory(null, 0);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void setColumnEviction(RpcRequest request, RpcRequestContext context) {
+        SetColumnEviction tm = new SetColumnEviction(
+                Configuration.instance.getColumnEvictionHighWatermark(),
+                Configuration.instance.getColumnEvictionLowWatermark());
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void unsetColumnEviction(RpcRequest request, RpcRequestContext context) {
+        SetColumnEviction tm = new SetColumnEviction(0, 0);
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
     @HillviewRpc
     public void purgeMemoization(RpcRequest request, RpcRequestContext context) {
         PurgeMemoization tm = new PurgeMemoization();
@@ -333,6 +415,24 @@ public class InitialObjectTarget extends RpcTarget {
         this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
     }
 
+    @HillviewRpc
+    public void memoizationStatistics(RpcRequest request, RpcRequestContext context) {
+        MemoizationStatistics tm = new MemoizationStatistics();
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void sharedScanStatistics(RpcRequest request, RpcRequestContext context) {
+        SharedScanStatistics tm = new SharedScanStatistics();
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
+    @HillviewRpc
+    public void columnMemoryStatistics(RpcRequest request, RpcRequestContext context) {
+        ColumnMemoryStatistics tm = new ColumnMemoryStatistics();
+        this.runManage(Converters.checkNull(this.emptyDataset), tm, request, context);
+    }
+
     @HillviewRpc
     public void purgeDatasets(RpcRequest request, RpcRequestContext context) {
         int deleted = RpcObjectManager.instance.removeAllObjects();
@@ -30,7 +30,9 @@ import org.hillview.dataset.api.IJson;
 import org.hillview.dataset.api.TableSketch;
 import org.hillview.sketches.HistogramSketch;
 import org.hillview.sketches.SummarySketch;
+import org.hillview.sketches.highorder.IncrementalPairSketch;
 import org.hillview.sketches.highorder.PostProcessedSketch;
+import org.hillview.sketches.highorder.ProgressiveSampler;
 import org.hillview.sketches.results.*;
 import org.hillview.table.ColumnDescription;
 import org.hillview.table.QuantizationSchema;
@@ -45,6 +47,7 @@ import org.hillview.utils.Utilities;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.function.BiPredicate;
 
 /**
  * An RPC target that represents an ITable.
@@ -128,6 +131,16 @@ public abstract class TableRpcTarget extends RpcTarget {
         public HistogramInfo[] histos;
         public double samplingRate;
         public long seed;
+        /**
+         * If true the histogram is computed using progressive sampling,
+         * starting at the samplingRate (if below 1).
+         */
+        public boolean progressive;
+        /**
+         * Progressive sampling stops when the confidence interval of each
+         * bucket is below this fraction of the total count.
+         */
+        public double errorTolerance;
 
         public TableSketch<Groups<Count>> getSketch(int index) {
             HistogramSketch sk = this.histos[index].getSketch();
@@ -136,6 +149,36 @@ public abstract class TableRpcTarget extends RpcTarget {
             return sk;
         }
 
+        private double[] getProgressiveRates() {
+            double initialRate = this.samplingRate > 0 && this.samplingRate < 1 ?
+                    this.samplingRate : ProgressiveSampler.defaultInitialRate;
+            return ProgressiveSampler.geometricRates(initialRate, ProgressiveSampler.defaultGrowth);
+        }
+
+        private BiPredicate<Groups<Count>, Double> getPrecision() {
+            double tolerance = this.errorTolerance > 0 ? this.errorTolerance : 0.01;
+            return ProgressiveSampler.histogramPrecision(tolerance);
+        }
+
+        public ProgressiveSampler<Groups<Count>, ?> getProgressiveSampler(int index) {
+            return new ProgressiveSampler<>(this.histos[index].getSketch(),
+                    this.getProgressiveRates(), this.seed, this.getPrecision());
+        }
+
+        /**
+         * Progressive sampler for a histogram (index 0) and the finer histogram
+         * used for its CDF (index 1), computed in the same scan.  Sampling stops
+         * when the histogram is precise enough.
+         */
+        public ProgressiveSampler<IncrementalPairSketch.Result<Groups<Count>, Groups<Count>>, ?>
+        getProgressiveSamplerWithCDF() {
+            BiPredicate<Groups<Count>, Double> precise = this.getPrecision();
+            return new ProgressiveSampler<>(
+                    new IncrementalPairSketch<>(this.histos[0].getSketch(), this.histos[1].getSketch()),
+                    this.getProgressiveRates(), this.seed,
+                    (r, rate) -> precise.test(Converters.checkNull(r.first), rate));
+        }
+
         public TableSketch<Groups<Count>> getSketch(int index, ColumnQuantization quantization) {
             IHistogramBuckets buckets = this.histos[index].getBuckets(quantization);
             HistogramSketch sk = new HistogramSketch(buckets);
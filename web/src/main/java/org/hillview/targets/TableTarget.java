@@ -239,23 +239,39 @@ public class TableTarget extends TableRpcTarget {
         this.runCompleteSketch(this.table, multi, request, context);
     }
 
-    @SuppressWarnings("unused")
+    @SuppressWarnings({"unused", "unchecked"})
     @HillviewRpc
     public void histogramAndCDF(RpcRequest request, RpcRequestContext context) {
         HistogramRequestInfo info = request.parseArgs(HistogramRequestInfo.class);
         assert info.size() == 2;
+        if (info.progressive) {
+            // Each estimate replaces the previous one on the client.
+            this.runProgressiveSketch(this.table, info.getProgressiveSamplerWithCDF(),
+                    r -> new Two<>(
+                            new Two<>(Converters.checkNull(r.first)),
+                            new Two<>(Converters.checkNull(r.second).prefixSum(Count::add, Groups::new))),
+                    request, context);
+            return;
+        }
         TableSketch<Groups<Count>> sk = info.getSketch(0); // Histogram
         TableSketch<Groups<Count>> cdf = info.getSketch(1); // CDF: also histogram but at finer granularity
-        ConcurrentSketch<ITable, Groups<Count>, Groups<Count>> csk =
-                new ConcurrentSketch<>(sk, cdf);
-        DataWithCDFSketch<Groups<Count>> post = new DataWithCDFSketch<Groups<Count>>(csk);
+        // The two histograms are computed in the same scan of the data
+        BatchSketch<ITable> batch = new BatchSketch<ITable>(sk, cdf);
         // Add the confidence intervals as null
-        this.runSketch(this.table, post.andThen(p -> new Two<>(new Two<>(p.first), new Two<>(p.second))), request, context);
+        this.runSketch(this.table, batch.andThen(l -> new Two<>(
+                new Two<>((Groups<Count>)Converters.checkNull(l).get(0)),
+                new Two<>(((Groups<Count>)l.get(1)).prefixSum(Count::add, Groups::new)))),
+                request, context);
     }
 
     @HillviewRpc
     public void histogram(RpcRequest request, RpcRequestContext context) {
         HistogramRequestInfo info = request.parseArgs(HistogramRequestInfo.class);
+        if (info.progressive) {
+            this.runProgressiveSketch(this.table, info.getProgressiveSampler(0),
+                    r -> r.toSerializable(c -> c), request, context);
+            return;
+        }
         TableSketch<Groups<Count>> sk = info.getSketch(0); // Histogram
         this.runSketch(this.table, sk.andThen(r -> r.toSerializable(c -> c)), request, context);
     }
@@ -299,6 +315,7 @@ public class TableTarget extends TableRpcTarget {
         this.runSketch(this.table, sk, request, context);
     }
 
+    @SuppressWarnings("unchecked")
     @HillviewRpc
     public void histogram2DAndCDF(RpcRequest request, RpcRequestContext context) {
         HistogramRequestInfo info = request.parseArgs(HistogramRequestInfo.class);
@@ -307,10 +324,11 @@ public class TableTarget extends TableRpcTarget {
                 info.getBuckets(1),
                 info.getBuckets(0)).sampled(info.samplingRate, info.seed);
         TableSketch<Groups<Count>> cdf = info.getSketch(2);
-        ConcurrentSketch<ITable, Groups<Groups<Count>>, Groups<Count>> csk =
-                new ConcurrentSketch<ITable, Groups<Groups<Count>>, Groups<Count>>(sk, cdf);
-        DataWithCDFSketch<Groups<Groups<Count>>> dwc = new DataWithCDFSketch<Groups<Groups<Count>>>(csk);
-        this.runSketch(this.table, dwc, request, context);
+        // The two histograms are computed in the same scan of the data
+        BatchSketch<ITable> batch = new BatchSketch<ITable>(sk, cdf);
+        this.runSketch(this.table, batch.andThen(l -> new Pair<>(
+                (Groups<Groups<Count>>)Converters.checkNull(l).get(0),
+                ((Groups<Count>)l.get(1)).prefixSum(Count::add, Groups::new))), request, context);
     }
 
     @HillviewRpc
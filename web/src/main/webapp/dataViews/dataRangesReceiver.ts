@@ -436,6 +436,9 @@ export class DataRangesReceiver extends OnCompleteReceiver<BucketsInfo[]> {
                 histos.push(cdfArg);
 
                 const args = createRequestArgs(histos, true);
+                // A sampled histogram is shown quickly, and refined with larger
+                // samples until precise enough; errorTolerance uses the server default.
+                args.progressive = args.samplingRate < 1;
                 const rr = this.originator.createHistogramAndCDFRequest(args);
                 rr.chain(this.operation);
                 const axisData = new AxisData(this.cds[0], ranges[0], histoArg.bucketCount);
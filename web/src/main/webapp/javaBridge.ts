@@ -401,6 +401,12 @@ export interface HistogramRequestInfo {
     histos: HistogramInfo[];
     samplingRate: number;
     seed: number;
+    // If true the server uses progressive sampling starting at samplingRate,
+    // and each partial result replaces the previous one.
+    progressive?: boolean;
+    // Progressive sampling stops when the confidence interval of each bucket
+    // is below this fraction of the total count; 0 uses the server default.
+    errorTolerance?: number;
 }
 
 export interface HeatmapRequestInfo extends HistogramRequestInfo {
@@ -229,6 +229,54 @@ export class LoadView extends RemoteObject implements IDataView {
                         text: "Unset memoization",
                         action: () => this.command("unsetMemoization"),
                         help: "Asks the workers not to memoize query results.",
+                    }, {
+                        text: "Set parallel sketching",
+                        action: () => this.command("setParallelSketching"),
+                        help: "Asks the workers to split large tables and sketch the pieces in parallel.",
+                    }, {
+                        text: "Unset parallel sketching",
+                        action: () => this.command("unsetParallelSketching"),
+                        help: "Asks the workers to sketch each table on a single thread.",
+                    }, {
+                        text: "Set incremental sketching",
+                        action: () => this.command("setIncrementalSketching"),
+                        help: "Asks the workers to sketch large tables in chunks, reporting partial results.",
+                    }, {
+                        text: "Unset incremental sketching",
+                        action: () => this.command("unsetIncrementalSketching"),
+                        help: "Asks the workers to sketch each table in a single pass.",
+                    }, {
+                        text: "Set shared scans",
+                        action: () => this.command("setSharedScans"),
+                        help: "Asks the workers to compute sketches arriving together in a single scan.",
+                    }, {
+                        text: "Unset shared scans",
+                        action: () => this.command("unsetSharedScans"),
+                        help: "Asks the workers to scan the data separately for each sketch.",
+                    }, {
+                        text: "Set column cache",
+                        action: () => this.command("setColumnCache"),
+                        help: "Asks the workers to cache the files they load in a native columnar format.",
+                    }, {
+                        text: "Unset column cache",
+                        action: () => this.command("unsetColumnCache"),
+                        help: "Asks the workers to parse the files each time they are loaded.",
+                    }, {
+                        text: "Set spilling",
+                        action: () => this.command("setSpilling"),
+                        help: "Asks the workers to write the datasets evicted from memory to local disk.",
+                    }, {
+                        text: "Unset spilling",
+                        action: () => this.command("unsetSpilling"),
+                        help: "Asks the workers to drop the datasets evicted from memory.",
+                    }, {
+                        text: "Set column eviction",
+                        action: () => this.command("setColumnEviction"),
+                        help: "Asks the workers to evict loaded columns when their heap is almost full.",
+                    }, {
+                        text: "Unset column eviction",
+                        action: () => this.command("unsetColumnEviction"),
+                        help: "Asks the workers to keep loaded columns in memory.",
                     }, {
                         text: "Memory use",
                         action: () => this.command("memoryUse"),